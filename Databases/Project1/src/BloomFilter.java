@@ -0,0 +1,199 @@
+
+/*****************************************************************************************
+ * @file  BloomFilter.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The BloomFilter class is a compact, approximate set of join keys, used for semi-join
+ * reduction: a filter built from the join keys of a join's build side lets the probe
+ * side drop most tuples that cannot join while it is being scanned, before they are
+ * hashed, partitioned or spilled.  A filter never rejects a key that was added, but may
+ * accept one that was not (with about the false positive rate given when sized).
+ * Keys are hashed twice (from the KeyType's hash code), and the k bit positions are
+ * derived by double hashing.
+ *
+ * Each filter counts the tuples it tests and rejects without locking (so parallel probes
+ * of one filter do not contend), and the reducer publishes these counts to the global
+ * totals once it is done with the filter.
+ */
+public class BloomFilter
+{
+    /** The bits
+     */
+    private final long [] bits;
+
+    /** The number of bits (m) and the number of hash functions (k)
+     */
+    private final int m, k;
+
+    /** The number of tuples tested and rejected by this filter, not yet published
+     */
+    private final LongAdder nTested = new LongAdder (), nEliminated = new LongAdder ();
+
+    /** The number of tuples tested and rejected by all filters (for reporting)
+     */
+    private static long tested = 0, eliminated = 0;
+
+    /*************************************************************************************
+     * Construct a Bloom filter sized for n keys with the given false positive rate.
+     *
+     * @param n    the expected number of keys
+     * @param fpp  the desired false positive probability (e.g., 0.01)
+     */
+    public BloomFilter (long n, double fpp)
+    {
+        double bitsPerKey = -Math.log (fpp) / (Math.log (2) * Math.log (2));
+        long   mm = Math.max (64, (long) Math.ceil (Math.max (1, n) * bitsPerKey));
+        m    = (int) Math.min (mm, Integer.MAX_VALUE - 63);
+        k    = Math.max (1, (int) Math.round (bitsPerKey * Math.log (2)));
+        bits = new long [(m + 63) >>> 6];
+    } // constructor
+
+    /*************************************************************************************
+     * Build a filter from the join keys (the values in cols) of the given tuples, with
+     * a 1% false positive rate.  Tuples with a null join value are skipped.
+     *
+     * @param tuples  the build-side tuples
+     * @param cols    the join columns
+     * @return  the filter
+     */
+    public static BloomFilter build (Collection <Comparable []> tuples, int [] cols)
+    {
+        BloomFilter bf = new BloomFilter (tuples.size (), 0.01);
+        for (Comparable [] t : tuples) {
+            KeyType key = keyOf (t, cols);
+            if (key != null) bf.add (key);
+        } // for
+        return bf;
+    } // build
+
+    /*************************************************************************************
+     * Add a key to the filter.
+     * @param key  the key to add
+     */
+    public void add (KeyType key)
+    {
+        long h = mix (key.hashCode ());
+        int  h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < k; i++) {
+            int b = (int) (((h1 + (long) i * h2) & 0x7fffffffL) % m);
+            bits [b >>> 6] |= 1L << b;
+        } // for
+    } // add
+
+    /*************************************************************************************
+     * Determine whether the key might have been added (false means it certainly was not).
+     * @param key  the key to test
+     */
+    public boolean mightContain (KeyType key)
+    {
+        long h = mix (key.hashCode ());
+        int  h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < k; i++) {
+            int b = (int) (((h1 + (long) i * h2) & 0x7fffffffL) % m);
+            if ((bits [b >>> 6] & (1L << b)) == 0) return false;
+        } // for
+        return true;
+    } // mightContain
+
+    /*************************************************************************************
+     * Determine whether tuple t might join (its join key might be in the filter).  A
+     * tuple with a null join value never joins.  The outcome is counted by this filter
+     * (see publish).
+     *
+     * @param t     the probe-side tuple
+     * @param cols  its join columns
+     */
+    public boolean mightJoin (Comparable [] t, int [] cols)
+    {
+        KeyType key = keyOf (t, cols);
+        boolean ok  = key != null && mightContain (key);
+        nTested.increment ();
+        if (! ok) nEliminated.increment ();
+        return ok;
+    } // mightJoin
+
+    /*************************************************************************************
+     * Add the numbers of tuples this filter has tested and eliminated to the totals (once
+     * per reduction, after the probe side has been scanned).
+     */
+    public void publish ()
+    {
+        long t = nTested.sumThenReset (), e = nEliminated.sumThenReset ();
+        synchronized (BloomFilter.class) {
+            tested     += t;
+            eliminated += e;
+        } // synchronized
+    } // publish
+
+    /*************************************************************************************
+     * Return the numbers of probe-side tuples tested and eliminated by filters so far
+     * (as published).
+     */
+    public static synchronized long tested ()     { return tested; }
+    public static synchronized long eliminated () { return eliminated; }
+
+    /*************************************************************************************
+     * Return the join key of tuple t (null if any join value is null).
+     */
+    static KeyType keyOf (Comparable [] t, int [] cols)
+    {
+        Comparable [] key = new Comparable [cols.length];
+        for (int j = 0; j < cols.length; j++) {
+            if ((key [j] = t [cols [j]]) == null) return null;
+        } // for
+        return KeyType.wrap (key);
+    } // keyOf
+
+    /*************************************************************************************
+     * Spread a 32-bit hash code over 64 bits (the SplitMix64 finalizer), giving the two
+     * hash values for double hashing.
+     */
+    private static long mix (int hashCode)
+    {
+        long z = hashCode * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    } // mix
+
+    /*************************************************************************************
+     * The main method is used for testing: measure the false positive rate, and reduce
+     * a large movie table by the join keys of a heavily filtered studio table.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        BloomFilter bf = new BloomFilter (100000, 0.01);
+        for (int i = 0; i < 100000; i++) bf.add (new KeyType ("key" + i));
+        int fp = 0;
+        for (int i = 100000; i < 1100000; i++) if (bf.mightContain (new KeyType ("key" + i))) fp++;
+        out.printf ("false positive rate = %.4f (target 0.01)\n", fp / 1000000.0);
+
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        Table movie  = new Table ("movie", "title studioName", "String String", "title", IndexType.NONE);
+        Table studio = new Table ("studio", "name presNo", "String Integer", "name");
+        Random rng = new Random (0);
+        for (int s = 0; s < 1000; s++) studio.insert (new Comparable [] { "Studio_" + s, s });
+        for (int i = 0; i < 500000; i++) movie.insert (new Comparable [] { "Movie_" + i, "Studio_" + rng.nextInt (1000) });
+
+        Table few = studio.select (new Condition ("presNo", "<", 20));        // 2% of the studios
+        long t0 = System.nanoTime ();
+        Table r1 = movie.h_join ("studioName", "name", few);
+        long t1 = System.nanoTime ();
+        Table r2 = movie.bloomReduce ("studioName", "name", few).h_join ("studioName", "name", few);
+        long t2 = System.nanoTime ();
+        System.setOut (console);
+        out.printf ("rows = %d/%d: hash join %d ms, with bloom reduction %d ms (eliminated %d of %d)\n",
+                    r1.size (), r2.size (), (t1 - t0) / 1000000, (t2 - t1) / 1000000, eliminated (), tested ());
+    } // main
+
+} // BloomFilter class
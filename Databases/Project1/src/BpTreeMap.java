@@ -1,763 +1,820 @@
-
-/************************************************************************************
- * @file BpTreeMap.java
- *
- * @author  John Miller
- */
-
-import java.io.*;
-import java.lang.reflect.Array;
-import java.util.*;
-
-import internal.database.BpTree;
-import internal.database.BpTree.Node;
-import internal.database.BpTree.Pair;
-
-import static java.lang.System.out;
-
-/************************************************************************************
- * This class provides B+Tree maps.  B+Trees are used as multi-level index structures
- * that provide efficient access for both point queries and range queries.
- * All keys will be at the leaf level with leaf nodes linked by references.
- * Internal nodes will contain divider keys such that divKey corresponds to the
- * largest key in its left subtree.
- */
-public class BpTreeMap <K extends Comparable <K>, V>
-       extends AbstractMap <K, V>
-       implements Serializable, Cloneable, SortedMap <K, V>
-{
-    /** The maximum fanout (number of children) for a B+Tree node.
-     *  May wish to increase for better performance for Program 3.
-     */
-    private static final int ORDER = 5;
-
-    /** The floor of half the ORDER.
-     */
-    private static final int MID = ORDER / 2;
-
-    /** The debug flag
-     */
-    private static final boolean DEBUG = true;
-
-    /** The class for type K.
-     */
-    private final Class <K> classK;
-
-    /** The class for type V.
-     */
-    private final Class <V> classV;
-
-    /********************************************************************************
-     * This inner class defines nodes that are stored in the B+tree map.
-     */
-    private class Node
-    {
-        boolean   isLeaf;
-        int       nKeys;
-        K []      key;
-        Object [] ref;
-
-        @SuppressWarnings("unchecked")
-        Node (boolean _isLeaf)
-        {
-            isLeaf = _isLeaf;
-            nKeys  = 0;
-            key    = (K []) Array.newInstance (classK, ORDER - 1);
-            if (isLeaf) {
-                //ref = (V []) Array.newInstance (classV, ORDER);
-                ref = new Object [ORDER];
-            } else {
-                ref = (Node []) Array.newInstance (Node.class, ORDER);
-            } // if
-        } // constructor
-    } // Node inner class
-
-    /** The root of the B+Tree
-     */
-    private Node root;
-
-    /** The first (leftmost) leaf in the B+Tree
-     */
-    private final Node firstLeaf;
-
-    /** The counter for the number nodes accessed (for performance testing).
-     */
-    private int count = 0;
-
-    
-    
-    
-
-    
-    /********************************************************************************
-     * Construct an empty B+Tree map.
-     * @param _classK  the class for keys (K)
-     * @param _classV  the class for values (V)
-     */
-    public BpTreeMap (Class <K> _classK, Class <V> _classV)
-    {
-        classK    = _classK;
-        classV    = _classV;
-        root      = new Node (true);
-        firstLeaf = root;
-    } // constructor
-
-    
-    
-
-    
-    
-    /********************************************************************************
-     * Return null to use the natural order based on the key type.  This requires the
-     * key type to implement Comparable.
-     */
-    public Comparator <? super K> comparator () 
-    {
-        return null;
-    } // comparator
-
-    
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * Return a set containing all the entries as pairs of keys and values.
-     * @return  the set view of the map
-     */
-    public Set <Map.Entry <K, V>> entrySet () //unfinished
-    {
-        Set <Map.Entry <K, V>> enSet = new HashSet <> ();
-
-        //leaf level contains all values, and each node contains a last pointer that will lead to sibling
-        //use enset.add("key", "value") to add key value pair
-        K key;
-        V val;
-        
-        Node n = root;
-        while (n.isLeaf == false) {
-         //get to first key
-         n = (Node) n.ref[0];
-        }
-        int i = 0; 
-        //go until the last reference is null (means there's no sibling leaf node)
-        for (int j = 0; j < n.nKeys; j++) {
-         key = n.key[j];
-         val = (V) n.ref[j];
-         
-         enSet.add(new AbstractMap.SimpleEntry <K, V> (key, val));
-         
-         if (j == n.nKeys-1 && n.ref[n.ref.length-1] == null) {
-          break;
-         }
-        }
-        return enSet;
-    } // entrySet
-
-    
-    
-    
-    
-
-    
-    /********************************************************************************
-     * Given the key, look up the value in the B+Tree map.
-     * @param key  the key used for look up
-     * @return  the value associated with the key or null if not found
-     */
-    @SuppressWarnings("unchecked")
-    public V get (Object key)
-    {
-        return find ((K) key, root);
-    } // get
-
-    
-    
-    
-    
-    
-
-    
-    /********************************************************************************
-     * Put the key-value pair in the B+Tree map.
-     * @param key    the key to insert
-     * @param value  the value to insert
-     * @return  null, not the previous value for this key
-     */
-    public V put (K key, V value)
-    {
-        insert (key, value, root);
-        return null;
-    } // put
-
-    
-    
-    
-    
- 
-    
-    /********************************************************************************
-     * Return the first (smallest) key in the B+Tree map.
-     * @return  the first key in the B+Tree map.
-     */
-    @SuppressWarnings("unchecked")
-	public K firstKey () //could also return var firstLeaf?
-    {
-    	count++;
-    	
-    	Node n = root;
-    	while (n.isLeaf == false) {
-    		n = (Node) n.ref[0]; //take first node down until leaf node is reached
-    	}
-    	
-        return n.key[0]; //then return first key of bottom leaf node
-    } // firstKey
-
-    
-    
-    
-  
-    
-    
-    /********************************************************************************
-     * Return the last (largest) key in the B+Tree map.
-     * @return  the last key in the B+Tree map.
-     */
-    @SuppressWarnings("unchecked")
-	public K lastKey () 
-    {
-    	count++;
-    	
-    	Node n = root;
-    	while (n.isLeaf == false) {
-    		n = (Node) n.ref[n.nKeys];
-    	}
-
-        return n.key[n.nKeys-1];
-    } // lastKey
-
-    
-    
-    
-    
- 
-    
-    
-    /********************************************************************************
-     * Return the portion of the B+Tree map where key < toKey.
-     * @return  the submap with keys in the range [firstKey, toKey)
-     */
-    public SortedMap <K,V> headMap (K toKey)
-    {
-    	Node current = root;
-		while (!current.isLeaf){
-			boolean found = false;
-			for (int i = 0; i < current.nKeys; i++){
-				if (toKey.compareTo(current.key[i]) >= 0){
-					current = (Node) current.ref[i + 1];
-					found = true;
-					break;
-				}
-			}
-			if (!found){
-				current = (Node) current.ref[0];
-			}
-		}
-
-		SortedMap<K, V> results = new TreeMap<>();
-		for (int i = 0; i < current.nKeys; i++){
-			if (current.key[i].compareTo(toKey) < 0){
-				results.put(current.key[i], (V) current.ref[i]);
-				continue;
-			}
-			break;
-		}
-		
-		current = current.left;
-		
-		while(current != null){
-			for (int i = 0; i < current.nKeys; i++){
-				results.put(current.key[i], (V) current.ref[i]);
-			}
-			
-			current = current.left;
-		}
-
-        return results;
-    } // headMap
-
-    
-    
-    
-  
-    
-    
-    /********************************************************************************
-     * Return the portion of the B+Tree map where fromKey <= key.
-     * @return  the submap with keys in the range [fromKey, lastKey]
-     */
-    public SortedMap <K,V> tailMap (K fromKey)
-    {
-		Node current = root;
-		while (!current.isLeaf){
-			boolean found = false;
-			for (int i = 0; i < current.nKeys; i++){
-				if (fromKey.compareTo(current.key[i]) >= 0){
-					current = (Node) current.ref[i + 1];
-					found = true;
-					break;
-				}
-			}
-			if (!found){
-				current = (Node) current.ref[0];
-			}
-		}
-
-		SortedMap<K, V> results = new TreeMap<>();
-		for (int i = 0; i < current.nKeys; i++){
-			if (current.key[i].compareTo(fromKey) >= 0){
-				results.put(current.key[i], (V) current.ref[i]);
-				continue;
-			}
-		}
-		
-		current = current.right;
-		
-		while(current != null){
-			for (int i = 0; i < current.nKeys; i++){
-				results.put(current.key[i], (V) current.ref[i]);
-			}
-			
-			current = current.right;
-		}
-		
-		return results;
-
-    } // tailMap
-
-    
-    
-    
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * Return the portion of the B+Tree map whose keys are between fromKey and toKey,
-     * i.e., fromKey <= key < toKey.
-     * @return  the submap with keys in the range [fromKey, toKey)
-     */
-    public SortedMap <K,V> subMap (K fromKey, K toKey)
-    {
-    	SortedMap head = headMap(toKey);
-		SortedMap tail = tailMap(fromKey);
-		head.keySet().retainAll(tail.keySet());
-		return head;
-
-    } // subMap
-
-    
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * Return the size (number of keys) in the B+Tree.
-     * @return  the size of the B+Tree
-     */
-    public int size ()
-    {
-        int sum = 0;
- 
-		Node smallest = root;
-		while (!smallest.isLeaf){
-			smallest = (Node) smallest.ref[0];
-		}
-		
-		while(smallest != null){
-			sum += smallest.nKeys;
-			smallest = smallest.right;
-		}
-
-        return  sum;
-    } // size
-
-    
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * Print the B+Tree using a pre-order traveral and indenting each level.
-     * @param n      the current node to print
-     * @param level  the current level of the B+Tree
-     */
-    @SuppressWarnings("unchecked")
-    private void print (Node n, int level)
-    {
-        out.println ("BpTreeMap");
-        out.println ("-------------------------------------------");
-
-        for (int j = 0; j < level; j++) out.print ("\t");
-        out.print ("[ . ");
-        for (int i = 0; i < n.nKeys; i++) out.print (n.key [i] + " . ");
-        out.println ("]");
-        if ( ! n.isLeaf) {
-            for (int i = 0; i <= n.nKeys; i++) print ((Node) n.ref [i], level + 1);
-        } // if
-
-        out.println ("-------------------------------------------");
-    } // print
-
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * Recursive helper function for finding a key in B+trees.
-     * @param key  the key to find
-     * @param ney  the current node
-     */
-    @SuppressWarnings("unchecked")
-    private V find (K key, Node n)
-    {
-        count++;
-        for (int i = 0; i < n.nKeys; i++) {
-            K k_i = n.key [i];
-            if (key.compareTo (k_i) <= 0) {
-                if (n.isLeaf) {
-                    return (key.equals (k_i)) ? (V) n.ref [i] : null;
-                } else {
-                    return find (key, (Node) n.ref [i]);
-                } // if
-            } // if
-        } // for
-        return (n.isLeaf) ? null : find (key, (Node) n.ref [n.nKeys]);
-    } // find
-
-    
-    
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * Recursive helper function for inserting a key in B+trees.
-     * @param key  the key to insert
-     * @param ref  the value/node to insert
-     * @param n    the current node
-     * @return  the node inserted into (may wish to return more information)
-     */
-    private Node insert (K key, V ref, Node n)
-    {
-        boolean inserted = false;
-        if (n.isLeaf) {                                  // handle leaf node
-            if (n.nKeys < ORDER - 1) {
-                for (int i = 0; i < n.nKeys; i++) {
-                    K k_i = n.key [i];
-                    if (key.compareTo (k_i) < 0) {
-                        wedgeL (key, ref, n, i);
-                        inserted = true;
-                        break;
-                    } else if (key.equals (k_i)) {
-                        out.println ("BpTreeMap.insert: attempt to insert duplicate key = " + key);
-                        inserted = true;
-                        break;
-                    } // if
-                } // for
-                if (! inserted) wedgeL (key, ref, n, n.nKeys);
-            } else {
-                Node sib = splitL (key, ref, n);
-
-                //  T O   B E   I M P L E M E N T E D
-                
-                //+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
-                
-                //+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
-
-            } // if
-
-        } else {                                         // handle internal node
-
-            //  T O   B E   I M P L E M E N T E D
-
-        } // if
-
-        if (DEBUG) print (root, 0);
-        return null;                                     // FIX: return useful information
-    } // insert
-
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * Wedge the key-ref pair into leaf node n.
-     * @param key  the key to insert
-     * @param ref  the value/node to insert
-     * @param n    the current node
-     * @param i    the insertion position within node n
-     */
-    private void wedgeL (K key, V ref, Node n, int i)
-    {
-        for (int j = n.nKeys; j > i; j--) {
-            n.key [j] = n.key [j-1];
-            n.ref [j] = n.ref [j-1];
-        } // for
-        n.key [i] = key;
-        n.ref [i] = ref;
-        n.nKeys++;
-    } // wedgeL
-
-    /********************************************************************************
-     * Wedge the key-ref pair into internal node n.
-     * @param key  the key to insert
-     * @param ref  the value/node to insert
-     * @param n    the current node
-     * @param i    the insertion position within node n
-     */
-    private void wedgeI (K key, V ref, Node n, int i)
-    {
-        //	out.println ("wedgeI not implemented yet");
-
-        //  T O   B E   I M P L E M E N T E D
-
-    	//++++++++++++++++++++++++++++++++++++++++++++++++++++
-    	
-    	for (int j = n.nKeys; j > i; j--) {
-			n.key[j] = n.key[j-1];
-			n.ref[j+1] = n.ref[j];
-		} // for
-		n.key[i] = key;
-		n.ref[i+1] = ref;
-		n.nKeys++;
-		
-    	//++++++++++++++++++++++++++++++++++++++++++++++++++++
-    
-    } // wedgeI
-
-  
-    
-    
-    
-    
-    /********************************************************************************
-     * Split leaf node n and return the newly created right sibling node rt.
-     * Split first (MID keys for both node n and node rt), then add the new key and ref.
-     * @param key  the new key to insert
-     * @param ref  the new value/node to insert
-     * @param n    the current node
-     * @return  the right sibling node (may wish to provide more information)
-     */
-     private Node splitL (K key, V ref, Node n)
-    {
-    	 out.println ("splitL I think is correct");
-         Node rt = new Node (true);
-         List<K> k = new ArrayList<K>();
-         
-         //Places keys into lists in order         
-         for (int i = 0; i < n.nKeys; i++) {
-        	 if (key.compareTo(n.key[i]) < 0) {
-        		 k.add(i, key);
-        		 for (int j = i; j < n.nKeys; j++) {
-        			 k.add(j+1,n.key[j]);
-        		 }
-        		 break;
-        	 }
-        	 else {
-        		 k.add(i, n.key[i]);
-        	 }
-        	 //final loop means new key is largest key
-        	 if (i == n.nKeys-1) {
-        		 k.add(n.nKeys, key);        		      		 
-        	 }
-        	 
-         }
-         
-         //Now we can fill keys in n and rt
-         for (int i = 0; i < n.nKeys; i++) {
-        	 if (i < MID) {
-        		 n.key[i] = k.get(i);
-        		 //rightmost reference points to rt
-        		 if (i == MID-1){
-        			 n.ref[i] = (Node)rt;
-        		 }
-        	 }
-        	 else {
-        		 n.key[i] = null;
-        	 }
-         }
-         
-         for (int i = 0; i < n.nKeys; i++) {
-        	 if (i < n.nKeys-MID) {
-        		 rt.key[i] = k.get(MID + i);
-        		 if(i == n.nKeys-MID-1) {
-        			 //rightmost reference equals n's rightmost reference
-        			 rt.ref[i] = n.ref[n.nKeys-1];
-        			 n.ref[n.nKeys-1] = null;
-        		 }       		 
-        	 }
-        	 else {
-    			// rt.ref[i] = null;
-    		 }
-         }
-         
-        return rt;
-    } // splitL
-
-    
-    
-
-    
-    
-    
-    /********************************************************************************
-     * Split internal node n and return the newly created right sibling node rt.
-     * Split first (MID keys for node n and MID-1 for node rt), then add the new key and ref.
-     * @param key  the new key to insert
-     * @param ref  the new value/node to insert
-     * @param n    the current node
-     * @return  the right sibling node (may wish to provide more information)
-     */
-    private Node splitI (K key, Node ref, Node n)
-    {	
-        Node rt = new Node (true);
-        List<K> k = new ArrayList<K>();
-        List<V> v = new ArrayList<V>();
-        
-        int position;
-        
-        //Places keys into list in order         
-        for (int i = 0; i < n.nKeys; i++) {
-       	 if (key.compareTo(n.key[i]) < 0) {
-       		 k.add(i, key);
-       		 position = i;
-       		 for (int j = i; j < n.nKeys; j++) {
-       			 k.add(j+1,n.key[j]);
-       		 }
-       		 break;
-       	 }
-       	 else {
-       		 k.add(i, n.key[i]);
-       	 }
-       	 //final loop means new key is largest key
-       	 if (i == n.nKeys-1) {
-       		 k.add(n.nKeys, key);    
-       		 position = n.nKeys;
-       	 }
-       	 
-        }
-        
-        //Place reference keys into list
-        v.add(position + 1, (V) ref);
-        for (int i = 0; i < n.nKeys; i++) {
-        	if (i <= position) {
-        		v.add(i, (V) n.ref[i]);        		
-        	}
-        	if (i > position) {
-        		v.add(i+1, (V) n.ref[i]);
-        	}
-        }
-        
-        //Make all values null
-        for (int i = 0; i < n.nKeys; i++) {
-        	n.key[i] = null;
-        	n.ref[i] = null;
-        }
-        n.ref[n.nKeys] = null;
-        
-        //Fill in key values first
-        //First for n
-        for(int i = 0; i < n.nKeys; i++) {
-        	if (i < MID) {
-        		n.key[i] = k.get(i);
-        	}
-        	else {
-        		n.key[i] = null;
-        	}
-        }
-        
-        //Insert key values for rt
-        for (int i = 0; i < n.nKeys; i++) {
-        //We exclude middle value
-       	 if (i < n.nKeys-MID-1) {
-       		 rt.key[i] = k.get(MID + i + 1);       		      		 
-       	 }
-       	 else {
-   			 //rt.ref[i] = null;
-   		 }
-        }
-        
-        //Fill in ref values for n
-        for(int i = 0; i <= n.nKeys; i++) {
-        	if (i <= MID) {
-        		n.ref[i] = v.get(i);
-        	}
-        	else {
-        		//n.key[i] = null;
-        	}
-        }
-        
-        //Fill in ref values for rt
-        for (int i = 0; i <= n.nKeys; i++) {
-        	if (i < n.nKeys-MID) {
-          		 rt.ref[i] = v.get(MID + i);       		      		 
-          	 }
-          	 else {
-      			 //rt.ref[i] = null;
-      		 }
-        }
-        
-       return rt;
-    } // splitI
-
-    
-    
-    
-    
-    
-    /********************************************************************************
-     * The main method used for testing.
-     * @param  the command-line arguments (args [0] gives number of keys to insert)
-     */
-    public static void main (String [] args)
-    {
-        int totalKeys    = 9;
-        boolean RANDOMLY = false;
-
-        BpTreeMap <Integer, Integer> bpt = new BpTreeMap <> (Integer.class, Integer.class);
-        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
-   
-        if (RANDOMLY) {
-            Random rng = new Random ();
-            for (int i = 1; i <= totalKeys; i += 2) bpt.put (rng.nextInt (2 * totalKeys), i * i);
-        } else {
-            for (int i = 1; i <= totalKeys; i += 2) bpt.put (i, i * i);
-        } // if
-
-        bpt.print (bpt.root, 0);
-        for (int i = 0; i <= totalKeys; i++) {
-            out.println ("key = " + i + " value = " + bpt.get (i));
-        } // for
-        out.println ("-------------------------------------------");
-        out.println ("Average number of nodes accessed = " + bpt.count / (double) totalKeys);
-        
-        out.println();
-        out.println("----------------Testing-------------------");
-        out.println("First key-- " + bpt.firstKey()); //added to test firstKey()
-        out.println("Last key -- " + bpt.lastKey()); //added to test lastKey()
-        out.println("Set view-- " + bpt.entrySet()); //added to test entrySet()
-    } // main
-
-} // BpTreeMap class
+
+/************************************************************************************
+ * @file BpTreeMap.java
+ *
+ * @author  John Miller
+ */
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * This class provides B+Tree maps.  B+Trees are used as multi-level index structures
+ * that provide efficient access for both point queries and range queries.
+ * All keys will be at the leaf level with leaf nodes linked by references.
+ * Internal nodes will contain divider keys such that divKey corresponds to the
+ * largest key in its left subtree.
+ */
+public class BpTreeMap <K extends Comparable <K>, V>
+       extends AbstractMap <K, V>
+       implements Serializable, Cloneable, SortedMap <K, V>
+{
+    /** The maximum fanout (number of children) for a B+Tree node.
+     *  May wish to increase for better performance for Program 3.
+     */
+    private static final int ORDER = 5;
+
+    /** The floor of half the ORDER.
+     */
+    private static final int MID = ORDER / 2;
+
+    /** The minimum number of keys a non-root node may hold before it underflows.
+     */
+    private static final int MIN_KEYS = (ORDER - 1) / 2;
+
+    /** In lazy delete mode, the fraction of entries that may be removed without
+     *  rebalancing before the tree is rebuilt.
+     */
+    private static final double REBUILD_RATIO = 0.25;
+
+    /** The debug flag
+     */
+    private static final boolean DEBUG = false;
+
+    /** The class for type K.
+     */
+    private final Class <K> classK;
+
+    /** The class for type V.
+     */
+    private final Class <V> classV;
+
+    /********************************************************************************
+     * This inner class defines nodes that are stored in the B+tree map.
+     * Each node has room for one extra key (and ref), so that it may overflow
+     * before being split.  Leaf nodes are linked left-to-right via right.
+     */
+    private class Node
+            implements Serializable
+    {
+        boolean   isLeaf;
+        int       nKeys;
+        K []      key;
+        Object [] ref;
+        Node      right;
+
+        @SuppressWarnings("unchecked")
+        Node (boolean _isLeaf)
+        {
+            isLeaf = _isLeaf;
+            nKeys  = 0;
+            key    = (K []) Array.newInstance (classK, ORDER);
+            if (isLeaf) {
+                ref = new Object [ORDER];
+            } else {
+                ref = (Node []) Array.newInstance (Node.class, ORDER + 1);
+            } // if
+        } // constructor
+    } // Node inner class
+
+    /********************************************************************************
+     * This inner class holds the result of splitting a node: the divider key to
+     * be wedged into the parent and the newly created right sibling.
+     */
+    private class Split
+    {
+        final K    divKey;
+        final Node rt;
+
+        Split (K _divKey, Node _rt)
+        {
+            divKey = _divKey;
+            rt     = _rt;
+        } // constructor
+    } // Split inner class
+
+    /** The root of the B+Tree
+     */
+    private Node root;
+
+    /** The first (leftmost) leaf in the B+Tree
+     */
+    private Node firstLeaf;
+
+    /** The counter for the number nodes accessed (for performance testing).
+     */
+    private int count = 0;
+
+    /** The number of key-value pairs stored in the B+Tree.
+     */
+    private int size = 0;
+
+    /** Whether deletes skip rebalancing (leaving nodes underfull until a rebuild).
+     */
+    private boolean lazyDelete = false;
+
+    /** The number of lazy deletes performed since the last rebuild.
+     */
+    private int lazyRemoved = 0;
+
+    /** The value replaced by the most recent put (null if the key was new).
+     */
+    private transient V replaced;
+
+    /********************************************************************************
+     * Construct an empty B+Tree map.
+     * @param _classK  the class for keys (K)
+     * @param _classV  the class for values (V)
+     */
+    public BpTreeMap (Class <K> _classK, Class <V> _classV)
+    {
+        classK    = _classK;
+        classV    = _classV;
+        root      = new Node (true);
+        firstLeaf = root;
+    } // constructor
+
+    /********************************************************************************
+     * Return null to use the natural order based on the key type.  This requires the
+     * key type to implement Comparable.
+     */
+    public Comparator <? super K> comparator ()
+    {
+        return null;
+    } // comparator
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values.
+     * The entries are produced in key order by walking the linked leaves.
+     * @return  the set view of the map
+     */
+    @SuppressWarnings("unchecked")
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        Set <Map.Entry <K, V>> enSet = new LinkedHashSet <> ();
+
+        for (Node n = firstLeaf; n != null; n = n.right) {
+            for (int i = 0; i < n.nKeys; i++) {
+                enSet.add (new AbstractMap.SimpleEntry <K, V> (n.key [i], (V) n.ref [i]));
+            } // for
+        } // for
+        return enSet;
+    } // entrySet
+
+    /********************************************************************************
+     * Return a list of all the values in key order, walking the linked leaves (without
+     * building the entry set, so scans in key order stay cheap).
+     * @return  the values in key order
+     */
+    @SuppressWarnings("unchecked")
+    public Collection <V> values ()
+    {
+        List <V> vals = new ArrayList <> (size);
+
+        for (Node n = firstLeaf; n != null; n = n.right) {
+            for (int i = 0; i < n.nKeys; i++) vals.add ((V) n.ref [i]);
+        } // for
+        return vals;
+    } // values
+
+    /********************************************************************************
+     * Given the key, look up the value in the B+Tree map.
+     * @param key  the key used for look up
+     * @return  the value associated with the key or null if not found
+     */
+    @SuppressWarnings("unchecked")
+    public V get (Object key)
+    {
+        return find ((K) key, root);
+    } // get
+
+    /********************************************************************************
+     * Determine whether the B+Tree map contains the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    @SuppressWarnings("unchecked")
+    public boolean containsKey (Object key)
+    {
+        return find ((K) key, root) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the B+Tree map.  An existing value for the key is
+     * replaced.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value for this key, or null if there was none
+     */
+    public V put (K key, V value)
+    {
+        if (key == null) throw new NullPointerException ("BpTreeMap.put: null key");
+
+        replaced = null;
+        Split sp = insert (key, value, root);
+        if (sp != null) {                                // root split => new root
+            Node nr    = new Node (false);
+            nr.key [0] = sp.divKey;
+            nr.ref [0] = root;
+            nr.ref [1] = sp.rt;
+            nr.nKeys   = 1;
+            root       = nr;
+        } // if
+
+        if (DEBUG) print (root, 0);
+        return replaced;
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the B+Tree map.  Underfull nodes borrow
+     * from or merge with a sibling, and the root collapses when it loses its last
+     * divider key.  In lazy delete mode, rebalancing is deferred until enough
+     * entries have been removed, at which point the tree is rebuilt.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if not found
+     */
+    @SuppressWarnings("unchecked")
+    public V remove (Object key)
+    {
+        if (key == null) return null;
+
+        V value = delete ((K) key, root);
+        if (value == null) return null;
+
+        if (lazyDelete) {
+            if (++lazyRemoved > REBUILD_RATIO * size && lazyRemoved > ORDER) rebuild ();
+        } else if (! root.isLeaf && root.nKeys == 0) {   // root collapse
+            root = (Node) root.ref [0];
+        } // if
+
+        if (DEBUG) print (root, 0);
+        return value;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the entries from the B+Tree map.
+     */
+    public void clear ()
+    {
+        root        = new Node (true);
+        firstLeaf   = root;
+        size        = 0;
+        lazyRemoved = 0;
+    } // clear
+
+    /********************************************************************************
+     * Turn lazy deletion on or off.  With lazy deletion, remove only takes the entry
+     * out of its leaf, which is cheaper for churn-heavy tables; the tree is rebuilt
+     * once REBUILD_RATIO of its entries have been removed this way.  Turning lazy
+     * deletion off rebuilds the tree if any lazy deletes are outstanding.
+     * @param lazy  whether to defer rebalancing on delete
+     */
+    public void setLazyDelete (boolean lazy)
+    {
+        lazyDelete = lazy;
+        if (! lazy && lazyRemoved > 0) rebuild ();
+    } // setLazyDelete
+
+    /********************************************************************************
+     * Return the first (smallest) key in the B+Tree map.
+     * @return  the first key in the B+Tree map.
+     */
+    public K firstKey ()
+    {
+        for (Node n = firstLeaf; n != null; n = n.right) {
+            count++;
+            if (n.nKeys > 0) return n.key [0];
+        } // for
+        throw new NoSuchElementException ("BpTreeMap.firstKey: empty map");
+    } // firstKey
+
+    /********************************************************************************
+     * Return the last (largest) key in the B+Tree map.
+     * @return  the last key in the B+Tree map.
+     */
+    @SuppressWarnings("unchecked")
+    public K lastKey ()
+    {
+        Node n = root;
+        while (! n.isLeaf) {
+            count++;
+            n = (Node) n.ref [n.nKeys];
+        } // while
+        if (n.nKeys > 0) return n.key [n.nKeys - 1];
+
+        Node last = null;                                // lazy deletes may empty the last leaf
+        for (n = firstLeaf; n != null; n = n.right) if (n.nKeys > 0) last = n;
+        if (last == null) throw new NoSuchElementException ("BpTreeMap.lastKey: empty map");
+        return last.key [last.nKeys - 1];
+    } // lastKey
+
+    /********************************************************************************
+     * Return the portion of the B+Tree map where key < toKey.
+     * @return  the submap with keys in the range [firstKey, toKey)
+     */
+    public SortedMap <K,V> headMap (K toKey)
+    {
+        return range (null, toKey);
+    } // headMap
+
+    /********************************************************************************
+     * Return the portion of the B+Tree map where fromKey <= key.
+     * @return  the submap with keys in the range [fromKey, lastKey]
+     */
+    public SortedMap <K,V> tailMap (K fromKey)
+    {
+        return range (fromKey, null);
+    } // tailMap
+
+    /********************************************************************************
+     * Return the portion of the B+Tree map whose keys are between fromKey and toKey,
+     * i.e., fromKey <= key < toKey.
+     * @return  the submap with keys in the range [fromKey, toKey)
+     */
+    public SortedMap <K,V> subMap (K fromKey, K toKey)
+    {
+        return range (fromKey, toKey);
+    } // subMap
+
+    /********************************************************************************
+     * Return the size (number of keys) in the B+Tree.
+     * @return  the size of the B+Tree
+     */
+    public int size ()
+    {
+        return size;
+    } // size
+
+    /********************************************************************************
+     * Collect the entries whose keys are in the range [lo, hi) by locating the leaf
+     * for lo and then following the leaf links.
+     * @param lo  the lower bound (inclusive), null for unbounded
+     * @param hi  the upper bound (exclusive), null for unbounded
+     * @return  the submap of entries in the range
+     */
+    @SuppressWarnings("unchecked")
+    private SortedMap <K,V> range (K lo, K hi)
+    {
+        SortedMap <K, V> results = new TreeMap <> ();
+
+        Node n = firstLeaf;
+        if (lo != null) {
+            n = root;
+            while (! n.isLeaf) {
+                count++;
+                n = (Node) n.ref [findPos (lo, n)];
+            } // while
+        } // if
+
+        for ( ; n != null; n = n.right) {
+            count++;
+            for (int i = 0; i < n.nKeys; i++) {
+                if (lo != null && n.key [i].compareTo (lo) < 0) continue;
+                if (hi != null && n.key [i].compareTo (hi) >= 0) return results;
+                results.put (n.key [i], (V) n.ref [i]);
+            } // for
+        } // for
+        return results;
+    } // range
+
+    /********************************************************************************
+     * Print the B+Tree using a pre-order traveral and indenting each level.
+     * @param n      the current node to print
+     * @param level  the current level of the B+Tree
+     */
+    @SuppressWarnings("unchecked")
+    private void print (Node n, int level)
+    {
+        if (level == 0) {
+            out.println ("BpTreeMap");
+            out.println ("-------------------------------------------");
+        } // if
+
+        for (int j = 0; j < level; j++) out.print ("\t");
+        out.print ("[ . ");
+        for (int i = 0; i < n.nKeys; i++) out.print (n.key [i] + " . ");
+        out.println ("]");
+        if ( ! n.isLeaf) {
+            for (int i = 0; i <= n.nKeys; i++) print ((Node) n.ref [i], level + 1);
+        } // if
+
+        if (level == 0) out.println ("-------------------------------------------");
+    } // print
+
+    /********************************************************************************
+     * Find the position of the first key in node n that is greater than or equal
+     * to the given key (n.nKeys if there is none), using binary search.  For an
+     * internal node this is also the position of the child to descend into.
+     * @param key  the key to locate
+     * @param n    the node to search
+     * @return  the position within node n
+     */
+    private int findPos (K key, Node n)
+    {
+        int lo = 0, hi = n.nKeys;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (key.compareTo (n.key [m]) > 0) lo = m + 1;
+            else hi = m;
+        } // while
+        return lo;
+    } // findPos
+
+    /********************************************************************************
+     * Recursive helper function for finding a key in B+trees.
+     * @param key  the key to find
+     * @param n    the current node
+     */
+    @SuppressWarnings("unchecked")
+    private V find (K key, Node n)
+    {
+        count++;
+        int i = findPos (key, n);
+        if (n.isLeaf) {
+            return (i < n.nKeys && key.compareTo (n.key [i]) == 0) ? (V) n.ref [i] : null;
+        } // if
+        return find (key, (Node) n.ref [i]);
+    } // find
+
+    /********************************************************************************
+     * Recursive helper function for inserting a key in B+trees.
+     * @param key  the key to insert
+     * @param ref  the value to insert
+     * @param n    the current node
+     * @return  the split of node n if it overflowed, otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    private Split insert (K key, V ref, Node n)
+    {
+        count++;
+        int i = findPos (key, n);
+
+        if (n.isLeaf) {                                  // handle leaf node
+            if (i < n.nKeys && key.compareTo (n.key [i]) == 0) {
+                replaced   = (V) n.ref [i];
+                n.ref [i]  = ref;
+                return null;
+            } // if
+            wedgeL (key, ref, n, i);
+            size++;
+            return (n.nKeys == ORDER) ? splitL (n) : null;
+        } // if
+
+        Split sp = insert (key, ref, (Node) n.ref [i]);  // handle internal node
+        if (sp == null) return null;
+        wedgeI (sp.divKey, sp.rt, n, i);
+        return (n.nKeys == ORDER) ? splitI (n) : null;
+    } // insert
+
+    /********************************************************************************
+     * Recursive helper function for deleting a key from B+trees.  On the way back up,
+     * a child that has underflowed is fixed by borrowing from or merging with one of
+     * its siblings (unless in lazy delete mode).
+     * @param key  the key to delete
+     * @param n    the current node
+     * @return  the value removed, or null if the key was not found
+     */
+    @SuppressWarnings("unchecked")
+    private V delete (K key, Node n)
+    {
+        count++;
+        int i = findPos (key, n);
+
+        if (n.isLeaf) {                                  // handle leaf node
+            if (i == n.nKeys || key.compareTo (n.key [i]) != 0) return null;
+            V value = (V) n.ref [i];
+            for (int j = i; j < n.nKeys - 1; j++) {
+                n.key [j] = n.key [j+1];
+                n.ref [j] = n.ref [j+1];
+            } // for
+            n.nKeys--;
+            n.key [n.nKeys] = null;
+            n.ref [n.nKeys] = null;
+            size--;
+            return value;
+        } // if
+
+        Node child = (Node) n.ref [i];                   // handle internal node
+        V value = delete (key, child);
+        if (value != null && ! lazyDelete && child.nKeys < MIN_KEYS) fixUnderflow (n, i);
+        return value;
+    } // delete
+
+    /********************************************************************************
+     * Fix the underflowed child at position i of internal node p.  Prefer borrowing
+     * a key from a sibling with keys to spare; otherwise merge with a sibling.
+     * @param p  the parent node
+     * @param i  the position of the underflowed child
+     */
+    @SuppressWarnings("unchecked")
+    private void fixUnderflow (Node p, int i)
+    {
+        Node c  = (Node) p.ref [i];
+        Node lt = (i > 0)       ? (Node) p.ref [i-1] : null;
+        Node rt = (i < p.nKeys) ? (Node) p.ref [i+1] : null;
+
+        if (lt != null && lt.nKeys > MIN_KEYS)      borrowLeft (p, i, lt, c);
+        else if (rt != null && rt.nKeys > MIN_KEYS) borrowRight (p, i, c, rt);
+        else if (lt != null)                        merge (p, i-1, lt, c);
+        else                                        merge (p, i, c, rt);
+    } // fixUnderflow
+
+    /********************************************************************************
+     * Move the last key of left sibling lt into child c (at position i of p).
+     * @param p   the parent node
+     * @param i   the position of child c in p
+     * @param lt  the left sibling of c
+     * @param c   the underflowed child
+     */
+    private void borrowLeft (Node p, int i, Node lt, Node c)
+    {
+        int last = lt.nKeys - 1;
+        if (c.isLeaf) {
+            wedgeL (lt.key [last], lt.ref [last], c, 0);
+            lt.key [last] = null;
+            lt.ref [last] = null;
+            lt.nKeys--;
+            p.key [i-1] = lt.key [lt.nKeys - 1];
+        } else {
+            c.ref [c.nKeys + 1] = c.ref [c.nKeys];
+            for (int j = c.nKeys; j > 0; j--) {
+                c.key [j] = c.key [j-1];
+                c.ref [j] = c.ref [j-1];
+            } // for
+            c.key [0]   = p.key [i-1];
+            c.ref [0]   = lt.ref [last + 1];
+            c.nKeys++;
+            p.key [i-1] = lt.key [last];
+            lt.key [last]     = null;
+            lt.ref [last + 1] = null;
+            lt.nKeys--;
+        } // if
+    } // borrowLeft
+
+    /********************************************************************************
+     * Move the first key of right sibling rt into child c (at position i of p).
+     * @param p   the parent node
+     * @param i   the position of child c in p
+     * @param c   the underflowed child
+     * @param rt  the right sibling of c
+     */
+    private void borrowRight (Node p, int i, Node c, Node rt)
+    {
+        if (c.isLeaf) {
+            c.key [c.nKeys] = rt.key [0];
+            c.ref [c.nKeys] = rt.ref [0];
+            c.nKeys++;
+            p.key [i] = c.key [c.nKeys - 1];
+            for (int j = 0; j < rt.nKeys - 1; j++) {
+                rt.key [j] = rt.key [j+1];
+                rt.ref [j] = rt.ref [j+1];
+            } // for
+            rt.key [rt.nKeys - 1] = null;
+            rt.ref [rt.nKeys - 1] = null;
+        } else {
+            c.key [c.nKeys]     = p.key [i];
+            c.ref [c.nKeys + 1] = rt.ref [0];
+            c.nKeys++;
+            p.key [i] = rt.key [0];
+            for (int j = 0; j < rt.nKeys - 1; j++) {
+                rt.key [j] = rt.key [j+1];
+                rt.ref [j] = rt.ref [j+1];
+            } // for
+            rt.ref [rt.nKeys - 1] = rt.ref [rt.nKeys];
+            rt.key [rt.nKeys - 1] = null;
+            rt.ref [rt.nKeys]     = null;
+        } // if
+        rt.nKeys--;
+    } // borrowRight
+
+    /********************************************************************************
+     * Merge child rt (at position j+1 of p) into its left sibling lt (at position j),
+     * removing their divider key from parent p.
+     * @param p   the parent node
+     * @param j   the position of lt in p
+     * @param lt  the left node (absorbs rt)
+     * @param rt  the right node (discarded)
+     */
+    private void merge (Node p, int j, Node lt, Node rt)
+    {
+        if (lt.isLeaf) {
+            for (int k = 0; k < rt.nKeys; k++) {
+                lt.key [lt.nKeys] = rt.key [k];
+                lt.ref [lt.nKeys] = rt.ref [k];
+                lt.nKeys++;
+            } // for
+            lt.right = rt.right;
+        } else {
+            lt.key [lt.nKeys] = p.key [j];
+            for (int k = 0; k < rt.nKeys; k++) {
+                lt.key [lt.nKeys + 1 + k] = rt.key [k];
+                lt.ref [lt.nKeys + 1 + k] = rt.ref [k];
+            } // for
+            lt.ref [lt.nKeys + 1 + rt.nKeys] = rt.ref [rt.nKeys];
+            lt.nKeys += rt.nKeys + 1;
+        } // if
+
+        for (int k = j; k < p.nKeys - 1; k++) {
+            p.key [k]   = p.key [k+1];
+            p.ref [k+1] = p.ref [k+2];
+        } // for
+        p.nKeys--;
+        p.key [p.nKeys]     = null;
+        p.ref [p.nKeys + 1] = null;
+    } // merge
+
+    /********************************************************************************
+     * Rebuild the B+Tree bottom-up from its entries in key order, so that every node
+     * is well filled again (used to rebalance after lazy deletes).
+     */
+    private void rebuild ()
+    {
+        List <Node> level = new ArrayList <> ();
+        List <K>    maxes = new ArrayList <> ();
+
+        Node leaf = new Node (true);
+        int  n       = size;
+        int  nLeaves = Math.max (1, (n + ORDER - 2) / (ORDER - 1)), made = 0;
+        for (Node old = firstLeaf; old != null; old = old.right) {
+            for (int k = 0; k < old.nKeys; k++) {
+                int target = n / nLeaves + ((made < n % nLeaves) ? 1 : 0);
+                leaf.key [leaf.nKeys] = old.key [k];
+                leaf.ref [leaf.nKeys] = old.ref [k];
+                if (++leaf.nKeys == target) {
+                    level.add (leaf);
+                    maxes.add (leaf.key [leaf.nKeys - 1]);
+                    made++;
+                    leaf = new Node (true);
+                } // if
+            } // for
+        } // for
+        if (level.isEmpty ()) level.add (leaf);
+        for (int k = 0; k < level.size () - 1; k++) level.get (k).right = level.get (k+1);
+        firstLeaf = level.get (0);
+
+        while (level.size () > 1) {                      // build the internal levels
+            List <Node> upper = new ArrayList <> ();
+            List <K>    upMax = new ArrayList <> ();
+            int m = level.size (), groups = (m + ORDER - 1) / ORDER, next = 0;
+            for (int g = 0; g < groups; g++) {
+                int  take = m / groups + ((g < m % groups) ? 1 : 0);
+                Node p    = new Node (false);
+                for (int k = 0; k < take; k++, next++) {
+                    if (k > 0) p.key [k-1] = maxes.get (next - 1);
+                    p.ref [k] = level.get (next);
+                } // for
+                p.nKeys = take - 1;
+                upper.add (p);
+                upMax.add (maxes.get (next - 1));
+            } // for
+            level = upper;
+            maxes = upMax;
+        } // while
+
+        root        = level.get (0);
+        lazyRemoved = 0;
+    } // rebuild
+
+    /********************************************************************************
+     * Wedge the key-ref pair into leaf node n.
+     * @param key  the key to insert
+     * @param ref  the value/node to insert
+     * @param n    the current node
+     * @param i    the insertion position within node n
+     */
+    private void wedgeL (K key, Object ref, Node n, int i)
+    {
+        for (int j = n.nKeys; j > i; j--) {
+            n.key [j] = n.key [j-1];
+            n.ref [j] = n.ref [j-1];
+        } // for
+        n.key [i] = key;
+        n.ref [i] = ref;
+        n.nKeys++;
+    } // wedgeL
+
+    /********************************************************************************
+     * Wedge the key-ref pair into internal node n.  The ref becomes the child to
+     * the right of the key.
+     * @param key  the key to insert
+     * @param ref  the value/node to insert
+     * @param n    the current node
+     * @param i    the insertion position within node n
+     */
+    private void wedgeI (K key, Node ref, Node n, int i)
+    {
+        for (int j = n.nKeys; j > i; j--) {
+            n.key [j]   = n.key [j-1];
+            n.ref [j+1] = n.ref [j];
+        } // for
+        n.key [i]   = key;
+        n.ref [i+1] = ref;
+        n.nKeys++;
+    } // wedgeI
+
+    /********************************************************************************
+     * Split the overflowing leaf node n (holding ORDER keys) and return the split,
+     * consisting of the largest key remaining in n and the new right sibling rt.
+     * @param n  the current node
+     * @return  the split of node n
+     */
+    private Split splitL (Node n)
+    {
+        Node rt = new Node (true);
+        int  lt = (ORDER + 1) / 2;                       // number of keys kept in n
+
+        for (int j = lt; j < n.nKeys; j++) {
+            rt.key [j - lt] = n.key [j];
+            rt.ref [j - lt] = n.ref [j];
+            n.key [j] = null;
+            n.ref [j] = null;
+        } // for
+        rt.nKeys = n.nKeys - lt;
+        n.nKeys  = lt;
+
+        rt.right = n.right;
+        n.right  = rt;
+        return new Split (n.key [lt - 1], rt);
+    } // splitL
+
+    /********************************************************************************
+     * Split the overflowing internal node n (holding ORDER keys) and return the split,
+     * consisting of the middle key (moved up) and the new right sibling rt.
+     * MID keys remain in node n and ORDER-MID-1 keys move to node rt.
+     * @param n  the current node
+     * @return  the split of node n
+     */
+    private Split splitI (Node n)
+    {
+        Node rt     = new Node (false);
+        K    divKey = n.key [MID];
+
+        for (int j = MID + 1; j < n.nKeys; j++) {
+            rt.key [j - MID - 1] = n.key [j];
+            rt.ref [j - MID - 1] = n.ref [j];
+            n.key [j] = null;
+            n.ref [j] = null;
+        } // for
+        rt.ref [n.nKeys - MID - 1] = n.ref [n.nKeys];
+        n.ref [n.nKeys] = null;
+        n.key [MID]     = null;
+        rt.nKeys = n.nKeys - MID - 1;
+        n.nKeys  = MID;
+
+        return new Split (divKey, rt);
+    } // splitI
+
+    /********************************************************************************
+     * The main method used for testing.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main (String [] args)
+    {
+        int totalKeys    = 9;
+        boolean RANDOMLY = false;
+
+        BpTreeMap <Integer, Integer> bpt = new BpTreeMap <> (Integer.class, Integer.class);
+        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
+
+        if (RANDOMLY) {
+            Random rng = new Random ();
+            for (int i = 1; i <= totalKeys; i += 2) bpt.put (rng.nextInt (2 * totalKeys), i * i);
+        } else {
+            for (int i = 1; i <= totalKeys; i += 2) bpt.put (i, i * i);
+        } // if
+
+        bpt.print (bpt.root, 0);
+        for (int i = 0; i <= totalKeys; i++) {
+            out.println ("key = " + i + " value = " + bpt.get (i));
+        } // for
+        out.println ("-------------------------------------------");
+        out.println ("Average number of nodes accessed = " + bpt.count / (double) totalKeys);
+
+        out.println ();
+        out.println ("----------------Testing-------------------");
+        out.println ("First key -- " + bpt.firstKey ());
+        out.println ("Last key  -- " + bpt.lastKey ());
+        out.println ("Set view  -- " + bpt.entrySet ());
+        out.println ("Head map  -- " + bpt.headMap (5));
+        out.println ("Tail map  -- " + bpt.tailMap (5));
+        out.println ("Sub map   -- " + bpt.subMap (3, 7));
+
+        out.println ();
+        out.println ("----------------Deleting------------------");
+        for (int i = 1; i <= totalKeys; i += 4) bpt.remove (i);
+        bpt.print (bpt.root, 0);
+        out.println ("Set view  -- " + bpt.entrySet ());
+        out.println ("Size      -- " + bpt.size ());
+
+        bpt.setLazyDelete (true);
+        for (int i = 3; i <= totalKeys; i += 4) bpt.remove (i);
+        bpt.setLazyDelete (false);
+        bpt.print (bpt.root, 0);
+        out.println ("Set view  -- " + bpt.entrySet ());
+        out.println ("Size      -- " + bpt.size ());
+    } // main
+
+} // BpTreeMap class
@@ -0,0 +1,307 @@
+
+/*****************************************************************************************
+ * @file  CodeGen.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.*;
+import java.util.function.BiFunction;
+import javax.tools.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The CodeGen class compiles a selection (a conjunction of conditions) plus a projection
+ * into a specialized class whose single loop scans a table's tuples, testing each
+ * condition with a primitive comparison where the domains allow it (no lambdas, no
+ * Condition objects and no per-value virtual compareTo calls).  Java source for the loop
+ * is generated, compiled in memory with the system Java compiler and defined as a hidden
+ * class (which may be unloaded once no longer used).
+ *
+ * Compiled queries are cached by query shape: the domains and columns the conditions
+ * are on, their operators and value types, and the projected columns.  The condition
+ * values themselves are passed in as parameters, so "year >= 1980" and "year >= 1990"
+ * share one compiled class.  When no compiler is available (running on a JRE), queries
+ * are interpreted instead.
+ */
+public class CodeGen
+{
+    /** The maximum number of compiled queries kept in the cache
+     */
+    private static final int CACHE_SIZE = 256;
+
+    /** The compiled queries, keyed by query shape (LRU order)
+     */
+    private static final Map <String, BiFunction <List <Comparable []>, Comparable [], List <Comparable []>>> cache =
+        new LinkedHashMap <> (16, 0.75f, true) {
+            protected boolean removeEldestEntry (Map.Entry <String, BiFunction <List <Comparable []>, Comparable [], List <Comparable []>>> e)
+            {
+                return size () > CACHE_SIZE;
+            } // removeEldestEntry
+        };
+
+    /** The number of queries compiled (cache misses) and of generated classes
+     */
+    private static int compiled = 0, classNo = 0;
+
+    /*************************************************************************************
+     * Return a compiled query selecting the tuples satisfying all the conditions and
+     * projecting them onto the given columns.  It is applied to the tuples and the
+     * condition values (in order), and returns the result rows.
+     *
+     * @param domain  the domains of the table's columns
+     * @param cols    the column of each condition
+     * @param conds   the conditions
+     * @param proj    the columns to project onto (null to keep whole tuples)
+     * @return  the compiled query
+     */
+    static synchronized BiFunction <List <Comparable []>, Comparable [], List <Comparable []>>
+                        compile (Class [] domain, int [] cols, Condition [] conds, int [] proj)
+    {
+        String shape = shape (domain, cols, conds, proj);
+        BiFunction <List <Comparable []>, Comparable [], List <Comparable []>> q = cache.get (shape);
+        if (q == null) {
+            q = generate (domain, cols, conds, proj);
+            cache.put (shape, q);
+            compiled++;
+        } // if
+        return q;
+    } // compile
+
+    /*************************************************************************************
+     * Return the condition values, which are the parameters of a compiled query.
+     * @param conds  the conditions
+     */
+    static Comparable [] params (Condition [] conds)
+    {
+        Comparable [] p = new Comparable [conds.length];
+        for (int j = 0; j < conds.length; j++) p [j] = conds [j].value;
+        return p;
+    } // params
+
+    /*************************************************************************************
+     * Return the number of queries compiled so far (i.e., cache misses).
+     */
+    public static synchronized int compiled ()
+    {
+        return compiled;
+    } // compiled
+
+    /*************************************************************************************
+     * Return the shape of a query: everything but the condition values.
+     */
+    private static String shape (Class [] domain, int [] cols, Condition [] conds, int [] proj)
+    {
+        StringBuilder sb = new StringBuilder ();
+        for (int j = 0; j < conds.length; j++) {
+            sb.append (cols [j]).append (':').append (domain [cols [j]].getName ()).append (conds [j].op.symbol)
+              .append ((conds [j].value == null) ? "null" : conds [j].value.getClass ().getName ()).append (';');
+        } // for
+        sb.append ("->").append ((proj == null) ? "*" : Arrays.toString (proj));
+        return sb.toString ();
+    } // shape
+
+    /*************************************************************************************
+     * Generate, compile and load the class for a query, or fall back to interpreting it.
+     */
+    @SuppressWarnings("unchecked")
+    private static BiFunction <List <Comparable []>, Comparable [], List <Comparable []>>
+                   generate (Class [] domain, int [] cols, Condition [] conds, int [] proj)
+    {
+        String name = "GenQuery" + classNo++;
+        byte [] bytes = compileSource (name, source (name, domain, cols, conds, proj));
+        if (bytes == null) return interpreter (cols, conds, proj);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup ().defineHiddenClass (bytes, true);
+            return (BiFunction <List <Comparable []>, Comparable [], List <Comparable []>>)
+                   lookup.lookupClass ().getDeclaredConstructor ().newInstance ();
+        } catch (ReflectiveOperationException | IllegalAccessError ex) {
+            out.println ("CodeGen: " + ex + ", interpreting");
+            return interpreter (cols, conds, proj);
+        } // try
+    } // generate
+
+    /*************************************************************************************
+     * Generate the Java source for a query.  Each condition becomes a test that skips
+     * the tuple: on the primitive value for Integer, Short, Byte, Long, Double and Float
+     * columns compared with a value of the same type, on String.compareTo for strings,
+     * and on Comparable.compareTo otherwise.
+     */
+    private static String source (String name, Class [] domain, int [] cols, Condition [] conds, int [] proj)
+    {
+        StringBuilder sb = new StringBuilder ();
+        sb.append ("@SuppressWarnings(\"unchecked\")\n")
+          .append ("public final class ").append (name)
+          .append (" implements java.util.function.BiFunction <java.util.List <Comparable []>, Comparable [], java.util.List <Comparable []>>\n{\n")
+          .append ("    public java.util.List <Comparable []> apply (java.util.List <Comparable []> tuples, Comparable [] p)\n    {\n");
+
+        String [] type = new String [conds.length];
+        for (int j = 0; j < conds.length; j++) {
+            type [j] = primitive (domain [cols [j]], conds [j].value);
+            String pj = "p [" + j + "]";
+            if (type [j] != null)               sb.append (String.format ("        final %s p%d = ((%s) %s).%sValue ();\n", type [j], j, box (type [j]), pj, type [j]));
+            else if (isString (domain [cols [j]], conds [j].value)) sb.append (String.format ("        final String p%d = (String) %s;\n", j, pj));
+            else                                sb.append (String.format ("        final Comparable p%d = %s;\n", j, pj));
+        } // for
+
+        sb.append ("        java.util.ArrayList <Comparable []> rows = new java.util.ArrayList <> ();\n")
+          .append ("        for (int i = 0, n = tuples.size (); i < n; i++) {\n")
+          .append ("            Comparable [] t = tuples.get (i);\n");
+
+        for (int j = 0; j < conds.length; j++) {
+            String v = "t [" + cols [j] + "]", test;
+            String cmp = type [j] == null ? null : type [j].equals ("double") ? "Double.compare (%s, p%d)"
+                                                 : type [j].equals ("float")  ? "Float.compare (%s, p%d)" : null;
+            sb.append (String.format ("            if (%s == null) continue;\n", v));
+            if (type [j] != null && cmp == null) {
+                test = String.format ("((%s) %s).%sValue () %s p%d", box (type [j]), v, type [j], conds [j].op.symbol, j);
+            } else if (type [j] != null) {
+                test = String.format (cmp, "((" + box (type [j]) + ") " + v + ")." + type [j] + "Value ()", j) + " " + conds [j].op.symbol + " 0";
+            } else if (isString (domain [cols [j]], conds [j].value)) {
+                test = String.format ("((String) %s).compareTo (p%d) %s 0", v, j, conds [j].op.symbol);
+            } else {
+                test = String.format ("%s.compareTo (p%d) %s 0", v, j, conds [j].op.symbol);
+            } // if
+            sb.append ("            if (! (").append (test).append (")) continue;\n");
+        } // for
+
+        if (proj == null) {
+            sb.append ("            rows.add (t);\n");
+        } else {
+            sb.append ("            rows.add (new Comparable [] {");
+            for (int j = 0; j < proj.length; j++) sb.append ((j == 0) ? " " : ", ").append ("t [").append (proj [j]).append ("]");
+            sb.append (" });\n");
+        } // if
+
+        sb.append ("        } // for\n        return rows;\n    } // apply\n} // ").append (name).append (" class\n");
+        return sb.toString ();
+    } // source
+
+    /*************************************************************************************
+     * Return the primitive type to compare a column of the given domain with the value
+     * in, or null when they are not both of one primitive wrapper type.
+     */
+    private static String primitive (Class domain, Comparable value)
+    {
+        if (value == null || value.getClass () != domain) return null;
+        if (domain == Integer.class) return "int";
+        if (domain == Long.class)    return "long";
+        if (domain == Short.class)   return "short";
+        if (domain == Byte.class)    return "byte";
+        if (domain == Double.class)  return "double";
+        if (domain == Float.class)   return "float";
+        return null;
+    } // primitive
+
+    /*************************************************************************************
+     * Return the wrapper class name for a primitive type.
+     */
+    private static String box (String type)
+    {
+        return type.equals ("int") ? "Integer" : Character.toUpperCase (type.charAt (0)) + type.substring (1);
+    } // box
+
+    private static boolean isString (Class domain, Comparable value)
+    {
+        return domain == String.class && value instanceof String;
+    } // isString
+
+    /*************************************************************************************
+     * Compile the source of one class in memory, returning its bytecode (or null if no
+     * compiler is available or compilation fails).
+     */
+    private static byte [] compileSource (String name, String src)
+    {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler ();
+        if (javac == null) return null;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+        JavaFileObject source = new SimpleJavaFileObject (URI.create ("string:///" + name + ".java"),
+                                                          JavaFileObject.Kind.SOURCE) {
+            public CharSequence getCharContent (boolean ignoreErrors) { return src; }
+        };
+        JavaFileManager files = new ForwardingJavaFileManager <> (javac.getStandardFileManager (null, null, null)) {
+            public JavaFileObject getJavaFileForOutput (Location loc, String cls, JavaFileObject.Kind kind, FileObject sibling)
+            {
+                return new SimpleJavaFileObject (URI.create ("bytes:///" + cls + ".class"), kind) {
+                    public OutputStream openOutputStream () { return bytes; }
+                };
+            } // getJavaFileForOutput
+        };
+
+        StringWriter errors = new StringWriter ();
+        boolean ok = javac.getTask (errors, files, null, List.of ("-Xlint:none", "-g:none"), null, List.of (source)).call ();
+        if (! ok) {
+            out.println ("CodeGen: compile failed, interpreting\n" + errors);
+            return null;
+        } // if
+        return bytes.toByteArray ();
+    } // compileSource
+
+    /*************************************************************************************
+     * Return a query that is interpreted (tests each condition via Condition.test).
+     * The condition values come from the parameters, as for a compiled query.
+     */
+    private static BiFunction <List <Comparable []>, Comparable [], List <Comparable []>>
+                   interpreter (int [] cols, Condition [] conds, int [] proj)
+    {
+        return (tuples, p) -> {
+            Condition [] cs = new Condition [conds.length];
+            for (int j = 0; j < conds.length; j++) cs [j] = new Condition (conds [j].attr, conds [j].op, p [j]);
+            List <Comparable []> rows = new ArrayList <> ();
+            outer:
+            for (Comparable [] t : tuples) {
+                for (int j = 0; j < cs.length; j++) if (! cs [j].test (t [cols [j]])) continue outer;
+                if (proj == null) { rows.add (t); continue; }
+                Comparable [] u = new Comparable [proj.length];
+                for (int j = 0; j < proj.length; j++) u [j] = t [proj [j]];
+                rows.add (u);
+            } // for
+            return rows;
+        };
+    } // interpreter
+
+    /*************************************************************************************
+     * The main method is used for testing: compare a lambda select + project with the
+     * compiled query on a large movie table, repeating the query with new values.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 1000000;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        PrintStream console = System.out;
+        System.setOut (new PrintStream (OutputStream.nullOutputStream ()));
+        Table movie = new Table ("movie", "title year length genre studioName producerNo",
+                                          "String Integer Integer String String Integer", "title year",
+                                          IndexType.NONE);
+        Random rng = new Random (0);
+        for (int i = 0; i < nTuples; i++) {
+            movie.insert (new Comparable [] { "Movie_" + i, 1900 + rng.nextInt (120), 60 + rng.nextInt (150),
+                                              "genre" + rng.nextInt (12), "Studio_" + rng.nextInt (40), rng.nextInt (5000) });
+        } // for
+        int y = movie.col ("year"), l = movie.col ("length"), s = movie.col ("studioName");
+
+        for (int run = 0; run < 5; run++) {
+            int year = 1970 + 2 * run;
+            long t0 = System.nanoTime ();
+            Table r1 = movie.select (t -> (Integer) t [y] >= year && (Integer) t [l] < 100 && ((String) t [s]).compareTo ("Studio_2") > 0)
+                            .project ("title length");
+            long t1 = System.nanoTime ();
+            Table r2 = movie.c_select ("title length", new Condition ("year", ">=", year), new Condition ("length", "<", 100),
+                                                       new Condition ("studioName", ">", "Studio_2"));
+            long t2 = System.nanoTime ();
+            System.setOut (console);
+            out.printf ("rows = %d/%d: lambda + project %d ms, compiled %d ms (compiled queries = %d)\n",
+                        r1.size (), r2.size (), (t1 - t0) / 1000000, (t2 - t1) / 1000000, compiled ());
+            System.setOut (new PrintStream (OutputStream.nullOutputStream ()));
+        } // for
+        System.setOut (console);
+    } // main
+
+} // CodeGen class
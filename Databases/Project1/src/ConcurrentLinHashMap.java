@@ -0,0 +1,437 @@
+
+/************************************************************************************
+ * @file ConcurrentLinHashMap.java
+ *
+ * @author  John Miller
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * This class provides concurrent hash maps that use the Linear Hashing algorithm,
+ * so that loaders on many threads may insert into a shared hash index.
+ * <p>
+ * Writers lock one of STRIPES locks (bucket i uses stripe i mod STRIPES); readers
+ * take no locks.  Bucket chains are made of nodes whose key and next fields are
+ * final, so a reader always sees a well-formed chain.  The split pointer and
+ * modulus are published together as one immutable State.  A split of bucket s
+ * (done by one thread at a time, holding the stripes of both s and s + mod1)
+ * (1) publishes the new bucket, (2) advances the State and (3) replaces bucket s
+ * with the pairs that stay.  A reader that misses a key therefore re-checks the
+ * State and retries if a split has happened in the meantime.
+ */
+public class ConcurrentLinHashMap <K, V>
+       extends AbstractMap <K, V>
+       implements Serializable, Map <K, V>
+{
+    /** The load factor (average chain length) that triggers a split.
+     */
+    private static final double LOAD_FACTOR = 3.0;
+
+    /** The number of lock stripes (a power of 2).
+     */
+    private static final int STRIPES = 64;
+
+    /** The number of buckets per directory segment is 2^SEG_SHIFT.
+     */
+    private static final int SEG_SHIFT = 12;
+
+    /** The maximum number of directory segments.
+     */
+    private static final int MAX_SEGS = 1 << 14;
+
+    /********************************************************************************
+     * This inner class defines the nodes making up a bucket chain.
+     */
+    private static final class Node <K, V>
+            implements Serializable
+    {
+        final int        hash;
+        final K          key;
+        volatile V       value;
+        final Node <K,V> next;
+
+        Node (int _hash, K _key, V _value, Node <K,V> _next)
+        {
+            hash  = _hash;
+            key   = _key;
+            value = _value;
+            next  = _next;
+        } // constructor
+    } // Node inner class
+
+    /********************************************************************************
+     * This inner class holds the modulus for low resolution hashing and the index
+     * of the next bucket to split; a new State is published after each split.
+     */
+    private static final class State
+            implements Serializable
+    {
+        final int mod1;
+        final int split;
+
+        State (int _mod1, int _split)
+        {
+            mod1  = _mod1;
+            split = _split;
+        } // constructor
+
+        int buckets ()           { return mod1 + split; }
+
+        int address (int hash)
+        {
+            int i = hash & (mod1 - 1);
+            return (i < split) ? hash & (2 * mod1 - 1) : i;
+        } // address
+
+        State next ()
+        {
+            return (split + 1 == mod1) ? new State (2 * mod1, 0) : new State (mod1, split + 1);
+        } // next
+    } // State inner class
+
+    /** The directory: segments of bucket chains, allocated as the table grows.
+     */
+    private final AtomicReferenceArray <AtomicReferenceArray <Node <K,V>>> dir;
+
+    /** The current modulus and split pointer.
+     */
+    private volatile State state;
+
+    /** The locks guarding writes to the buckets (bucket i uses stripe i mod STRIPES).
+     */
+    private final ReentrantLock [] stripe;
+
+    /** The number of pairs in the buckets of each stripe (guarded by that stripe).
+     */
+    private final int [] stripeSize;
+
+    /** The lock held by the (single) thread performing splits.
+     */
+    private final ReentrantLock splitLock = new ReentrantLock ();
+
+    /********************************************************************************
+     * Construct a concurrent hash table that uses Linear Hashing.
+     * @param initSize  the initial number of home buckets (a power of 2, e.g., 4)
+     */
+    public ConcurrentLinHashMap (int initSize)
+    {
+        if (initSize < 1 || Integer.bitCount (initSize) != 1) {
+            throw new IllegalArgumentException ("ConcurrentLinHashMap: initSize must be a power of 2");
+        } // if
+        dir        = new AtomicReferenceArray <> (MAX_SEGS);
+        stripe     = new ReentrantLock [STRIPES];
+        stripeSize = new int [STRIPES];
+        for (int i = 0; i < STRIPES; i++) stripe [i] = new ReentrantLock ();
+        for (int i = 0; i < initSize; i += 1 << SEG_SHIFT) segment (i);
+        state = new State (initSize, 0);
+    } // constructor
+
+    /********************************************************************************
+     * Construct a concurrent hash table that uses Linear Hashing (64 home buckets).
+     */
+    public ConcurrentLinHashMap ()
+    {
+        this (64);
+    } // constructor
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values.  The set
+     * is a weakly consistent copy: it may or may not reflect concurrent updates.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        Set <Map.Entry <K, V>> enSet = new HashSet <> ();
+
+        State st = state;
+        for (int i = 0; i < st.buckets (); i++) {
+            for (Node <K,V> e = bucket (i); e != null; e = e.next) {
+                enSet.add (new AbstractMap.SimpleEntry <K, V> (e.key, e.value));
+            } // for
+        } // for
+        return enSet;
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value in the hash table, without locking.
+     * @param key  the key used for look up
+     * @return  the value associated with the key
+     */
+    public V get (Object key)
+    {
+        if (key == null) return null;
+
+        int hash = LinHashMap.hash (key);
+        for ( ; ; ) {
+            State st = state;
+            for (Node <K,V> e = bucket (st.address (hash)); e != null; e = e.next) {
+                if (e.hash == hash && key.equals (e.key)) return e.value;
+            } // for
+            if (state == st) return null;                // no split raced with the lookup
+        } // for
+    } // get
+
+    /********************************************************************************
+     * Determine whether the hash table contains the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey (Object key)
+    {
+        return get (key) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table.  An existing value for the key is
+     * replaced.  If the stripe's share of the load factor is then exceeded, buckets
+     * are split (unless another thread is already splitting).
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value for this key, or null if there was none
+     */
+    public V put (K key, V value)
+    {
+        if (key == null || value == null) throw new NullPointerException ("ConcurrentLinHashMap.put");
+
+        int hash = LinHashMap.hash (key);
+        int i, s, n;
+        for ( ; ; ) {
+            i = state.address (hash);
+            s = i & (STRIPES - 1);
+            stripe [s].lock ();
+            try {
+                if (state.address (hash) != i) continue;          // bucket was split: retry
+                Node <K,V> head = bucket (i);
+                for (Node <K,V> e = head; e != null; e = e.next) {
+                    if (e.hash == hash && key.equals (e.key)) {
+                        V old = e.value;
+                        e.value = value;
+                        return old;
+                    } // if
+                } // for
+                setBucket (i, new Node <> (hash, key, value, head));
+                n = ++stripeSize [s];
+            } finally {
+                stripe [s].unlock ();
+            } // try
+            break;
+        } // for
+
+        if (n > LOAD_FACTOR * state.buckets () / STRIPES) split ();
+        return null;
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if not found
+     */
+    public V remove (Object key)
+    {
+        if (key == null) return null;
+
+        int hash = LinHashMap.hash (key);
+        for ( ; ; ) {
+            int i = state.address (hash);
+            int s = i & (STRIPES - 1);
+            stripe [s].lock ();
+            try {
+                if (state.address (hash) != i) continue;          // bucket was split: retry
+                Node <K,V> head = bucket (i), e = head;
+                while (e != null && ! (e.hash == hash && key.equals (e.key))) e = e.next;
+                if (e == null) return null;
+
+                Node <K,V> rest = e.next;                        // copy the nodes before e
+                for (Node <K,V> p = head; p != e; p = p.next) rest = new Node <> (p.hash, p.key, p.value, rest);
+                setBucket (i, rest);
+                stripeSize [s]--;
+                return e.value;
+            } finally {
+                stripe [s].unlock ();
+            } // try
+        } // for
+    } // remove
+
+    /********************************************************************************
+     * Return the size (number of key-value pairs) of the hash table.  Under
+     * concurrent updates this is an estimate.
+     * @return  the size of the hash table
+     */
+    public int size ()
+    {
+        int sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            stripe [i].lock ();
+            try {
+                sum += stripeSize [i];
+            } finally {
+                stripe [i].unlock ();
+            } // try
+        } // for
+        return sum;
+    } // size
+
+    /********************************************************************************
+     * Return the size without locking the stripes (may be slightly out of date).
+     */
+    private int approxSize ()
+    {
+        int sum = 0;
+        for (int i = 0; i < STRIPES; i++) sum += stripeSize [i];
+        return sum;
+    } // approxSize
+
+    /********************************************************************************
+     * Split buckets while the table is overloaded.  Only one thread splits at a time;
+     * others that find the split lock taken simply carry on.
+     */
+    private void split ()
+    {
+        if (! splitLock.tryLock ()) return;
+        try {
+            while (approxSize () > LOAD_FACTOR * state.buckets ()) {
+                State st = state;
+                if (st.mod1 * 2 > MAX_SEGS << SEG_SHIFT) return;  // directory is full
+                splitBucket (st);
+            } // while
+        } finally {
+            splitLock.unlock ();
+        } // try
+    } // split
+
+    /********************************************************************************
+     * Split the bucket at the split pointer of state st, moving the pairs that h2
+     * sends to the new bucket (split + mod1).
+     * @param st  the current state
+     */
+    private void splitBucket (State st)
+    {
+        int old = st.split, nu = old + st.mod1, mask = 2 * st.mod1 - 1;
+        int s1  = old & (STRIPES - 1), s2 = nu & (STRIPES - 1);
+        segment (nu);
+
+        ReentrantLock first = stripe [Math.min (s1, s2)], second = stripe [Math.max (s1, s2)];
+        first.lock ();
+        second.lock ();
+        try {
+            Node <K,V> stay = null, move = null;
+            int moved = 0;
+            for (Node <K,V> e = bucket (old); e != null; e = e.next) {
+                if ((e.hash & mask) == old) {
+                    stay = new Node <> (e.hash, e.key, e.value, stay);
+                } else {
+                    move = new Node <> (e.hash, e.key, e.value, move);
+                    moved++;
+                } // if
+            } // for
+            setBucket (nu, move);                        // (1) publish the new bucket
+            state = st.next ();                          // (2) advance the split pointer
+            setBucket (old, stay);                       // (3) drop the moved pairs
+            stripeSize [s1] -= moved;
+            stripeSize [s2] += moved;
+        } finally {
+            second.unlock ();
+            first.unlock ();
+        } // try
+    } // splitBucket
+
+    /********************************************************************************
+     * Return the chain for bucket i.
+     */
+    private Node <K,V> bucket (int i)
+    {
+        return dir.get (i >>> SEG_SHIFT).get (i & ((1 << SEG_SHIFT) - 1));
+    } // bucket
+
+    /********************************************************************************
+     * Replace the chain for bucket i.
+     */
+    private void setBucket (int i, Node <K,V> chain)
+    {
+        dir.get (i >>> SEG_SHIFT).set (i & ((1 << SEG_SHIFT) - 1), chain);
+    } // setBucket
+
+    /********************************************************************************
+     * Make sure the directory segment holding bucket i has been allocated.
+     */
+    private void segment (int i)
+    {
+        if (dir.get (i >>> SEG_SHIFT) == null) {
+            dir.compareAndSet (i >>> SEG_SHIFT, null, new AtomicReferenceArray <> (1 << SEG_SHIFT));
+        } // if
+    } // segment
+
+    /********************************************************************************
+     * The main method used for testing: benchmark insert and lookup throughput
+     * against ConcurrentHashMap for 1 to 32 threads.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main (String [] args) throws Exception
+    {
+        int totalKeys = 1 << 20;
+        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
+
+        Integer [] keys = new Integer [totalKeys];
+        Random rng = new Random (0);
+        for (int i = 0; i < totalKeys; i++) keys [i] = rng.nextInt ();
+
+        out.println ("threads  map                    insert Mops/s  lookup Mops/s");
+        for (int round = 0; round < 2; round++) {        // round 0 warms up the JIT
+            for (int threads = 1; threads <= 32; threads *= 2) {
+                List <Map <Integer, Integer>> maps = new ArrayList <> ();
+                maps.add (new ConcurrentLinHashMap <> ());
+                maps.add (new ConcurrentHashMap <> ());
+                for (Map <Integer, Integer> m : maps) {
+                    double tIns = run (threads, keys, m, true);
+                    double tGet = run (threads, keys, m, false);
+                    if (round == 1) {
+                        out.printf ("%7d  %-21s  %13.2f  %13.2f%n", threads, m.getClass ().getSimpleName (),
+                                    totalKeys / tIns / 1e6, totalKeys / tGet / 1e6);
+                    } // if
+                } // for
+                if (round == 1) {
+                    ConcurrentLinHashMap <Integer, Integer> lh = (ConcurrentLinHashMap <Integer, Integer>) maps.get (0);
+                    for (Integer k : keys) {
+                        if (! k.equals (lh.get (k))) out.println ("main: lost key " + k);
+                    } // for
+                } // if
+            } // for
+        } // for
+    } // main
+
+    /********************************************************************************
+     * Insert (or look up) the keys using the given number of threads, each handling
+     * an equal share of the keys.
+     * @return  the elapsed time in seconds
+     */
+    private static double run (int threads, Integer [] keys, Map <Integer, Integer> m, boolean insert)
+            throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool (threads);
+        List <Callable <Void>> tasks = new ArrayList <> ();
+        int share = (keys.length + threads - 1) / threads;
+        for (int t = 0; t < threads; t++) {
+            final int lo = t * share, hi = Math.min (keys.length, lo + share);
+            tasks.add (() -> {
+                for (int i = lo; i < hi; i++) {
+                    if (insert) m.put (keys [i], keys [i]);
+                    else m.get (keys [i]);
+                } // for
+                return null;
+            });
+        } // for
+        long t0 = System.nanoTime ();
+        for (Future <Void> f : pool.invokeAll (tasks)) f.get ();
+        long t1 = System.nanoTime ();
+        pool.shutdown ();
+        return (t1 - t0) / 1e9;
+    } // run
+
+} // ConcurrentLinHashMap class
@@ -0,0 +1,156 @@
+
+/*****************************************************************************************
+ * @file  Condition.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.Serializable;
+
+/*****************************************************************************************
+ * The Condition class represents a simple selection condition of the form
+ * "attribute op value", e.g., year >= 1980.  Unlike an opaque Predicate (lambda), a
+ * condition can be analyzed: the optimizer can tell which table it refers to, estimate
+ * its selectivity and decide whether an index can answer it.
+ */
+public class Condition
+       implements Serializable
+{
+    /*************************************************************************************
+     * The comparison operators.
+     */
+    public enum Op
+    {
+        EQ ("=="), NE ("!="), LT ("<"), LE ("<="), GT (">"), GE (">=");
+
+        /** The operator's symbol
+         */
+        public final String symbol;
+
+        Op (String _symbol) { symbol = _symbol; }
+
+        /*********************************************************************************
+         * Return the operator with the given symbol ("=" is accepted for "==").
+         * @param s  the symbol
+         */
+        public static Op of (String s)
+        {
+            for (Op op : values ()) if (op.symbol.equals (s)) return op;
+            if (s.equals ("=")) return EQ;
+            if (s.equals ("<>")) return NE;
+            throw new IllegalArgumentException ("Condition.Op: unknown operator " + s);
+        } // of
+
+    } // Op enum
+
+    /*************************************************************************************
+     * A parameter placeholder (?) in a prepared query (see Query), standing for a value
+     * supplied when the query is executed.  It must be bound before the condition is
+     * tested.
+     */
+    public static class Param
+           implements Comparable <Object>, Serializable
+    {
+        /** The parameter's position and the domain of the attribute it is compared with
+         */
+        final int   index;
+        final Class domain;
+
+        Param (int _index, Class _domain) { index = _index; domain = _domain; }
+
+        /*********************************************************************************
+         * Return the parameter's value, converted to the attribute's domain.
+         * @param params  the values of the parameters
+         */
+        Comparable bind (Comparable [] params)
+        {
+            if (params [index] == null) throw new IllegalArgumentException ("Condition: parameter " + this + " is null");
+            return Query.coerce (params [index], domain);
+        } // bind
+
+        public int compareTo (Object o)
+        {
+            throw new IllegalStateException ("Condition: parameter " + this + " is not bound");
+        } // compareTo
+
+        public String toString () { return "?" + (index + 1); }
+    } // Param class
+
+    /** The attribute being compared
+     */
+    public final String attr;
+
+    /** The comparison operator
+     */
+    public final Op op;
+
+    /** The value the attribute is compared with
+     */
+    public final Comparable value;
+
+    /*************************************************************************************
+     * Construct a condition.
+     *
+     * #usage new Condition ("year", ">=", 1980)
+     *
+     * @param _attr   the attribute being compared
+     * @param _op     the comparison operator's symbol (==, !=, <, <=, >, >=)
+     * @param _value  the value the attribute is compared with
+     */
+    public Condition (String _attr, String _op, Comparable _value)
+    {
+        this (_attr, Op.of (_op), _value);
+    } // constructor
+
+    /*************************************************************************************
+     * Construct a condition.
+     *
+     * @param _attr   the attribute being compared
+     * @param _op     the comparison operator
+     * @param _value  the value the attribute is compared with
+     */
+    public Condition (String _attr, Op _op, Comparable _value)
+    {
+        attr  = _attr;
+        op    = _op;
+        value = _value;
+    } // constructor
+
+    /*************************************************************************************
+     * Return the same condition on a differently named attribute.
+     * @param newAttr  the new attribute name
+     */
+    public Condition rename (String newAttr)
+    {
+        return new Condition (newAttr, op, value);
+    } // rename
+
+    /*************************************************************************************
+     * Determine whether the attribute value v satisfies this condition (null never does).
+     * @param v  the attribute value
+     * @return  whether the condition holds
+     */
+    @SuppressWarnings("unchecked")
+    public boolean test (Comparable v)
+    {
+        if (v == null) return false;
+        int c = v.compareTo (value);
+        switch (op) {
+        case EQ: return c == 0;
+        case NE: return c != 0;
+        case LT: return c < 0;
+        case LE: return c <= 0;
+        case GT: return c > 0;
+        default: return c >= 0;
+        } // switch
+    } // test
+
+    /*************************************************************************************
+     * Convert the condition to a string.
+     */
+    public String toString ()
+    {
+        return attr + " " + op.symbol + " " + ((value instanceof String) ? "'" + value + "'" : value);
+    } // toString
+
+} // Condition class
@@ -0,0 +1,645 @@
+
+/************************************************************************************
+ * @file CowBpTreeMap.java
+ *
+ * @author  John Miller
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * This class provides copy-on-write (persistent) B+Tree maps.  Nodes are never
+ * modified once published: put and remove copy the nodes along the path from the
+ * root to the affected leaf and then publish a new root version.  Readers work on
+ * an immutable Snapshot of a version, so long scans neither block nor are disturbed
+ * by concurrent writers (writers are serialized among themselves).  Because nodes
+ * are shared between versions, leaves are not linked; scans use a stack instead.
+ * An old version becomes garbage as soon as no snapshot refers to it.
+ */
+public class CowBpTreeMap <K extends Comparable <K>, V>
+       extends AbstractMap <K, V>
+       implements Serializable, SortedMap <K, V>
+{
+    /** The maximum fanout (number of children) for a B+Tree node.
+     */
+    private static final int ORDER = 5;
+
+    /** The floor of half the ORDER.
+     */
+    private static final int MID = ORDER / 2;
+
+    /** The minimum number of keys a non-root node may hold before it underflows.
+     */
+    private static final int MIN_KEYS = (ORDER - 1) / 2;
+
+    /********************************************************************************
+     * This inner class defines immutable nodes.  Arrays are sized exactly, so nKeys
+     * is key.length; internal nodes have key.length + 1 children in ref.
+     */
+    private static final class Node
+            implements Serializable
+    {
+        final boolean      isLeaf;
+        final Comparable [] key;
+        final Object []    ref;
+
+        Node (boolean _isLeaf, Comparable [] _key, Object [] _ref)
+        {
+            isLeaf = _isLeaf;
+            key    = _key;
+            ref    = _ref;
+        } // constructor
+
+        int nKeys () { return key.length; }
+    } // Node inner class
+
+    /********************************************************************************
+     * This inner class defines a version of the tree: its root, size and number.
+     */
+    private static final class Version
+            implements Serializable
+    {
+        final Node root;
+        final int  size;
+        final long number;
+
+        Version (Node _root, int _size, long _number)
+        {
+            root   = _root;
+            size   = _size;
+            number = _number;
+        } // constructor
+    } // Version inner class
+
+    /********************************************************************************
+     * This inner class holds the result of inserting into a node: the replacement
+     * node lt, plus the divider key and right sibling rt if the node was split.
+     */
+    private static final class Ins
+    {
+        final Node       lt;
+        final Comparable divKey;
+        final Node       rt;
+
+        Ins (Node _lt, Comparable _divKey, Node _rt)
+        {
+            lt     = _lt;
+            divKey = _divKey;
+            rt     = _rt;
+        } // constructor
+    } // Ins inner class
+
+    /** The current (latest) version of the tree.
+     */
+    private volatile Version current;
+
+    /** The number of snapshots that are open (not yet closed).
+     */
+    private final AtomicInteger openSnapshots = new AtomicInteger ();
+
+    /** The value replaced or removed by the current write (null if none).
+     */
+    private transient Object changed;
+
+    /********************************************************************************
+     * Construct an empty copy-on-write B+Tree map.
+     */
+    public CowBpTreeMap ()
+    {
+        current = new Version (new Node (true, new Comparable [0], new Object [0]), 0, 0);
+    } // constructor
+
+    /********************************************************************************
+     * Take an immutable snapshot of the current version for reading.  The snapshot
+     * should be closed when the scan is done, releasing its version.
+     * @return  the snapshot
+     */
+    public Snapshot snapshot ()
+    {
+        openSnapshots.incrementAndGet ();
+        return new Snapshot (current, true);
+    } // snapshot
+
+    /********************************************************************************
+     * Return the number of snapshots that have been taken and not yet closed.
+     * @return  the number of open snapshots
+     */
+    public int openSnapshots ()
+    {
+        return openSnapshots.get ();
+    } // openSnapshots
+
+    /********************************************************************************
+     * Return the number of the current version (incremented by every change).
+     * @return  the version number
+     */
+    public long version ()
+    {
+        return current.number;
+    } // version
+
+    /********************************************************************************
+     * Return null to use the natural order based on the key type.
+     */
+    public Comparator <? super K> comparator ()
+    {
+        return null;
+    } // comparator
+
+    /********************************************************************************
+     * Return a set containing all the entries of the current version.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        return latest ().entrySet ();
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value in the current version (lock-free).
+     * @param key  the key used for look up
+     * @return  the value associated with the key or null if not found
+     */
+    public V get (Object key)
+    {
+        return find (current.root, key);
+    } // get
+
+    /********************************************************************************
+     * Determine whether the current version contains the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey (Object key)
+    {
+        return find (current.root, key) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the map, publishing a new version.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value for this key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put (K key, V value)
+    {
+        if (key == null) throw new NullPointerException ("CowBpTreeMap.put: null key");
+
+        Version v = current;
+        changed   = null;
+        Ins ins   = insert (v.root, key, value);
+        Node root = ins.lt;
+        if (ins.rt != null) {                            // root split => new root
+            root = new Node (false, new Comparable [] { ins.divKey }, new Object [] { ins.lt, ins.rt });
+        } // if
+        current = new Version (root, (changed == null) ? v.size + 1 : v.size, v.number + 1);
+        return (V) changed;
+    } // put
+
+    /********************************************************************************
+     * Remove the key from the map, publishing a new version.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if not found
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove (Object key)
+    {
+        if (key == null) return null;
+
+        Version v = current;
+        changed   = null;
+        Node root = delete (v.root, (Comparable) key);
+        if (changed == null) return null;
+        if (! root.isLeaf && root.nKeys () == 0) root = (Node) root.ref [0];   // root collapse
+        current = new Version (root, v.size - 1, v.number + 1);
+        return (V) changed;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the entries from the map, publishing a new (empty) version.
+     */
+    public synchronized void clear ()
+    {
+        current = new Version (new Node (true, new Comparable [0], new Object [0]), 0,
+                               current.number + 1);
+    } // clear
+
+    /********************************************************************************
+     * Return the size (number of keys) of the current version.
+     * @return  the size of the map
+     */
+    public int size ()
+    {
+        return current.size;
+    } // size
+
+    /********************************************************************************
+     * The SortedMap methods below operate on the current version.
+     */
+    public K firstKey ()                               { return latest ().firstKey (); }
+    public K lastKey ()                                { return latest ().lastKey (); }
+    public SortedMap <K,V> headMap (K toKey)           { return latest ().headMap (toKey); }
+    public SortedMap <K,V> tailMap (K fromKey)         { return latest ().tailMap (fromKey); }
+    public SortedMap <K,V> subMap (K fromKey, K toKey) { return latest ().subMap (fromKey, toKey); }
+
+    /********************************************************************************
+     * Return an (uncounted) snapshot of the current version for internal use.
+     */
+    private Snapshot latest ()
+    {
+        return new Snapshot (current, false);
+    } // latest
+
+    /********************************************************************************
+     * This inner class provides a read-only view of one version of the tree.  Its
+     * iterators walk the version's nodes with a stack, so a scan sees exactly the
+     * entries present when the snapshot was taken.
+     */
+    public class Snapshot
+           extends AbstractMap <K, V>
+           implements SortedMap <K, V>, AutoCloseable
+    {
+        /** The version being read (null once closed).
+         */
+        private Version ver;
+
+        /** Whether the snapshot is counted as open (taken via snapshot ()).
+         */
+        private final boolean counted;
+
+        Snapshot (Version _ver, boolean _counted)
+        {
+            ver     = _ver;
+            counted = _counted;
+        } // constructor
+
+        /****************************************************************************
+         * Close the snapshot, dropping its reference to the version so that the
+         * version can be reclaimed once no other snapshot refers to it.
+         */
+        public void close ()
+        {
+            if (ver != null) {
+                ver = null;
+                if (counted) openSnapshots.decrementAndGet ();
+            } // if
+        } // close
+
+        /****************************************************************************
+         * Return the number of the version this snapshot reads.
+         * @return  the version number
+         */
+        public long version ()
+        {
+            return version0 ().number;
+        } // version
+
+        public Comparator <? super K> comparator () { return null; }
+        public int size ()                            { return version0 ().size; }
+        public V get (Object key)                     { return find (version0 ().root, key); }
+        public boolean containsKey (Object key)       { return get (key) != null; }
+
+        public Set <Map.Entry <K, V>> entrySet ()
+        {
+            final Version v = version0 ();
+            return new AbstractSet <Map.Entry <K, V>> () {
+                public Iterator <Map.Entry <K, V>> iterator () { return new Scan (v.root, null, null); }
+                public int size ()                            { return v.size; }
+            };
+        } // entrySet
+
+        /****************************************************************************
+         * Return an iterator over the entries with keys in the range [lo, hi).
+         * @param lo  the lower bound (inclusive), null for unbounded
+         * @param hi  the upper bound (exclusive), null for unbounded
+         * @return  the iterator over the range
+         */
+        public Iterator <Map.Entry <K, V>> scan (K lo, K hi)
+        {
+            return new Scan (version0 ().root, lo, hi);
+        } // scan
+
+        public K firstKey ()
+        {
+            Iterator <Map.Entry <K, V>> it = scan (null, null);
+            if (! it.hasNext ()) throw new NoSuchElementException ("CowBpTreeMap.firstKey: empty map");
+            return it.next ().getKey ();
+        } // firstKey
+
+        @SuppressWarnings("unchecked")
+        public K lastKey ()
+        {
+            Node n = version0 ().root;
+            while (! n.isLeaf) n = (Node) n.ref [n.nKeys ()];
+            if (n.nKeys () == 0) throw new NoSuchElementException ("CowBpTreeMap.lastKey: empty map");
+            return (K) n.key [n.nKeys () - 1];
+        } // lastKey
+
+        public SortedMap <K,V> headMap (K toKey)             { return range (null, toKey); }
+        public SortedMap <K,V> tailMap (K fromKey)           { return range (fromKey, null); }
+        public SortedMap <K,V> subMap (K fromKey, K toKey)   { return range (fromKey, toKey); }
+
+        private SortedMap <K,V> range (K lo, K hi)
+        {
+            SortedMap <K, V> results = new TreeMap <> ();
+            for (Iterator <Map.Entry <K, V>> it = scan (lo, hi); it.hasNext (); ) {
+                Map.Entry <K, V> e = it.next ();
+                results.put (e.getKey (), e.getValue ());
+            } // for
+            return results;
+        } // range
+
+        private Version version0 ()
+        {
+            if (ver == null) throw new IllegalStateException ("CowBpTreeMap.Snapshot: closed");
+            return ver;
+        } // version0
+
+    } // Snapshot inner class
+
+    /********************************************************************************
+     * This inner class iterates in key order over the leaves of one version, keeping
+     * the path of (node, position) pairs from the root on a stack.
+     */
+    private class Scan
+            implements Iterator <Map.Entry <K, V>>
+    {
+        private final Deque <Node>    nodes = new ArrayDeque <> ();
+        private final Deque <Integer> pos   = new ArrayDeque <> ();
+        private final K               hi;
+        private Node                  leaf;
+        private int                   i;
+
+        @SuppressWarnings("unchecked")
+        Scan (Node root, K lo, K hi)
+        {
+            this.hi = hi;
+            Node n = root;
+            while (! n.isLeaf) {
+                int j = (lo == null) ? 0 : findPos (n, lo);
+                nodes.push (n);
+                pos.push (j);
+                n = (Node) n.ref [j];
+            } // while
+            leaf = n;
+            i    = (lo == null) ? 0 : findPos (n, lo);
+            advance ();
+        } // constructor
+
+        /** Move to the next leaf if the current one is exhausted.
+         */
+        private void advance ()
+        {
+            while (leaf != null && i >= leaf.nKeys ()) {
+                leaf = null;
+                while (! nodes.isEmpty ()) {             // climb to a node with a next child
+                    Node p = nodes.peek ();
+                    int  j = pos.pop () + 1;
+                    if (j <= p.nKeys ()) {
+                        pos.push (j);
+                        Node n = (Node) p.ref [j];
+                        while (! n.isLeaf) {             // descend to its leftmost leaf
+                            nodes.push (n);
+                            pos.push (0);
+                            n = (Node) n.ref [0];
+                        } // while
+                        leaf = n;
+                        i    = 0;
+                        break;
+                    } // if
+                    nodes.pop ();
+                } // while
+            } // while
+        } // advance
+
+        @SuppressWarnings("unchecked")
+        public boolean hasNext ()
+        {
+            return leaf != null && (hi == null || ((K) leaf.key [i]).compareTo (hi) < 0);
+        } // hasNext
+
+        @SuppressWarnings("unchecked")
+        public Map.Entry <K, V> next ()
+        {
+            if (! hasNext ()) throw new NoSuchElementException ();
+            Map.Entry <K, V> e = new AbstractMap.SimpleImmutableEntry <> ((K) leaf.key [i],
+                                                                         (V) leaf.ref [i]);
+            i++;
+            advance ();
+            return e;
+        } // next
+
+    } // Scan inner class
+
+    /********************************************************************************
+     * Find the position of the first key in node n that is greater than or equal
+     * to the given key (n.nKeys () if there is none).
+     * @param n    the node to search
+     * @param key  the key to locate
+     * @return  the position within node n
+     */
+    @SuppressWarnings("unchecked")
+    private static int findPos (Node n, Object key)
+    {
+        int lo = 0, hi = n.nKeys ();
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (((Comparable) key).compareTo (n.key [m]) > 0) lo = m + 1;
+            else hi = m;
+        } // while
+        return lo;
+    } // findPos
+
+    /********************************************************************************
+     * Find the value for the key in the tree rooted at node n.
+     * @param n    the root of the version to search
+     * @param key  the key to find
+     * @return  the value associated with the key or null if not found
+     */
+    @SuppressWarnings("unchecked")
+    private V find (Node n, Object key)
+    {
+        if (key == null) return null;
+        while (! n.isLeaf) n = (Node) n.ref [findPos (n, key)];
+        int i = findPos (n, key);
+        return (i < n.nKeys () && ((Comparable) key).compareTo (n.key [i]) == 0) ? (V) n.ref [i] : null;
+    } // find
+
+    /********************************************************************************
+     * Insert the key-value pair below node n, copying n rather than modifying it.
+     * @param n      the current node
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the copy of n (and its new right sibling if it split)
+     */
+    @SuppressWarnings("unchecked")
+    private Ins insert (Node n, K key, V value)
+    {
+        int i = findPos (n, key);
+
+        if (n.isLeaf) {                                  // handle leaf node
+            if (i < n.nKeys () && key.compareTo ((K) n.key [i]) == 0) {
+                changed = n.ref [i];
+                Object [] ref = n.ref.clone ();
+                ref [i] = value;
+                return new Ins (new Node (true, n.key, ref), null, null);
+            } // if
+            Comparable [] key2 = insertAt (n.key, i, key);
+            Object []     ref2 = insertAt (n.ref, i, value);
+            if (key2.length < ORDER) return new Ins (new Node (true, key2, ref2), null, null);
+
+            int lt = (ORDER + 1) / 2;                    // split the overflowing leaf
+            return new Ins (new Node (true, Arrays.copyOfRange (key2, 0, lt),
+                                            Arrays.copyOfRange (ref2, 0, lt)),
+                            key2 [lt - 1],
+                            new Node (true, Arrays.copyOfRange (key2, lt, key2.length),
+                                            Arrays.copyOfRange (ref2, lt, ref2.length)));
+        } // if
+
+        Ins sub = insert ((Node) n.ref [i], key, value); // handle internal node
+        Object [] ref2 = n.ref.clone ();
+        ref2 [i] = sub.lt;
+        if (sub.rt == null) return new Ins (new Node (false, n.key, ref2), null, null);
+
+        Comparable [] key2 = insertAt (n.key, i, sub.divKey);
+        ref2 = insertAt (ref2, i + 1, sub.rt);
+        if (key2.length < ORDER) return new Ins (new Node (false, key2, ref2), null, null);
+
+        return new Ins (new Node (false, Arrays.copyOfRange (key2, 0, MID),           // split
+                                         Arrays.copyOfRange (ref2, 0, MID + 1)),
+                        key2 [MID],
+                        new Node (false, Arrays.copyOfRange (key2, MID + 1, key2.length),
+                                         Arrays.copyOfRange (ref2, MID + 1, ref2.length)));
+    } // insert
+
+    /********************************************************************************
+     * Delete the key below node n, copying the nodes that change.  An underflowed
+     * child is combined with a sibling: the two are merged if they fit in one node,
+     * otherwise their keys are redistributed evenly.
+     * @param n    the current node
+     * @param key  the key to delete
+     * @return  the copy of n (n itself if the key was not found)
+     */
+    @SuppressWarnings("unchecked")
+    private Node delete (Node n, Comparable key)
+    {
+        int i = findPos (n, key);
+
+        if (n.isLeaf) {                                  // handle leaf node
+            if (i == n.nKeys () || key.compareTo (n.key [i]) != 0) return n;
+            changed = n.ref [i];
+            return new Node (true, removeAt (n.key, i), removeAt (n.ref, i));
+        } // if
+
+        Node child = delete ((Node) n.ref [i], key);     // handle internal node
+        if (child == n.ref [i]) return n;
+
+        Object [] ref = n.ref.clone ();
+        ref [i] = child;
+        if (child.nKeys () >= MIN_KEYS) return new Node (false, n.key, ref);
+
+        int  j  = (i > 0) ? i - 1 : i;                   // combine children j and j+1
+        Node lt = (Node) ref [j], rt = (Node) ref [j+1];
+        Comparable [] keys;
+        Object []     refs;
+        if (lt.isLeaf) {
+            keys = concat (lt.key, rt.key);
+            refs = concat (lt.ref, rt.ref);
+        } else {
+            keys = concat (insertAt (lt.key, lt.nKeys (), n.key [j]), rt.key);
+            refs = concat (lt.ref, rt.ref);
+        } // if
+
+        if (keys.length < ORDER) {
+            ref [j] = new Node (lt.isLeaf, keys, refs);  // merge
+            return new Node (false, removeAt (n.key, j), removeAt (ref, j + 1));
+        } // if
+
+        Comparable [] key2 = n.key.clone ();             // redistribute
+        int m = keys.length / 2;
+        if (lt.isLeaf) {
+            ref [j]   = new Node (true, Arrays.copyOfRange (keys, 0, m), Arrays.copyOfRange (refs, 0, m));
+            ref [j+1] = new Node (true, Arrays.copyOfRange (keys, m, keys.length),
+                                        Arrays.copyOfRange (refs, m, refs.length));
+            key2 [j]  = keys [m - 1];
+        } else {
+            ref [j]   = new Node (false, Arrays.copyOfRange (keys, 0, m), Arrays.copyOfRange (refs, 0, m + 1));
+            ref [j+1] = new Node (false, Arrays.copyOfRange (keys, m + 1, keys.length),
+                                         Arrays.copyOfRange (refs, m + 1, refs.length));
+            key2 [j]  = keys [m];
+        } // if
+        return new Node (false, key2, ref);
+    } // delete
+
+    /********************************************************************************
+     * Return a copy of array a with x inserted at position i.
+     */
+    private static <T> T [] insertAt (T [] a, int i, T x)
+    {
+        T [] b = Arrays.copyOf (a, a.length + 1);
+        System.arraycopy (a, i, b, i + 1, a.length - i);
+        b [i] = x;
+        return b;
+    } // insertAt
+
+    /********************************************************************************
+     * Return a copy of array a with the element at position i removed.
+     */
+    private static <T> T [] removeAt (T [] a, int i)
+    {
+        T [] b = Arrays.copyOf (a, a.length - 1);
+        System.arraycopy (a, i + 1, b, i, a.length - i - 1);
+        return b;
+    } // removeAt
+
+    /********************************************************************************
+     * Return the concatenation of arrays a and b.
+     */
+    private static <T> T [] concat (T [] a, T [] b)
+    {
+        return ArrayUtil.concat (a, b);
+    } // concat
+
+    /********************************************************************************
+     * The main method used for testing: a writer keeps inserting while a reader
+     * scans a snapshot, which must see the same entries throughout.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main (String [] args) throws InterruptedException
+    {
+        int totalKeys = 100000;
+        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
+        final int n = totalKeys;
+
+        CowBpTreeMap <Integer, Integer> map = new CowBpTreeMap <> ();
+        for (int i = 0; i < n; i += 2) map.put (i, i * i);
+
+        Thread writer = new Thread (() -> {
+            for (int i = 1; i < n; i += 2) map.put (i, i * i);
+            for (int i = 0; i < n; i += 4) map.remove (i);
+        });
+
+        try (CowBpTreeMap <Integer, Integer>.Snapshot snap = map.snapshot ()) {
+            writer.start ();
+            int scanned = 0, prev = -1;
+            for (Map.Entry <Integer, Integer> e : snap.entrySet ()) {
+                if (e.getKey () <= prev || e.getKey () % 2 != 0) out.println ("main: bad entry " + e);
+                prev = e.getKey ();
+                scanned++;
+            } // for
+            out.println ("snapshot version " + snap.version () + ": scanned " + scanned
+                       + " of " + snap.size () + " entries");
+            writer.join ();
+        } // try
+
+        out.println ("current version " + map.version () + ": size = " + map.size ()
+                   + ", open snapshots = " + map.openSnapshots ());
+        out.println ("get (3) = " + map.get (3) + ", get (4) = " + map.get (4));
+    } // main
+
+} // CowBpTreeMap class
@@ -0,0 +1,671 @@
+
+/************************************************************************************
+ * @file DiskLinHashMap.java
+ *
+ * @author  John Miller
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * This class provides a disk-based hash map that uses the Linear Hashing algorithm.
+ * Each bucket is a chain of fixed-size pages in an index file: a home page followed
+ * by any overflow pages.  The bucket at the split pointer is split whenever the
+ * average number of records per bucket exceeds LOAD, so the file grows one bucket
+ * at a time.  Keys and values (tuples) are stored in their TupleCodec encoding, and
+ * a point lookup costs one page read, plus one per overflow page on the chain.
+ * <p>
+ * File layout (page 0 is the header):
+ *     header page:    magic, page size, mod1, split, size, nPages, free list head,
+ *                     followed by the page numbers of the directory pages
+ *     directory page: the home page number of each of DIR_SLOTS buckets
+ *     bucket page:    nRecords, bytes used, next overflow page (-1 if none), and
+ *                     records of the form hash, key length, value length, key, value
+ * The directory is also cached in memory while the map is open.  The header is
+ * rewritten as part of each split (after the bucket and directory pages it describes),
+ * so the bucket count, level (mod1) and split pointer on disk always match the pages;
+ * only the record count may lag until the next flush.
+ * <p>
+ * Note: only the index is on disk.  A Table using this index still keeps all of its
+ * tuples in its in-memory list (and scans, joins, etc. read that list), and the index
+ * stores a second, encoded copy of each tuple as its value.  So it does not make the
+ * table itself out-of-core: the table must still fit in the heap.
+ */
+public class DiskLinHashMap
+       extends AbstractMap <KeyType, Comparable []>
+       implements Serializable, Closeable
+{
+    /** The size of a page in bytes.
+     */
+    private static final int PAGE_SIZE = 4096;
+
+    /** The size of a bucket page header, and the record overhead beyond the key and value.
+     */
+    private static final int HEADER = 12, OVERHEAD = 10;
+
+    /** Where the directory page numbers start in the header page, and how many fit.
+     */
+    private static final int DIR_START = 64, MAX_DIR_PAGES = (PAGE_SIZE - DIR_START) / 4;
+
+    /** The number of bucket entries per directory page.
+     */
+    private static final int DIR_SLOTS = PAGE_SIZE / 4;
+
+    /** The average number of records per bucket that triggers a split.
+     */
+    private static final int LOAD = 24;
+
+    /** Identifies a DiskLinHashMap index file.
+     */
+    private static final int MAGIC = 0x4c484d31;
+
+    /** The name of the index file.
+     */
+    private final String fileName;
+
+    /** The channel for reading and writing pages of the index file.
+     */
+    private transient FileChannel file;
+
+    /** The home page of each bucket (a cache of the directory pages).
+     */
+    private transient int [] dir;
+
+    /** The page numbers of the directory pages.
+     */
+    private transient int [] dirPages;
+
+    /** The modulus for low resolution hashing.
+     */
+    private transient int mod1;
+
+    /** The index of the next bucket to split.
+     */
+    private transient int split;
+
+    /** The number of key-value pairs stored in the map.
+     */
+    private transient int size;
+
+    /** The number of pages in the file, and the first page on the free list (-1 if none).
+     */
+    private transient int nPages, freeHead;
+
+    /** Counter for the number of pages read (for performance testing).
+     */
+    private transient long reads = 0;
+
+    /********************************************************************************
+     * Create a new, empty disk-based hash map with initSize home buckets in the given
+     * file, replacing the file if it already exists.
+     * @param _fileName  the name of the index file
+     * @param initSize   the initial number of home buckets (a power of 2, e.g., 4)
+     */
+    public DiskLinHashMap (String _fileName, int initSize)
+    {
+        if (initSize < 1 || Integer.bitCount (initSize) != 1) {
+            throw new IllegalArgumentException ("DiskLinHashMap: initSize must be a power of 2");
+        } // if
+        fileName = _fileName;
+        open (initSize, true);
+    } // constructor
+
+    /********************************************************************************
+     * Reopen the disk-based hash map stored in the given file, creating it with 16
+     * home buckets if it does not exist.
+     * @param _fileName  the name of the index file
+     */
+    public DiskLinHashMap (String _fileName)
+    {
+        fileName = _fileName;
+        open (16, false);
+    } // constructor
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values.  This
+     * reads the whole index file.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <KeyType, Comparable []>> entrySet ()
+    {
+        Set <Map.Entry <KeyType, Comparable []>> enSet = new HashSet <> ();
+
+        for (int b = 0; b < mod1 + split; b++) {
+            for (int p = dir [b]; p != -1; ) {
+                ByteBuffer page = readPage (p);
+                int off = HEADER;
+                for (int r = 0; r < page.getInt (0); r++) {
+                    int kLen = page.getShort (off + 4), vLen = page.getInt (off + 6);
+                    KeyType key = KeyType.wrap (TupleCodec.decode (bytes (page, off + OVERHEAD, kLen)));
+                    enSet.add (new AbstractMap.SimpleEntry <> (key, TupleCodec.decode (
+                                                                  bytes (page, off + OVERHEAD + kLen, vLen))));
+                    off += OVERHEAD + kLen + vLen;
+                } // for
+                p = page.getInt (8);
+            } // for
+        } // for
+        return enSet;
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value (tuple) in the index file.
+     * @param key  the key used for look up
+     * @return  the value associated with the key, or null if not found
+     */
+    public Comparable [] get (Object key)
+    {
+        if (! (key instanceof KeyType)) return null;
+
+        byte [] k = TupleCodec.encode ((KeyType) key);
+        int hash = hash (k);
+        for (int p = dir [address (hash)]; p != -1; ) {
+            ByteBuffer page = readPage (p);
+            int off = find (page, hash, k);
+            if (off >= 0) {
+                return TupleCodec.decode (bytes (page, off + OVERHEAD + k.length, page.getInt (off + 6)));
+            } // if
+            p = page.getInt (8);
+        } // for
+        return null;
+    } // get
+
+    /********************************************************************************
+     * Determine whether the index file contains the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey (Object key)
+    {
+        return get (key) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the index file, replacing any existing value for the
+     * key.  If the load is then exceeded, the bucket at the split pointer is split.
+     * @param key    the key to insert
+     * @param value  the value (tuple) to insert
+     * @return  the previous value for this key, or null if there was none
+     */
+    public Comparable [] put (KeyType key, Comparable [] value)
+    {
+        if (key == null) throw new NullPointerException ("DiskLinHashMap.put: null key");
+
+        byte [] k = TupleCodec.encode (key), v = TupleCodec.encode (value);
+        if (OVERHEAD + k.length + v.length > PAGE_SIZE - HEADER) {
+            throw new IllegalArgumentException ("DiskLinHashMap.put: record does not fit in a page");
+        } // if
+        int hash = hash (k), b = address (hash);
+        Comparable [] old = delete (b, hash, k);
+        append (b, hash, k, v);
+        if (old == null && ++size > LOAD * (mod1 + split)) splitBucket ();
+        return old;
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the index file.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if not found
+     */
+    public Comparable [] remove (Object key)
+    {
+        if (! (key instanceof KeyType)) return null;
+
+        byte [] k = TupleCodec.encode ((KeyType) key);
+        int hash = hash (k);
+        Comparable [] old = delete (address (hash), hash, k);
+        if (old != null) size--;
+        return old;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the entries, truncating the index file back to mod1 empty buckets.
+     */
+    public void clear ()
+    {
+        int initSize = mod1;
+        try {
+            file.close ();
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+        open (initSize, true);
+    } // clear
+
+    /********************************************************************************
+     * Return the size (number of key-value pairs) of the map.
+     * @return  the size of the map
+     */
+    public int size ()
+    {
+        return size;
+    } // size
+
+    /********************************************************************************
+     * Return the number of pages read so far (for performance testing).
+     * @return  the number of page reads
+     */
+    public long pageReads ()
+    {
+        return reads;
+    } // pageReads
+
+    /********************************************************************************
+     * Write the header page and force all the pages to disk.
+     */
+    public void flush ()
+    {
+        writeHeader ();
+        try {
+            file.force (false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+    } // flush
+
+    /********************************************************************************
+     * Flush and close the index file.
+     */
+    public void close ()
+    {
+        if (file == null || ! file.isOpen ()) return;
+        flush ();
+        try {
+            file.close ();
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+    } // close
+
+    /********************************************************************************
+     * Open the index file: read its header and directory, or initialize a new (or
+     * truncated) file with initSize empty buckets.
+     * @param initSize  the initial number of home buckets for a new file
+     * @param truncate  whether to discard the file's existing contents
+     */
+    private void open (int initSize, boolean truncate)
+    {
+        try {
+            file = truncate ? FileChannel.open (Paths.get (fileName), StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE)
+                            : FileChannel.open (Paths.get (fileName), StandardOpenOption.CREATE,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (file.size () == 0) {
+                mod1     = initSize;
+                split    = 0;
+                size     = 0;
+                nPages   = 1;
+                freeHead = -1;
+                dirPages = new int [0];
+                dir      = new int [2 * mod1];
+                for (int b = 0; b < mod1; b++) setHome (b, allocPage ());
+                writeHeader ();
+            } else {
+                ByteBuffer page = readPage (0);
+                if (page.getInt (0) != MAGIC || page.getInt (4) != PAGE_SIZE) {
+                    throw new IOException ("DiskLinHashMap: " + fileName + " is not an index file");
+                } // if
+                mod1     = page.getInt (8);
+                split    = page.getInt (12);
+                size     = page.getInt (16);
+                nPages   = page.getInt (20);
+                freeHead = page.getInt (24);
+                int nBuckets = mod1 + split;
+                dirPages = new int [(nBuckets + DIR_SLOTS - 1) / DIR_SLOTS];
+                dir      = new int [Math.max (2 * mod1, dirPages.length * DIR_SLOTS)];
+                for (int i = 0; i < dirPages.length; i++) {
+                    dirPages [i] = page.getInt (DIR_START + 4 * i);
+                    ByteBuffer d = readPage (dirPages [i]);
+                    for (int j = 0; j < DIR_SLOTS; j++) dir [i * DIR_SLOTS + j] = d.getInt (4 * j);
+                } // for
+            } // if
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+    } // open
+
+    /********************************************************************************
+     * Find the record with the given hash and key in the page.
+     * @return  the offset of the record in the page, or -1 if not there
+     */
+    private int find (ByteBuffer page, int hash, byte [] key)
+    {
+        int off = HEADER;
+        for (int r = 0; r < page.getInt (0); r++) {
+            int kLen = page.getShort (off + 4), vLen = page.getInt (off + 6);
+            if (page.getInt (off) == hash && kLen == key.length) {
+                boolean same = true;
+                for (int j = 0; j < kLen && same; j++) same = page.get (off + OVERHEAD + j) == key [j];
+                if (same) return off;
+            } // if
+            off += OVERHEAD + kLen + vLen;
+        } // for
+        return -1;
+    } // find
+
+    /********************************************************************************
+     * Delete the record for the key from bucket b.  The page is compacted, and an
+     * emptied overflow page is unlinked and freed.
+     * @return  the value that was associated with the key, or null if not found
+     */
+    private Comparable [] delete (int b, int hash, byte [] key)
+    {
+        ByteBuffer prev = null;
+        int prevNo = -1;
+        for (int p = dir [b]; p != -1; ) {
+            ByteBuffer page = readPage (p);
+            int off = find (page, hash, key);
+            if (off < 0) {
+                prev   = page;
+                prevNo = p;
+                p      = page.getInt (8);
+                continue;
+            } // if
+
+            int len  = OVERHEAD + key.length + page.getInt (off + 6), used = page.getInt (4);
+            Comparable [] old = TupleCodec.decode (bytes (page, off + OVERHEAD + key.length, len - OVERHEAD - key.length));
+            for (int i = off + len; i < used; i++) page.put (i - len, page.get (i));
+            page.putInt (0, page.getInt (0) - 1);
+            page.putInt (4, used - len);
+            if (page.getInt (0) == 0 && prev != null) {
+                prev.putInt (8, page.getInt (8));
+                writePage (prevNo, prev);
+                freePage (p);
+            } else {
+                writePage (p, page);
+            } // if
+            return old;
+        } // for
+        return null;
+    } // delete
+
+    /********************************************************************************
+     * Append a record to bucket b, adding an overflow page if the chain's last page
+     * is full.
+     */
+    private void append (int b, int hash, byte [] key, byte [] value)
+    {
+        int p = dir [b];
+        ByteBuffer page = readPage (p);
+        while (page.getInt (8) != -1) {
+            p    = page.getInt (8);
+            page = readPage (p);
+        } // while
+
+        int len = OVERHEAD + key.length + value.length;
+        if (page.getInt (4) + len > PAGE_SIZE) {
+            int q = allocPage ();
+            page.putInt (8, q);
+            writePage (p, page);
+            p    = q;
+            page = emptyPage ();
+        } // if
+
+        int off = page.getInt (4);
+        page.putInt (off, hash);
+        page.putShort (off + 4, (short) key.length);
+        page.putInt (off + 6, value.length);
+        page.put (off + OVERHEAD, key);
+        page.put (off + OVERHEAD + key.length, value);
+        page.putInt (0, page.getInt (0) + 1);
+        page.putInt (4, off + len);
+        writePage (p, page);
+    } // append
+
+    /********************************************************************************
+     * Split the bucket at the split pointer, rehashing its records between it and
+     * the new bucket split + mod1.  The old chain's pages are freed (and reused).
+     */
+    private void splitBucket ()
+    {
+        List <int []>  hashes  = new ArrayList <> ();
+        List <byte []> records = new ArrayList <> ();
+        for (int p = dir [split]; p != -1; ) {
+            ByteBuffer page = readPage (p);
+            int off = HEADER;
+            for (int r = 0; r < page.getInt (0); r++) {
+                int len = OVERHEAD + page.getShort (off + 4) + page.getInt (off + 6);
+                hashes.add (new int [] { page.getInt (off), page.getShort (off + 4) });
+                records.add (bytes (page, off + OVERHEAD, len - OVERHEAD));
+                off += len;
+            } // for
+            int q = page.getInt (8);
+            freePage (p);
+            p = q;
+        } // for
+
+        int nu = split + mod1;
+        setHome (split, allocPage ());
+        setHome (nu, allocPage ());
+        int mask = 2 * mod1 - 1;
+        for (int r = 0; r < records.size (); r++) {
+            int hash = hashes.get (r) [0], kLen = hashes.get (r) [1];
+            byte [] rec = records.get (r);
+            append (hash & mask, hash, Arrays.copyOfRange (rec, 0, kLen), Arrays.copyOfRange (rec, kLen, rec.length));
+        } // for
+
+        if (++split == mod1) {
+            split = 0;
+            mod1  = 2 * mod1;
+        } // if
+        writeHeader ();                                       // the file now has the new bucket
+    } // splitBucket
+
+    /********************************************************************************
+     * Write the header page: the map's parameters and the directory page numbers.
+     */
+    private void writeHeader ()
+    {
+        ByteBuffer page = ByteBuffer.allocate (PAGE_SIZE);
+        page.putInt (0, MAGIC).putInt (4, PAGE_SIZE).putInt (8, mod1).putInt (12, split)
+            .putInt (16, size).putInt (20, nPages).putInt (24, freeHead);
+        for (int i = 0; i < dirPages.length; i++) page.putInt (DIR_START + 4 * i, dirPages [i]);
+        writePage (0, page);
+    } // writeHeader
+
+    /********************************************************************************
+     * Record p as the home page of bucket b, both in memory and in its directory
+     * page (allocating a new directory page when needed).
+     */
+    private void setHome (int b, int p)
+    {
+        if (b >= dir.length) dir = Arrays.copyOf (dir, 2 * dir.length);
+        dir [b] = p;
+
+        int i = b / DIR_SLOTS;
+        if (i == dirPages.length) {
+            if (i == MAX_DIR_PAGES) throw new IllegalStateException ("DiskLinHashMap: directory is full");
+            dirPages = Arrays.copyOf (dirPages, i + 1);
+            dirPages [i] = allocPage ();
+            writeHeader ();                                   // the header lists the directory pages
+        } // if
+        ByteBuffer entry = ByteBuffer.allocate (4).putInt (0, p);
+        try {
+            file.write (entry, (long) dirPages [i] * PAGE_SIZE + 4 * (b % DIR_SLOTS));
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+    } // setHome
+
+    /********************************************************************************
+     * Return the home bucket for the hash (h, or h2 if already split this round).
+     */
+    private int address (int hash)
+    {
+        int i = hash & (mod1 - 1);
+        return (i < split) ? hash & (2 * mod1 - 1) : i;
+    } // address
+
+    /********************************************************************************
+     * Hash the encoded key.  The hash is stored in the file, so it must not depend on
+     * the JVM (Arrays.hashCode is fully specified).
+     */
+    private static int hash (byte [] key)
+    {
+        int h = Arrays.hashCode (key);
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & 0x7fffffff;
+    } // hash
+
+    /********************************************************************************
+     * Allocate a page, taking it from the free list if possible, and write it out empty.
+     * @return  the page number
+     */
+    private int allocPage ()
+    {
+        int p;
+        if (freeHead != -1) {
+            p        = freeHead;
+            freeHead = readPage (p).getInt (8);
+        } else {
+            p = nPages++;
+        } // if
+        writePage (p, emptyPage ());
+        return p;
+    } // allocPage
+
+    /********************************************************************************
+     * Put page p on the free list (linked through the next field).
+     */
+    private void freePage (int p)
+    {
+        ByteBuffer page = emptyPage ();
+        page.putInt (8, freeHead);
+        writePage (p, page);
+        freeHead = p;
+    } // freePage
+
+    /********************************************************************************
+     * Return an empty bucket page.
+     */
+    private static ByteBuffer emptyPage ()
+    {
+        ByteBuffer page = ByteBuffer.allocate (PAGE_SIZE);
+        page.putInt (0, 0).putInt (4, HEADER).putInt (8, -1);
+        return page;
+    } // emptyPage
+
+    /********************************************************************************
+     * Return a copy of len bytes of the page starting at off.
+     */
+    private static byte [] bytes (ByteBuffer page, int off, int len)
+    {
+        byte [] b = new byte [len];
+        page.get (off, b);
+        return b;
+    } // bytes
+
+    /********************************************************************************
+     * Read page p from the index file.
+     * @param p  the page number
+     * @return  the page's contents
+     */
+    private ByteBuffer readPage (int p)
+    {
+        ByteBuffer page = ByteBuffer.allocate (PAGE_SIZE);
+        try {
+            for (long pos = (long) p * PAGE_SIZE; page.hasRemaining (); ) {
+                if (file.read (page, pos + page.position ()) < 0) break;
+            } // for
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+        reads++;
+        return page.clear ();
+    } // readPage
+
+    /********************************************************************************
+     * Write page p to the index file.
+     * @param p     the page number
+     * @param page  the page's contents
+     */
+    private void writePage (int p, ByteBuffer page)
+    {
+        page.clear ();
+        try {
+            while (page.hasRemaining ()) file.write (page, (long) p * PAGE_SIZE + page.position ());
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+        page.clear ();
+    } // writePage
+
+    /********************************************************************************
+     * Flush the index file before the map (its file name) is serialized, e.g., as the
+     * index of a saved Table.
+     */
+    private void writeObject (ObjectOutputStream oos) throws IOException
+    {
+        flush ();
+        oos.defaultWriteObject ();
+    } // writeObject
+
+    /********************************************************************************
+     * Reopen the index file after the map is deserialized.
+     */
+    private void readObject (ObjectInputStream ois) throws IOException, ClassNotFoundException
+    {
+        ois.defaultReadObject ();
+        open (16, false);
+    } // readObject
+
+    /********************************************************************************
+     * The main method used for testing: build an index file, reopen it, and report
+     * the average number of page reads per lookup.  Then save a table indexed by a
+     * DiskLinHashMap and load it back (reopening its index file).
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main (String [] args)
+    {
+        int totalKeys = 100000;
+        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
+        String fileName = "store" + File.separator + "movie_lh.idx";
+        new File ("store").mkdirs ();
+
+        DiskLinHashMap ht = new DiskLinHashMap (fileName, 4);
+        for (int i = 0; i < totalKeys; i++) {
+            Comparable [] film = { "Movie_" + i, 1900 + i % 120, 90 + i % 60, "genre" + i % 7, "Studio_" + i % 50, i };
+            ht.put (new KeyType ("Movie_" + i, 1900 + i % 120), film);
+        } // for
+        for (int i = 0; i < totalKeys; i += 3) ht.remove (new KeyType ("Movie_" + i, 1900 + i % 120));
+        ht.close ();
+
+        ht = new DiskLinHashMap (fileName);
+        long r0 = ht.pageReads ();
+        int found = 0;
+        for (int i = 0; i < totalKeys; i++) {
+            Comparable [] t = ht.get (new KeyType ("Movie_" + i, 1900 + i % 120));
+            if (t != null) {
+                found++;
+                if (! t [5].equals (i)) out.println ("main: wrong tuple for key " + i);
+            } // if
+        } // for
+        out.println ("size = " + ht.size () + ", found = " + found + ", file pages = " + ht.nPages
+                   + ", buckets = " + (ht.mod1 + ht.split));
+        out.println ("average page reads per lookup = " + (ht.pageReads () - r0) / (double) totalKeys);
+
+        ht.close ();
+
+        Table movie = new Table ("movie_lh", "title year length genre studioName producerNo",
+                                             "String Integer Integer String String Integer", "title year",
+                                             IndexType.DISK_LINHASH_MAP);
+        out.println ("new table: select finds " + movie.select (new KeyType ("Movie_1", 1901)).size () + " tuples");
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        for (int i = 0; i < 1000; i++) {
+            movie.insert (new Comparable [] { "Movie_" + i, 1900 + i % 120, 90 + i % 60, "genre" + i % 7, "Studio_" + i % 50, i });
+        } // for
+        System.setOut (console);
+        movie.save ();
+        Table.load ("movie_lh").select (new KeyType ("Movie_1", 1901)).print ();
+    } // main
+
+} // DiskLinHashMap class
@@ -0,0 +1,238 @@
+
+/*****************************************************************************************
+ * @file  Distinct.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.function.IntSupplier;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The Distinct class eliminates duplicate tuples using hashing, spilling to disk when
+ * there are too many distinct tuples to remember (hybrid hash duplicate elimination).
+ * Tuples are streamed through a hash set; each tuple not seen before is output at once.
+ * Once the set holds maxMem tuples it stops growing: later tuples found in it are
+ * dropped, and the rest are hash partitioned into temporary files (encoded by
+ * TupleCodec).  Each partition is then deduplicated the same way, with a different hash
+ * seed, so that a partition that is still too large is split further.  A spilled tuple
+ * carries its position in the input, so the result can be put back in order of first
+ * occurrence (e.g., a sorted input stays sorted).
+ */
+public class Distinct
+{
+    /** The default maximum number of distinct tuples held in memory at once
+     */
+    static final int MAX_MEM = 500000;
+
+    /** The number of partitions to spill to
+     */
+    private static final int PARTITIONS = 16;
+
+    /** The maximum recursion depth for repartitioning (after that, no more spilling)
+     */
+    private static final int MAX_DEPTH = 6;
+
+    /** The number of partition files spilled to disk
+     */
+    private static int spilled = 0;
+
+    /*************************************************************************************
+     * The distinct tuples found so far, each with its position in the input.
+     */
+    private static class Rows
+    {
+        List <Comparable []> tuples = new ArrayList <> ();
+        int []               pos    = new int [16];
+        boolean              sorted = true;                                 // positions added in increasing order
+
+        void add (Comparable [] t, int p)
+        {
+            int n = tuples.size ();
+            if (n == pos.length) pos = Arrays.copyOf (pos, 2 * n);
+            if (n > 0 && p < pos [n - 1]) sorted = false;
+            pos [n] = p;
+            tuples.add (t);
+        } // add
+
+        /** Return the tuples in order of position: the in-memory ones are, but those
+         *  coming back from partitions are merged in by sorting (position, index) pairs.
+         */
+        List <Comparable []> inOrder ()
+        {
+            if (sorted) return tuples;
+            int n = tuples.size ();
+            long [] order = new long [n];
+            for (int i = 0; i < n; i++) order [i] = (long) pos [i] << 32 | i;
+            Arrays.sort (order);
+            List <Comparable []> result = new ArrayList <> (n);
+            for (long o : order) result.add (tuples.get ((int) o));
+            return result;
+        } // inOrder
+
+    } // Rows class
+
+    /*************************************************************************************
+     * Return the distinct tuples in order of first occurrence.
+     *
+     * @param tuples  the tuples (possibly with duplicates)
+     * @param maxMem  the maximum number of distinct tuples to hold in memory at once
+     * @return  the distinct tuples
+     */
+    public static List <Comparable []> distinct (Iterable <Comparable []> tuples, int maxMem)
+    {
+        Rows  result = new Rows ();
+        int [] next  = { 0 };
+        distinct (tuples.iterator (), () -> next [0]++, Math.max (1, maxMem), 0, result);
+        return result.inOrder ();
+    } // distinct
+
+    /*************************************************************************************
+     * Deduplicate tuples into result, spilling to partition files (with a hash seed that
+     * depends on the recursion depth) once maxMem distinct tuples have been seen.  The
+     * position supplier is called once per tuple and gives its position in the input.
+     */
+    private static void distinct (Iterator <Comparable []> tuples, IntSupplier position, int maxMem, int depth, Rows result)
+    {
+        Set <List <Comparable>> seen = new HashSet <> ();
+        File []             files = null;
+        DataOutputStream [] parts = null;
+
+        try {
+            while (tuples.hasNext ()) {
+                Comparable [] t = tuples.next ();
+                int pos = position.getAsInt ();
+                List <Comparable> key = Arrays.asList (t);
+                if (seen.size () < maxMem || depth >= MAX_DEPTH) {
+                    if (seen.add (key)) result.add (t, pos);
+                } else if (! seen.contains (key)) {
+                    if (parts == null) {
+                        files = new File [PARTITIONS];
+                        parts = new DataOutputStream [PARTITIONS];
+                        for (int p = 0; p < PARTITIONS; p++) {
+                            files [p] = File.createTempFile ("distinct", ".part");
+                            files [p].deleteOnExit ();
+                            parts [p] = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (files [p]), 1 << 14));
+                        } // for
+                        spilled += PARTITIONS;
+                    } // if
+                    DataOutputStream part = parts [partition (key.hashCode (), depth)];
+                    part.writeInt (pos);
+                    TupleCodec.write (part, t);
+                } // if
+            } // for
+            if (parts == null) return;
+            for (DataOutputStream dos : parts) dos.close ();
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("Distinct: cannot spill partition", ex);
+        } // try
+
+        seen = null;                                                        // free the memory for the partitions
+        for (File f : files) {
+            Partition part = new Partition (f);
+            distinct (part, part, maxMem, depth + 1, result);
+            f.delete ();
+        } // for
+    } // distinct
+
+    /*************************************************************************************
+     * Return the partition for a hash code at the given depth (each depth mixes the hash
+     * with a different seed, so a partition is split differently when repartitioned).
+     */
+    private static int partition (int hash, int depth)
+    {
+        int h = (hash ^ (0x9e3779b9 * (depth + 1))) * 0x85ebca6b;
+        h ^= h >>> 15;
+        return (h & 0x7fffffff) % PARTITIONS;
+    } // partition
+
+    /*************************************************************************************
+     * The tuples in a partition file, read one at a time, together with their positions
+     * (getAsInt gives the position of the tuple last returned by next).
+     */
+    private static class Partition implements Iterator <Comparable []>, IntSupplier
+    {
+        private final DataInputStream in;
+        private Comparable []         next;
+        private int                   nextPos, pos;
+
+        Partition (File f)
+        {
+            try {
+                in = new DataInputStream (new BufferedInputStream (new FileInputStream (f), 1 << 14));
+            } catch (IOException ex) {
+                throw new UncheckedIOException ("Distinct: cannot read partition", ex);
+            } // try
+            advance ();
+        } // constructor
+
+        private void advance ()
+        {
+            try {
+                nextPos = in.readInt ();
+                next    = TupleCodec.read (in);
+            } catch (EOFException ex) {
+                try { in.close (); } catch (IOException ex2) { }
+                next = null;
+            } catch (IOException ex) {
+                throw new UncheckedIOException ("Distinct: cannot read partition", ex);
+            } // try
+        } // advance
+
+        public boolean hasNext () { return next != null; }
+
+        public Comparable [] next ()
+        {
+            if (next == null) throw new NoSuchElementException ();
+            Comparable [] t = next;
+            pos = nextPos;
+            advance ();
+            return t;
+        } // next
+
+        public int getAsInt () { return pos; }
+
+    } // Partition class
+
+    /*************************************************************************************
+     * Return the number of partition files spilled to disk so far.
+     */
+    public static int spilled ()
+    {
+        return spilled;
+    } // spilled
+
+    /*************************************************************************************
+     * The main method is used for testing: project a large movie table onto a non-key
+     * attribute, in memory and with a small memory budget (forcing spills), and check that
+     * both results list the tuples in the same order.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 1000000;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        Random rng = new Random (0);
+        List <Comparable []> tuples = new ArrayList <> ();
+        for (int i = 0; i < nTuples; i++) {
+            tuples.add (new Comparable [] { "Studio_" + rng.nextInt (nTuples / 10), 1900 + rng.nextInt (120) % 3 });
+        } // for
+
+        long t0 = System.nanoTime ();
+        List <Comparable []> r1 = distinct (tuples, MAX_MEM);
+        long t1 = System.nanoTime ();
+        List <Comparable []> r2 = distinct (tuples, nTuples / 100);
+        long t2 = System.nanoTime ();
+        Set <List <Comparable>> check = new HashSet <> ();
+        for (Comparable [] t : r2) check.add (Arrays.asList (t));
+        boolean sameOrder = r1.size () == r2.size ();
+        for (int i = 0; sameOrder && i < r1.size (); i++) sameOrder = Arrays.equals (r1.get (i), r2.get (i));
+        out.printf ("distinct = %d/%d (%d unique in spilled result, same order = %b): in memory %d ms, spilling %d ms, %d partition files\n",
+                    r1.size (), r2.size (), check.size (), sameOrder, (t1 - t0) / 1000000, (t2 - t1) / 1000000, spilled);
+    } // main
+
+} // Distinct class
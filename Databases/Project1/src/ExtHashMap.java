@@ -0,0 +1,483 @@
+
+/************************************************************************************
+ * @file ExtHashMap.java
+ *
+ * @author  John Miller
+ */
+
+import java.io.*;
+import java.lang.reflect.Array;
+import static java.lang.System.out;
+import java.util.*;
+
+/************************************************************************************
+ * This class provides hash maps that use the Extendible Hashing algorithm.  Buckets
+ * are found via a directory that has 2^globalDepth entries, indexed by the low
+ * globalDepth bits of the hash.  A bucket with local depth d is shared by the
+ * 2^(globalDepth - d) directory entries that agree on the low d bits.  A full
+ * bucket is split in two (doubling the directory first if its local depth equals
+ * the global depth).  A full bucket whose keys all agree on their hash bits up to
+ * MAX_DEPTH cannot be split usefully (e.g., keys whose hash codes collide), so an
+ * overflow bucket is chained on instead of doubling the directory.
+ */
+public class ExtHashMap <K, V>
+       extends AbstractMap <K, V>
+       implements Serializable, Cloneable, Map <K, V>
+{
+    /** The number of slots (for key-value pairs) per bucket.
+     */
+    private static final int SLOTS = 4;
+
+    /** The maximum global depth (the directory never exceeds 2^MAX_DEPTH entries).
+     */
+    private static final int MAX_DEPTH = 24;
+
+    /** The class for type K.
+     */
+    private final Class <K> classK;
+
+    /** The class for type V.
+     */
+    private final Class <V> classV;
+
+    /********************************************************************************
+     * This inner class defines buckets that are referenced by the directory.
+     */
+    private class Bucket
+            implements Serializable
+    {
+        int    nKeys;
+        int    localDepth;
+        K []   key;
+        V []   value;
+        Bucket next;
+
+        @SuppressWarnings("unchecked")
+        Bucket (int _localDepth)
+        {
+            nKeys      = 0;
+            localDepth = _localDepth;
+            key        = (K []) Array.newInstance (classK, SLOTS);
+            value      = (V []) Array.newInstance (classV, SLOTS);
+        } // constructor
+    } // Bucket inner class
+
+    /** The directory of bucket references.
+     */
+    private final List <Bucket> dir;
+
+    /** The global depth (the directory has 2^globalDepth entries).
+     */
+    private int globalDepth;
+
+    /** Counter for the number buckets accessed (for performance testing).
+     */
+    private int count = 0;
+
+    /** The number of key-value pairs stored in the hash table.
+     */
+    private int size = 0;
+
+    /** The number of distinct buckets (not counting overflow buckets).
+     */
+    private int nBuckets;
+
+    /********************************************************************************
+     * Construct a hash table that uses Extendible Hashing.
+     * @param classK  the class for keys (K)
+     * @param classV  the class for keys (V)
+     */
+    public ExtHashMap (Class <K> _classK, Class <V> _classV)
+    {
+        classK      = _classK;
+        classV      = _classV;
+        dir         = new ArrayList <> ();
+        globalDepth = 0;
+        dir.add (new Bucket (0));
+        nBuckets    = 1;
+    } // constructor
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        Set <Map.Entry <K, V>> enSet = new HashSet <> ();
+
+        for (int i = 0; i < dir.size (); i++) {
+            Bucket home = dir.get (i);
+            if (firstIndex (home, i) != i) continue;     // visit each bucket once
+            for (Bucket b = home; b != null; b = b.next) {
+                for (int j = 0; j < b.nKeys; j++) {
+                    enSet.add (new AbstractMap.SimpleEntry <K, V> (b.key [j], b.value [j]));
+                } // for
+            } // for
+        } // for
+        return enSet;
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value in the hash table.
+     * @param key  the key used for look up
+     * @return  the value associated with the key
+     */
+    public V get (Object key)
+    {
+        if (key == null) return null;
+
+        for (Bucket b = dir.get (h (key)); b != null; b = b.next) {
+            count++;
+            for (int j = 0; j < b.nKeys; j++) {
+                if (key.equals (b.key [j])) return b.value [j];
+            } // for
+        } // for
+        return null;
+    } // get
+
+    /********************************************************************************
+     * Determine whether the hash table contains the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey (Object key)
+    {
+        return get (key) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table.  An existing value for the key is
+     * replaced.  A full bucket is split (doubling the directory when needed) until
+     * the key's bucket has room.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value for this key, or null if there was none
+     */
+    public V put (K key, V value)
+    {
+        if (key == null) throw new NullPointerException ("ExtHashMap.put: null key");
+
+        for (Bucket b = dir.get (h (key)); b != null; b = b.next) {
+            count++;
+            for (int j = 0; j < b.nKeys; j++) {
+                if (key.equals (b.key [j])) {
+                    V old = b.value [j];
+                    b.value [j] = value;
+                    return old;
+                } // if
+            } // for
+        } // for
+
+        Bucket b = dir.get (h (key));
+        while (b.nKeys == SLOTS && b.localDepth < MAX_DEPTH && separable (b)) {
+            if (b.localDepth == globalDepth) doubleDir ();
+            splitBucket (b, h (key));
+            b = dir.get (h (key));
+        } // while
+
+        append (b, key, value);                          // full => overflow chain
+        size++;
+        return null;
+    } // put
+
+    /********************************************************************************
+     * Determine whether splitting bucket b could ever separate its keys, i.e., whether
+     * their hashes differ in some bit from b's local depth up to MAX_DEPTH.
+     * @param b  the full bucket
+     * @return  whether splitting is worthwhile
+     */
+    private boolean separable (Bucket b)
+    {
+        int hk   = hash (b.key [0]);
+        int mask = ((1 << MAX_DEPTH) - 1) & ~((1 << b.localDepth) - 1);
+        for (Bucket c = b; c != null; c = c.next) {
+            for (int j = 0; j < c.nKeys; j++) {
+                if (((hash (c.key [j]) ^ hk) & mask) != 0) return true;
+            } // for
+        } // for
+        return false;
+    } // separable
+
+    /********************************************************************************
+     * Append a key-value pair to bucket b, chaining an overflow bucket if b (and its
+     * chain) is full.
+     * @param b      the home bucket
+     * @param key    the key
+     * @param value  the value
+     */
+    private void append (Bucket b, K key, V value)
+    {
+        while (b.nKeys == SLOTS) {
+            if (b.next == null) b.next = new Bucket (b.localDepth);
+            b = b.next;
+        } // while
+        b.key [b.nKeys]   = key;
+        b.value [b.nKeys] = value;
+        b.nKeys++;
+    } // append
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table.  When the key's bucket and
+     * its buddy (the bucket differing only in the top local-depth bit) fit in one
+     * bucket, they are merged, and the directory is halved while no bucket needs
+     * its full global depth.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if not found
+     */
+    public V remove (Object key)
+    {
+        if (key == null) return null;
+
+        int    i    = h (key);
+        Bucket home = dir.get (i);
+        for (Bucket b = home; b != null; b = b.next) {
+            count++;
+            for (int j = 0; j < b.nKeys; j++) {
+                if (key.equals (b.key [j])) {
+                    V old = b.value [j];
+                    Bucket prev = null, last = home;     // fill the hole from the chain's tail
+                    while (last.next != null) {
+                        prev = last;
+                        last = last.next;
+                    } // while
+                    last.nKeys--;
+                    b.key [j]   = last.key [last.nKeys];
+                    b.value [j] = last.value [last.nKeys];
+                    last.key [last.nKeys]   = null;
+                    last.value [last.nKeys] = null;
+                    if (last.nKeys == 0 && prev != null) prev.next = null;
+                    size--;
+                    merge (i);
+                    return old;
+                } // if
+            } // for
+        } // for
+        return null;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the entries from the hash table, shrinking it to a single bucket.
+     */
+    public void clear ()
+    {
+        dir.clear ();
+        dir.add (new Bucket (0));
+        globalDepth = 0;
+        nBuckets    = 1;
+        size        = 0;
+    } // clear
+
+    /********************************************************************************
+     * Return the size (number of key-value pairs) of the hash table.
+     * @return  the size of the hash table
+     */
+    public int size ()
+    {
+        return size;
+    } // size
+
+    /********************************************************************************
+     * Return the global depth of the directory.
+     * @return  the global depth
+     */
+    public int globalDepth ()
+    {
+        return globalDepth;
+    } // globalDepth
+
+    /********************************************************************************
+     * Return the number of buckets referenced by the directory.
+     * @return  the number of buckets
+     */
+    public int buckets ()
+    {
+        return nBuckets;
+    } // buckets
+
+    /********************************************************************************
+     * Double the directory: the new upper half mirrors the lower half.
+     */
+    private void doubleDir ()
+    {
+        int n = dir.size ();
+        for (int i = 0; i < n; i++) dir.add (dir.get (i));
+        globalDepth++;
+    } // doubleDir
+
+    /********************************************************************************
+     * Split bucket b (with local depth d < globalDepth) by bit d of the hash.  All of
+     * its pairs (including those in its overflow chain) are redistributed into two
+     * new buckets of depth d + 1: b1 for the pairs with that bit clear and b2 for
+     * those with it set.  The directory entries referring to b (those agreeing with
+     * i on the low d bits, i.e., every 2^d-th entry) are repointed at b1 or b2 by
+     * the same bit, so b itself is no longer referenced.
+     * @param b  the bucket to split
+     * @param i  a directory entry referring to b
+     */
+    private void splitBucket (Bucket b, int i)
+    {
+        int    d   = b.localDepth;
+        Bucket b1  = new Bucket (d + 1);
+        Bucket b2  = new Bucket (d + 1);
+        for (Bucket c = b; c != null; c = c.next) {
+            for (int j = 0; j < c.nKeys; j++) {
+                append (((hash (c.key [j]) >>> d & 1) == 0) ? b1 : b2, c.key [j], c.value [j]);
+            } // for
+        } // for
+
+        for (int k = firstIndex (b, i); k < dir.size (); k += 1 << d) {
+            dir.set (k, ((k >>> d & 1) == 0) ? b1 : b2);
+        } // for
+        nBuckets++;
+        count++;
+    } // splitBucket
+
+    /********************************************************************************
+     * Merge the bucket at directory entry i with its buddy if they have the same
+     * local depth and fit in one bucket, then halve the directory while possible.
+     * @param i  the directory entry of the bucket that lost a key
+     */
+    private void merge (int i)
+    {
+        Bucket  b      = dir.get (i);
+        boolean merged = false;
+        while (b.localDepth > 0 && b.next == null) {
+            int    d     = b.localDepth - 1;
+            Bucket buddy = dir.get (i ^ (1 << d));
+            if (buddy == b || buddy.localDepth != b.localDepth || buddy.next != null ||
+                b.nKeys + buddy.nKeys > SLOTS) break;
+
+            Bucket m = new Bucket (d);
+            for (int j = 0; j < b.nKeys; j++) {
+                m.key [m.nKeys]   = b.key [j];
+                m.value [m.nKeys] = b.value [j];
+                m.nKeys++;
+            } // for
+            for (int j = 0; j < buddy.nKeys; j++) {
+                m.key [m.nKeys]   = buddy.key [j];
+                m.value [m.nKeys] = buddy.value [j];
+                m.nKeys++;
+            } // for
+            for (int k = firstIndex (m, i); k < dir.size (); k += 1 << d) dir.set (k, m);
+            nBuckets--;
+            merged = true;
+            b      = m;
+        } // while
+
+        while (merged && globalDepth > 0) {              // halve the directory
+            int half = dir.size () / 2;
+            for (int k = 0; k < half; k++) if (dir.get (k) != dir.get (k + half)) return;
+            for (int k = dir.size () - 1; k >= half; k--) dir.remove (k);
+            globalDepth--;
+        } // while
+    } // merge
+
+    /********************************************************************************
+     * Return the first directory entry (lowest index) that refers to the bucket at
+     * directory entry i, i.e., i restricted to the bucket's low localDepth bits.
+     * @param b  the bucket
+     * @param i  a directory entry referring to b
+     * @return  the first directory entry for b
+     */
+    private int firstIndex (Bucket b, int i)
+    {
+        return i & ((1 << b.localDepth) - 1);
+    } // firstIndex
+
+    /********************************************************************************
+     * Print the hash table.
+     */
+    private void print ()
+    {
+        out.println ("Hash Table (Extendible Hashing)");
+        out.println ("-------------------------------------------");
+
+        for (int i = 0; i < dir.size (); i++) {
+            Bucket home = dir.get (i);
+            out.print ("Dir " + i + " (depth " + home.localDepth + "):");
+            if (firstIndex (home, i) != i) {
+                out.println (" -> Dir " + firstIndex (home, i));
+                continue;
+            } // if
+            for (Bucket b = home; b != null; b = b.next) {
+                out.print (" [");
+                for (int j = 0; j < b.nKeys; j++) out.print (" " + b.key [j] + "=" + b.value [j]);
+                out.print (" ]");
+            } // for
+            out.println ();
+        } // for
+        out.println ("globalDepth = " + globalDepth + ", buckets = " + nBuckets + ", size = " + size);
+
+        out.println ("-------------------------------------------");
+    } // print
+
+    /********************************************************************************
+     * Spread the key's hash code, so that its high bits affect the low bits used to
+     * index the directory.
+     * @param key  the key to hash
+     * @return  the spread hash code
+     */
+    private static int hash (Object key)
+    {
+        int h = key.hashCode ();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    } // hash
+
+    /********************************************************************************
+     * Hash the key to its directory entry using the low globalDepth bits.
+     * @param key  the key to hash
+     * @return  the directory entry for the key
+     */
+    private int h (Object key)
+    {
+        return hash (key) & ((1 << globalDepth) - 1);
+    } // h
+
+    /********************************************************************************
+     * The main method used for testing.  Also compares lookup time and growth with
+     * LinHashMap and TreeMap.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main (String [] args)
+    {
+        int totalKeys = 30;
+        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
+
+        ExtHashMap <Integer, Integer> ht = new ExtHashMap <> (Integer.class, Integer.class);
+        for (int i = 1; i <= totalKeys; i += 2) ht.put (i, i * i);
+
+        ht.print ();
+        for (int i = 0; i <= totalKeys; i++) {
+            out.println ("key = " + i + " value = " + ht.get (i));
+        } // for
+        out.println ("-------------------------------------------");
+        out.println ("Average number of buckets accessed = " + ht.count / (double) totalKeys);
+
+        for (int i = 1; i <= totalKeys; i += 4) ht.remove (i);
+        ht.print ();
+
+        int n = 200000;                                  // compare with LinHashMap and TreeMap
+        Random rng = new Random (0);
+        int [] keys = new int [n];
+        for (int i = 0; i < n; i++) keys [i] = rng.nextInt ();
+        List <Map <Integer, Integer>> maps = Arrays.asList (
+                new ExtHashMap <> (Integer.class, Integer.class),
+                new LinHashMap <> (Integer.class, Integer.class),
+                new TreeMap <> ());
+        for (Map <Integer, Integer> m : maps) {
+            long t0 = System.nanoTime ();
+            for (int i = 0; i < n; i++) m.put (keys [i], i);
+            long t1 = System.nanoTime ();
+            for (int i = 0; i < n; i++) m.get (keys [i]);
+            long t2 = System.nanoTime ();
+            out.printf ("%-12s insert %6.1f ns/key, lookup %6.1f ns/key%n", m.getClass ().getSimpleName (),
+                        (t1 - t0) / (double) n, (t2 - t1) / (double) n);
+        } // for
+        ExtHashMap <Integer, Integer> eh = (ExtHashMap <Integer, Integer>) maps.get (0);
+        out.println ("ExtHashMap: globalDepth = " + eh.globalDepth () + ", buckets = " + eh.buckets ());
+    } // main
+
+} // ExtHashMap class
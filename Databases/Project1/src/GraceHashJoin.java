@@ -0,0 +1,301 @@
+
+/*****************************************************************************************
+ * @file  GraceHashJoin.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The GraceHashJoin class performs equi-joins whose build side (the smaller input) may
+ * not fit in memory.  If it fits (at most maxMem tuples), an in-memory hash join is
+ * done.  Otherwise both inputs are hash partitioned on the join attributes into
+ * temporary files (encoded by TupleCodec), so that matching tuples land in partitions
+ * with the same number, and each pair of partitions is joined in turn.  A build
+ * partition that is still too large (e.g., due to skew) is repartitioned recursively
+ * with a different hash seed; one that cannot be split (all one join value) is joined
+ * by a block nested loop, maxMem build tuples at a time.  Tuples with a null join value
+ * never match, so they are dropped up front, as are probe tuples rejected by a Bloom
+ * filter on the build side's join keys (so they are never spilled).
+ */
+public class GraceHashJoin
+{
+    /** The default maximum number of build tuples held in memory at once
+     */
+    static final int MAX_MEM = 500000;
+
+    /** The maximum number of partitions per pass
+     */
+    private static final int MAX_PARTITIONS = 64;
+
+    /** The maximum recursion depth for repartitioning
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /** The number of partition files written (for testing)
+     */
+    private static int spilled = 0;
+
+    /*************************************************************************************
+     * A source of tuples: a list in memory or a partition file on disk.
+     */
+    private static class Input
+    {
+        final List <Comparable []> list;            // the tuples, if in memory
+        final File                 file;            // else the partition file
+        final long                 size;            // the number of tuples
+
+        Input (List <Comparable []> _list) { list = _list; file = null; size = _list.size (); }
+        Input (File _file, long _size)     { list = null;  file = _file; size = _size; }
+
+        /*********************************************************************************
+         * Return the tuples, read one at a time (from the list or the file).
+         */
+        Iterable <Comparable []> tuples ()
+        {
+            if (list != null) return list;
+            return () -> new Iterator <Comparable []> () {
+                DataInputStream in   = open ();
+                long            left = size;
+
+                public boolean hasNext ()
+                {
+                    if (left > 0) return true;
+                    try { in.close (); } catch (IOException ex) { }
+                    return false;
+                } // hasNext
+
+                public Comparable [] next ()
+                {
+                    if (left-- <= 0) throw new NoSuchElementException ();
+                    try {
+                        return TupleCodec.read (in);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException ("GraceHashJoin: cannot read partition", ex);
+                    } // try
+                } // next
+            };
+        } // tuples
+
+        private DataInputStream open ()
+        {
+            try {
+                return new DataInputStream (new BufferedInputStream (new FileInputStream (file), 1 << 16));
+            } catch (IOException ex) {
+                throw new UncheckedIOException ("GraceHashJoin: cannot open partition", ex);
+            } // try
+        } // open
+
+        void delete ()
+        {
+            if (file != null) file.delete ();
+        } // delete
+    } // Input class
+
+    /*************************************************************************************
+     * Join the tuples of two tables on cols1 = cols2, returning the concatenated tuples
+     * (lhs tuple followed by rhs tuple).
+     *
+     * @param left    the lhs tuples
+     * @param cols1   the lhs join columns
+     * @param right   the rhs tuples
+     * @param cols2   the rhs join columns
+     * @param maxMem  the maximum number of build tuples to hold in memory at once
+     * @return  the joined tuples
+     */
+    public static List <Comparable []> join (List <Comparable []> left, int [] cols1,
+                                             List <Comparable []> right, int [] cols2, int maxMem)
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        boolean buildLhs = left.size () <= right.size ();
+        if (buildLhs) join (new Input (left), cols1, new Input (right), cols2, true, Math.max (1, maxMem), 0, rows);
+        else          join (new Input (right), cols2, new Input (left), cols1, false, Math.max (1, maxMem), 0, rows);
+        return rows;
+    } // join
+
+    /*************************************************************************************
+     * Join a build input with a probe input, adding the results to rows.
+     *
+     * @param build     the build input (the smaller one)
+     * @param bCols     its join columns
+     * @param probe     the probe input
+     * @param pCols     its join columns
+     * @param buildLhs  whether the build input is the lhs of the join
+     * @param maxMem    the memory budget (build tuples)
+     * @param depth     the recursion depth
+     * @param rows      the result tuples
+     */
+    private static void join (Input build, int [] bCols, Input probe, int [] pCols, boolean buildLhs,
+                              int maxMem, int depth, List <Comparable []> rows)
+    {
+        if (build.size <= maxMem) {
+            hashJoin (build.tuples (), bCols, probe.tuples (), pCols, buildLhs, rows);
+            return;
+        } // if
+        if (depth >= MAX_DEPTH) {
+            blockJoin (build, bCols, probe, pCols, buildLhs, maxMem, rows);
+            return;
+        } // if
+
+        int np = (int) Math.min (MAX_PARTITIONS, 2 * build.size / maxMem + 1);
+        BloomFilter bf  = (depth == 0) ? new BloomFilter (build.size, 0.01) : null;
+        Input [] bParts = partition (build, bCols, np, depth, bf, null);
+        Input [] pParts = partition (probe, pCols, np, depth, null, bf);     // probe tuples that cannot join are not spilled
+        if (bf != null) bf.publish ();
+        for (int p = 0; p < np; p++) {
+            if (bParts [p].size > 0 && pParts [p].size > 0) {
+                if (bParts [p].size == build.size) {                        // no progress: one join value
+                    blockJoin (bParts [p], bCols, pParts [p], pCols, buildLhs, maxMem, rows);
+                } else {
+                    join (bParts [p], bCols, pParts [p], pCols, buildLhs, maxMem, depth + 1, rows);
+                } // if
+            } // if
+            bParts [p].delete ();
+            pParts [p].delete ();
+        } // for
+    } // join
+
+    /*************************************************************************************
+     * Join in memory: build a hash table on the build tuples and probe it.
+     */
+    private static void hashJoin (Iterable <Comparable []> build, int [] bCols, Iterable <Comparable []> probe,
+                                  int [] pCols, boolean buildLhs, List <Comparable []> rows)
+    {
+        Map <KeyType, List <Comparable []>> hTable = new HashMap <> ();
+        for (Comparable [] t : build) {
+            KeyType k = keyOf (t, bCols);
+            if (k != null) hTable.computeIfAbsent (k, x -> new ArrayList <> (1)).add (t);
+        } // for
+        for (Comparable [] u : probe) {
+            KeyType k = keyOf (u, pCols);
+            List <Comparable []> matches = (k == null) ? null : hTable.get (k);
+            if (matches == null) continue;
+            for (Comparable [] t : matches) rows.add (buildLhs ? ArrayUtil.concat (t, u) : ArrayUtil.concat (u, t));
+        } // for
+    } // hashJoin
+
+    /*************************************************************************************
+     * Join by block nested loop: hash maxMem build tuples at a time, and scan the probe
+     * input once per block.
+     */
+    private static void blockJoin (Input build, int [] bCols, Input probe, int [] pCols, boolean buildLhs,
+                                   int maxMem, List <Comparable []> rows)
+    {
+        List <Comparable []> block = new ArrayList <> ();
+        for (Comparable [] t : build.tuples ()) {
+            block.add (t);
+            if (block.size () == maxMem) {
+                hashJoin (block, bCols, probe.tuples (), pCols, buildLhs, rows);
+                block = new ArrayList <> ();
+            } // if
+        } // for
+        if (! block.isEmpty ()) hashJoin (block, bCols, probe.tuples (), pCols, buildLhs, rows);
+    } // blockJoin
+
+    /*************************************************************************************
+     * Hash partition an input on its join columns into np temporary files, dropping
+     * tuples with a null join value.  The join keys are added to the Bloom filter add
+     * (when building), and tuples whose keys fail the Bloom filter test are dropped
+     * (when probing).
+     */
+    private static Input [] partition (Input in, int [] cols, int np, int depth, BloomFilter add, BloomFilter test)
+    {
+        File []             files  = new File [np];
+        DataOutputStream [] outs   = new DataOutputStream [np];
+        long []             counts = new long [np];
+        try {
+            for (int p = 0; p < np; p++) {
+                files [p] = File.createTempFile ("grace", ".part");
+                files [p].deleteOnExit ();
+                outs [p]  = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (files [p]), 1 << 14));
+            } // for
+            spilled += np;
+            for (Comparable [] t : in.tuples ()) {
+                KeyType k = keyOf (t, cols);
+                if (k == null || test != null && ! test.mightJoin (t, cols)) continue;
+                if (add != null) add.add (k);
+                int p = bucket (k.hashCode (), depth, np);
+                TupleCodec.write (outs [p], t);
+                counts [p]++;
+            } // for
+            for (DataOutputStream dos : outs) dos.close ();
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("GraceHashJoin: cannot write partition", ex);
+        } // try
+
+        Input [] parts = new Input [np];
+        for (int p = 0; p < np; p++) parts [p] = new Input (files [p], counts [p]);
+        return parts;
+    } // partition
+
+    /*************************************************************************************
+     * Return the partition for a hash code, remixed with a seed that depends on the
+     * depth so each level of repartitioning splits tuples differently.
+     */
+    private static int bucket (int hash, int depth, int np)
+    {
+        int h = (hash + 0x9e3779b9 * depth) * 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h & 0x7fffffff) % np;
+    } // bucket
+
+    /*************************************************************************************
+     * Return the join key of tuple t (null if any join value is null).
+     */
+    private static KeyType keyOf (Comparable [] t, int [] cols)
+    {
+        Comparable [] k = new Comparable [cols.length];
+        for (int j = 0; j < cols.length; j++) {
+            if ((k [j] = t [cols [j]]) == null) return null;
+        } // for
+        return KeyType.wrap (k);
+    } // keyOf
+
+    /*************************************************************************************
+     * Return the number of partition files written so far.
+     */
+    public static int spilled ()
+    {
+        return spilled;
+    } // spilled
+
+    /*************************************************************************************
+     * The main method is used for testing: join movies with studios (some studios
+     * skewed) in memory and with a small memory budget, forcing partitioning.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 400000;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        Random rng = new Random (0);
+        List <Comparable []> movies = new ArrayList <> (), studios = new ArrayList <> ();
+        int nStudios = nTuples / 4;
+        for (int i = 0; i < nTuples; i++) {
+            int s = (i % 10 == 0) ? 0 : rng.nextInt (nStudios);                // studio 0 is skewed
+            movies.add (new Comparable [] { "Movie_" + i, "Studio_" + s });
+        } // for
+        for (int s = 0; s < nStudios; s++) studios.add (new Comparable [] { "Studio_" + s, "Pres_" + s });
+
+        int [] c1 = { 1 }, c2 = { 0 };
+        long t0 = System.nanoTime ();
+        List <Comparable []> r1 = join (movies, c1, studios, c2, MAX_MEM);
+        long t1 = System.nanoTime ();
+        List <Comparable []> r2 = join (movies, c1, studios, c2, nStudios / 50);
+        long t2 = System.nanoTime ();
+        out.printf ("rows = %d/%d: in memory %d ms, partitioned %d ms, %d partition files, bloom eliminated %d of %d\n",
+                    r1.size (), r2.size (), (t1 - t0) / 1000000, (t2 - t1) / 1000000, spilled,
+                    BloomFilter.eliminated (), BloomFilter.tested ());
+
+        List <Comparable []> skew = new ArrayList <> ();                    // all one join value
+        for (int i = 0; i < 2000; i++) skew.add (new Comparable [] { "Movie_" + i, "Studio_0" });
+        out.printf ("skewed rows = %d (expected %d), %d partition files\n",
+                    join (skew, c1, skew, c1, 100).size (), 2000 * 2000, spilled);
+    } // main
+
+} // GraceHashJoin class
@@ -0,0 +1,320 @@
+
+/*****************************************************************************************
+ * @file  GroupBy.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The GroupBy class implements grouping with aggregation (GROUP BY) for Table.groupBy.
+ * The aggregate functions are count, sum, min, max, avg and countDistinct, given as
+ * e.g. "count(*) sum(length) avg(length) countDistinct(genre)".  As in SQL, nulls are
+ * ignored by all but count(*), and form a group of their own.
+ *
+ * Two strategies are used:
+ * (1) hash aggregation: the tuples are split into one part per processor, each part is
+ *     aggregated into its own (thread-local) hash table of partial aggregates, and the
+ *     partial tables are merged at the end;
+ * (2) sort-based (streaming) aggregation: when the tuples are supplied in an order that
+ *     keeps each group together (e.g., by a sorted index whose key begins with the
+ *     grouping attributes), only the current group's aggregates are kept.
+ */
+public class GroupBy
+{
+    /** The minimum number of tuples per part for parallel hash aggregation
+     */
+    private static final int MIN_PART = 50000;
+
+    /*************************************************************************************
+     * The aggregate functions.
+     */
+    enum Func { COUNT, SUM, MIN, MAX, AVG, COUNTDISTINCT }
+
+    /*************************************************************************************
+     * An aggregate: a function applied to a column (-1 for count(*)).
+     */
+    static class Agg
+    {
+        final Func   func;
+        final int    col;
+        final String name;                     // the result attribute name, e.g., sum_length
+
+        Agg (Func _func, int _col, String _name) { func = _func; col = _col; name = _name; }
+    } // Agg class
+
+    /*************************************************************************************
+     * The partial aggregates of one group: for each aggregate, the count of non-null
+     * values, the sum (as a long and a double), the min and max, and the distinct values.
+     */
+    private static class Acc
+    {
+        final long []          cnt;
+        final long []          lsum;
+        final double []        dsum;
+        final Comparable []    min, max;
+        final Set <Object> []  dist;
+
+        @SuppressWarnings("unchecked")
+        Acc (int n)
+        {
+            cnt  = new long [n];
+            lsum = new long [n];
+            dsum = new double [n];
+            min  = new Comparable [n];
+            max  = new Comparable [n];
+            dist = new Set [n];
+        } // constructor
+
+        /*********************************************************************************
+         * Add tuple t to the aggregates.
+         */
+        @SuppressWarnings("unchecked")
+        void add (Comparable [] t, Agg [] aggs)
+        {
+            for (int a = 0; a < aggs.length; a++) {
+                Agg g = aggs [a];
+                if (g.col < 0) { cnt [a]++; continue; }                        // count(*)
+                Comparable v = t [g.col];
+                if (v == null) continue;
+                cnt [a]++;
+                switch (g.func) {
+                case SUM: case AVG:
+                    if (v instanceof Double || v instanceof Float) dsum [a] += ((Number) v).doubleValue ();
+                    else                                           lsum [a] += ((Number) v).longValue ();
+                    break;
+                case MIN: if (min [a] == null || v.compareTo (min [a]) < 0) min [a] = v; break;
+                case MAX: if (max [a] == null || v.compareTo (max [a]) > 0) max [a] = v; break;
+                case COUNTDISTINCT:
+                    if (dist [a] == null) dist [a] = new HashSet <> ();
+                    dist [a].add (v);
+                    break;
+                default:
+                } // switch
+            } // for
+        } // add
+
+        /*********************************************************************************
+         * Merge another group's partial aggregates into these.
+         */
+        @SuppressWarnings("unchecked")
+        void merge (Acc o)
+        {
+            for (int a = 0; a < cnt.length; a++) {
+                cnt [a]  += o.cnt [a];
+                lsum [a] += o.lsum [a];
+                dsum [a] += o.dsum [a];
+                if (o.min [a] != null && (min [a] == null || o.min [a].compareTo (min [a]) < 0)) min [a] = o.min [a];
+                if (o.max [a] != null && (max [a] == null || o.max [a].compareTo (max [a]) > 0)) max [a] = o.max [a];
+                if (o.dist [a] != null) {
+                    if (dist [a] == null) dist [a] = o.dist [a];
+                    else dist [a].addAll (o.dist [a]);
+                } // if
+            } // for
+        } // merge
+
+        /*********************************************************************************
+         * Return the final value of aggregate a.
+         */
+        Comparable result (int a, Agg g, Class [] domain)
+        {
+            boolean real = g.col >= 0 && (domain [g.col] == Double.class || domain [g.col] == Float.class);
+            switch (g.func) {
+            case COUNT:         return cnt [a];
+            case SUM:           return (cnt [a] == 0) ? null : real ? (Comparable) dsum [a] : (Comparable) lsum [a];
+            case AVG:           return (cnt [a] == 0) ? null : (real ? dsum [a] : (double) lsum [a]) / cnt [a];
+            case MIN:           return min [a];
+            case MAX:           return max [a];
+            default:            return (long) ((dist [a] == null) ? 0 : dist [a].size ());
+            } // switch
+        } // result
+    } // Acc class
+
+    /*************************************************************************************
+     * Parse a string of aggregates, e.g., "count(*) sum(length) max(year)".
+     *
+     * @param aggregates  the aggregates
+     * @param table       the table they are over (to look up the columns)
+     * @return  the parsed aggregates
+     */
+    static Agg [] parse (String aggregates, Table table)
+    {
+        List <Agg> aggs = new ArrayList <> ();
+        for (String s : aggregates.trim ().split (" +")) {
+            int lp = s.indexOf ('('), rp = s.lastIndexOf (')');
+            if (lp <= 0 || rp != s.length () - 1) throw new IllegalArgumentException ("groupBy: bad aggregate " + s);
+            Func   func;
+            try {
+                func = Func.valueOf (s.substring (0, lp).toUpperCase ());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException ("groupBy: unknown aggregate function " + s);
+            } // try
+            String attr = s.substring (lp + 1, rp).trim ();
+            if (attr.equals ("*")) {
+                if (func != Func.COUNT) throw new IllegalArgumentException ("groupBy: only count takes *: " + s);
+                aggs.add (new Agg (func, -1, "count"));
+                continue;
+            } // if
+            int col = table.col (attr);
+            if (col < 0) throw new IllegalArgumentException ("groupBy: unknown attribute " + attr);
+            if ((func == Func.SUM || func == Func.AVG) && ! Number.class.isAssignableFrom (table.getDomain () [col])) {
+                throw new IllegalArgumentException ("groupBy: " + func.name ().toLowerCase () + " needs a numeric attribute, but "
+                                                    + attr + " is " + table.getDomain () [col].getSimpleName ());
+            } // if
+            aggs.add (new Agg (func, col, func.name ().toLowerCase ().replace ("countdistinct", "countDistinct") + "_" + attr));
+        } // for
+        return aggs.toArray (new Agg [0]);
+    } // parse
+
+    /*************************************************************************************
+     * Return the domain of each aggregate's result: Long for counts, Long or Double for
+     * sums, Double for averages and the column's domain for min and max.
+     */
+    static Class [] domains (Agg [] aggs, Class [] domain)
+    {
+        Class [] dom = new Class [aggs.length];
+        for (int a = 0; a < aggs.length; a++) {
+            Agg g = aggs [a];
+            switch (g.func) {
+            case SUM: dom [a] = (domain [g.col] == Double.class || domain [g.col] == Float.class) ? Double.class : Long.class; break;
+            case AVG: dom [a] = Double.class; break;
+            case MIN: case MAX: dom [a] = domain [g.col]; break;
+            default:  dom [a] = Long.class;
+            } // switch
+        } // for
+        return dom;
+    } // domains
+
+    /*************************************************************************************
+     * Group the tuples by the given columns using parallel hash aggregation, returning
+     * one row (group values followed by aggregates) per group.
+     *
+     * @param tuples  the tuples to group
+     * @param cols    the grouping columns
+     * @param aggs    the aggregates
+     * @param domain  the domains of the columns
+     * @return  the result rows
+     */
+    static List <Comparable []> hash (List <Comparable []> tuples, int [] cols, Agg [] aggs, Class [] domain)
+    {
+        int n     = tuples.size ();
+        int parts = Math.max (1, Math.min (Runtime.getRuntime ().availableProcessors (), n / MIN_PART));
+
+        Map <List <Comparable>, Acc> groups = IntStream.range (0, parts).parallel ()
+            .mapToObj (p -> partial (tuples.subList ((int) ((long) n * p / parts), (int) ((long) n * (p + 1) / parts)), cols, aggs))
+            .reduce ((m1, m2) -> {
+                Map <List <Comparable>, Acc> big = (m1.size () >= m2.size ()) ? m1 : m2, small = (big == m1) ? m2 : m1;
+                for (Map.Entry <List <Comparable>, Acc> e : small.entrySet ()) {
+                    Acc acc = big.get (e.getKey ());
+                    if (acc == null) big.put (e.getKey (), e.getValue ());
+                    else acc.merge (e.getValue ());
+                } // for
+                return big;
+            }).orElseGet (HashMap::new);
+
+        if (groups.isEmpty () && cols.length == 0) groups.put (List.of (), new Acc (aggs.length));   // one (empty) group
+
+        List <Comparable []> rows = new ArrayList <> (groups.size ());
+        for (Map.Entry <List <Comparable>, Acc> e : groups.entrySet ()) rows.add (row (e.getKey (), e.getValue (), aggs, domain));
+        return rows;
+    } // hash
+
+    /*************************************************************************************
+     * Aggregate one part of the tuples into a hash table of partial aggregates.
+     */
+    private static Map <List <Comparable>, Acc> partial (List <Comparable []> tuples, int [] cols, Agg [] aggs)
+    {
+        Map <List <Comparable>, Acc> groups = new HashMap <> ();
+        for (Comparable [] t : tuples) {
+            Comparable [] g = new Comparable [cols.length];
+            for (int j = 0; j < cols.length; j++) g [j] = t [cols [j]];
+            groups.computeIfAbsent (Arrays.asList (g), k -> new Acc (aggs.length)).add (t, aggs);
+        } // for
+        return groups;
+    } // partial
+
+    /*************************************************************************************
+     * Group tuples that arrive with each group's tuples together (e.g., in key order),
+     * keeping only the current group's aggregates.
+     *
+     * @param tuples  the tuples to group, in an order keeping groups together
+     * @param cols    the grouping columns
+     * @param aggs    the aggregates
+     * @param domain  the domains of the columns
+     * @return  the result rows, in the tuples' order
+     */
+    static List <Comparable []> sorted (Iterable <Comparable []> tuples, int [] cols, Agg [] aggs, Class [] domain)
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        List <Comparable>    cur  = null;
+        Acc                  acc  = null;
+        for (Comparable [] t : tuples) {
+            Comparable [] g = new Comparable [cols.length];
+            for (int j = 0; j < cols.length; j++) g [j] = t [cols [j]];
+            List <Comparable> key = Arrays.asList (g);
+            if (! key.equals (cur)) {
+                if (acc != null) rows.add (row (cur, acc, aggs, domain));
+                cur = key;
+                acc = new Acc (aggs.length);
+            } // if
+            acc.add (t, aggs);
+        } // for
+        if (acc != null) rows.add (row (cur, acc, aggs, domain));
+        else if (cols.length == 0) rows.add (row (List.of (), new Acc (aggs.length), aggs, domain));
+        return rows;
+    } // sorted
+
+    /*************************************************************************************
+     * Return the result row for a group: its values followed by its aggregates.
+     */
+    private static Comparable [] row (List <Comparable> group, Acc acc, Agg [] aggs, Class [] domain)
+    {
+        Comparable [] r = new Comparable [group.size () + aggs.length];
+        for (int j = 0; j < group.size (); j++) r [j] = group.get (j);
+        for (int a = 0; a < aggs.length; a++) r [group.size () + a] = acc.result (a, aggs [a], domain);
+        return r;
+    } // row
+
+    /*************************************************************************************
+     * The main method is used for testing: group a large movie table by studio, both by
+     * hash aggregation and, via a B+Tree index on (studioName, title), sort-based.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 500000;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        Table movie = new Table ("movie", "studioName title year length genre",
+                                          "String String Integer Integer String", "studioName title",
+                                          IndexType.BPTREE_MAP);
+        Random rng = new Random (0);
+        for (int i = 0; i < nTuples; i++) {
+            movie.insert (new Comparable [] { "Studio_" + rng.nextInt (40), "Movie_" + i, 1900 + rng.nextInt (120),
+                                              60 + rng.nextInt (150), "genre" + rng.nextInt (12) });
+        } // for
+
+        String aggs = "count(*) sum(length) avg(length) min(year) max(year) countDistinct(genre)";
+        for (int run = 0; run < 3; run++) {
+            long t0 = System.nanoTime ();
+            Table r1 = movie.groupBy ("genre", aggs);                          // hash
+            long t1 = System.nanoTime ();
+            Table r2 = movie.groupBy ("studioName", aggs);                     // sort-based (key prefix)
+            long t2 = System.nanoTime ();
+            Table r3 = movie.groupBy ("", "count(*) avg(length)");
+            System.setOut (console);
+            out.printf ("groups = %d/%d: hash %d ms, sort-based %d ms\n", r1.size (), r2.size (),
+                        (t1 - t0) / 1000000, (t2 - t1) / 1000000);
+            if (run == 2) { r1.print (); r3.print (); }
+            System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        } // for
+        System.setOut (console);
+    } // main
+
+} // GroupBy class
@@ -0,0 +1,111 @@
+
+/*****************************************************************************************
+ * @file  IndexBench.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The IndexBench class compares the primary index implementations (see IndexType) on
+ * MovieDB-shaped data: the average latency of insert, point select (select (KeyType))
+ * and range select (select (KeyType, KeyType)) for a table using each kind of index.
+ * It then checks that deleting by key removes the tuples from both the index and the
+ * table (a key lookup and a scan must no longer find them).  The RA/DML trace that
+ * Table prints is discarded while timing.
+ */
+class IndexBench
+{
+    /** Attribute names, domains and key of the movie table.
+     */
+    private static final String ATTRS   = "title year length genre studioName producerNo";
+    private static final String DOMAINS = "String Integer Integer String String Integer";
+    private static final String KEY     = "title year";
+
+    /** A print stream that discards everything written to it.
+     */
+    private static final PrintStream NULL = new PrintStream (OutputStream.nullOutputStream ());
+
+    /*************************************************************************************
+     * Make the i-th movie tuple.
+     * @param i  the movie number
+     */
+    private static Comparable [] movie (int i)
+    {
+        return new Comparable [] { String.format ("Movie_%07d", i), 1900 + i % 120, 80 + i % 90,
+                                   "genre" + i % 12, "Studio_" + i % 40, 10000 + i % 500 };
+    } // movie
+
+    /*************************************************************************************
+     * Make the key of the i-th movie.
+     * @param i  the movie number
+     */
+    private static KeyType keyOf (int i)
+    {
+        return new KeyType (String.format ("Movie_%07d", i), 1900 + i % 120);
+    } // keyOf
+
+    /*************************************************************************************
+     * Main method for running the benchmark.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 10000, nPoint = 1000, nRange = 100, width = 50;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+        new File ("store").mkdirs ();
+
+        PrintStream console = System.out;
+        Random rng = new Random (0);
+        int [] perm = new int [nTuples];
+        for (int i = 0; i < nTuples; i++) perm [i] = i;
+        for (int i = nTuples - 1; i > 0; i--) {
+            int j = rng.nextInt (i + 1), t = perm [i];
+            perm [i] = perm [j];
+            perm [j] = t;
+        } // for
+
+        out.println ("tuples = " + nTuples + "; average latency in microseconds");
+        out.printf ("%-18s %10s %14s %14s %10s %8s\n", "index", "insert", "point select", "range select", "rows/range", "deletes");
+
+        for (IndexType type : IndexType.values ()) {
+            for (int run = 0; run < 2; run++) {                              // run 0 warms up the JIT
+                String name = "bench_" + type.name ().toLowerCase ();
+                System.setOut (NULL);
+
+                Table movie = new Table (name, ATTRS, DOMAINS, KEY, type);
+                long t0 = System.nanoTime ();
+                for (int i = 0; i < nTuples; i++) movie.insert (movie (perm [i]));
+                long t1 = System.nanoTime ();
+                for (int i = 0; i < nPoint; i++) movie.select (keyOf (rng.nextInt (nTuples)));
+                long t2 = System.nanoTime ();
+                long rows = 0;
+                for (int i = 0; i < nRange; i++) {
+                    int lo = rng.nextInt (nTuples - width);
+                    rows += movie.select (keyOf (lo), keyOf (lo + width)).size ();
+                } // for
+                long t3 = System.nanoTime ();
+
+                int deleted = 0, found = 0;                                     // check delete (KeyType)
+                for (int i = 0; i < nTuples; i += 100) {
+                    String title = String.format ("Movie_%07d", i);
+                    if (movie.delete (keyOf (i))) deleted++;
+                    found += movie.select (keyOf (i)).size () + movie.select (t -> t [0].equals (title)).size ();
+                } // for
+                boolean ok = deleted == (nTuples + 99) / 100 && movie.size () == nTuples - deleted && found == 0;
+
+                System.setOut (console);
+                new File ("store" + File.separator + name + ".idx").delete ();
+                if (run == 0) continue;
+                out.printf ("%-18s %10.2f %14.2f %14.2f %10.1f %8s\n", type,
+                            (t1 - t0) / 1000.0 / nTuples, (t2 - t1) / 1000.0 / nPoint,
+                            (t3 - t2) / 1000.0 / nRange, rows / (double) nRange, ok ? "ok" : "FAILED");
+            } // for
+        } // for
+    } // main
+
+} // IndexBench class
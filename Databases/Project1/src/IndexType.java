@@ -0,0 +1,56 @@
+
+/*****************************************************************************************
+ * @file  IndexType.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.File;
+import java.util.*;
+
+/*****************************************************************************************
+ * The IndexType enumeration lists the implementations that may be chosen for a table's
+ * primary index (Map from KeyType to tuple).  The sorted indices (TREE_MAP and
+ * BPTREE_MAP) also support range selects; NONE means the table has no index and key
+ * lookups scan the tuples.
+ *
+ * DISK_LINHASH_MAP keeps only the index on disk.  The Table still holds every tuple in
+ * its in-memory list, and the index file holds a second (encoded) copy of each, so a
+ * table too large for the heap cannot be used with any index type, this one included.
+ */
+public enum IndexType
+{
+    TREE_MAP, BPTREE_MAP, LINHASH_MAP, EXTHASH_MAP, DISK_LINHASH_MAP, NONE;
+
+    /*************************************************************************************
+     * Create a new, empty index of this type for the named table (null for NONE).
+     * A DISK_LINHASH_MAP index is kept in the file store/<tableName>.idx, which is
+     * created (or truncated) for the new table; the index of a saved table is instead
+     * reopened when the table is loaded (see Table.load).
+     *
+     * @param tableName  the name of the table to be indexed
+     * @return  the new index
+     */
+    public Map <KeyType, Comparable []> create (String tableName)
+    {
+        switch (this) {
+        case TREE_MAP:         return new TreeMap <> ();
+        case BPTREE_MAP:       return new BpTreeMap <> (KeyType.class, Comparable [].class);
+        case LINHASH_MAP:      return new LinHashMap <> (KeyType.class, Comparable [].class);
+        case EXTHASH_MAP:      return new ExtHashMap <> (KeyType.class, Comparable [].class);
+        case DISK_LINHASH_MAP: return new DiskLinHashMap ("store" + File.separator + tableName + ".idx", 16);
+        default:               return null;
+        } // switch
+    } // create
+
+    /*************************************************************************************
+     * Return whether indices of this type keep their keys sorted (support range selects).
+     *
+     * @return  whether the index is sorted
+     */
+    public boolean isSorted ()
+    {
+        return this == TREE_MAP || this == BPTREE_MAP;
+    } // isSorted
+
+} // IndexType enum
@@ -1,127 +1,291 @@
-
-/*****************************************************************************************
- * @file  KeyType.java
- *
- * @author   John Miller
- * 
- * @see http://leepoint.net/notes-java/data/expressions/22compareobjects.html
- */
-
-import java.io.Serializable;
-
-import static java.lang.System.out;
-
-/*****************************************************************************************
- * The KeyType class provides a key type for handling both non-composite and composite keys.
- * A key is a minimal set of attributes that can be used to uniquely identify a tuple.
- */
-public class KeyType
-       implements Comparable <KeyType>, Serializable
-{
-    /** Array holding the attribute values for a particular key
-     */
-    private final Comparable [] key;
-
-    /*************************************************************************************
-     * Construct an instance of KeyType from a Comparable array.  
-     * @param _key  the primary key
-     */
-    public KeyType (Comparable [] _key)
-    {
-         key = _key;
-    } // constructor
-
-    /*************************************************************************************
-     * Construct an instance of KeyType from a Comparable variable argument list.
-     * @param _key  the primary key
-     */
-    public KeyType (Comparable key0, Comparable ... keys)
-    {
-         key = new Comparable [keys.length + 1];
-         key [0] = key0;
-         for (int i = 1; i < key.length; i++) key [i] = keys [i-1];
-    } // constructor
-
-    /*************************************************************************************
-     * Compare two keys (negative => less than, zero => equals, positive => greater than).
-     * @param k  the other key (to compare with this)
-     * @return  resultant integer that's negative, zero or positive
-     */
-    @SuppressWarnings("unchecked")
-    public int compareTo (KeyType k)
-    {
-        for (int i = 0; i < key.length; i++) {
-            if (key [i].compareTo (k.key [i]) < 0) return -1;
-            if (key [i].compareTo (k.key [i]) > 0) return 1;
-        } // for
-        return 0;
-    } // compareTo
-
-    /*************************************************************************************
-     * Determine whether two keys are equal (equals must agree with compareTo).
-     * @param k  the other key (to compare with this)
-     * @return  true if equal, false otherwise
-     */
-    public boolean equals (KeyType k)
-    {
-        return compareTo (k) == 0;
-    } // equals
-
-    /*************************************************************************************
-     * Compute a hash code for this object (equal objects should produce the same hash code).
-     * @return  an integer hash code value
-     */
-    public int hashCode ()
-    {
-        int sum = 0;
-        for (int i = 0; i < key.length; i++) sum = 7 * sum + key [i].hashCode ();
-        return sum;
-    } // hashCode
-
-    /*************************************************************************************
-     * Convert the key to a string.
-     * @return  the string representation of the key
-     */
-    public String toString ()
-    {
-        String s = "Key (";
-        for (int i = 0; i < key.length; i++) s += " " + key [i];
-        return s + (" )");
-    } // toString
-
-    /*************************************************************************************
-     * The main method is used for testing purposes only.
-     * @param args  the command-line arguments
-     */
-    public static void main (String [] args)
-    {
-        KeyType key1 = new KeyType (new Comparable [] { "Star_Wars_2", 1980 });
-        KeyType key2 = new KeyType (new Comparable [] { "Rocky", 1985 } );
-        KeyType key3 = new KeyType (new Comparable [] { "Star_Wars_2", 1980 });
-
-        out.println ();
-        out.println ("Test the KeyClass");
-        out.println ();
-        out.println ("key1 = " + key1);
-        out.println ("key2 = " + key2);
-        out.println ("key3 = " + key3);
-        out.println ();
-        out.println ("key1 < key2: "  + (key1.compareTo (key2) < 0));
-        out.println ("key1 == key2: " + (key1.compareTo (key2) == 0));
-        out.println ("key1 > key2: "  + (key1.compareTo (key2) > 0));
-        out.println ();
-        out.println ("key2 < key1: "  + (key2.compareTo (key1) < 0));
-        out.println ("key2 == key1: " + (key2.compareTo (key1) == 0));
-        out.println ("key2 > key1: "  + (key2.compareTo (key1) > 0));
-        out.println ();
-        out.println ("key1 < key3: "  + (key1.compareTo (key3) < 0));
-        out.println ("key1 == key3: " + (key1.compareTo (key3) == 0));
-        out.println ("key1 > key3: "  + (key1.compareTo (key3) > 0));
-        out.println ();
-        out.println ("key1.equals (key2): " + key1.equals (key2));
-        out.println ("key1.equals (key3): " + key1.equals (key3));
-        out.println ("key1.hashCode () == key2.hashCode (): " + (key1.hashCode () == key2.hashCode ()));
-        out.println ("key1.hashCode () == key3.hashCode (): " + (key1.hashCode () == key3.hashCode ()));
-    } // main
-
-} // KeyType class
+
+/*****************************************************************************************
+ * @file  KeyType.java
+ *
+ * @author   John Miller
+ * 
+ * @see http://leepoint.net/notes-java/data/expressions/22compareobjects.html
+ */
+
+import java.io.*;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The KeyType class provides a key type for handling both non-composite and composite keys.
+ * A key is a minimal set of attributes that can be used to uniquely identify a tuple.
+ * Keys are immutable, so the hash code is computed once and cached.  A key may also be
+ * converted to a normalized byte encoding whose unsigned lexicographic order agrees with
+ * compareTo, so that two keys can be compared with a single memcmp-style pass.
+ */
+public class KeyType
+       implements Comparable <KeyType>, Serializable
+{
+    /** Array holding the attribute values for a particular key
+     */
+    private final Comparable [] key;
+
+    /** The cached hash code (0 => not yet computed)
+     */
+    private transient int hash;
+
+    /** The cached normalized byte encoding (null => not yet computed)
+     */
+    private transient byte [] bytes;
+
+    /*************************************************************************************
+     * Construct an instance of KeyType from a Comparable array.  The array is copied, so
+     * later changes to it do not affect the key.
+     * @param _key  the primary key
+     */
+    public KeyType (Comparable [] _key)
+    {
+         this (_key, true);
+    } // constructor
+
+    /*************************************************************************************
+     * Construct an instance of KeyType from a Comparable array, copying it if asked.
+     * @param _key  the primary key
+     * @param copy  whether to copy the array
+     */
+    private KeyType (Comparable [] _key, boolean copy)
+    {
+         key = (copy) ? _key.clone () : _key;
+    } // constructor
+
+    /*************************************************************************************
+     * Return a key over the given array without copying it, for internal callers that
+     * have just built the array for this key (e.g., a probe key projected from a tuple).
+     * The key takes over the array, so the caller must not modify it afterwards.
+     * @param _key  the primary key (a new array)
+     * @return  the key
+     */
+    static KeyType wrap (Comparable [] _key)
+    {
+        return new KeyType (_key, false);
+    } // wrap
+
+    /*************************************************************************************
+     * Construct an instance of KeyType from a Comparable variable argument list.
+     * @param _key  the primary key
+     */
+    public KeyType (Comparable key0, Comparable ... keys)
+    {
+         key = new Comparable [keys.length + 1];
+         key [0] = key0;
+         for (int i = 1; i < key.length; i++) key [i] = keys [i-1];
+    } // constructor
+
+    /*************************************************************************************
+     * Compare two keys (negative => less than, zero => equals, positive => greater than).
+     * When one key is a prefix of the other, the shorter key is the smaller.  If both
+     * keys already have their normalized encodings, these are compared instead.
+     * @param k  the other key (to compare with this)
+     * @return  resultant integer that's negative, zero or positive
+     */
+    @SuppressWarnings("unchecked")
+    public int compareTo (KeyType k)
+    {
+        if (bytes != null && k.bytes != null) return Integer.signum (Arrays.compareUnsigned (bytes, k.bytes));
+
+        int n = Math.min (key.length, k.key.length);
+        for (int i = 0; i < n; i++) {
+            int c = key [i].compareTo (k.key [i]);
+            if (c != 0) return c < 0 ? -1 : 1;
+        } // for
+        return Integer.compare (key.length, k.key.length);
+    } // compareTo
+
+    /*************************************************************************************
+     * Compare two keys using their normalized byte encodings (computing and caching them
+     * if need be).  This agrees with compareTo.
+     * @param k  the other key (to compare with this)
+     * @return  resultant integer that's negative, zero or positive
+     */
+    public int compareNormalized (KeyType k)
+    {
+        return Integer.signum (Arrays.compareUnsigned (normalized (), k.normalized ()));
+    } // compareNormalized
+
+    /*************************************************************************************
+     * Return the normalized byte encoding of this key: the attribute values are encoded
+     * one after another so that unsigned lexicographic byte order agrees with compareTo.
+     * Signed numbers have their sign bit flipped (and all bits of negative reals are
+     * flipped), and strings are written as UTF-16 code units with 0x00 escaped as
+     * 0x00 0xFF and terminated by 0x00 0x00, so a string sorts after its prefixes.
+     * The encoding is computed once and cached; it must not be modified.
+     * @return  the normalized encoding
+     */
+    public byte [] normalized ()
+    {
+        if (bytes == null) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream (16 * key.length);
+            DataOutputStream      out = new DataOutputStream (buf);
+            try {
+                for (Comparable v : key) {
+                    if (v instanceof Integer)        out.writeInt ((Integer) v ^ Integer.MIN_VALUE);
+                    else if (v instanceof String)    writeString (buf, (String) v);
+                    else if (v instanceof Long)      out.writeLong ((Long) v ^ Long.MIN_VALUE);
+                    else if (v instanceof Double)    out.writeLong (flip (Double.doubleToLongBits ((Double) v)));
+                    else if (v instanceof Float)     out.writeInt (flip (Float.floatToIntBits ((Float) v)));
+                    else if (v instanceof Short)     out.writeShort ((Short) v ^ Short.MIN_VALUE);
+                    else if (v instanceof Byte)      out.writeByte ((Byte) v ^ Byte.MIN_VALUE);
+                    else if (v instanceof Character) out.writeChar ((Character) v);
+                    else if (v instanceof Boolean)   out.writeBoolean ((Boolean) v);
+                    else throw new IllegalArgumentException ("KeyType.normalized: no normalized encoding for domain "
+                                                             + (v == null ? "null" : v.getClass ().getSimpleName ()));
+                } // for
+            } catch (IOException ex) {
+                throw new UncheckedIOException (ex);          // cannot happen for a byte array
+            } // try
+            bytes = buf.toByteArray ();
+        } // if
+        return bytes;
+    } // normalized
+
+    /*************************************************************************************
+     * Flip the bits of an IEEE double (or float, below) so that its bits sort as unsigned
+     * integers do: the sign bit for non-negative values, all bits for negative values.
+     */
+    private static long flip (long bits)
+    {
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    } // flip
+
+    private static int flip (int bits)
+    {
+        return bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE;
+    } // flip
+
+    /*************************************************************************************
+     * Write the string's UTF-16 code units (big-endian) with each 0x00 byte escaped as
+     * 0x00 0xFF, followed by the terminator 0x00 0x00.
+     */
+    private static void writeString (ByteArrayOutputStream buf, String s)
+    {
+        for (int i = 0; i < s.length (); i++) {
+            char c = s.charAt (i);
+            buf.write (c >>> 8);
+            if ((c >>> 8) == 0) buf.write (0xff);
+            buf.write (c & 0xff);
+            if ((c & 0xff) == 0) buf.write (0xff);
+        } // for
+        buf.write (0);
+        buf.write (0);
+    } // writeString
+
+    /*************************************************************************************
+     * Return the number of attribute values making up this key.
+     * @return  the arity of the key
+     */
+    int arity ()
+    {
+        return key.length;
+    } // arity
+
+    /*************************************************************************************
+     * Return the i-th attribute value of this key.
+     * @param i  the position of the attribute value
+     * @return  the attribute value
+     */
+    Comparable get (int i)
+    {
+        return key [i];
+    } // get
+
+    /*************************************************************************************
+     * Determine whether two keys are equal (equals must agree with compareTo).  Keys
+     * whose attribute values are of different classes (e.g., Integer vs. Long) are not
+     * equal, and are not compared (compareTo would throw a ClassCastException).
+     * @param obj  the other key (to compare with this)
+     * @return  true if equal, false otherwise
+     */
+    public boolean equals (Object obj)
+    {
+        if (this == obj) return true;
+        if (! (obj instanceof KeyType)) return false;
+        KeyType k = (KeyType) obj;
+        if (key.length != k.key.length || hashCode () != k.hashCode ()) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (key [i].getClass () != k.key [i].getClass ()) return false;
+        } // for
+        return compareTo (k) == 0;
+    } // equals
+
+    /*************************************************************************************
+     * Return the hash code for this key (equal objects should produce the same hash code).
+     * It is computed on first use from the attribute values' hash codes, mixed so that
+     * all the bits depend on every value, and then cached.
+     * @return  an integer hash code value
+     */
+    public int hashCode ()
+    {
+        int h = hash;
+        if (h == 0) {
+            for (Comparable v : key) h = 31 * h + v.hashCode ();
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            hash = h;
+        } // if
+        return h;
+    } // hashCode
+
+    /*************************************************************************************
+     * Convert the key to a string.
+     * @return  the string representation of the key
+     */
+    public String toString ()
+    {
+        String s = "Key (";
+        for (int i = 0; i < key.length; i++) s += " " + key [i];
+        return s + (" )");
+    } // toString
+
+    /*************************************************************************************
+     * The main method is used for testing purposes only.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        KeyType key1 = new KeyType (new Comparable [] { "Star_Wars_2", 1980 });
+        KeyType key2 = new KeyType (new Comparable [] { "Rocky", 1985 } );
+        KeyType key3 = new KeyType (new Comparable [] { "Star_Wars_2", 1980 });
+
+        out.println ();
+        out.println ("Test the KeyClass");
+        out.println ();
+        out.println ("key1 = " + key1);
+        out.println ("key2 = " + key2);
+        out.println ("key3 = " + key3);
+        out.println ();
+        out.println ("key1 < key2: "  + (key1.compareTo (key2) < 0));
+        out.println ("key1 == key2: " + (key1.compareTo (key2) == 0));
+        out.println ("key1 > key2: "  + (key1.compareTo (key2) > 0));
+        out.println ();
+        out.println ("key2 < key1: "  + (key2.compareTo (key1) < 0));
+        out.println ("key2 == key1: " + (key2.compareTo (key1) == 0));
+        out.println ("key2 > key1: "  + (key2.compareTo (key1) > 0));
+        out.println ();
+        out.println ("key1 < key3: "  + (key1.compareTo (key3) < 0));
+        out.println ("key1 == key3: " + (key1.compareTo (key3) == 0));
+        out.println ("key1 > key3: "  + (key1.compareTo (key3) > 0));
+        out.println ();
+        out.println ("key1.equals (key2): " + key1.equals (key2));
+        out.println ("key1.equals (key3): " + key1.equals (key3));
+        out.println ("key1.hashCode () == key2.hashCode (): " + (key1.hashCode () == key2.hashCode ()));
+        out.println ("key1.hashCode () == key3.hashCode (): " + (key1.hashCode () == key3.hashCode ()));
+        out.println ();
+        out.println ("key1.compareNormalized (key2): " + key1.compareNormalized (key2));
+        out.println ("key1.compareNormalized (key3): " + key1.compareNormalized (key3));
+        out.println ("key2.compareNormalized (key1): " + key2.compareNormalized (key1));
+
+        Map <KeyType, String> map = new HashMap <> ();
+        map.put (key1, "first");
+        out.println ("map.get (key3): " + map.get (key3));
+    } // main
+
+} // KeyType class
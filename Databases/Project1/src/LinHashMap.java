@@ -1,272 +1,398 @@
-/************************************************************************************
- * @file LinHashMap.java
- *
- * @author  John Miller
- */
-
-import java.io.*;
-import java.lang.reflect.Array;
-import static java.lang.System.out;
-import java.util.*;
-
-/************************************************************************************
- * This class provides hash maps that use the Linear Hashing algorithm.
- * A hash table is created that is an array of buckets.
- */
-public class LinHashMap <K, V>
-       extends AbstractMap <K, V>
-       implements Serializable, Cloneable, Map <K, V>
-{
-    /** The number of slots (for key-value pairs) per bucket.
-     */
-    private static final int SLOTS = 4;
-
-    /** The class for type K.
-     */
-    private final Class <K> classK;
-
-    /** The class for type V.
-     */
-    private final Class <V> classV;
-
-    /********************************************************************************
-     * This inner class defines buckets that are stored in the hash table.
-     */
-    private class Bucket
-    {
-        int    nKeys;
-        K []   key;
-        V []   value;
-        Bucket next;
-
-        @SuppressWarnings("unchecked")
-        Bucket (Bucket n)
-        {
-            nKeys = 0;
-            key   = (K []) Array.newInstance (classK, SLOTS);
-            value = (V []) Array.newInstance (classV, SLOTS);
-            next  = n;
-        } // constructor
-    } // Bucket inner class
-
-    /** The list of buckets making up the hash table.
-     */
-    private final List <Bucket> hTable;
-
-    /** The modulus for low resolution hashing
-     */
-    private int mod1;
-
-    /** The modulus for high resolution hashing
-     */
-    private int mod2;
-
-    /** Counter for the number buckets accessed (for performance testing).
-     */
-    private int count = 0;
-
-    /** The index of the next bucket to split.
-     */
-    private int split = 0;
-
-    /********************************************************************************
-     * Construct a hash table that uses Linear Hashing.
-     * @param classK    the class for keys (K)
-     * @param classV    the class for keys (V)
-     * @param initSize  the initial number of home buckets (a power of 2, e.g., 4)
-     */
-    public LinHashMap (Class <K> _classK, Class <V> _classV)    // , int initSize)
-    {
-        classK = _classK;
-        classV = _classV;
-        hTable = new ArrayList <> ();
-        mod1   = 4;                        // initSize;
-        mod2   = 2 * mod1;
-    } // constructor
-
-    /*
-     * Add buckets to the hash table
-     */
-    public void addBuckets(){
-    	for(int i = 0; i< 10; i++){
-    		Bucket b1 = null;
-    		b1 = new Bucket(b1);
-    		hTable.add(b1);
-    	}
-    }
-    
-    /********************************************************************************
-     * Return a set containing all the entries as pairs of keys and values.
-     * @return  the set view of the map
-     */
-    public Set <Map.Entry <K, V>> entrySet ()
-    {
-        Set <Map.Entry <K, V>> enSet = new HashSet <> ();
-
-        //  T O   B E   I M P L E M E N T E D
-            
-        return enSet;
-    } // entrySet
-
-    /********************************************************************************
-     * Given the key, look up the value in the hash table.
-     * @param key  the key used for look up
-     * @return  the value associated with the key
-     */
-    public V get (Object key)
-    {
-        int i = h (key);
-        V value = null;
-
-        for(int h = 0; h < hTable.size(); h++){     	
-	        for(int j = 0; j < hTable.get(h).key.length; j++)
-	        {
-	        	if(hTable.get(h).key[j] == key){
-	        		value = hTable.get(h).value[j];
-	        	}
-	        }
-        }
-        //  T O   B E   I M P L E M E N T E D
-
-        return value;
-    } // get
-
-    /********************************************************************************
-     * Put the key-value pair in the hash table.
-     * @param key    the key to insert
-     * @param value  the value to insert
-     * @return  null (not the previous value)
-     */
-    public V put (K key, V value)
-    {
-        int i = h (key);
-        boolean inserted = false; //Determine whether to exit loop to add or not
-        out.println ("LinearHashMap.put: key = " + key + ", h() = " + i + ", value = " + value);
-        
-        for(int j = 0; j < hTable.get(i).key.length; j++) // Case of inserting into index i
-        {
-        	if(hTable.get(i).key[j] == null && hTable.get(i).value[j] == null){
-        		count++;
-        		hTable.get(i).key[j] = key;  //adding key
-        		hTable.get(i).value[j] = value; //adding value
-        		inserted = true;
-        		return null;
-        	}
-        }
-        
-        while(inserted == false){
-        	int counter = 1; // Counter to increment the index
-        	for(int j = 0; j < hTable.get(i+counter).key.length; j++){ //Case of index i filled, by open addressing we look for the next available index to insert
-            	if(hTable.get(i+counter).key[j] == null && hTable.get(i+counter).value[j] == null){
-            		count++;
-            		hTable.get(i+counter).key[j] = key; 
-            		hTable.get(i+counter).value[j] = value;
-            		inserted = true;
-            		return null;
-            	}
-        	}
-        	if(i + counter - 1 == hTable.get(i = i - 1).key.length){
-            	for(int j = 0; j < hTable.get(i = i - 1).key.length; j++){ //Case where the index is the last one, then we move to the first index to insert
-                	if(hTable.get(i = i - 1).key[j] == null && hTable.get(i = i - 1).key[j] == null){
-                		count++;
-                		hTable.get(i = i - 1).key[j] = key; 
-                		hTable.get(i = i - 1).value[j] = value;
-                		inserted = true;
-                		return null;
-                	}
-            	}
-        	}
-        	else{
-        		counter++;
-        	}//else
-        }	
-        //  T O   B E   I M P L E M E N T E D
-
-        return null;
-    } // put
-
-    /********************************************************************************
-     * Return the size (SLOTS * number of home buckets) of the hash table. 
-     * @return  the size of the hash table
-     */
-    public int size ()
-    {
-        return SLOTS * (mod1 + split);
-    } // size
-
-    /********************************************************************************
-     * Print the hash table.
-     */
-    private void print ()
-    {
-        out.println ("Hash Table (Linear Hashing)");
-        out.println ("-------------------------------------------");
-
-        for(int h = 0; h < hTable.size(); h++){ //Prints the hash table, everything below
-        	out.println("Bucket" + h);
-        	out.println();
-	        for(int j = 0; j < hTable.get(h).key.length; j++)
-	        {
-	        	
-	        	out.println("index " + j + ": " + hTable.get(h).value[j]);
-	        	
-	        }
-	        out.println("-----------------------------------------------");
-        }
-        
-        //  T O   B E   I M P L E M E N T E D
-
-        out.println ("-------------------------------------------");
-    } // print
-
-    /********************************************************************************
-     * Hash the key using the low resolution hash function.
-     * @param key  the key to hash
-     * @return  the location of the bucket chain containing the key-value pair
-     */
-    private int h (Object key)
-    {
-        return key.hashCode () % mod1;
-    } // h
-
-    /********************************************************************************
-     * Hash the key using the high resolution hash function.
-     * @param key  the key to hash
-     * @return  the location of the bucket chain containing the key-value pair
-     */
-    private int h2 (Object key)
-    {
-        return key.hashCode () % mod2;
-    } // h2
-
-    /********************************************************************************
-     * The main method used for testing.
-     * @param  the command-line arguments (args [0] gives number of keys to insert)
-     */
-    public static void main (String [] args)
-    {
-    	
-        int totalKeys    = 30;
-        boolean RANDOMLY = false;
-        
-        LinHashMap <Integer, Integer> ht = new LinHashMap <> (Integer.class, Integer.class);
-        ht.addBuckets();
-        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
-
-        
-        if (RANDOMLY) {
-            Random rng = new Random ();
-            for (int i = 1; i <= totalKeys; i += 2) ht.put (rng.nextInt (2 * totalKeys), i * i);
-        } else {
-            for (int i = 1; i <= totalKeys; i += 2) ht.put (i, i * i);
-        } // if
-
-        ht.print ();
-        for (int i = 0; i <= totalKeys; i++) {
-            out.println ("key = " + i + " value = " + ht.get (i));
-        } // for
-        out.println ("-------------------------------------------");
-        out.println ("Average number of buckets accessed = " + ht.count / (double) totalKeys);
-    } // main
-
-} // LinHashMap class
+
+/************************************************************************************
+ * @file LinHashMap.java
+ *
+ * @author  John Miller
+ */
+
+import java.io.*;
+import java.lang.reflect.Array;
+import static java.lang.System.out;
+import java.util.*;
+
+/************************************************************************************
+ * This class provides hash maps that use the Linear Hashing algorithm.
+ * A hash table is created that is an array of buckets.  Each home bucket heads a
+ * chain of overflow buckets.  Whenever the load factor is exceeded, the bucket at
+ * the split pointer is split (its keys rehashed with h2 between it and a new bucket
+ * at the end of the table), so the table grows one bucket at a time.
+ */
+public class LinHashMap <K, V>
+       extends AbstractMap <K, V>
+       implements Serializable, Cloneable, Map <K, V>
+{
+    /** The number of slots (for key-value pairs) per bucket.
+     */
+    private static final int SLOTS = 4;
+
+    /** The load factor (keys per slot in the home buckets) that triggers a split.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /** The class for type K.
+     */
+    private final Class <K> classK;
+
+    /** The class for type V.
+     */
+    private final Class <V> classV;
+
+    /********************************************************************************
+     * This inner class defines buckets that are stored in the hash table.
+     */
+    private class Bucket
+            implements Serializable
+    {
+        int    nKeys;
+        K []   key;
+        V []   value;
+        Bucket next;
+
+        @SuppressWarnings("unchecked")
+        Bucket (Bucket n)
+        {
+            nKeys = 0;
+            key   = (K []) Array.newInstance (classK, SLOTS);
+            value = (V []) Array.newInstance (classV, SLOTS);
+            next  = n;
+        } // constructor
+    } // Bucket inner class
+
+    /** The list of buckets making up the hash table.
+     */
+    private final List <Bucket> hTable;
+
+    /** The modulus for low resolution hashing
+     */
+    private int mod1;
+
+    /** The modulus for high resolution hashing
+     */
+    private int mod2;
+
+    /** Counter for the number buckets accessed (for performance testing).
+     */
+    private int count = 0;
+
+    /** The index of the next bucket to split.
+     */
+    private int split = 0;
+
+    /** The number of key-value pairs stored in the hash table.
+     */
+    private int size = 0;
+
+    /********************************************************************************
+     * Construct a hash table that uses Linear Hashing.
+     * @param classK    the class for keys (K)
+     * @param classV    the class for keys (V)
+     * @param initSize  the initial number of home buckets (a power of 2, e.g., 4)
+     */
+    public LinHashMap (Class <K> _classK, Class <V> _classV, int initSize)
+    {
+        if (initSize < 1 || Integer.bitCount (initSize) != 1) {
+            throw new IllegalArgumentException ("LinHashMap: initSize must be a power of 2");
+        } // if
+        classK = _classK;
+        classV = _classV;
+        hTable = new ArrayList <> ();
+        mod1   = initSize;
+        mod2   = 2 * mod1;
+        for (int i = 0; i < mod1; i++) hTable.add (new Bucket (null));
+    } // constructor
+
+    /********************************************************************************
+     * Construct a hash table that uses Linear Hashing, starting with 4 home buckets.
+     * @param classK  the class for keys (K)
+     * @param classV  the class for keys (V)
+     */
+    public LinHashMap (Class <K> _classK, Class <V> _classV)
+    {
+        this (_classK, _classV, 4);
+    } // constructor
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        Set <Map.Entry <K, V>> enSet = new HashSet <> ();
+
+        for (Bucket home : hTable) {
+            for (Bucket b = home; b != null; b = b.next) {
+                for (int j = 0; j < b.nKeys; j++) {
+                    enSet.add (new AbstractMap.SimpleEntry <K, V> (b.key [j], b.value [j]));
+                } // for
+            } // for
+        } // for
+        return enSet;
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value in the hash table.
+     * @param key  the key used for look up
+     * @return  the value associated with the key
+     */
+    public V get (Object key)
+    {
+        if (key == null) return null;
+
+        for (Bucket b = hTable.get (address (key)); b != null; b = b.next) {
+            count++;
+            for (int j = 0; j < b.nKeys; j++) {
+                if (key.equals (b.key [j])) return b.value [j];
+            } // for
+        } // for
+        return null;
+    } // get
+
+    /********************************************************************************
+     * Determine whether the hash table contains the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey (Object key)
+    {
+        return get (key) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table.  An existing value for the key is
+     * replaced.  If the load factor is then exceeded, the next bucket is split.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value for this key, or null if there was none
+     */
+    public V put (K key, V value)
+    {
+        if (key == null) throw new NullPointerException ("LinHashMap.put: null key");
+
+        Bucket home = hTable.get (address (key));
+        Bucket last = home;
+        for (Bucket b = home; b != null; b = b.next) {
+            count++;
+            for (int j = 0; j < b.nKeys; j++) {
+                if (key.equals (b.key [j])) {
+                    V old = b.value [j];
+                    b.value [j] = value;
+                    return old;
+                } // if
+            } // for
+            last = b;
+        } // for
+
+        add (last, key, value);
+        size++;
+        if (size > LOAD_FACTOR * SLOTS * hTable.size ()) split ();
+        return null;
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table.  The hole is filled with
+     * the last pair in the chain, and an emptied overflow bucket is unlinked.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if not found
+     */
+    public V remove (Object key)
+    {
+        if (key == null) return null;
+
+        Bucket home = hTable.get (address (key));
+        for (Bucket b = home; b != null; b = b.next) {
+            count++;
+            for (int j = 0; j < b.nKeys; j++) {
+                if (key.equals (b.key [j])) {
+                    V old = b.value [j];
+                    Bucket prev = null, last = home;                  // find the chain's tail
+                    while (last.next != null && last.next.nKeys > 0) {
+                        prev = last;
+                        last = last.next;
+                    } // while
+                    last.nKeys--;
+                    b.key [j]   = last.key [last.nKeys];
+                    b.value [j] = last.value [last.nKeys];
+                    last.key [last.nKeys]   = null;
+                    last.value [last.nKeys] = null;
+                    if (last.nKeys == 0 && prev != null) prev.next = null;
+                    size--;
+                    return old;
+                } // if
+            } // for
+        } // for
+        return null;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the entries from the hash table, shrinking it back to mod1 buckets.
+     */
+    public void clear ()
+    {
+        while (hTable.size () > mod1) hTable.remove (hTable.size () - 1);
+        for (int i = 0; i < hTable.size (); i++) hTable.set (i, new Bucket (null));
+        split = 0;
+        size  = 0;
+    } // clear
+
+    /********************************************************************************
+     * Return the size (number of key-value pairs) of the hash table.
+     * @return  the size of the hash table
+     */
+    public int size ()
+    {
+        return size;
+    } // size
+
+    /********************************************************************************
+     * Add the key-value pair at the end of the chain whose last bucket is given,
+     * appending an overflow bucket if that bucket is full.
+     * @param last   the last bucket in the chain
+     * @param key    the key to add
+     * @param value  the value to add
+     */
+    private void add (Bucket last, K key, V value)
+    {
+        if (last.nKeys == SLOTS) {
+            last.next = new Bucket (null);
+            last      = last.next;
+        } // if
+        last.key [last.nKeys]   = key;
+        last.value [last.nKeys] = value;
+        last.nKeys++;
+    } // add
+
+    /********************************************************************************
+     * Split the bucket at the split pointer: rehash its chain with h2 so that each
+     * pair stays put or moves to the new bucket (split + mod1) at the end of the
+     * table.  Once every bucket of the current round has been split, start the
+     * next round with the moduli doubled.
+     */
+    private void split ()
+    {
+        Bucket old   = hTable.get (split);
+        Bucket stay  = new Bucket (null), stayLast = stay;
+        Bucket move  = new Bucket (null), moveLast = move;
+
+        for (Bucket b = old; b != null; b = b.next) {
+            count++;
+            for (int j = 0; j < b.nKeys; j++) {
+                if (h2 (b.key [j]) == split) {
+                    add (stayLast, b.key [j], b.value [j]);
+                    if (stayLast.next != null) stayLast = stayLast.next;
+                } else {
+                    add (moveLast, b.key [j], b.value [j]);
+                    if (moveLast.next != null) moveLast = moveLast.next;
+                } // if
+            } // for
+        } // for
+        hTable.set (split, stay);
+        hTable.add (move);
+
+        if (++split == mod1) {
+            split = 0;
+            mod1  = mod2;
+            mod2  = 2 * mod1;
+        } // if
+    } // split
+
+    /********************************************************************************
+     * Return the home bucket for the key: use h, unless that bucket has already been
+     * split in this round, in which case use h2.
+     * @param key  the key to locate
+     * @return  the location of the bucket chain for the key
+     */
+    private int address (Object key)
+    {
+        int i = h (key);
+        return (i < split) ? h2 (key) : i;
+    } // address
+
+    /********************************************************************************
+     * Print the hash table.
+     */
+    private void print ()
+    {
+        out.println ("Hash Table (Linear Hashing)");
+        out.println ("-------------------------------------------");
+
+        for (int i = 0; i < hTable.size (); i++) {
+            out.print ("Bucket " + i + ":");
+            for (Bucket b = hTable.get (i); b != null; b = b.next) {
+                out.print (" [");
+                for (int j = 0; j < b.nKeys; j++) out.print (" " + b.key [j] + "=" + b.value [j]);
+                out.print (" ]");
+            } // for
+            out.println ();
+        } // for
+        out.println ("mod1 = " + mod1 + ", split = " + split + ", size = " + size);
+
+        out.println ("-------------------------------------------");
+    } // print
+
+    /********************************************************************************
+     * Spread the key's hash code, so that its high bits affect the low bits used by
+     * the (power of 2) moduli.
+     * @param key  the key to hash
+     * @return  the non-negative spread hash code
+     */
+    static int hash (Object key)
+    {
+        int h = key.hashCode ();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & 0x7fffffff;
+    } // hash
+
+    /********************************************************************************
+     * Hash the key using the low resolution hash function.
+     * @param key  the key to hash
+     * @return  the location of the bucket chain containing the key-value pair
+     */
+    private int h (Object key)
+    {
+        return hash (key) & (mod1 - 1);
+    } // h
+
+    /********************************************************************************
+     * Hash the key using the high resolution hash function.
+     * @param key  the key to hash
+     * @return  the location of the bucket chain containing the key-value pair
+     */
+    private int h2 (Object key)
+    {
+        return hash (key) & (mod2 - 1);
+    } // h2
+
+    /********************************************************************************
+     * The main method used for testing.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main (String [] args)
+    {
+        int totalKeys    = 30;
+        boolean RANDOMLY = false;
+
+        LinHashMap <Integer, Integer> ht = new LinHashMap <> (Integer.class, Integer.class, 4);
+        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
+
+        if (RANDOMLY) {
+            Random rng = new Random ();
+            for (int i = 1; i <= totalKeys; i += 2) ht.put (rng.nextInt (2 * totalKeys), i * i);
+        } else {
+            for (int i = 1; i <= totalKeys; i += 2) ht.put (i, i * i);
+        } // if
+
+        ht.print ();
+        for (int i = 0; i <= totalKeys; i++) {
+            out.println ("key = " + i + " value = " + ht.get (i));
+        } // for
+        out.println ("-------------------------------------------");
+        out.println ("Average number of buckets accessed = " + ht.count / (double) totalKeys);
+
+        for (int i = 1; i <= totalKeys; i += 4) ht.remove (i);
+        ht.print ();
+        out.println ("Set view -- " + ht.entrySet ());
+    } // main
+
+} // LinHashMap class
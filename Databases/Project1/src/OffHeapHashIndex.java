@@ -0,0 +1,412 @@
+
+/************************************************************************************
+ * @file OffHeapHashIndex.java
+ *
+ * @author  John Miller
+ */
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * This class provides a hash index whose buckets live outside the Java heap, in
+ * direct ByteBuffers, so that a large index adds next to nothing for the garbage
+ * collector to trace.  Keys are stored in their TupleCodec byte encoding and values
+ * are tuple row ids (longs).  Like LinHashMap it uses Linear Hashing: each bucket is
+ * a chain of fixed-size pages, and the bucket at the split pointer is split whenever
+ * the average number of records per bucket exceeds LOAD.
+ * <p>
+ * Page layout: nRecords (int), bytes used (int), next overflow page (int, -1 if none),
+ * followed by records of the form hash (int), key length (short), key bytes, row id
+ * (long).  The only on-heap state is the bucket directory (one int per bucket).
+ */
+public class OffHeapHashIndex
+{
+    /** The size of a page in bytes.
+     */
+    private static final int PAGE_SIZE = 4096;
+
+    /** The number of pages in each direct buffer segment (8 MB segments).
+     */
+    private static final int PAGES_PER_SEG = 2048;
+
+    /** The size of the page header, and the record overhead beyond the key bytes.
+     */
+    private static final int HEADER = 12, OVERHEAD = 14;
+
+    /** The average number of records per bucket that triggers a split.
+     */
+    private static final int LOAD = 64;
+
+    /** Value returned when a key is not found.
+     */
+    public static final long NOT_FOUND = -1;
+
+    /** The direct buffer segments holding the pages.
+     */
+    private final List <ByteBuffer> segs = new ArrayList <> ();
+
+    /** The first page of each bucket chain.
+     */
+    private int [] dir;
+
+    /** The pages that have been freed for reuse.
+     */
+    private int [] free = new int [16];
+
+    /** The number of free pages, and the number of pages ever allocated.
+     */
+    private int nFree = 0, nPages = 0;
+
+    /** The modulus for low resolution hashing.
+     */
+    private int mod1;
+
+    /** The index of the next bucket to split.
+     */
+    private int split = 0;
+
+    /** The number of records in the index.
+     */
+    private int size = 0;
+
+    /********************************************************************************
+     * Construct an off-heap hash index.
+     * @param initSize  the initial number of home buckets (a power of 2, e.g., 4)
+     */
+    public OffHeapHashIndex (int initSize)
+    {
+        if (initSize < 1 || Integer.bitCount (initSize) != 1) {
+            throw new IllegalArgumentException ("OffHeapHashIndex: initSize must be a power of 2");
+        } // if
+        mod1 = initSize;
+        dir  = new int [2 * mod1];
+        for (int i = 0; i < mod1; i++) dir [i] = allocPage ();
+    } // constructor
+
+    /********************************************************************************
+     * Construct an off-heap hash index starting with 16 home buckets.
+     */
+    public OffHeapHashIndex ()
+    {
+        this (16);
+    } // constructor
+
+    /********************************************************************************
+     * Look up the row id for the key.
+     * @param key  the key used for look up
+     * @return  the row id, or NOT_FOUND
+     */
+    public long get (KeyType key)
+    {
+        return get (TupleCodec.encode (key));
+    } // get
+
+    /********************************************************************************
+     * Look up the row id for the encoded key.
+     * @param key  the encoded key
+     * @return  the row id, or NOT_FOUND
+     */
+    public long get (byte [] key)
+    {
+        int hash = hash (key);
+        for (int p = dir [address (hash)]; p != -1; p = next (p)) {
+            int off = find (p, hash, key);
+            if (off >= 0) return buf (p).getLong (off + OVERHEAD - 8 + key.length);
+        } // for
+        return NOT_FOUND;
+    } // get
+
+    /********************************************************************************
+     * Put the key and row id in the index, replacing any existing row id for the key.
+     * @param key    the key
+     * @param rowId  the row id of the tuple with that key
+     * @return  the previous row id, or NOT_FOUND
+     */
+    public long put (KeyType key, long rowId)
+    {
+        return put (TupleCodec.encode (key), rowId);
+    } // put
+
+    /********************************************************************************
+     * Put the encoded key and row id in the index.
+     * @param key    the encoded key
+     * @param rowId  the row id of the tuple with that key
+     * @return  the previous row id, or NOT_FOUND
+     */
+    public long put (byte [] key, long rowId)
+    {
+        if (key.length + OVERHEAD > PAGE_SIZE - HEADER) {
+            throw new IllegalArgumentException ("OffHeapHashIndex.put: key too long");
+        } // if
+        int hash = hash (key), b = address (hash);
+        for (int p = dir [b]; p != -1; p = next (p)) {
+            int off = find (p, hash, key);
+            if (off >= 0) {
+                ByteBuffer buf = buf (p);
+                int  at  = off + OVERHEAD - 8 + key.length;
+                long old = buf.getLong (at);
+                buf.putLong (at, rowId);
+                return old;
+            } // if
+        } // for
+
+        append (b, hash, key, rowId);
+        if (++size > LOAD * (mod1 + split)) splitBucket ();
+        return NOT_FOUND;
+    } // put
+
+    /********************************************************************************
+     * Remove the key from the index.
+     * @param key  the key to remove
+     * @return  the row id that was associated with the key, or NOT_FOUND
+     */
+    public long remove (KeyType key)
+    {
+        return remove (TupleCodec.encode (key));
+    } // remove
+
+    /********************************************************************************
+     * Remove the encoded key from the index.  The page is compacted, and an emptied
+     * overflow page is unlinked and freed.
+     * @param key  the encoded key
+     * @return  the row id that was associated with the key, or NOT_FOUND
+     */
+    public long remove (byte [] key)
+    {
+        int hash = hash (key), b = address (hash), prev = -1;
+        for (int p = dir [b]; p != -1; prev = p, p = next (p)) {
+            int off = find (p, hash, key);
+            if (off < 0) continue;
+
+            ByteBuffer buf = buf (p);
+            int  base = base (p), len = OVERHEAD + key.length, used = buf.getInt (base + 4);
+            long old  = buf.getLong (off + len - 8);
+            for (int i = off + len; i < base + used; i++) buf.put (i - len, buf.get (i));
+            buf.putInt (base, buf.getInt (base) - 1);
+            buf.putInt (base + 4, used - len);
+            if (buf.getInt (base) == 0 && prev != -1) {
+                setNext (prev, next (p));
+                freePage (p);
+            } // if
+            size--;
+            return old;
+        } // for
+        return NOT_FOUND;
+    } // remove
+
+    /********************************************************************************
+     * Return the number of records in the index.
+     * @return  the size of the index
+     */
+    public int size ()
+    {
+        return size;
+    } // size
+
+    /********************************************************************************
+     * Return the number of bytes of off-heap memory allocated to the index.
+     * @return  the off-heap bytes
+     */
+    public long offHeapBytes ()
+    {
+        return (long) segs.size () * PAGES_PER_SEG * PAGE_SIZE;
+    } // offHeapBytes
+
+    /********************************************************************************
+     * Find the record with the given hash and key in page p.
+     * @return  the offset of the record in the page's buffer, or -1 if not there
+     */
+    private int find (int p, int hash, byte [] key)
+    {
+        ByteBuffer buf = buf (p);
+        int base = base (p), n = buf.getInt (base), off = base + HEADER;
+        for (int r = 0; r < n; r++) {
+            int len = buf.getShort (off + 4);
+            if (buf.getInt (off) == hash && len == key.length) {
+                boolean same = true;
+                for (int j = 0; j < len && same; j++) same = buf.get (off + 6 + j) == key [j];
+                if (same) return off;
+            } // if
+            off += OVERHEAD + len;
+        } // for
+        return -1;
+    } // find
+
+    /********************************************************************************
+     * Append a record to bucket b, adding an overflow page if the chain's last page
+     * is full.
+     */
+    private void append (int b, int hash, byte [] key, long rowId)
+    {
+        int p = dir [b];
+        while (next (p) != -1) p = next (p);
+        int len = OVERHEAD + key.length;
+        if (buf (p).getInt (base (p) + 4) + len > PAGE_SIZE) {
+            int q = allocPage ();
+            setNext (p, q);
+            p = q;
+        } // if
+
+        ByteBuffer buf = buf (p);
+        int base = base (p), off = base + buf.getInt (base + 4);
+        buf.putInt (off, hash);
+        buf.putShort (off + 4, (short) key.length);
+        for (int j = 0; j < key.length; j++) buf.put (off + 6 + j, key [j]);
+        buf.putLong (off + 6 + key.length, rowId);
+        buf.putInt (base, buf.getInt (base) + 1);
+        buf.putInt (base + 4, off + len - base);
+    } // append
+
+    /********************************************************************************
+     * Split the bucket at the split pointer, rehashing its records between it and
+     * the new bucket split + mod1.  The records are copied out of the old chain, its
+     * pages are freed, and the records are appended to the two new chains.
+     */
+    private void splitBucket ()
+    {
+        int nu = split + mod1;
+        if (nu >= dir.length) dir = Arrays.copyOf (dir, 2 * dir.length);
+
+        int     n      = 0;
+        int []  hashes = new int [LOAD];
+        long [] rowIds = new long [LOAD];
+        List <byte []> keys = new ArrayList <> ();
+        for (int p = dir [split]; p != -1; ) {
+            ByteBuffer buf = buf (p);
+            int base = base (p), nr = buf.getInt (base), off = base + HEADER;
+            for (int r = 0; r < nr; r++) {
+                int len = buf.getShort (off + 4);
+                byte [] key = new byte [len];
+                for (int j = 0; j < len; j++) key [j] = buf.get (off + 6 + j);
+                if (n == hashes.length) {
+                    hashes = Arrays.copyOf (hashes, 2 * n);
+                    rowIds = Arrays.copyOf (rowIds, 2 * n);
+                } // if
+                hashes [n]   = buf.getInt (off);
+                rowIds [n++] = buf.getLong (off + 6 + len);
+                keys.add (key);
+                off += OVERHEAD + len;
+            } // for
+            int q = next (p);
+            freePage (p);
+            p = q;
+        } // for
+
+        dir [split] = allocPage ();
+        dir [nu]    = allocPage ();
+        int mask = 2 * mod1 - 1;
+        for (int r = 0; r < n; r++) append (hashes [r] & mask, hashes [r], keys.get (r), rowIds [r]);
+
+        if (++split == mod1) {
+            split = 0;
+            mod1  = 2 * mod1;
+        } // if
+    } // splitBucket
+
+    /********************************************************************************
+     * Return the home bucket for the hash (h, or h2 if already split this round).
+     */
+    private int address (int hash)
+    {
+        int i = hash & (mod1 - 1);
+        return (i < split) ? hash & (2 * mod1 - 1) : i;
+    } // address
+
+    /********************************************************************************
+     * Hash the encoded key (32-bit FNV-1a followed by a final mix).
+     */
+    private static int hash (byte [] key)
+    {
+        int h = 0x811c9dc5;
+        for (byte b : key) h = (h ^ (b & 0xff)) * 0x01000193;
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & 0x7fffffff;
+    } // hash
+
+    /********************************************************************************
+     * Return the buffer segment holding page p, and the offset of page p within it.
+     */
+    private ByteBuffer buf (int p)       { return segs.get (p / PAGES_PER_SEG); }
+    private int base (int p)             { return (p % PAGES_PER_SEG) * PAGE_SIZE; }
+    private int next (int p)             { return buf (p).getInt (base (p) + 8); }
+    private void setNext (int p, int q)  { buf (p).putInt (base (p) + 8, q); }
+
+    /********************************************************************************
+     * Allocate an empty page, reusing a freed page if there is one.
+     * @return  the page number
+     */
+    private int allocPage ()
+    {
+        int p;
+        if (nFree > 0) {
+            p = free [--nFree];
+        } else {
+            if (nPages == segs.size () * PAGES_PER_SEG) {
+                segs.add (ByteBuffer.allocateDirect (PAGES_PER_SEG * PAGE_SIZE));
+            } // if
+            p = nPages++;
+        } // if
+        ByteBuffer buf = buf (p);
+        int base = base (p);
+        buf.putInt (base, 0);
+        buf.putInt (base + 4, HEADER);
+        buf.putInt (base + 8, -1);
+        return p;
+    } // allocPage
+
+    /********************************************************************************
+     * Return page p to the free list.
+     * @param p  the page number
+     */
+    private void freePage (int p)
+    {
+        if (nFree == free.length) free = Arrays.copyOf (free, 2 * nFree);
+        free [nFree++] = p;
+    } // freePage
+
+    /********************************************************************************
+     * The main method used for testing: index MovieDB-shaped keys and compare the
+     * heap retained by this index with that of an on-heap HashMap.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main (String [] args)
+    {
+        int totalKeys = 1000000;
+        if (args.length == 1) totalKeys = Integer.valueOf (args [0]);
+
+        Runtime rt = Runtime.getRuntime ();
+        System.gc ();
+        long heap0 = rt.totalMemory () - rt.freeMemory ();
+
+        OffHeapHashIndex idx = new OffHeapHashIndex ();
+        for (int i = 0; i < totalKeys; i++) idx.put (new KeyType ("Movie_Title_" + i, 1900 + i % 120), i);
+        for (int i = 0; i < totalKeys; i += 2) idx.remove (new KeyType ("Movie_Title_" + i, 1900 + i % 120));
+        System.gc ();
+        long heap1 = rt.totalMemory () - rt.freeMemory ();
+
+        int found = 0;
+        for (int i = 0; i < totalKeys; i++) {
+            long r = idx.get (new KeyType ("Movie_Title_" + i, 1900 + i % 120));
+            if (r != NOT_FOUND) {
+                found++;
+                if (r != i) out.println ("main: wrong row id " + r + " for key " + i);
+            } // if
+        } // for
+
+        Map <KeyType, Long> hm = new HashMap <> ();
+        for (int i = 1; i < totalKeys; i += 2) hm.put (new KeyType ("Movie_Title_" + i, 1900 + i % 120), (long) i);
+        System.gc ();
+        long heap2 = rt.totalMemory () - rt.freeMemory ();
+
+        out.println ("records = " + idx.size () + ", found = " + found);
+        out.println ("off-heap index: heap delta = " + (heap1 - heap0) / 1024 + " KB, off-heap = "
+                   + idx.offHeapBytes () / 1024 + " KB");
+        out.println ("on-heap HashMap: heap delta = " + (heap2 - heap1) / 1024 + " KB for " + hm.size () + " keys");
+    } // main
+
+} // OffHeapHashIndex class
@@ -0,0 +1,584 @@
+
+/*****************************************************************************************
+ * @file  Optimizer.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The Optimizer class turns a query plan, written in any order, into an equivalent plan
+ * of lower estimated cost.  The plan is first broken down into its base tables, the
+ * selection conditions on each table, the equi-join predicates between tables and the
+ * output attributes.  A plan is then rebuilt bottom up:
+ *     (1) selections are pushed down onto the base tables they refer to,
+ *     (2) projections are pushed down so that only the attributes needed later (for
+ *         joins or the output) and each table's key are carried through the joins,
+ *     (3) the joins are ordered by dynamic programming over sets of tables (left-deep
+ *         plans, as in System R), and
+ *     (4) each join is given the cheapest of the nested-loop, index, hash and
+ *         sort-merge join methods.
+ * Costs are in tuples handled and are estimated from table sizes, and from each
+ * table's statistics (see TableStats) when it has any, otherwise default selectivities.
+ */
+public class Optimizer
+{
+    /** Default selectivity of a range condition (<, <=, >, >=)
+     */
+    private static final double RANGE_SEL = 1.0 / 3.0;
+
+    /** Default fraction of a table's tuples with distinct values in a non-key column
+     */
+    private static final double DISTINCT_FRAC = 0.1;
+
+    /** The most tuples a hash join may build its hash table on (a memory budget)
+     */
+    static int maxHashRows = 1000000;
+
+    /** Use a Bloom filter on a Grace hash join's probe side when the join is expected to
+     *  produce fewer than this fraction of the probe side's tuples (in memory, probing the
+     *  hash table costs about as much as testing the filter, so only spills gain)
+     */
+    private static final double BLOOM_FRAC = 0.5;
+
+    /** The cost of spilling a tuple to disk and reading it back (Grace hash join)
+     */
+    private static final double SPILL_COST = 4.0;
+
+    /** The number of processors a parallel hash join can use
+     */
+    static int processors = Runtime.getRuntime ().availableProcessors ();
+
+    /** The largest number of tables ordered by dynamic programming (greedy beyond)
+     */
+    private static final int MAX_DP = 12;
+
+    /*************************************************************************************
+     * A sub-plan under construction, together with the global column id of each of its
+     * result attributes.
+     */
+    private static class Sub
+    {
+        final Plan  plan;
+        final int [] ids;
+        final int   leaves;                              // bit set of the leaves joined
+
+        Sub (Plan _plan, int [] _ids, int _leaves) { plan = _plan; ids = _ids; leaves = _leaves; }
+    } // Sub class
+
+    /** The base tables (leaves) of the plan being optimized
+     */
+    private final List <Table> tables = new ArrayList <> ();
+
+    /** The global column id of each leaf's first column (column ids number all the
+     *  columns of all the leaves)
+     */
+    private final List <Integer> offset = new ArrayList <> ();
+
+    /** The selection conditions, with the global column id each refers to
+     */
+    private final List <Condition> conds   = new ArrayList <> ();
+    private final List <Integer>   condIds = new ArrayList <> ();
+
+    /** The equi-join predicates, as pairs of global column ids
+     */
+    private final List <int []> preds = new ArrayList <> ();
+
+    /*************************************************************************************
+     * Return the optimized equivalent of the given plan.
+     *
+     * @param plan  the plan to optimize
+     * @return  the optimized plan (with estimates)
+     */
+    public static Plan optimize (Plan plan)
+    {
+        return new Optimizer ().run (plan);
+    } // optimize
+
+    /*************************************************************************************
+     * Optimize the plan: decompose it, order the joins and fix up the output.
+     */
+    private Plan run (Plan plan)
+    {
+        int []    outIds   = decompose (plan);
+        String [] outNames = plan.schema ();
+        Set <Integer> needed = new HashSet <> ();
+        for (int id : outIds) needed.add (id);
+        for (int [] p : preds) { needed.add (p [0]); needed.add (p [1]); }
+
+        int n = tables.size ();
+        Sub [] leaf = new Sub [n];
+        for (int l = 0; l < n; l++) leaf [l] = leafSub (l, needed);
+
+        Sub best = (n <= MAX_DP) ? orderDP (leaf) : orderGreedy (leaf);
+
+        String [] names = namesOf (best, outIds);
+        Plan result = best.plan;
+        if (! Arrays.equals (names, result.schema ())) {
+            result = estimate (new Plan.Project (result, names), best.plan.rows, best.plan.cost + best.plan.rows);
+        } // if
+        if (! Arrays.equals (names, outNames)) {
+            result = estimate (new Plan.Rename (result, outNames), result.rows, result.cost);
+        } // if
+        return result;
+    } // run
+
+    //-----------------------------------------------------------------------------------
+    // Decomposing the plan
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Record the leaves, conditions and join predicates of plan p.
+     *
+     * @param p  the (sub-)plan to decompose
+     * @return  the global column ids of p's result attributes
+     */
+    private int [] decompose (Plan p)
+    {
+        if (p instanceof Plan.Scan) {
+            Table t = ((Plan.Scan) p).table;
+            int first = offset.isEmpty () ? 0 : offset.get (offset.size () - 1)
+                                              + tables.get (tables.size () - 1).getAttribute ().length;
+            tables.add (t);
+            offset.add (first);
+            int [] ids = new int [t.getAttribute ().length];
+            for (int j = 0; j < ids.length; j++) ids [j] = first + j;
+            return ids;
+        } // if
+
+        if (p instanceof Plan.Select) {
+            Plan.Select s = (Plan.Select) p;
+            int [] ids = decompose (s.child);
+            for (Condition c : s.conds) {
+                conds.add (c);
+                condIds.add (ids [position (s.child.schema (), c.attr)]);
+            } // for
+            return ids;
+        } // if
+
+        if (p instanceof Plan.Project) {
+            Plan.Project pr = (Plan.Project) p;
+            int [] childIds = decompose (pr.child);
+            int [] ids = new int [pr.attrs.length];
+            for (int j = 0; j < ids.length; j++) ids [j] = childIds [position (pr.child.schema (), pr.attrs [j])];
+            return ids;
+        } // if
+
+        if (p instanceof Plan.Rename) return decompose (((Plan.Rename) p).child);
+
+        Plan.Join jn = (Plan.Join) p;
+        int [] lIds = decompose (jn.left), rIds = decompose (jn.right);
+        for (int j = 0; j < jn.attrs1.length; j++) {
+            preds.add (new int [] { lIds [position (jn.left.schema (), jn.attrs1 [j])],
+                                    rIds [position (jn.right.schema (), jn.attrs2 [j])] });
+        } // for
+        int [] ids = Arrays.copyOf (lIds, lIds.length + rIds.length);
+        System.arraycopy (rIds, 0, ids, lIds.length, rIds.length);
+        return ids;
+    } // decompose
+
+    /*************************************************************************************
+     * Return the position of attribute attr in the schema.
+     */
+    private static int position (String [] schema, String attr)
+    {
+        int i = Arrays.asList (schema).indexOf (attr);
+        if (i < 0) throw new IllegalArgumentException ("Optimizer: unknown attribute " + attr);
+        return i;
+    } // position
+
+    //-----------------------------------------------------------------------------------
+    // Building sub-plans
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Build the access plan for leaf l: scan its table, apply its conditions and project
+     * onto the columns needed later and its key.  Keeping the key means the projection
+     * drops no duplicates, so the joins above see as many tuples as in the original
+     * plan, and only the final projection decides which tuples are the same.
+     *
+     * @param l       the leaf number
+     * @param needed  the global ids of the columns needed above the leaves
+     */
+    private Sub leafSub (int l, Set <Integer> needed)
+    {
+        Table     t     = tables.get (l);
+        String [] attrs = t.getAttribute ();
+        double    card  = t.size ();
+        Plan      plan  = estimate (new Plan.Scan (t), card, card);
+
+        List <Condition> mine = new ArrayList <> ();
+        double sel = 1.0;
+        boolean keyed = false;
+        for (int i = 0; i < conds.size (); i++) {
+            if (leafOf (condIds.get (i)) != l) continue;
+            Condition c = conds.get (i).rename (attrs [condIds.get (i) - offset.get (l)]);
+            mine.add (c);
+            sel *= selectivity (c, condIds.get (i));
+            if (c.op == Condition.Op.EQ && t.getKey ().length == 1 && c.attr.equals (t.getKey () [0])
+                && t.getIndexType () != IndexType.NONE) keyed = true;
+        } // for
+        if (! mine.isEmpty ()) {
+            plan = estimate (new Plan.Select (plan, mine.toArray (new Condition [0])), card * sel,
+                             keyed ? probeCost (t) : card);
+        } // if
+
+        List <Integer> ids = new ArrayList <> ();                           // keep the key, so no tuples are merged
+        Set <String>   key = new HashSet <> (Arrays.asList (t.getKey ()));
+        for (int j = 0; j < attrs.length; j++) {
+            if (needed.contains (offset.get (l) + j) || key.contains (attrs [j])) ids.add (offset.get (l) + j);
+        } // for
+        if (ids.size () < attrs.length) {
+            String [] keep = new String [ids.size ()];
+            for (int j = 0; j < keep.length; j++) keep [j] = attrs [ids.get (j) - offset.get (l)];
+            plan = estimate (new Plan.Project (plan, keep), plan.rows, plan.cost + plan.rows);
+        } // if
+        return new Sub (plan, ids.stream ().mapToInt (Integer::intValue).toArray (), 1 << l);
+    } // leafSub
+
+    /*************************************************************************************
+     * Return the cheapest plan joining the sub-plan left with leaf l (as the rhs).
+     *
+     * @param left  the sub-plan for the lhs
+     * @param l     the leaf to join with
+     * @param leaf  the access sub-plans for the leaves
+     */
+    private Sub joinSub (Sub left, int l, Sub [] leaf)
+    {
+        Sub right = leaf [l];
+        List <int []> on = new ArrayList <> ();
+        for (int [] p : preds) {
+            if (inSub (left, p [0]) && leafOf (p [1]) == l) on.add (p);
+            else if (inSub (left, p [1]) && leafOf (p [0]) == l) on.add (new int [] { p [1], p [0] });
+        } // for
+
+        double lRows = left.plan.rows, rRows = right.plan.rows;
+        double rows  = Math.max (1.0, lRows * rRows * joinSelectivity (on, l));
+        double base  = left.plan.cost + right.plan.cost;
+
+        Plan.JoinMethod method = Plan.JoinMethod.NESTED_LOOP;
+        double cost = base + lRows * rRows;
+        if (! on.isEmpty ()) {
+            double hash = base + 2 * (lRows + rRows);
+            if (Math.min (lRows, rRows) <= maxHashRows && hash < cost) {
+                method = Plan.JoinMethod.HASH;
+                cost   = hash;
+                double parallel = base + 3 * (lRows + rRows) / processors;  // partitioning pass, then build and probe
+                if (processors > 1 && Math.min (lRows, rRows) >= ParallelHashJoin.PARALLEL_MIN && parallel < cost) {
+                    method = Plan.JoinMethod.PARALLEL_HASH;
+                    cost   = parallel;
+                } // if
+            } else if (Math.min (lRows, rRows) > maxHashRows && hash + SPILL_COST * (lRows + rRows) < cost) {
+                method = Plan.JoinMethod.GRACE_HASH;                       // partitions written and read back
+                cost   = hash + SPILL_COST * (lRows + rRows);
+            } // if
+            double merge = base + sortCost (lRows) + sortCost (rRows) + lRows + rRows;
+            if (merge < cost) {
+                method = Plan.JoinMethod.SORT_MERGE;
+                cost   = merge;
+            } // if
+            Table t = tables.get (l);
+            if (usesIndex (on, l)) {
+                double index = left.plan.cost + lRows * probeCost (t);
+                if (index < cost) {
+                    method = Plan.JoinMethod.INDEX;
+                    cost   = index;
+                    right  = rawSub (l);
+                } // if
+            } // if
+        } // if
+
+        String [] a1 = new String [on.size ()], a2 = new String [on.size ()];
+        for (int j = 0; j < on.size (); j++) {
+            a1 [j] = nameOf (left, on.get (j) [0]);
+            a2 [j] = nameOf (right, on.get (j) [1]);
+        } // for
+        int [] ids = Arrays.copyOf (left.ids, left.ids.length + right.ids.length);
+        System.arraycopy (right.ids, 0, ids, left.ids.length, right.ids.length);
+
+        Plan.Join join = new Plan.Join (left.plan, right.plan, a1, a2, method);
+        join.bloom = method == Plan.JoinMethod.GRACE_HASH
+                     && rows < BLOOM_FRAC * Math.max (lRows, rRows);       // most probe tuples will not join
+        Plan plan = estimate (join, rows, cost + rows);
+        return new Sub (plan, ids, left.leaves | (1 << l));
+    } // joinSub
+
+    /*************************************************************************************
+     * Return the sub-plan scanning all of leaf l's table (the rhs of an index join).
+     */
+    private Sub rawSub (int l)
+    {
+        Table t = tables.get (l);
+        int [] ids = new int [t.getAttribute ().length];
+        for (int j = 0; j < ids.length; j++) ids [j] = offset.get (l) + j;
+        return new Sub (estimate (new Plan.Scan (t), t.size (), 0), ids, 1 << l);
+    } // rawSub
+
+    /*************************************************************************************
+     * Determine whether the join predicates allow an index join into leaf l: the leaf
+     * must be unfiltered and indexed, and the predicates must cover exactly its key.
+     */
+    private boolean usesIndex (List <int []> on, int l)
+    {
+        Table t = tables.get (l);
+        if (t.getIndexType () == IndexType.NONE || condIds.stream ().anyMatch (id -> leafOf (id) == l)) return false;
+        Set <String> cols = new HashSet <> ();
+        for (int [] p : on) cols.add (t.getAttribute () [p [1] - offset.get (l)]);
+        return cols.equals (new HashSet <> (Arrays.asList (t.getKey ()))) && on.size () == cols.size ();
+    } // usesIndex
+
+    //-----------------------------------------------------------------------------------
+    // Join ordering
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Order the joins by dynamic programming: the best plan for each set of leaves is
+     * the cheapest way of joining the best plan for a subset with one more leaf.
+     * Cross products are only considered when no joined leaf is connected.
+     */
+    private Sub orderDP (Sub [] leaf)
+    {
+        int n = leaf.length;
+        Sub [] best = new Sub [1 << n];
+        for (int l = 0; l < n; l++) best [1 << l] = leaf [l];
+
+        for (int mask = 1; mask < (1 << n); mask++) {
+            if (Integer.bitCount (mask) < 2) continue;
+            boolean anyConnected = false;
+            for (int l = 0; l < n; l++) {
+                if ((mask & (1 << l)) != 0 && best [mask ^ (1 << l)] != null
+                    && connected (mask ^ (1 << l), l)) anyConnected = true;
+            } // for
+            for (int l = 0; l < n; l++) {
+                int rest = mask ^ (1 << l);
+                if ((mask & (1 << l)) == 0 || best [rest] == null) continue;
+                if (anyConnected && ! connected (rest, l)) continue;
+                Sub s = joinSub (best [rest], l, leaf);
+                if (best [mask] == null || s.plan.cost < best [mask].plan.cost) best [mask] = s;
+            } // for
+        } // for
+        return best [(1 << n) - 1];
+    } // orderDP
+
+    /*************************************************************************************
+     * Order the joins greedily (for many tables): start from the smallest leaf and
+     * repeatedly add the leaf giving the cheapest join.
+     */
+    private Sub orderGreedy (Sub [] leaf)
+    {
+        int first = 0;
+        for (int l = 1; l < leaf.length; l++) if (leaf [l].plan.rows < leaf [first].plan.rows) first = l;
+        Sub cur = leaf [first];
+        while (cur.leaves != (1 << leaf.length) - 1) {
+            Sub next = null;
+            for (int l = 0; l < leaf.length; l++) {
+                if ((cur.leaves & (1 << l)) != 0) continue;
+                Sub s = joinSub (cur, l, leaf);
+                if (next == null || s.plan.cost < next.plan.cost) next = s;
+            } // for
+            cur = next;
+        } // while
+        return cur;
+    } // orderGreedy
+
+    /*************************************************************************************
+     * Determine whether some join predicate links a leaf in mask with leaf l.
+     */
+    private boolean connected (int mask, int l)
+    {
+        for (int [] p : preds) {
+            int a = leafOf (p [0]), b = leafOf (p [1]);
+            if ((a == l && (mask & (1 << b)) != 0) || (b == l && (mask & (1 << a)) != 0)) return true;
+        } // for
+        return false;
+    } // connected
+
+    //-----------------------------------------------------------------------------------
+    // Estimation
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Return the estimated number of distinct values in the column with the given id:
+     * from the table's statistics if it has any, otherwise the table size for a
+     * single-attribute key, and DISTINCT_FRAC of it for other columns.
+     */
+    double distinct (int id)
+    {
+        Table t = tables.get (leafOf (id));
+        int   j = id - offset.get (leafOf (id));
+        if (hasStats (t)) return Math.max (1.0, t.getStats ().distinct (j));
+        if (t.getKey ().length == 1 && t.getKey () [0].equals (t.getAttribute () [j])) return Math.max (1, t.size ());
+        return Math.max (1.0, DISTINCT_FRAC * t.size ());
+    } // distinct
+
+    /*************************************************************************************
+     * Return the estimated selectivity (fraction of tuples kept) of condition c on the
+     * column with the given id: from the table's statistics (histograms) if it has any,
+     * otherwise using default selectivities.
+     */
+    double selectivity (Condition c, int id)
+    {
+        Table t = tables.get (leafOf (id));
+        if (hasStats (t) && ! (c.value instanceof Condition.Param)) return t.getStats ().selectivity (id - offset.get (leafOf (id)), c.op, c.value);
+
+        switch (c.op) {
+        case EQ: return 1.0 / distinct (id);
+        case NE: return 1.0 - 1.0 / distinct (id);
+        default: return RANGE_SEL;
+        } // switch
+    } // selectivity
+
+    /*************************************************************************************
+     * Determine whether table t has statistics to estimate with.
+     */
+    private static boolean hasStats (Table t)
+    {
+        return t.getStats () != null && t.getStats ().count () > 0;
+    } // hasStats
+
+    /*************************************************************************************
+     * Return the estimated selectivity of the join predicates on (left id, leaf l id):
+     * 1 / |l| when they cover l's key, otherwise the product of 1 / max distinct values.
+     */
+    private double joinSelectivity (List <int []> on, int l)
+    {
+        if (on.isEmpty ()) return 1.0;
+        Table t = tables.get (l);
+        Set <String> cols = new HashSet <> ();
+        for (int [] p : on) cols.add (t.getAttribute () [p [1] - offset.get (l)]);
+        if (cols.containsAll (Arrays.asList (t.getKey ()))) return 1.0 / Math.max (1, t.size ());
+
+        double sel = 1.0;
+        for (int [] p : on) sel /= Math.max (distinct (p [0]), distinct (p [1]));
+        return sel;
+    } // joinSelectivity
+
+    /*************************************************************************************
+     * Return the cost of sorting n tuples.
+     */
+    private static double sortCost (double n)
+    {
+        return (n < 2) ? n : n * Math.log (n) / Math.log (2);
+    } // sortCost
+
+    /*************************************************************************************
+     * Return the cost of one probe of table t's index.
+     */
+    private static double probeCost (Table t)
+    {
+        double n = Math.max (2, t.size ());
+        switch (t.getIndexType ()) {
+        case TREE_MAP: case BPTREE_MAP: return Math.log (n) / Math.log (2);
+        case DISK_LINHASH_MAP:          return 8;        // a page read (and decode)
+        default:                        return 2;
+        } // switch
+    } // probeCost
+
+    /*************************************************************************************
+     * Set the estimates of a plan node and return it.
+     */
+    private static Plan estimate (Plan p, double rows, double cost)
+    {
+        p.rows = rows;
+        p.cost = cost;
+        return p;
+    } // estimate
+
+    //-----------------------------------------------------------------------------------
+    // Column ids
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Return the leaf holding the column with the given global id.
+     */
+    private int leafOf (int id)
+    {
+        int l = offset.size () - 1;
+        while (offset.get (l) > id) l--;
+        return l;
+    } // leafOf
+
+    /*************************************************************************************
+     * Determine whether the column with the given id is among sub-plan s's attributes.
+     */
+    private static boolean inSub (Sub s, int id)
+    {
+        for (int i : s.ids) if (i == id) return true;
+        return false;
+    } // inSub
+
+    /*************************************************************************************
+     * Return the name the column with the given id has in sub-plan s's result.
+     */
+    private static String nameOf (Sub s, int id)
+    {
+        String [] schema = s.plan.schema ();
+        for (int j = 0; j < s.ids.length; j++) if (s.ids [j] == id) return schema [j];
+        throw new IllegalStateException ("Optimizer: column " + id + " is not in the sub-plan");
+    } // nameOf
+
+    /*************************************************************************************
+     * Return the names the columns with the given ids have in sub-plan s's result.
+     */
+    private static String [] namesOf (Sub s, int [] ids)
+    {
+        String [] names = new String [ids.length];
+        for (int j = 0; j < ids.length; j++) names [j] = nameOf (s, ids [j]);
+        return names;
+    } // namesOf
+
+    /*************************************************************************************
+     * The main method is used for testing: the same query, written in two different
+     * orders, is optimized into the same plan and gives the same result as executing
+     * it as written.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        Table movie = new Table ("movie", "title year length genre studioName producerNo",
+                                          "String Integer Integer String String Integer", "title year");
+        Table studio = new Table ("studio", "name address presNo", "String String Integer", "name");
+        Table movieExec = new Table ("movieExec", "certNo name address fee",
+                                                  "Integer String String Float", "certNo");
+
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        for (int i = 0; i < 2000; i++) {
+            movie.insert (new Comparable [] { "Movie_" + i, 1950 + i % 70, 80 + i % 60, "genre" + i % 8,
+                                              "Studio_" + i % 50, 1000 + i % 300 });
+        } // for
+        for (int i = 0; i < 50; i++) studio.insert (new Comparable [] { "Studio_" + i, "Addr_" + i, 1000 + i });
+        for (int i = 0; i < 300; i++) movieExec.insert (new Comparable [] { 1000 + i, "Exec_" + i, "Home_" + i, 1e5f * (i % 7) });
+        movie.analyze ();
+        System.setOut (console);
+
+        Plan q1 = Plan.scan (movie).join ("producerNo", "certNo", movieExec)
+                                   .join ("studioName", "name", Plan.scan (studio))
+                                   .select (new Condition ("year", "==", 1977), new Condition ("fee", ">", 2e5f))
+                                   .project ("title name name2 presNo");
+        Plan q2 = Plan.scan (studio).join ("name", "studioName", Plan.scan (movie).select (new Condition ("year", "==", 1977)))
+                                    .join ("producerNo", "certNo", movieExec)
+                                    .select (new Condition ("fee", ">", 2e5f))
+                                    .project ("title name2 name presNo");
+
+        out.println ("Query 1 as written:\n" + q1);
+        Plan p1 = q1.optimize ();
+        out.println ("Query 1 optimized:\n" + p1);
+        out.println ("Query 2 optimized:\n" + q2.optimize ());
+
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        long t0 = System.nanoTime ();
+        Table r1 = q1.execute ();
+        long t1 = System.nanoTime ();
+        Table r2 = p1.execute ();
+        long t2 = System.nanoTime ();
+        System.setOut (console);
+        out.println ("as written: " + r1.size () + " rows in " + (t1 - t0) / 1000000 + " ms; optimized: "
+                   + r2.size () + " rows in " + (t2 - t1) / 1000000 + " ms");
+        r2.print ();
+    } // main
+
+} // Optimizer class
@@ -0,0 +1,281 @@
+
+/*****************************************************************************************
+ * @file  ParallelHashJoin.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.stream.IntStream;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The ParallelHashJoin class performs in-memory equi-joins on all processors using a
+ * radix-partitioned hash join.
+ *
+ * (1) Partition: each input is split into one chunk per processor.  Each worker hashes
+ *     its chunk's join keys and counts the tuples falling in each partition (by the low
+ *     bits of the hash); prefix sums of the counts give every worker its own region of
+ *     each partition, so the workers then scatter their tuples (and hashes) into one
+ *     shared array without any locking.
+ * (2) Build and probe: the partitions are joined independently (in parallel), each by a
+ *     small chained hash table on its build tuples, using the higher hash bits.  The
+ *     number of partitions is chosen so a partition's hash table is small enough to stay
+ *     in the processor cache (and there are several partitions per processor).
+ * (3) The per-partition results are concatenated.
+ *
+ * Tuples with a null join value never match.
+ */
+public class ParallelHashJoin
+{
+    /** The minimum size of the smaller input for a parallel join to pay off
+     */
+    static final int PARALLEL_MIN = 100000;
+
+    /** The target number of build tuples per partition (a cache-sized hash table)
+     */
+    private static final int PART_TUPLES = 4096;
+
+    /** The maximum number of radix bits (the fan-out of the single partitioning pass)
+     */
+    private static final int MAX_BITS = 12;
+
+    /** The minimum number of tuples per chunk when partitioning
+     */
+    private static final int MIN_CHUNK = 10000;
+
+    /*************************************************************************************
+     * A radix-partitioned input: the tuples and their hashes, grouped by partition, with
+     * partition q at positions start [q] until start [q+1].
+     */
+    private static class Partitioned
+    {
+        final Comparable [][] tuples;
+        final int []          hashes;
+        final int []          start;
+
+        Partitioned (Comparable [][] _tuples, int [] _hashes, int [] _start) { tuples = _tuples; hashes = _hashes; start = _start; }
+    } // Partitioned class
+
+    /*************************************************************************************
+     * Join the tuples of two tables on cols1 = cols2, returning the concatenated tuples
+     * (lhs tuple followed by rhs tuple).
+     *
+     * @param left   the lhs tuples
+     * @param cols1  the lhs join columns
+     * @param right  the rhs tuples
+     * @param cols2  the rhs join columns
+     * @return  the joined tuples
+     */
+    public static List <Comparable []> join (List <Comparable []> left, int [] cols1,
+                                             List <Comparable []> right, int [] cols2)
+    {
+        return join (left, cols1, right, cols2, ArrayUtil::concat);
+    } // join
+
+    /*************************************************************************************
+     * Join the tuples of two tables on cols1 = cols2, forming each result tuple from a
+     * matching pair with the combine function.
+     *
+     * @param left     the lhs tuples
+     * @param cols1    the lhs join columns
+     * @param right    the rhs tuples
+     * @param cols2    the rhs join columns
+     * @param combine  the function forming a result tuple from a lhs and a rhs tuple
+     * @return  the joined tuples
+     */
+    public static List <Comparable []> join (List <Comparable []> left, int [] cols1, List <Comparable []> right,
+                                             int [] cols2, BinaryOperator <Comparable []> combine)
+    {
+        boolean buildLhs = left.size () <= right.size ();
+        List <Comparable []> build = buildLhs ? left : right, probe = buildLhs ? right : left;
+        int []  bCols    = buildLhs ? cols1 : cols2, pCols = buildLhs ? cols2 : cols1;
+        int     threads  = Runtime.getRuntime ().availableProcessors ();
+        int     bits     = radixBits (build.size (), threads);
+
+        Partitioned b = partition (build, bCols, bits, threads);
+        Partitioned p = partition (probe, pCols, bits, threads);
+
+        @SuppressWarnings ("unchecked")
+        List <Comparable []> [] results = new List [1 << bits];
+        IntStream.range (0, 1 << bits).parallel ()
+                 .forEach (q -> results [q] = joinPartition (b, bCols, p, pCols, q, bits, buildLhs, combine));
+
+        int total = 0;
+        for (List <Comparable []> r : results) total += r.size ();
+        List <Comparable []> rows = new ArrayList <> (total);
+        for (List <Comparable []> r : results) rows.addAll (r);
+        return rows;
+    } // join
+
+    /*************************************************************************************
+     * Return the number of radix bits: enough partitions that each build partition is
+     * about PART_TUPLES tuples, and at least four per processor (for load balance).
+     */
+    private static int radixBits (int n, int threads)
+    {
+        int np = Math.max (4 * threads, n / PART_TUPLES);
+        return Math.min (MAX_BITS, 32 - Integer.numberOfLeadingZeros (np - 1));
+    } // radixBits
+
+    /*************************************************************************************
+     * Radix partition the tuples on the low bits of their join key hashes, in parallel
+     * (one chunk per processor), dropping tuples with a null join value.
+     *
+     * @param tuples   the tuples to partition
+     * @param cols     the join columns
+     * @param bits     the number of radix bits
+     * @param threads  the number of processors
+     * @return  the partitioned tuples
+     */
+    private static Partitioned partition (List <Comparable []> tuples, int [] cols, int bits, int threads)
+    {
+        int n      = tuples.size (), np = 1 << bits, mask = np - 1;
+        int chunks = Math.max (1, Math.min (threads, n / MIN_CHUNK));
+        int []   hash = new int [n];
+        int [][] hist = new int [chunks][np];
+
+        IntStream.range (0, chunks).parallel ().forEach (c -> {                // pass 1: hash and count
+            int [] h = hist [c];
+            for (int i = lo (n, c, chunks); i < lo (n, c + 1, chunks); i++) {
+                Comparable [] t = tuples.get (i);
+                if (hasNull (t, cols)) continue;
+                hash [i] = hashOf (t, cols);
+                h [hash [i] & mask]++;
+            } // for
+        });
+
+        int [] start = new int [np + 1];                                       // prefix sums: each chunk's region
+        int [][] pos = new int [chunks][np];
+        int total = 0;
+        for (int q = 0; q < np; q++) {
+            start [q] = total;
+            for (int c = 0; c < chunks; c++) { pos [c][q] = total; total += hist [c][q]; }
+        } // for
+        start [np] = total;
+
+        Comparable [][] outT = new Comparable [total][];
+        int []          outH = new int [total];
+        IntStream.range (0, chunks).parallel ().forEach (c -> {                // pass 2: scatter
+            int [] at = pos [c];
+            for (int i = lo (n, c, chunks); i < lo (n, c + 1, chunks); i++) {
+                Comparable [] t = tuples.get (i);
+                if (hasNull (t, cols)) continue;
+                int k = at [hash [i] & mask]++;
+                outT [k] = t;
+                outH [k] = hash [i];
+            } // for
+        });
+        return new Partitioned (outT, outH, start);
+    } // partition
+
+    /*************************************************************************************
+     * Join partition q of the build input with partition q of the probe input.
+     */
+    private static List <Comparable []> joinPartition (Partitioned b, int [] bCols, Partitioned p, int [] pCols, int q,
+                                                       int bits, boolean buildLhs, BinaryOperator <Comparable []> combine)
+    {
+        int bLo = b.start [q], m = b.start [q + 1] - bLo;
+        int pLo = p.start [q], pHi = p.start [q + 1];
+        if (m == 0 || pLo == pHi) return Collections.emptyList ();
+
+        int    cap  = Integer.highestOneBit (m) << 1, mask = cap - 1;          // chained hash table on the higher bits
+        int [] head = new int [cap], next = new int [m];
+        Arrays.fill (head, -1);
+        for (int i = 0; i < m; i++) {
+            int slot = (b.hashes [bLo + i] >>> bits) & mask;
+            next [i]    = head [slot];
+            head [slot] = i;
+        } // for
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (int j = pLo; j < pHi; j++) {
+            int h = p.hashes [j];
+            Comparable [] u = p.tuples [j];
+            for (int i = head [(h >>> bits) & mask]; i >= 0; i = next [i]) {
+                if (b.hashes [bLo + i] != h) continue;
+                Comparable [] t = b.tuples [bLo + i];
+                if (matches (t, bCols, u, pCols)) rows.add (buildLhs ? combine.apply (t, u) : combine.apply (u, t));
+            } // for
+        } // for
+        return rows;
+    } // joinPartition
+
+    /*************************************************************************************
+     * Return the start of chunk c of n tuples split into the given number of chunks.
+     */
+    private static int lo (int n, int c, int chunks)
+    {
+        return (int) ((long) n * c / chunks);
+    } // lo
+
+    /*************************************************************************************
+     * Determine whether tuple t has a null value in any of the columns.
+     */
+    private static boolean hasNull (Comparable [] t, int [] cols)
+    {
+        for (int c : cols) if (t [c] == null) return true;
+        return false;
+    } // hasNull
+
+    /*************************************************************************************
+     * Return the hash of tuple t's join key, mixed (by the murmur3 finalizer) so that
+     * both its low (radix) and high (hash table) bits are well spread.
+     */
+    private static int hashOf (Comparable [] t, int [] cols)
+    {
+        int h = 1;
+        for (int c : cols) h = 31 * h + t [c].hashCode ();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    } // hashOf
+
+    /*************************************************************************************
+     * Determine whether the join values of t (in cols1) equal those of u (in cols2),
+     * comparing as KeyType does.
+     */
+    @SuppressWarnings ("unchecked")
+    private static boolean matches (Comparable [] t, int [] cols1, Comparable [] u, int [] cols2)
+    {
+        for (int j = 0; j < cols1.length; j++) {
+            if (t [cols1 [j]].compareTo (u [cols2 [j]]) != 0) return false;
+        } // for
+        return true;
+    } // matches
+
+    /*************************************************************************************
+     * The main method is used for testing: join two large tables with the (single
+     * threaded) hash join and the parallel hash join.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 2000000;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        Table movie  = new Table ("movie", "title studioName", "String Integer", "title", IndexType.NONE);
+        Table studio = new Table ("studio", "name presNo", "Integer Integer", "name", IndexType.NONE);
+        Random rng = new Random (0);
+        for (int s = 0; s < nTuples / 2; s++) studio.insert (new Comparable [] { s, s % 1000 });
+        for (int i = 0; i < nTuples; i++) movie.insert (new Comparable [] { "Movie_" + i, rng.nextInt (nTuples) });
+
+        long t0 = System.nanoTime ();
+        Table r1 = movie.h_join ("studioName", "name", studio);
+        long t1 = System.nanoTime ();
+        Table r2 = movie.p_join ("studioName", "name", studio);
+        long t2 = System.nanoTime ();
+        System.setOut (console);
+        out.printf ("rows = %d/%d: hash join %d ms, parallel hash join %d ms (%d processors, %d partitions)\n",
+                    r1.size (), r2.size (), (t1 - t0) / 1000000, (t2 - t1) / 1000000,
+                    Runtime.getRuntime ().availableProcessors (),
+                    1 << radixBits (nTuples / 2, Runtime.getRuntime ().availableProcessors ()));
+    } // main
+
+} // ParallelHashJoin class
@@ -0,0 +1,286 @@
+
+/*****************************************************************************************
+ * @file  Plan.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+
+/*****************************************************************************************
+ * The Plan class represents query plans: trees of relational algebra operators (scan,
+ * select, project, join and rename) over base tables.  A plan may be built by hand, in
+ * any order, and then either executed as written or handed to the Optimizer, which
+ * returns an equivalent plan with selections and projections pushed down, joins
+ * reordered and a join method chosen for each join.
+ *
+ * #usage Plan.scan (movie).join ("studioName", "name", Plan.scan (studio))
+ *                         .select (new Condition ("year", "==", 1977))
+ *                         .project ("title presNo").optimize ().execute ()
+ */
+public abstract class Plan
+{
+    /*************************************************************************************
+     * The methods for performing an equi-join.
+     */
+    public enum JoinMethod { NESTED_LOOP, INDEX, HASH, PARALLEL_HASH, GRACE_HASH, SORT_MERGE }
+
+    /** The estimated number of result tuples and the estimated cost (in tuples handled)
+     *  of the plan, or -1 when not estimated (i.e., for plans that were not optimized).
+     */
+    double rows = -1, cost = -1;
+
+    /*************************************************************************************
+     * Return the attribute names of the plan's result.
+     */
+    public abstract String [] schema ();
+
+    /*************************************************************************************
+     * Execute the plan, returning the result table.
+     */
+    public abstract Table execute ();
+
+    /*************************************************************************************
+     * Return the plan's inputs, and a one-line description of its operator.
+     */
+    abstract List <Plan> children ();
+    abstract String label ();
+
+    //-----------------------------------------------------------------------------------
+    // Building plans
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Return a plan that scans the given table.
+     * @param table  the table to scan
+     */
+    public static Plan scan (Table table)
+    {
+        return new Scan (table);
+    } // scan
+
+    /*************************************************************************************
+     * Return a plan selecting the tuples of this plan that satisfy all the conditions.
+     * @param conds  the conditions to satisfy
+     */
+    public Plan select (Condition ... conds)
+    {
+        return new Select (this, conds);
+    } // select
+
+    /*************************************************************************************
+     * Return a plan projecting this plan onto the given attributes.
+     * @param attributes  the attributes to keep
+     */
+    public Plan project (String attributes)
+    {
+        return new Project (this, attributes.trim ().split (" +"));
+    } // project
+
+    /*************************************************************************************
+     * Return a plan (nested-loop) joining this plan and plan2 on attributes1 = attributes2.
+     * @param attributes1  the attributes of this plan to be compared
+     * @param attributes2  the attributes of plan2 to be compared
+     * @param plan2        the rhs of the join
+     */
+    public Plan join (String attributes1, String attributes2, Plan plan2)
+    {
+        return new Join (this, plan2, split (attributes1), split (attributes2), JoinMethod.NESTED_LOOP);
+    } // join
+
+    /*************************************************************************************
+     * Return a plan (nested-loop) joining this plan and table2 on attributes1 = attributes2.
+     */
+    public Plan join (String attributes1, String attributes2, Table table2)
+    {
+        return join (attributes1, attributes2, scan (table2));
+    } // join
+
+    /*************************************************************************************
+     * Execute the plan via the query result cache (see QueryCache), so repeating a query
+     * over unchanged tables returns the cached result.
+     */
+    public Table executeCached ()
+    {
+        return QueryCache.execute (this);
+    } // executeCached
+
+    /*************************************************************************************
+     * Return an equivalent plan chosen by the cost-based optimizer.
+     */
+    public Plan optimize ()
+    {
+        return Optimizer.optimize (this);
+    } // optimize
+
+    /*************************************************************************************
+     * Return the plan as an indented operator tree, with estimates if it was optimized.
+     */
+    public String explain ()
+    {
+        StringBuilder sb = new StringBuilder ();
+        explain (sb, "");
+        return sb.toString ();
+    } // explain
+
+    private void explain (StringBuilder sb, String indent)
+    {
+        sb.append (indent).append (label ());
+        if (rows >= 0) sb.append (String.format ("  [rows = %.1f, cost = %.1f]", rows, cost));
+        sb.append ("\n");
+        for (Plan c : children ()) c.explain (sb, indent + "    ");
+    } // explain
+
+    /*************************************************************************************
+     * Convert the plan to a string (its explanation).
+     */
+    public String toString ()
+    {
+        return explain ();
+    } // toString
+
+    /*************************************************************************************
+     * Split a string of attribute names (a blank string has none).
+     */
+    static String [] split (String attributes)
+    {
+        return attributes.isBlank () ? new String [0] : attributes.trim ().split (" +");
+    } // split
+
+    //-----------------------------------------------------------------------------------
+    // Operators
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Scan a base table.
+     */
+    static class Scan extends Plan
+    {
+        final Table table;
+
+        Scan (Table _table) { table = _table; }
+
+        public String [] schema ()  { return table.getAttribute (); }
+        public Table execute ()     { return table; }
+        List <Plan> children ()     { return List.of (); }
+        String label ()             { return "scan " + table.getName (); }
+    } // Scan class
+
+    /*************************************************************************************
+     * Select the tuples satisfying all of a list of conditions.
+     */
+    static class Select extends Plan
+    {
+        final Plan        child;
+        final Condition [] conds;
+
+        Select (Plan _child, Condition [] _conds) { child = _child; conds = _conds; }
+
+        public String [] schema ()  { return child.schema (); }
+        public Table execute ()     { return child.execute ().select (conds); }
+        List <Plan> children ()     { return List.of (child); }
+        String label ()             { return "select " + Arrays.toString (conds); }
+    } // Select class
+
+    /*************************************************************************************
+     * Project onto a list of attributes.
+     */
+    static class Project extends Plan
+    {
+        final Plan      child;
+        final String [] attrs;
+
+        Project (Plan _child, String [] _attrs) { child = _child; attrs = _attrs; }
+
+        public String [] schema ()  { return attrs.clone (); }
+        public Table execute ()     { return child.execute ().project (String.join (" ", attrs)); }
+        List <Plan> children ()     { return List.of (child); }
+        String label ()             { return "project " + String.join (" ", attrs); }
+    } // Project class
+
+    /*************************************************************************************
+     * Rename the attributes (positionally).
+     */
+    static class Rename extends Plan
+    {
+        final Plan      child;
+        final String [] attrs;
+
+        Rename (Plan _child, String [] _attrs) { child = _child; attrs = _attrs; }
+
+        public String [] schema ()  { return attrs.clone (); }
+        public Table execute ()     { return child.execute ().rename (String.join (" ", attrs)); }
+        List <Plan> children ()     { return List.of (child); }
+        String label ()             { return "rename " + String.join (" ", attrs); }
+    } // Rename class
+
+    /*************************************************************************************
+     * Join two plans on attrs1 = attrs2 using the given join method.
+     */
+    static class Join extends Plan
+    {
+        final Plan       left, right;
+        final String []  attrs1, attrs2;
+        final JoinMethod method;
+        boolean          bloom = false;         // reduce the probe side with a Bloom filter (Grace hash join)
+
+        Join (Plan _left, Plan _right, String [] _attrs1, String [] _attrs2, JoinMethod _method)
+        {
+            if (_attrs1.length != _attrs2.length) {
+                throw new IllegalArgumentException ("Plan.join: join attribute lists differ in length");
+            } // if
+            left = _left; right = _right; attrs1 = _attrs1; attrs2 = _attrs2; method = _method;
+        } // constructor
+
+        public String [] schema ()
+        {
+            return Table.joinAttributes (left.schema (), right.schema ());
+        } // schema
+
+        public Table execute ()
+        {
+            String a1 = String.join (" ", attrs1), a2 = String.join (" ", attrs2);
+            Table  l, r;
+            if (bloom && method == JoinMethod.GRACE_HASH) {
+                boolean probeLeft = left.rows >= right.rows;               // build on the smaller side
+                Table   build     = (probeLeft ? right : left).execute ();
+                Table   probe     = reduce (probeLeft ? left : right, probeLeft ? a1 : a2, probeLeft ? a2 : a1, build);
+                l = probeLeft ? probe : build;
+                r = probeLeft ? build : probe;
+            } else {
+                l = left.execute ();
+                r = right.execute ();
+            } // if
+            switch (method) {
+            case INDEX:         return l.i_join (a1, a2, r);
+            case HASH:          return l.h_join (a1, a2, r);
+            case PARALLEL_HASH: return l.p_join (a1, a2, r);
+            case GRACE_HASH:    return l.g_join (a1, a2, r);
+            case SORT_MERGE:    return l.m_join (a1, a2, r);
+            default:            return l.join (a1, a2, r);
+            } // switch
+        } // execute
+
+        /*********************************************************************************
+         * Execute the probe side, keeping only the tuples passing a Bloom filter on the
+         * build side's join keys.  A selection over a scan is done in the same pass.
+         */
+        private static Table reduce (Plan probe, String probeAttrs, String buildAttrs, Table build)
+        {
+            if (probe instanceof Select && ((Select) probe).child instanceof Scan) {
+                Select s = (Select) probe;
+                return ((Scan) s.child).table.bloomReduce (probeAttrs, buildAttrs, build, s.conds);
+            } // if
+            return probe.execute ().bloomReduce (probeAttrs, buildAttrs, build);
+        } // reduce
+
+        List <Plan> children ()     { return List.of (left, right); }
+
+        String label ()
+        {
+            return "join (" + method + (bloom ? " + bloom" : "") + ") " + String.join (" ", attrs1)
+                   + " = " + String.join (" ", attrs2);
+        } // label
+    } // Join class
+
+} // Plan class
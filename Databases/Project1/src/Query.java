@@ -0,0 +1,778 @@
+
+/*****************************************************************************************
+ * @file  Query.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The Query class implements a small subset of SQL over Tables, so that queries can be
+ * given as text:
+ *
+ *     SELECT [DISTINCT] * | item {, item}
+ *     FROM table [[AS] alias] {, table [[AS] alias] | JOIN table [[AS] alias] ON a = b {AND a = b}}
+ *     [WHERE pred {AND pred}]
+ *     [GROUP BY attr {, attr}]
+ *     [ORDER BY key [ASC | DESC] {, key [ASC | DESC]}]
+ *     [LIMIT n]
+ *
+ * where an item is an attribute or an aggregate (count, sum, min, max, avg or
+ * countDistinct of an attribute, or count(*)), an attribute may be qualified by its
+ * table (or alias), and a predicate is "attr op value", with value a literal (number or
+ * 'string') or a parameter ?, or a join predicate "attr = attr" between two tables.
+ * Keywords are case-insensitive.  As with project, results are sets.
+ *
+ * A query is parsed into a plan (joins in FROM order, with one selection of all the
+ * conditions on top), which is optimized (see Optimizer) once, when prepared; grouping,
+ * ordering and the final projection are then done on the plan's result.  Prepared
+ * queries are cached by their text, so a hot query is parsed and optimized only once
+ * and re-executed with the values bound to its parameters.  Parameters are left as
+ * placeholders (Condition.Param) in the plan, so the optimizer uses default
+ * selectivities for them.  The plan is re-optimized if one of its tables has grown or
+ * shrunk by more than a factor of two since.
+ *
+ * #usage Query.prepare ("SELECT title, year FROM movie WHERE year < ? ORDER BY year", movie).execute (1980)
+ */
+public class Query
+{
+    /** The maximum number of prepared queries cached
+     */
+    static int maxPrepared = 128;
+
+    /** Runs of whitespace (collapsed to one space to normalize a query's text)
+     */
+    private static final Pattern SPACES = Pattern.compile ("\\s+");
+
+    /** The prepared queries, keyed by their (whitespace-normalized) text (in LRU order)
+     */
+    private static final LinkedHashMap <String, Query> prepared = new LinkedHashMap <> (16, 0.75f, true);
+
+    /** The numbers of prepared queries found in and missing from the cache
+     */
+    private static long hits = 0, misses = 0;
+
+    /** The text of the query and the tables it may refer to
+     */
+    private final String   sql;
+    private final Table [] tables;
+
+    /** The select/project/join part of the query as written (with parameter placeholders),
+     *  its optimized version and the sizes of its tables when optimized
+     */
+    private final Plan logical;
+    private Plan       plan;
+    private int []     sizes;
+
+    /** The number of parameters
+     */
+    private final int nParams;
+
+    /** The grouping attributes and aggregates (null if not grouped)
+     */
+    private final String groupAttrs, aggregates;
+
+    /** The ordering attributes and directions (null if not ordered)
+     */
+    private final String orderAttrs, orderDirs;
+
+    /** The maximum number of result tuples (-1 for no limit)
+     */
+    private final int limit;
+
+    /** The attributes of the final projection (null if none is needed)
+     */
+    private final String output;
+
+    /*************************************************************************************
+     * Return the prepared query for the given text over the given tables, from the cache
+     * if it was prepared before (over the same tables), otherwise by parsing and
+     * optimizing it.
+     *
+     * @param sql     the text of the query
+     * @param tables  the tables the query may refer to (by name)
+     * @return  the prepared query
+     */
+    public static synchronized Query prepare (String sql, Table ... tables)
+    {
+        String key = SPACES.matcher (sql.trim ()).replaceAll (" ");
+        Query  q   = prepared.get (key);
+        if (q != null && sameTables (q.tables, tables)) {
+            hits++;
+            return q;
+        } // if
+        misses++;
+        q = new Query (key, tables);
+        prepared.put (key, q);
+        Iterator <String> it = prepared.keySet ().iterator ();
+        while (prepared.size () > maxPrepared && it.hasNext ()) { it.next (); it.remove (); }
+        return q;
+    } // prepare
+
+    /*************************************************************************************
+     * Prepare (or fetch the prepared) query and execute it.
+     *
+     * #usage Query.execute ("SELECT studioName, count(*) FROM movie GROUP BY studioName", movie)
+     *
+     * @param sql     the text of the query (without parameters)
+     * @param tables  the tables the query may refer to (by name)
+     * @return  the result table
+     */
+    public static Table execute (String sql, Table ... tables)
+    {
+        return prepare (sql, tables).execute ();
+    } // execute
+
+    /*************************************************************************************
+     * Return the numbers of prepared queries found in and missing from the cache.
+     */
+    public static synchronized long hits ()   { return hits; }
+    public static synchronized long misses () { return misses; }
+
+    /*************************************************************************************
+     * Remove all prepared queries from the cache.
+     */
+    public static synchronized void clear ()
+    {
+        prepared.clear ();
+    } // clear
+
+    /*************************************************************************************
+     * Construct a query by parsing its text and optimizing its plan.
+     *
+     * @param _sql     the text of the query
+     * @param _tables  the tables the query may refer to
+     */
+    Query (String _sql, Table [] _tables)
+    {
+        sql    = _sql;
+        tables = _tables.clone ();
+
+        Parser p = new Parser (_sql, _tables);
+        p.parse ();
+        logical    = p.plan;
+        nParams    = p.nParams;
+        groupAttrs = p.groupAttrs;
+        aggregates = p.aggregates;
+        orderAttrs = p.orderAttrs;
+        orderDirs  = p.orderDirs;
+        limit      = p.limit;
+        output     = p.output;
+        optimize ();
+    } // constructor
+
+    /*************************************************************************************
+     * Execute the query with the given values bound to its parameters (in order).
+     *
+     * @param params  the parameter values
+     * @return  the result table
+     */
+    public Table execute (Comparable ... params)
+    {
+        if (params.length != nParams) {
+            throw new IllegalArgumentException ("Query: expected " + nParams + " parameters but got " + params.length);
+        } // if
+        out.println ("SQL> " + sql + ((nParams > 0) ? " with " + Arrays.toString (params) : ""));
+
+        Plan p;
+        synchronized (this) {
+            if (grown ()) optimize ();
+            p = plan;
+        } // synchronized
+        Table t = bind (p, params).execute ();
+        boolean topN = limit >= 0 && output == null;                        // else limit after projecting (it drops duplicates)
+        if (groupAttrs != null) t = t.groupBy (groupAttrs, aggregates);
+        if (orderAttrs != null) t = topN ? t.orderBy (orderAttrs, orderDirs, limit) : t.orderBy (orderAttrs, orderDirs);
+        if (output != null)     t = t.project (output);
+        if (limit >= 0 && t.size () > limit) {
+            t = new Table (t.getName (), t.getAttribute (), t.getDomain (), t.getKey (),
+                           new ArrayList <> (t.rows ().subList (0, limit)));
+        } // if
+        return t;
+    } // execute
+
+    /*************************************************************************************
+     * Return the optimized plan of the query (showing its parameters as placeholders).
+     */
+    public Plan plan ()
+    {
+        return plan;
+    } // plan
+
+    /*************************************************************************************
+     * Optimize the query's plan, remembering the sizes of its tables.
+     */
+    private void optimize ()
+    {
+        plan  = logical.optimize ();
+        sizes = new int [tables.length];
+        for (int i = 0; i < tables.length; i++) sizes [i] = tables [i].size ();
+    } // optimize
+
+    /*************************************************************************************
+     * Determine whether a table has grown or shrunk by more than a factor of two since
+     * the plan was optimized.
+     */
+    private boolean grown ()
+    {
+        for (int i = 0; i < tables.length; i++) {
+            long n = tables [i].size (), m = sizes [i];
+            if (n > 2 * m + 1 || m > 2 * n + 1) return true;
+        } // for
+        return false;
+    } // grown
+
+    /*************************************************************************************
+     * Return a copy of the plan with the parameter values bound into its selections (the
+     * plan itself if there are no parameters).
+     */
+    private Plan bind (Plan p, Comparable [] params)
+    {
+        if (nParams == 0 || p instanceof Plan.Scan) return p;
+        Plan q;
+        if (p instanceof Plan.Select) {
+            Plan.Select s = (Plan.Select) p;
+            Condition [] conds = new Condition [s.conds.length];
+            for (int j = 0; j < conds.length; j++) {
+                Condition c = s.conds [j];
+                conds [j] = (c.value instanceof Condition.Param) ? new Condition (c.attr, c.op, ((Condition.Param) c.value).bind (params))
+                                                               : c;
+            } // for
+            q = new Plan.Select (bind (s.child, params), conds);
+        } else if (p instanceof Plan.Project) {
+            q = new Plan.Project (bind (((Plan.Project) p).child, params), ((Plan.Project) p).attrs);
+        } else if (p instanceof Plan.Rename) {
+            q = new Plan.Rename (bind (((Plan.Rename) p).child, params), ((Plan.Rename) p).attrs);
+        } else {
+            Plan.Join j = (Plan.Join) p;
+            Plan.Join k = new Plan.Join (bind (j.left, params), bind (j.right, params), j.attrs1, j.attrs2, j.method);
+            k.bloom = j.bloom;
+            q = k;
+        } // if
+        q.rows = p.rows;
+        q.cost = p.cost;
+        return q;
+    } // bind
+
+    /*************************************************************************************
+     * Determine whether two arrays hold the same tables (by identity).
+     */
+    private static boolean sameTables (Table [] a, Table [] b)
+    {
+        if (a.length != b.length) return false;
+        for (int i = 0; i < a.length; i++) if (a [i] != b [i]) return false;
+        return true;
+    } // sameTables
+
+    /*************************************************************************************
+     * Convert a value to the given domain (e.g., an Integer literal to a Long or Double
+     * attribute's type), so that it can be compared with the attribute's values.
+     *
+     * @param v    the value
+     * @param dom  the domain of the attribute
+     * @return  the converted value
+     */
+    static Comparable coerce (Comparable v, Class dom)
+    {
+        if (v == null || dom.isInstance (v)) return v;
+        if (v instanceof Number) {
+            Number  n        = (Number) v;
+            boolean integral = ! (v instanceof Double || v instanceof Float) || n.doubleValue () == Math.rint (n.doubleValue ());
+            if (dom == Double.class)               return n.doubleValue ();
+            if (dom == Float.class)                return n.floatValue ();
+            if (dom == Long.class && integral)     return n.longValue ();
+            if (dom == Integer.class && integral)  return n.intValue ();
+            if (dom == Short.class && integral)    return n.shortValue ();
+            if (dom == Byte.class && integral)     return n.byteValue ();
+        } // if
+        if (dom == String.class) return v.toString ();
+        if (dom == Character.class && v instanceof String && ((String) v).length () == 1) return ((String) v).charAt (0);
+        throw new IllegalArgumentException ("Query: value " + v + " does not match type " + dom.getSimpleName ());
+    } // coerce
+
+    /*************************************************************************************
+     * The Parser class turns the text of a query into its plan and post-processing steps
+     * (by recursive descent over its tokens).
+     */
+    private static class Parser
+    {
+        /*********************************************************************************
+         * A table in the FROM clause: its alias, and the names of its attributes in the
+         * schema of the joined tables (where duplicates have been renamed).
+         */
+        private static class From
+        {
+            final Table     table;
+            final String    alias;
+            final String [] names;
+
+            From (Table _table, String _alias, String [] _names) { table = _table; alias = _alias; names = _names; }
+        } // From class
+
+        /*********************************************************************************
+         * A reference to an attribute: the FROM entry it is in and its name there.
+         */
+        private static class Ref
+        {
+            final int    from;
+            final String name;
+            final Class  domain;
+
+            Ref (int _from, String _name, Class _domain) { from = _from; name = _name; domain = _domain; }
+        } // Ref class
+
+        private final List <String> tokens;
+        private final Table []      tables;
+        private int                 pos = 0;
+
+        private final List <From>     froms = new ArrayList <> ();
+        private String []             schema = new String [0];
+        private final List <Ref []>   joins = new ArrayList <> ();           // join predicates (pairs)
+        private final List <Condition> conds = new ArrayList <> ();
+
+        Plan   plan;
+        int    nParams = 0;
+        String groupAttrs, aggregates, orderAttrs, orderDirs, output;
+        int    limit = -1;
+
+        Parser (String sql, Table [] _tables)
+        {
+            tokens = tokenize (sql);
+            tables = _tables;
+        } // constructor
+
+        /*********************************************************************************
+         * Parse the query.
+         */
+        void parse ()
+        {
+            expect ("select");
+            accept ("distinct");                                             // results are sets anyway
+            int selectStart = pos;                                           // items are resolved after FROM
+            while (! peekIs ("from") && pos < tokens.size ()) pos++;
+            int selectEnd = pos;
+
+            expect ("from");
+            fromItem ();
+            while (true) {
+                if (accept (",")) {
+                    fromItem ();
+                } else if (accept ("join") || accept ("inner") && expectThen ("join")) {
+                    fromItem ();
+                    expect ("on");
+                    do joinPred (ref (), expectOp ("="), ref ()); while (accept ("and"));
+                } else {
+                    break;
+                } // if
+            } // while
+
+            if (accept ("where")) {
+                do predicate (); while (accept ("and"));
+            } // if
+
+            List <String> group = null;
+            if (accept ("group")) {
+                expect ("by");
+                group = new ArrayList <> ();
+                do group.add (ref ().name); while (accept (","));
+            } // if
+
+            int orderStart = -1;
+            if (accept ("order")) {                                          // resolved after the items
+                expect ("by");
+                orderStart = pos;
+                while (pos < tokens.size () && ! peekIs ("limit")) pos++;
+            } // if
+            int orderEnd = pos;
+
+            if (accept ("limit")) limit = Integer.parseInt (next ());
+            if (pos < tokens.size ()) throw error ("unexpected " + tokens.get (pos));
+
+            buildPlan ();
+            int end = pos;
+            pos = selectStart;
+            items (selectEnd, group);
+            if (orderStart >= 0) {
+                pos = orderStart;
+                orderBy (orderEnd);
+            } // if
+            pos = end;
+        } // parse
+
+        /*********************************************************************************
+         * Parse the SELECT items (up to token position end), setting up the grouping and
+         * the projections.
+         */
+        private void items (int end, List <String> group)
+        {
+            List <String> names = new ArrayList <> ();                      // the output attributes
+            List <String> aggs  = new ArrayList <> ();
+            boolean star = accept ("*");
+            if (! star) {
+                do {
+                    if (pos + 1 < end && tokens.get (pos + 1).equals ("(")) {
+                        String agg = aggregate ();
+                        aggs.add (agg.substring (0, agg.indexOf (' ')));
+                        names.add (agg.substring (agg.indexOf (' ') + 1));
+                    } else {
+                        names.add (ref ().name);
+                    } // if
+                } while (accept (","));
+            } // if
+            if (pos != end) throw error ("unexpected " + tokens.get (pos) + " in the select list");
+
+            if (group != null || ! aggs.isEmpty ()) {
+                if (star) throw error ("SELECT * cannot be grouped");
+                List <String> g = (group == null) ? List.of () : group;
+                for (String n : names) {
+                    if (! g.contains (n) && ! aggs.stream ().anyMatch (a -> aggName (a).equals (n))) {
+                        throw error (n + " must be in the GROUP BY clause or aggregated");
+                    } // if
+                } // for
+                if (aggs.isEmpty ()) aggs.add ("count(*)");
+                groupAttrs = String.join (" ", g);
+                aggregates = String.join (" ", aggs);
+                List <String> grouped = new ArrayList <> (g);
+                for (String a : aggs) grouped.add (aggName (a));
+                if (! grouped.equals (names)) output = String.join (" ", names);
+            } else if (! star) {
+                plan   = plan.project (String.join (" ", names));
+                output = String.join (" ", names);                          // may be extended by ORDER BY
+            } // if
+        } // items
+
+        /*********************************************************************************
+         * Parse an aggregate, returning "func(attr) name", where name is its result
+         * attribute (as named by GroupBy).
+         */
+        private String aggregate ()
+        {
+            String func = next ();
+            try {
+                GroupBy.Func.valueOf (func.toUpperCase ());
+            } catch (IllegalArgumentException ex) {
+                throw error ("unknown aggregate function " + func);
+            } // try
+            func = func.equalsIgnoreCase ("countDistinct") ? "countDistinct" : func.toLowerCase ();
+            expect ("(");
+            String attr = accept ("*") ? "*" : ref ().name;
+            expect (")");
+            String agg = func + "(" + attr + ")";
+            return agg + " " + aggName (agg);
+        } // aggregate
+
+        /*********************************************************************************
+         * Return the result attribute of an aggregate, e.g., sum(length) gives sum_length.
+         */
+        private static String aggName (String agg)
+        {
+            int lp = agg.indexOf ('(');
+            String attr = agg.substring (lp + 1, agg.length () - 1);
+            return attr.equals ("*") ? "count" : agg.substring (0, lp) + "_" + attr;
+        } // aggName
+
+        /*********************************************************************************
+         * Parse the ORDER BY keys (up to token position end).  A key may be an output
+         * attribute, an aggregate in the select list or (when not grouped) any attribute.
+         */
+        private void orderBy (int end)
+        {
+            List <String> keys = new ArrayList <> (), dirs = new ArrayList <> ();
+            do {
+                final String key;
+                if (pos + 1 < end && tokens.get (pos + 1).equals ("(")) {
+                    String agg = aggregate ();
+                    key = agg.substring (agg.indexOf (' ') + 1);
+                    if (aggregates == null || ! Arrays.asList (aggregates.split (" ")).contains (agg.substring (0, agg.indexOf (' ')))) {
+                        throw error ("ORDER BY aggregate " + key + " is not in the select list");
+                    } // if
+                } else {
+                    key = ref ().name;
+                } // if
+                if (groupAttrs != null && ! Arrays.asList (groupAttrs.split (" ")).contains (key)
+                                       && ! Arrays.asList (aggregates.split (" ")).stream ().anyMatch (a -> aggName (a).equals (key))) {
+                    throw error ("ORDER BY " + key + " must be grouped or aggregated");
+                } // if
+                keys.add (key);
+                if (accept ("desc")) {
+                    dirs.add ("desc");
+                } else {
+                    accept ("asc");
+                    dirs.add ("asc");
+                } // if
+            } while (accept (","));
+            if (pos != end) throw error ("unexpected " + tokens.get (pos) + " in ORDER BY");
+
+            if (groupAttrs == null && output != null) {                      // keep unselected keys until sorted
+                List <String> kept = new ArrayList <> (Arrays.asList (output.split (" ")));
+                boolean extra = false;
+                for (String k : keys) if (! kept.contains (k)) { kept.add (k); extra = true; }
+                if (extra) plan = ((Plan.Project) plan).child.project (String.join (" ", kept));
+                else       output = null;
+            } // if
+            orderAttrs = String.join (" ", keys);
+            orderDirs  = String.join (" ", dirs);
+        } // orderBy
+
+        /*********************************************************************************
+         * Parse a table in the FROM clause, with an optional alias.
+         */
+        private void fromItem ()
+        {
+            String name  = next ();
+            Table  table = null;
+            for (Table t : tables) if (t.getName ().equalsIgnoreCase (name)) table = t;
+            if (table == null) throw error ("unknown table " + name);
+            accept ("as");
+            String alias = name;
+            if (pos < tokens.size () && isIdentifier (tokens.get (pos)) && ! isKeyword (tokens.get (pos))) alias = next ();
+            for (From f : froms) if (f.alias.equalsIgnoreCase (alias)) throw error ("duplicate table or alias " + alias);
+
+            String [] joined = Table.joinAttributes (schema, table.getAttribute ());
+            froms.add (new From (table, alias, Arrays.copyOfRange (joined, schema.length, joined.length)));
+            schema = joined;
+        } // fromItem
+
+        /*********************************************************************************
+         * Parse a WHERE predicate: a condition on an attribute, or a join predicate.
+         */
+        private void predicate ()
+        {
+            Ref    r  = ref ();
+            String op = next ();
+            Condition.Op.of (op);
+            if (peekIs ("?")) {
+                pos++;
+                conds.add (new Condition (r.name, op, new Condition.Param (nParams++, r.domain)));
+            } else if (pos < tokens.size () && isIdentifier (tokens.get (pos)) && ! isKeyword (tokens.get (pos))) {
+                if (Condition.Op.of (op) != Condition.Op.EQ) throw error ("only equality is supported between attributes");
+                joinPred (r, op, ref ());
+            } else {
+                conds.add (new Condition (r.name, op, coerce (literal (), r.domain)));
+            } // if
+        } // predicate
+
+        /*********************************************************************************
+         * Record a join predicate a = b between two different tables.
+         */
+        private void joinPred (Ref a, String op, Ref b)
+        {
+            if (a.from == b.from) throw error ("predicate " + a.name + " = " + b.name + " is within one table");
+            joins.add (new Ref [] { a, b });
+        } // joinPred
+
+        /*********************************************************************************
+         * Build the plan: join the tables in FROM order (each on its join predicates with
+         * the tables before it), then select on all the conditions.
+         */
+        private void buildPlan ()
+        {
+            Set <Ref []> used = new HashSet <> ();
+            plan = Plan.scan (froms.get (0).table);
+            for (int i = 1; i < froms.size (); i++) {
+                List <String> a1 = new ArrayList <> (), a2 = new ArrayList <> ();
+                for (Ref [] j : joins) {
+                    Ref prior = (j [1].from == i && j [0].from < i) ? j [0] : (j [0].from == i && j [1].from < i) ? j [1] : null;
+                    if (prior == null) continue;
+                    Ref here = (prior == j [0]) ? j [1] : j [0];
+                    a1.add (prior.name);
+                    a2.add (froms.get (i).table.getAttribute () [Arrays.asList (froms.get (i).names).indexOf (here.name)]);
+                    used.add (j);
+                } // for
+                if (a1.isEmpty ()) throw error ("no join condition for " + froms.get (i).alias + " (cross products are not supported)");
+                plan = plan.join (String.join (" ", a1), String.join (" ", a2), Plan.scan (froms.get (i).table));
+            } // for
+            if (used.size () != joins.size ()) throw error ("unsupported join predicate");
+            if (! conds.isEmpty ()) plan = plan.select (conds.toArray (new Condition [0]));
+        } // buildPlan
+
+        /*********************************************************************************
+         * Parse an attribute reference, attr or table.attr, returning its name in the
+         * schema of the joined tables.
+         */
+        private Ref ref ()
+        {
+            String a = next (), qual = null;
+            if (! isIdentifier (a)) throw error ("expected an attribute but found " + a);
+            if (accept (".")) { qual = a; a = next (); }
+
+            Ref found = null;
+            for (int i = 0; i < froms.size (); i++) {
+                From f = froms.get (i);
+                if (qual != null && ! f.alias.equalsIgnoreCase (qual)) continue;
+                int j = f.table.col (a);
+                if (j < 0) continue;
+                if (found != null) throw error ("ambiguous attribute " + a);
+                found = new Ref (i, f.names [j], f.table.getDomain () [j]);
+            } // for
+            if (found == null) throw error ("unknown attribute " + ((qual == null) ? a : qual + "." + a));
+            return found;
+        } // ref
+
+        /*********************************************************************************
+         * Parse a literal: a number (Integer, Long or Double) or a 'string'.
+         */
+        private Comparable literal ()
+        {
+            String t = next ();
+            if (t.startsWith ("'")) return t.substring (1);
+            String s = t;
+            if (t.equals ("-")) s = "-" + next ();
+            try {
+                if (s.contains (".") || s.contains ("e") || s.contains ("E")) return Double.valueOf (s);
+                long v = Long.parseLong (s);
+                return (v == (int) v) ? (Comparable) (int) v : (Comparable) v;
+            } catch (NumberFormatException ex) {
+                throw error ("expected a value but found " + s);
+            } // try
+        } // literal
+
+        private String next ()
+        {
+            if (pos >= tokens.size ()) throw error ("unexpected end of query");
+            return tokens.get (pos++);
+        } // next
+
+        private boolean peekIs (String s)
+        {
+            return pos < tokens.size () && tokens.get (pos).equalsIgnoreCase (s);
+        } // peekIs
+
+        private boolean accept (String s)
+        {
+            if (! peekIs (s)) return false;
+            pos++;
+            return true;
+        } // accept
+
+        private void expect (String s)
+        {
+            if (! accept (s)) throw error ("expected " + s.toUpperCase () + " but found " + ((pos < tokens.size ()) ? tokens.get (pos) : "end of query"));
+        } // expect
+
+        private boolean expectThen (String s)
+        {
+            expect (s);
+            return true;
+        } // expectThen
+
+        private String expectOp (String s)
+        {
+            expect (s);
+            return s;
+        } // expectOp
+
+        private IllegalArgumentException error (String msg)
+        {
+            return new IllegalArgumentException ("Query: " + msg);
+        } // error
+
+        private static final Set <String> KEYWORDS = Set.of ("select", "distinct", "from", "as", "join", "inner", "on",
+                                                              "where", "and", "group", "order", "by", "asc", "desc", "limit");
+
+        private static boolean isKeyword (String t)
+        {
+            return KEYWORDS.contains (t.toLowerCase ());
+        } // isKeyword
+
+        private static boolean isIdentifier (String t)
+        {
+            return Character.isLetter (t.charAt (0)) || t.charAt (0) == '_';
+        } // isIdentifier
+
+        /*********************************************************************************
+         * Split the text of a query into tokens: identifiers, numbers, 'strings' (kept as
+         * a quote followed by the string's characters), operators and punctuation.
+         */
+        private static List <String> tokenize (String sql)
+        {
+            List <String> toks = new ArrayList <> ();
+            int i = 0, n = sql.length ();
+            while (i < n) {
+                char c = sql.charAt (i);
+                int  j = i + 1;
+                if (Character.isWhitespace (c)) {
+                    i++;
+                    continue;
+                } else if (Character.isLetter (c) || c == '_') {
+                    while (j < n && (Character.isLetterOrDigit (sql.charAt (j)) || sql.charAt (j) == '_')) j++;
+                } else if (Character.isDigit (c)) {
+                    while (j < n && (Character.isDigit (sql.charAt (j)) || sql.charAt (j) == '.')) j++;
+                } else if (c == '\'') {
+                    StringBuilder sb = new StringBuilder ("'");
+                    for ( ; ; j++) {
+                        if (j >= n) throw new IllegalArgumentException ("Query: unterminated string");
+                        if (sql.charAt (j) == '\'') {
+                            if (j + 1 < n && sql.charAt (j + 1) == '\'') { sb.append ('\''); j++; continue; }
+                            break;
+                        } // if
+                        sb.append (sql.charAt (j));
+                    } // for
+                    toks.add (sb.toString ());
+                    i = j + 1;
+                    continue;
+                } else if ("<>!=".indexOf (c) >= 0) {
+                    if (j < n && "=>".indexOf (sql.charAt (j)) >= 0 && ! (c == '>' && sql.charAt (j) == '>')) j++;
+                } else if (",()*?.-".indexOf (c) < 0) {
+                    throw new IllegalArgumentException ("Query: unexpected character " + c);
+                } // if
+                toks.add (sql.substring (i, j));
+                i = j;
+            } // while
+            return toks;
+        } // tokenize
+
+    } // Parser class
+
+    /*************************************************************************************
+     * The main method is used for testing: run some queries, and time preparing a
+     * parameterized query (from the cache, and by parsing and optimizing it) and
+     * executing it.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        Table movie  = new Table ("movie", "title year length genre studioName producerNo",
+                                  "String Integer Integer String String Integer", "title year");
+        Table studio = new Table ("studio", "name address presNo", "String String Integer", "name");
+        Random rng = new Random (0);
+        String [] genres = { "drama", "comedy", "scifi", "horror" };
+        for (int s = 0; s < 50; s++) studio.insert (new Comparable [] { "Studio_" + s, "Street_" + s, s });
+        for (int i = 0; i < 20000; i++) {
+            movie.insert (new Comparable [] { "Movie_" + i, 1900 + rng.nextInt (120), 60 + rng.nextInt (150),
+                                              genres [rng.nextInt (4)], "Studio_" + rng.nextInt (50), rng.nextInt (1000) });
+        } // for
+
+        Table r1 = execute ("SELECT title, year FROM movie WHERE year >= 2015 AND length > 200 ORDER BY year DESC, title LIMIT 5", movie);
+        Table r2 = execute ("select s.name, count(*), avg(m.length) from movie m join studio s on m.studioName = s.name "
+                            + "where m.genre = 'scifi' and s.presNo < 5 group by s.name order by count(*) desc", movie, studio);
+        Query q  = prepare ("SELECT title, address FROM movie, studio WHERE studioName = name AND year = ? AND presNo < ?", movie, studio);
+
+        int reps = 2000, rows = 0;
+        long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+        for (int run = 0; run < 2; run++) {                                   // run 0 warms up the JIT
+            rows = 0;
+            t0 = System.nanoTime ();
+            for (int i = 0; i < reps; i++) prepare (q.sql, movie, studio);
+            t1 = System.nanoTime ();
+            for (int i = 0; i < reps; i++) new Query (q.sql, new Table [] { movie, studio });
+            t2 = System.nanoTime ();
+            for (int i = 0; i < reps; i++) rows += q.execute (1900 + i % 120, 10).size ();
+            t3 = System.nanoTime ();
+        } // for
+        System.setOut (console);
+
+        r1.print ();
+        r2.print ();
+        out.println (q.plan ());
+        out.printf ("%d times: prepare from cache %.1f us, parse and optimize %.1f us, execute %.1f us (%d rows; hits = %d, misses = %d)\n",
+                    reps, (t1 - t0) / 1000.0 / reps, (t2 - t1) / 1000.0 / reps, (t3 - t2) / 1000.0 / reps, rows, hits, misses);
+    } // main
+
+} // Query class
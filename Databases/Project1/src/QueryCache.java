@@ -0,0 +1,215 @@
+
+/*****************************************************************************************
+ * @file  QueryCache.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The QueryCache class caches the results of query plans.  A result is keyed by the
+ * canonical form of the plan's operator tree (with the conditions of a selection put
+ * in a fixed order, since their order does not matter) and is stored with the version
+ * of each base table it read.  Table.insert and Table.delete bump a table's version, so
+ * a cached result is only returned while none of its input tables has changed; stale
+ * results are dropped when found.  The cache is bounded both by the number of results
+ * and by their total number of tuples, evicting the least recently used.
+ *
+ * Cached result tables are shared, so they must not be modified.  A bare scan is not
+ * cached: its result is the live base table itself, which needs no caching and would
+ * grow after being counted against the bound.
+ *
+ * #usage QueryCache.execute (Plan.scan (movie).select (new Condition ("year", "<", 1980)))
+ */
+public class QueryCache
+{
+    /** The maximum number of cached results
+     */
+    static int maxEntries = 64;
+
+    /** The maximum total number of tuples in the cached results
+     */
+    static long maxTuples = 1000000;
+
+    /*************************************************************************************
+     * A cached result: the table, its size when cached (as counted in tuples), and the
+     * base tables read with their versions.
+     */
+    private static class Entry
+    {
+        final Table     result;
+        final long      size;
+        final Table []  inputs;
+        final long []   versions;
+
+        Entry (Table _result, Table [] _inputs, long [] _versions)
+        {
+            result = _result; size = _result.size (); inputs = _inputs; versions = _versions;
+        } // constructor
+
+        boolean isCurrent (Table [] tables)
+        {
+            for (int i = 0; i < inputs.length; i++) {
+                if (inputs [i] != tables [i] || inputs [i].version () != versions [i]) return false;
+            } // for
+            return true;
+        } // isCurrent
+    } // Entry class
+
+    /** The cached results, keyed by canonical plan (in LRU order)
+     */
+    private static final LinkedHashMap <String, Entry> cache = new LinkedHashMap <> (16, 0.75f, true);
+
+    /** The total number of tuples cached, and the numbers of hits, misses and stale results
+     */
+    private static long tuples = 0, hits = 0, misses = 0, stale = 0;
+
+    /*************************************************************************************
+     * Return the result of the plan, from the cache if it holds a current result for
+     * it, otherwise by executing the plan (and caching the result).
+     *
+     * @param plan  the query plan
+     * @return  the result table
+     */
+    public static synchronized Table execute (Plan plan)
+    {
+        if (plan instanceof Plan.Scan) return plan.execute ();              // the base table itself
+
+        List <Table> tables = new ArrayList <> ();
+        String  key    = canonical (plan, tables);
+        Table [] input = tables.toArray (new Table [0]);
+
+        Entry e = cache.get (key);
+        if (e != null) {
+            if (e.isCurrent (input)) {
+                hits++;
+                out.println ("RA> cache hit: " + key);
+                return e.result;
+            } // if
+            remove (key);
+            stale++;
+        } // if
+        misses++;
+
+        long [] versions = new long [input.length];                          // before executing
+        for (int i = 0; i < input.length; i++) versions [i] = input [i].version ();
+        Table result = plan.execute ();
+        if (result.size () <= maxTuples && ! Arrays.asList (input).contains (result)) {
+            Entry added = new Entry (result, input, versions);
+            cache.put (key, added);
+            tuples += added.size;
+            evict ();
+        } // if
+        return result;
+    } // execute
+
+    /*************************************************************************************
+     * Evict the least recently used results until the cache is within its bounds.
+     */
+    private static void evict ()
+    {
+        Iterator <Map.Entry <String, Entry>> it = cache.entrySet ().iterator ();
+        while ((cache.size () > maxEntries || tuples > maxTuples) && it.hasNext ()) {
+            tuples -= it.next ().getValue ().size;
+            it.remove ();
+        } // while
+    } // evict
+
+    private static void remove (String key)
+    {
+        Entry e = cache.remove (key);
+        if (e != null) tuples -= e.size;
+    } // remove
+
+    /*************************************************************************************
+     * Remove all cached results.
+     */
+    public static synchronized void clear ()
+    {
+        cache.clear ();
+        tuples = 0;
+    } // clear
+
+    /*************************************************************************************
+     * Return the numbers of hits, misses and stale results found so far.
+     */
+    public static synchronized long hits ()   { return hits; }
+    public static synchronized long misses () { return misses; }
+    public static synchronized long stale ()  { return stale; }
+
+    /*************************************************************************************
+     * Return the canonical form of a plan, adding the base tables it scans to tables.
+     * Join methods are left out (they do not change the result), and the conditions of
+     * a selection are sorted.  Values are tagged with their types, since e.g. 1977 and
+     * 1977L compare differently.
+     *
+     * @param plan    the plan
+     * @param tables  the base tables found so far (in scan order)
+     * @return  the canonical form
+     */
+    static String canonical (Plan plan, List <Table> tables)
+    {
+        if (plan instanceof Plan.Scan) {
+            Table t = ((Plan.Scan) plan).table;
+            tables.add (t);
+            return "scan(" + t.getName () + "#" + tables.size () + ")";
+        } // if
+        if (plan instanceof Plan.Select) {
+            Plan.Select s = (Plan.Select) plan;
+            String [] cs = new String [s.conds.length];
+            for (int j = 0; j < cs.length; j++) {
+                Condition c = s.conds [j];
+                cs [j] = c.attr + " " + c.op.symbol + " " + c.value
+                         + ":" + ((c.value == null) ? "null" : c.value.getClass ().getSimpleName ());
+            } // for
+            Arrays.sort (cs);
+            return "select(" + String.join (" & ", cs) + ", " + canonical (s.child, tables) + ")";
+        } // if
+        if (plan instanceof Plan.Project) {
+            Plan.Project p = (Plan.Project) plan;
+            return "project(" + String.join (" ", p.attrs) + ", " + canonical (p.child, tables) + ")";
+        } // if
+        if (plan instanceof Plan.Rename) {
+            Plan.Rename r = (Plan.Rename) plan;
+            return "rename(" + String.join (" ", r.attrs) + ", " + canonical (r.child, tables) + ")";
+        } // if
+        Plan.Join j = (Plan.Join) plan;
+        String l = canonical (j.left, tables);
+        return "join(" + String.join (" ", j.attrs1) + " = " + String.join (" ", j.attrs2) + ", "
+                       + l + ", " + canonical (j.right, tables) + ")";
+    } // canonical
+
+    /*************************************************************************************
+     * The main method is used for testing: repeat a query, with and without an insert
+     * into its input table in between.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        Table movie = new Table ("movie", "title year length studioName", "String Integer Integer String", "title");
+        Random rng = new Random (0);
+        for (int i = 0; i < 200000; i++) {
+            movie.insert (new Comparable [] { "Movie_" + i, 1900 + rng.nextInt (120), 60 + rng.nextInt (150), "Studio_" + rng.nextInt (40) });
+        } // for
+
+        long [] ms = new long [4];
+        int  [] n  = new int [4];
+        for (int run = 0; run < 4; run++) {
+            if (run == 2) movie.insert (new Comparable [] { "New_Movie", 1950, 120, "Studio_1" });   // invalidates
+            long t0 = System.nanoTime ();
+            Table r = execute (Plan.scan (movie).select (new Condition ("year", "<", 1980), new Condition ("length", ">", 100))
+                                                .project ("title year"));
+            ms [run] = (System.nanoTime () - t0) / 1000000;
+            n [run]  = r.size ();
+        } // for
+        System.setOut (console);
+        out.printf ("rows = %s, ms = %s: hits = %d, misses = %d, stale = %d\n",
+                    Arrays.toString (n), Arrays.toString (ms), hits, misses, stale);
+    } // main
+
+} // QueryCache class
@@ -1,736 +1,1596 @@
-/****************************************************************************************
- * @file  Table.java
- *
- * @author   John Miller
- */
-
-import java.io.*;
-import java.util.*;
-import java.util.function.*;
-import java.util.stream.*;
-
-import static java.lang.Boolean.*;
-import static java.lang.System.out;
-
-/****************************************************************************************
- * This class implements relational database tables (including attribute names, domains
- * and a list of tuples.  Five basic relational algebra operators are provided: project,
- * select, union, minus and join.  The insert data manipulation operator is also provided.
- * Missing are update and delete data manipulation operators.
- */
-public class Table
-       implements Serializable
-{
-    /** Relative path for storage directory
-     */
-    private static final String DIR = "store" + File.separator;
-
-    /** Filename extension for database files
-     */
-    private static final String EXT = ".dbf";
-
-    /** Counter for naming temporary tables.
-     */
-    private static int count = 0;
-
-    /** Table name.
-     */
-    private final String name;
-
-    /** Array of attribute names.
-     */
-    private final String [] attribute;
-
-    /** Array of attribute domains: a domain may be
-     *  integer types: Long, Integer, Short, Byte
-     *  real types: Double, Float
-     *  string types: Character, String
-     */
-    private final Class [] domain;
-
-    /** Collection of tuples (data storage).
-     */
-    private final List <Comparable []> tuples;
-
-    /** Primary key. 
-     */
-    private final String [] key;
-
-    /** Index into tuples (maps key to tuple number).
-     */
-    private final Map <KeyType, Comparable []> index;
-
-    //----------------------------------------------------------------------------------
-    // Constructors
-    //----------------------------------------------------------------------------------
-
-    /************************************************************************************
-     * Construct an empty table from the meta-data specifications.
-     *
-     * @param _name       the name of the relation
-     * @param _attribute  the string containing attributes names
-     * @param _domain     the string containing attribute domains (data types)
-     * @param _key        the primary key
-     */  
-    public Table (String _name, String [] _attribute, Class [] _domain, String [] _key)
-    {
-        name      = _name;
-        attribute = _attribute;
-        domain    = _domain;
-        key       = _key;
-        tuples    = new ArrayList <> ();
-        index     = new TreeMap <> ();       // also try BPTreeMap, LinHashMap or ExtHashMap
-//      index     = new LinkedHashMap <> (KeyType.class, Comparable [].class);
-
-    } // constructor
-
-    /************************************************************************************
-     * Construct a table from the meta-data specifications and data in _tuples list.
-     *
-     * @param _name       the name of the relation
-     * @param _attribute  the string containing attributes names
-     * @param _domain     the string containing attribute domains (data types)
-     * @param _key        the primary key
-     * @param _tuple      the list of tuples containing the data
-     */  
-    public Table (String _name, String [] _attribute, Class [] _domain, String [] _key,
-                  List <Comparable []> _tuples)
-    {
-        name      = _name;
-        attribute = _attribute;
-        domain    = _domain;
-        key       = _key;
-        tuples    = _tuples;
-        index     = new TreeMap <> ();       // also try BPTreeMap, LinHashMap or ExtHashMap
-    } // constructor
-
-    /************************************************************************************
-     * Construct an empty table from the raw string specifications.
-     *
-     * @param name        the name of the relation
-     * @param attributes  the string containing attributes names
-     * @param domains     the string containing attribute domains (data types)
-     */
-    public Table (String name, String attributes, String domains, String _key)
-    {
-        this (name, attributes.split (" "), findClass (domains.split (" ")), _key.split(" "));
-
-        out.println ("DDL> create table " + name + " (" + attributes + ")");
-    } // constructor
-
-    //----------------------------------------------------------------------------------
-    // Public Methods
-    //----------------------------------------------------------------------------------
-
-    /************************************************************************************
-     * Project the tuples onto a lower dimension by keeping only the given attributes.
-     * Check whether the original key is included in the projection.
-     *
-     * #usage movie.project ("title year studioNo")
-     *
-     * @param attributes  the attributes to project onto
-     * @return  a table of projected tuples
-     */
-    //completed by Alyssa Cowan
-    public Table project (String attributes)
-    {
-        out.println ("RA> " + name + ".project (" + attributes + ")");
-        String [] attrs     = attributes.split (" ");
-        Class []  colDomain = extractDom (match (attrs), domain);
-        String [] newKey    = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
-
-        List <Comparable []> rows = new ArrayList <> ();
-        
-        rows = tuples //stream all tuples
-        		.stream()
-        		.map(t -> extract(t, attrs)) //given each tuple, using extract function, return shorter tuple using supplied attributes
-        		.collect(Collectors.toList()); //collect new tuples into list
-
-        return new Table (name + count++, attrs, colDomain, newKey, rows);
-    } // project
-
-    /************************************************************************************
-     * Select the tuples satisfying the given predicate (Boolean function).
-     *
-     * #usage movie.select (t -> t[movie.col("year")].equals (1977))
-     *
-     * @param predicate  the check condition for tuples
-     * @return  a table with tuples satisfying the predicate
-     */
-    public Table select (Predicate <Comparable []> predicate)
-    {
-        out.println ("RA> " + name + ".select (" + predicate + ")");
-
-        return new Table (name + count++, attribute, domain, key,
-                   tuples.stream ().filter (t -> predicate.test (t))
-                                   .collect (Collectors.toList ()));
-    } // select
-
-    /************************************************************************************
-     * Select the tuples satisfying the given key predicate (key = value).  Use an index
-     * (Map) to retrieve the tuple with the given key value.
-     *
-     * @param keyVal  the given key value
-     * @return  a table with the tuple satisfying the key predicate
-     */
-    public Table select (KeyType keyVal)
-    {
-        //completed by Kyler 
-		out.println ("RA> " + name + ".select (" + keyVal + ")");
-
-        List <Comparable []> rows = new ArrayList <> (); //create empty ArrayList
-        rows.add (index.get (keyVal)); //add mapped tuples with same predicates as keyVal to rows
-        
-        return new Table (name + count++, attribute, domain, key, rows);
-    } // select
-
-    /************************************************************************************
-     * Union this table and table2.  Check that the two tables are compatible.
-     *
-     * #usage movie.union (show)
-     *
-     * @param table2  the rhs table in the union operation
-     * @return  a table representing the union
-     */
-    public Table union (Table table2)
-    {
-    	//Completed by Ashik
-        out.println ("RA> " + name + ".union (" + table2.name + ")");
-        if (! compatible (table2)) return null;
-
-        List <Comparable []> rows = new ArrayList <> ();
-
-        // copy all tuples from this table and table2
-        for (int i = 0; i < this.tuples.size(); i++) {
-        	rows.add(this.tuples.get(i));
-        }
-        for (int i = 0; i < table2.tuples.size(); i++) {
-        	rows.add(table2.tuples.get(i));
-        }
-
-        return new Table (name + count++, attribute, domain, key, rows);
-    } // union
-
-    /************************************************************************************
-     * Take the difference of this table and table2.  Check that the two tables are
-     * compatible.
-     *
-     * #usage movie.minus (show)
-     *
-     * @param table2  The rhs table in the minus operation
-     * @return  a table representing the difference
-     */
-    public Table minus (Table table2)
-    {
-   
-    	out.println ("RA> " + name + ".minus (" + table2.name + ")");
-    	if (! compatible (table2)) return null;
-
-    	List <Comparable []> rows = new ArrayList <> ();
-
-    	boolean shouldAdd = true; //Boolean to determine whether to add or not
-
-    	KeyType[] thisTupleKey = new KeyType[tuples.size()]; //Creating KeyType Object array to get ready to compare the tuples 
-    	KeyType[] tableTwoKey = new KeyType[table2.tuples.size()]; //Creating KeyType Object array to get ready to compare the tuples
-
-    	for(int i = 0; i < thisTupleKey.length; i++){ //Initializing the array with the tuples initialized in each constructor 
-    		thisTupleKey[i] = new KeyType(tuples.get(i));
-    	}
-    	for(int i = 0; i < tableTwoKey.length; i++){ //Initializing the array with the tuples initialized in each constructor 
-    		tableTwoKey[i] = new KeyType(table2.tuples.get(i));
-    	}
-
-    	for(int i = 0; i < thisTupleKey.length; i++){ //Nested for loop comparing each row of this table with each row of table2, then adding the rows to new table if none of them match
-    		shouldAdd = true;
-    		for(int j = 0; j < tableTwoKey.length; j++){
-    			if(thisTupleKey[i].compareTo(tableTwoKey[j]) == 0){
-    				shouldAdd = false;
-    			}
-    			if (j == tableTwoKey.length - 1 && shouldAdd == true){
-    				rows.add(tuples.get(i));
-    			}
-    		}
-    	}
-
-        
-        return new Table (name + count++, attribute, domain, key, rows);
-    } // minus
-
-    /************************************************************************************
-     * Join this table and table2 by performing an "equi-join".  Tuples from both tables
-     * are compared requiring attributes1 to equal attributes2.  Disambiguate attribute
-     * names by append "2" to the end of any duplicate attribute name.
-     *
-     * #usage movie.join ("studioNo", "name", studio)
-     *
-     * @param attribute1  the attributes of this table to be compared (Foreign Key)
-     * @param attribute2  the attributes of table2 to be compared (Primary Key)
-     * @param table2      the rhs table in the join operation
-     * @return  a table with tuples satisfying the equality predicate
-     */
-    public Table join (String attributes1, String attributes2, Table table2)
-    {
-        out.println ("RA> " + name + ".join (" + attributes1 + ", " + attributes2 + ", "
-                                               + table2.name + ")");
-
-        String [] t_attrs = attributes1.split (" ");
-        String [] u_attrs = attributes2.split (" ");
-
-        List <Comparable []> rows = new ArrayList <> ();
-        // get columns indices
-        int col1 = 0, col2 = 0;      
-        for(int i = 0; i < t_attrs.length; i++)
-        {
-         col1 = col(t_attrs[i]);
-        }//for
-        for(int i = 0; i < u_attrs.length; i++)
-        {
-         col2 = table2.col(u_attrs[i]);
-        }//for
-        
-        //get new attributes for combined table minus duplicate columns
-        String[] newAttrs= new String[this.attribute.length + table2.attribute.length - u_attrs.length];
-        int n= 0;
-        for (int i = 0; i < this.attribute.length; i++) {
-         newAttrs[n]= this.attribute[i];
-         n++;
-        } //for
-        for (int i = 0; i < table2.attribute.length; i++) {
-         if (i != col2) {
-          newAttrs[n] = table2.attribute[i];
-          n++;
-         } //if
-        } //for
-        
-		  // Compare the values of the given attributes
-				for (int i = 0; i < this.tuples.size(); i++) 
-		  {
-		   for (int j = 0; j < table2.tuples.size(); j++) 
-		   {
-			// If table 1 attr = table 2 attr 
-			if(this.tuples.get(i)[col1].compareTo(table2.tuples.get(j)[col2])==0)
-			{
-			 // create a new comparable array to combine tuples
-			 int newSize = this.tuples.get(i).length + table2.tuples.get(j).length - u_attrs.length;
-			 Comparable[] newTuple = new Comparable[newSize];
-			 
-			 // copy first tuple
-			 for(n = 0; n < this.tuples.get(i).length; n++)
-			 {
-			  newTuple[n] = this.tuples.get(i)[n];
-			 }//for
-
-			 // copy second tuple
-			 for(int m = 0; m < table2.tuples.get(j).length; m++)
-			 {
-			  if (m != col2) {
-			   newTuple[n] = table2.tuples.get(j)[m];
-			   n++;
-			  }
-			 }//for
-			 
-			 rows.add(newTuple);
-			}//if 
-		   }//for
-		  }//for
-
-        return new Table (name + count++, newAttrs,
-                                          ArrayUtil.concat (domain, table2.domain), key, rows);
-    } // join
-
-    /************************************************************************************
-     * Join this table and table2 by performing an "natural join".  Tuples from both tables
-     * are compared requiring common attributes to be equal.  The duplicate column is also
-     * eliminated.
-     *
-     * #usage movieStar.join (starsIn)
-     *
-     * @param table2  the rhs table in the join operation
-     * @return  a table with tuples satisfying the equality predicate
-     */
-    public Table join (Table table2)
-    {
-        out.println ("RA> " + name + ".join (" + table2.name + ")");
-
-        List <Comparable []> rows = new ArrayList <> ();
-
-        /*
-		  *
-		  * Implementing natural join 
-		  */
-        
-        //find duplicate column names
-        boolean foundDup = false; //found duplicates
-        int[] table1Dup = null; //hold indices of duplicate column(s) from table1
-        int[] table2Dup = null; //hold indices of duplicate column(s) from table2
-        //note: duplicates will have matching indices in the arrays
-        //ex. the indices for the first matching column names in table1 and table2 will be at table1Dup[0] and table2Dup[0]
-        int count = 0;
-        for (int i = 0; i < this.attribute.length; i++) {
-         for (int j = 0; j < table2.attribute.length; j++) {
-          if (this.attribute.equals(table2.attribute)) {
-           table1Dup[count] = i;
-           table2Dup[count] = j;
-           count++;
-           foundDup = true;
-          }
-           
-         }
-        }
-        
-        String[] newAttrs= new String[this.attribute.length + table2.attribute.length - count];
-        if (foundDup) {
-         //get new attributes for combined table minus duplicate columns
-         int n= 0;
-         for (int i = 0; i < this.attribute.length; i++) {
-          newAttrs[n]= this.attribute[i];
-          n++;
-         } //for
-         for (int i = 0; i < table2.attribute.length; i++) {
-          boolean check = true;
-          for (int j = 0; j < table2Dup.length; j++) {
-           if (i == table2Dup[j]) {
-            check = false;
-           }
-          }
-          if (check) { //if i is not in any of the matched duplicate indices then add
-           newAttrs[n] = table2.attribute[i];
-           n++;
-          } //if
-         } //for
-                 
-   // Compare the values of the given attributes
-   for (int i = 0; i < this.tuples.size(); i++) 
-   {
-    for (int j = 0; j < table2.tuples.size(); j++) 
-    {
-     boolean check = true; //check to see if values in duplicate columns are equal
-     
-     for (int k = 0; k < table2Dup.length; k++) { //check to see if equal at all parts of tuples
-      if (this.tuples.get(i)[table1Dup[k]].compareTo(table2.tuples.get(j)[table2Dup[k]])!=0) {
-       check = false; //if ever not equal, mark false
-      }
-     }
-     // If table 1 attrs = table 2 attrs 
-     if(check)
-     {
-      // create a new comparable array to combine tuples
-      int newSize = this.tuples.get(i).length + table2.tuples.get(j).length - table2Dup.length;
-      Comparable[] newTuple = new Comparable[newSize];
-      
-      // copy first tuple
-      for(n = 0; n < this.tuples.get(i).length; n++)
-      {
-       newTuple[n] = this.tuples.get(i)[n];
-      }//for
- 
-      // copy second tuple
-      for (int m = 0; m < table2.tuples.get(j).length; m++) {
-       check = true;
-       for (int k = 0; k < table2Dup.length; k++) {
-        if (m == table2Dup[k])
-         check = false;
-       }
-       if (check) {
-        newTuple[n] = table2.tuples.get(j)[m];
-        n++;
-       }
-      } //for
-      
-      rows.add(newTuple);
-     }//if 
-    }//for
-   }//for
-        }
-        else {
-         newAttrs = ArrayUtil.concat (attribute, table2.attribute);
-         //if no duplicate column names are found
-         // iterate over both tables
-         for(int i = 0; i < this.tuples.size(); i++)
-         {
-          for(int j = 0; j < table2.tuples.size(); j++)
-          {
-           // create a new comparable array to combine tuples
-           int newSize = this.tuples.get(i).length + table2.tuples.get(j).length;
-           Comparable[] newTuple = new Comparable[newSize];
-           
-           // copy first tuple
-           int n = 0;
-           for(n = 0; n < this.tuples.get(i).length; n++)
-           {
-            newTuple[n] = this.tuples.get(i)[n];
-           }//for
- 
-           // copy second tuple
-           for(int m = 0; m < table2.tuples.get(j).length; m++, n++)
-           {
-            newTuple[n] = table2.tuples.get(j)[m];
-           }//for
-           
-           rows.add(newTuple);
-          }//for
-         }//for
-        }//else
-        
-        return new Table (name + count++, newAttrs,
-                                          ArrayUtil.concat (domain, table2.domain), key, rows);
-    } // join
-
-    /************************************************************************************
-     * Return the column position for the given attribute name.
-     *
-     * @param attr  the given attribute name
-     * @return  a column position
-     */
-    public int col (String attr)
-    {
-        for (int i = 0; i < attribute.length; i++) {
-           if (attr.equals (attribute [i])) return i;
-        } // for
-
-        return -1;  // not found
-    } // col
-
-    /************************************************************************************
-     * Insert a tuple to the table.
-     *
-     * #usage movie.insert ("'Star_Wars'", 1977, 124, "T", "Fox", 12345)
-     *
-     * @param tup  the array of attribute values forming the tuple
-     * @return  whether insertion was successful
-     */
-    public boolean insert (Comparable [] tup)
-    {
-        out.println ("DML> insert into " + name + " values ( " + Arrays.toString (tup) + " )");
-
-        if (typeCheck (tup)) {
-            tuples.add (tup);
-            Comparable [] keyVal = new Comparable [key.length];
-            int []        cols   = match (key);
-            for (int j = 0; j < keyVal.length; j++) keyVal [j] = tup [cols [j]];
-            index.put (new KeyType (keyVal), tup);
-            return true;
-        } else {
-            return false;
-        } // if
-    } // insert
-
-    /************************************************************************************
-     * Get the name of the table.
-     *
-     * @return  the table's name
-     */
-    public String getName ()
-    {
-        return name;
-    } // getName
-
-    /************************************************************************************
-     * Print this table.
-     */
-    public void print ()
-    {
-        out.println ("\n Table " + name);
-        out.print ("|-");
-        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
-        out.println ("-|");
-        out.print ("| ");
-        for (String a : attribute) out.printf ("%15s", a);
-        out.println (" |");
-        out.print ("|-");
-        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
-        out.println ("-|");
-        for (Comparable [] tup : tuples) {
-            out.print ("| ");
-            for (Comparable attr : tup) out.printf ("%15s", attr);
-            out.println (" |");
-        } // for
-        out.print ("|-");
-        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
-        out.println ("-|");
-    } // print
-
-    /************************************************************************************
-     * Print this table's index (Map).
-     */
-    public void printIndex ()
-    {
-        out.println ("\n Index for " + name);
-        out.println ("-------------------");
-        for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
-            out.println (e.getKey () + " -> " + Arrays.toString (e.getValue ()));
-        } // for
-        out.println ("-------------------");
-    } // printIndex
-
-    /************************************************************************************
-     * Load the table with the given name into memory. 
-     *
-     * @param name  the name of the table to load
-     */
-    public static Table load (String name)
-    {
-        Table tab = null;
-        try {
-            ObjectInputStream ois = new ObjectInputStream (new FileInputStream (DIR + name + EXT));
-            tab = (Table) ois.readObject ();
-            ois.close ();
-        } catch (IOException ex) {
-            out.println ("load: IO Exception");
-            ex.printStackTrace ();
-        } catch (ClassNotFoundException ex) {
-            out.println ("load: Class Not Found Exception");
-            ex.printStackTrace ();
-        } // try
-        return tab;
-    } // load
-
-    /************************************************************************************
-     * Save this table in a file.
-     */
-    public void save ()
-    {
-        try {
-            ObjectOutputStream oos = new ObjectOutputStream (new FileOutputStream (DIR + name + EXT));
-            oos.writeObject (this);
-            oos.close ();
-        } catch (IOException ex) {
-            out.println ("save: IO Exception");
-            ex.printStackTrace ();
-        } // try
-    } // save
-
-    //----------------------------------------------------------------------------------
-    // Private Methods
-    //----------------------------------------------------------------------------------
-
-    /************************************************************************************
-     * Determine whether the two tables (this and table2) are compatible, i.e., have
-     * the same number of attributes each with the same corresponding domain.
-     *
-     * @param table2  the rhs table
-     * @return  whether the two tables are compatible
-     */
-    private boolean compatible (Table table2)
-    {
-        if (domain.length != table2.domain.length) {
-            out.println ("compatible ERROR: table have different arity");
-            return false;
-        } // if
-        for (int j = 0; j < domain.length; j++) {
-            if (domain [j] != table2.domain [j]) {
-                out.println ("compatible ERROR: tables disagree on domain " + j);
-                return false;
-            } // if
-        } // for
-        return true;
-    } // compatible
-
-    /************************************************************************************
-     * Match the column and attribute names to determine the domains.
-     *
-     * @param column  the array of column names
-     * @return  an array of column index positions
-     */
-    private int [] match (String [] column)
-    {
-        int [] colPos = new int [column.length];
-
-        for (int j = 0; j < column.length; j++) {
-            boolean matched = false;
-            for (int k = 0; k < attribute.length; k++) {
-                if (column [j].equals (attribute [k])) {
-                    matched = true;
-                    colPos [j] = k;
-                } // for
-            } // for
-            if ( ! matched) {
-                out.println ("match: domain not found for " + column [j]);
-            } // if
-        } // for
-
-        return colPos;
-    } // match
-
-    /************************************************************************************
-     * Extract the attributes specified by the column array from tuple t.
-     *
-     * @param t       the tuple to extract from
-     * @param column  the array of column names
-     * @return  a smaller tuple extracted from tuple t 
-     */
-    private Comparable [] extract (Comparable [] t, String [] column)
-    {
-        Comparable [] tup = new Comparable [column.length];
-        int [] colPos = match (column);
-        for (int j = 0; j < column.length; j++) tup [j] = t [colPos [j]];
-        return tup;
-    } // extract
-
-    /************************************************************************************
-     * Check the size of the tuple (number of elements in list) as well as the type of
-     * each value to ensure it is from the right domain. 
-     *
-     * @param t  the tuple as a list of attribute values
-     * @return  whether the tuple has the right size and values that comply
-     *          with the given domains
-     */
-    //completed by Alyssa Cowan
-    private boolean typeCheck (Comparable [] t)
-    { 
-    	if (t.length != domain.length) //if lengths are different, return false
-    		return false;
-    	else {
-	    	int typeError=0; //if we find a Class type error, increment typeError count
-	    	for (int i=0; i<t.length; i++) {
-	    		if (!domain[i].isInstance(t[i])) //check if tuple's class is equal to domain
-	    			typeError++;
-	    	}
-	    	if (typeError == 0)
-	    		return true;
-	    	else
-	    		return false;
-    	}
-
-    } // typeCheck
-
-    /************************************************************************************
-     * Find the classes in the "java.lang" package with given names.
-     *
-     * @param className  the array of class name (e.g., {"Integer", "String"})
-     * @return  an array of Java classes
-     */
-    private static Class [] findClass (String [] className)
-    {
-        Class [] classArray = new Class [className.length];
-
-        for (int i = 0; i < className.length; i++) {
-            try {
-                classArray [i] = Class.forName ("java.lang." + className [i]);
-            } catch (ClassNotFoundException ex) {
-                out.println ("findClass: " + ex);
-            } // try
-        } // for
-
-        return classArray;
-    } // findClass
-
-    /************************************************************************************
-     * Extract the corresponding domains.
-     *
-     * @param colPos the column positions to extract.
-     * @param group  where to extract from
-     * @return  the extracted domains
-     */
-    private Class [] extractDom (int [] colPos, Class [] group)
-    {
-        Class [] obj = new Class [colPos.length];
-
-        for (int j = 0; j < colPos.length; j++) {
-            obj [j] = group [colPos [j]];
-        } // for
-
-        return obj;
-    } // extractDom
-
-} // Table class
+/****************************************************************************************
+ * @file  Table.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import static java.lang.Boolean.*;
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class implements relational database tables (including attribute names, domains
+ * and a list of tuples.  Five basic relational algebra operators are provided: project,
+ * select, union, minus and join.  The insert and delete data manipulation operators are
+ * also provided.  Missing is the update data manipulation operator.
+ */
+public class Table
+       implements Serializable
+{
+    /** Relative path for storage directory
+     */
+    private static final String DIR = "store" + File.separator;
+
+    /** Filename extension for database files
+     */
+    private static final String EXT = ".dbf";
+
+    /** Counter for naming temporary tables.
+     */
+    private static int count = 0;
+
+    /** Table name.
+     */
+    private final String name;
+
+    /** Array of attribute names.
+     */
+    private final String [] attribute;
+
+    /** Array of attribute domains: a domain may be
+     *  integer types: Long, Integer, Short, Byte
+     *  real types: Double, Float
+     *  string types: Character, String
+     */
+    private final Class [] domain;
+
+    /** Collection of tuples (data storage).
+     */
+    private final List <Comparable []> tuples;
+
+    /** Primary key. 
+     */
+    private final String [] key;
+
+    /** The kind of primary index used (saved with the table's meta-data).
+     */
+    private final IndexType indexType;
+
+    /** Index into tuples (maps key to tuple number), or null for IndexType.NONE.
+     */
+    private final Map <KeyType, Comparable []> index;
+
+    /** Statistics on the data distribution (maintained on insert/delete for base tables,
+     *  null for query results until analyze is called).
+     */
+    private TableStats stats;
+
+    /** Per-block min/max summaries of the tuples, used by select to skip blocks (kept and
+     *  saved for base tables, null for query results).
+     */
+    private ZoneMap zones;
+
+    /** A column-wise copy of the tuples for vectorized execution, built on first use and
+     *  dropped on insert/delete (only kept for base tables, whose changes are tracked).
+     */
+    private transient VectorExec.ColumnStore columns;
+
+    /** The version of the tuples, bumped by every insert and delete (so cached query
+     *  results over this table can tell they are stale)
+     */
+    private transient long version = 0;
+
+    /** The materialized views defined over this table (notified of inserts and deletes)
+     */
+    private transient List <MaterializedView> views;
+
+    //----------------------------------------------------------------------------------
+    // Constructors
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Construct an empty table from the meta-data specifications.
+     *
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     */  
+    public Table (String _name, String [] _attribute, Class [] _domain, String [] _key)
+    {
+        this (_name, _attribute, _domain, _key, IndexType.TREE_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the meta-data specifications, using the given kind
+     * of primary index.
+     *
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param _indexType  the kind of primary index (e.g., IndexType.BPTREE_MAP)
+     */  
+    public Table (String _name, String [] _attribute, Class [] _domain, String [] _key,
+                  IndexType _indexType)
+    {
+        name      = _name;
+        attribute = _attribute;
+        domain    = _domain;
+        key       = _key;
+        tuples    = new ArrayList <> ();
+        indexType = _indexType;
+        index     = _indexType.create (_name);
+        stats     = new TableStats (_attribute.length);
+        zones     = new ZoneMap (_attribute.length);
+    } // constructor
+
+    /************************************************************************************
+     * Construct a table from the meta-data specifications and data in _tuples list.
+     *
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param _tuple      the list of tuples containing the data
+     */  
+    public Table (String _name, String [] _attribute, Class [] _domain, String [] _key,
+                  List <Comparable []> _tuples)
+    {
+        name      = _name;
+        attribute = _attribute;
+        domain    = _domain;
+        key       = _key;
+        tuples    = _tuples;
+        indexType = IndexType.NONE;                   // results of queries are not indexed
+        index     = null;
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications.
+     *
+     * @param name        the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     */
+    public Table (String name, String attributes, String domains, String _key)
+    {
+        this (name, attributes, domains, _key, IndexType.TREE_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, using the given kind
+     * of primary index.
+     *
+     * @param name        the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     * @param _indexType  the kind of primary index (e.g., IndexType.LINHASH_MAP)
+     */
+    public Table (String name, String attributes, String domains, String _key, IndexType _indexType)
+    {
+        this (name, attributes.split (" "), findClass (domains.split (" ")), _key.split(" "), _indexType);
+
+        out.println ("DDL> create table " + name + " (" + attributes + ")");
+    } // constructor
+
+    //----------------------------------------------------------------------------------
+    // Public Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Project the tuples onto a lower dimension by keeping only the given attributes.
+     * Check whether the original key is included in the projection.  If not, duplicate
+     * tuples may result, so these are eliminated (see Distinct).
+     *
+     * #usage movie.project ("title year studioNo")
+     *
+     * @param attributes  the attributes to project onto
+     * @return  a table of projected tuples
+     */
+    //completed by Alyssa Cowan
+    public Table project (String attributes)
+    {
+        out.println ("RA> " + name + ".project (" + attributes + ")");
+        String [] attrs     = attributes.split (" ");
+        Class []  colDomain = extractDom (match (attrs), domain);
+        String [] newKey    = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
+
+        List <Comparable []> rows = new ArrayList <> ();
+        
+        if (newKey == attrs) {                  // key dropped: eliminate duplicates as the tuples stream by
+            rows = Distinct.distinct (() -> tuples.stream ().map (t -> extract (t, attrs)).iterator (), Distinct.MAX_MEM);
+        } else {
+            rows = tuples //stream all tuples
+            		.stream()
+            		.map(t -> extract(t, attrs)) //given each tuple, using extract function, return shorter tuple using supplied attributes
+            		.collect(Collectors.toList()); //collect new tuples into list
+        } // if
+
+        return new Table (name + count++, attrs, colDomain, newKey, rows);
+    } // project
+
+    /************************************************************************************
+     * Eliminate duplicate tuples, using hashing that spills to disk when there are too
+     * many distinct tuples to hold in memory (see Distinct).
+     *
+     * #usage movie.project ("studioName year").distinct ()
+     *
+     * @return  a table with the distinct tuples
+     */
+    public Table distinct ()
+    {
+        out.println ("RA> " + name + ".distinct ()");
+
+        return new Table (name + count++, attribute, domain, key, Distinct.distinct (tuples, Distinct.MAX_MEM));
+    } // distinct
+
+    /************************************************************************************
+     * Select the tuples satisfying the given predicate (Boolean function).
+     *
+     * #usage movie.select (t -> t[movie.col("year")].equals (1977))
+     *
+     * @param predicate  the check condition for tuples
+     * @return  a table with tuples satisfying the predicate
+     */
+    public Table select (Predicate <Comparable []> predicate)
+    {
+        out.println ("RA> " + name + ".select (" + predicate + ")");
+
+        return new Table (name + count++, attribute, domain, key,
+                   tuples.stream ().filter (t -> predicate.test (t))
+                                   .collect (Collectors.toList ()));
+    } // select
+
+    /************************************************************************************
+     * Select the tuples satisfying the given key predicate (key = value).  Use an index
+     * (Map) to retrieve the tuple with the given key value.
+     *
+     * @param keyVal  the given key value
+     * @return  a table with the tuple satisfying the key predicate
+     */
+    public Table select (KeyType keyVal)
+    {
+        //completed by Kyler 
+		out.println ("RA> " + name + ".select (" + keyVal + ")");
+
+        List <Comparable []> rows = new ArrayList <> (); //create empty ArrayList
+        Comparable [] tup = (index != null) ? index.get (keyVal) : find (keyVal);
+        if (tup != null) rows.add (tup); //add mapped tuples with same predicates as keyVal to rows
+        
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // select
+
+    /************************************************************************************
+     * Select the tuples satisfying all the given conditions.  When one of them is an
+     * equality on a single-attribute primary key, the index (Map) is used to find the
+     * (at most one) candidate tuple.  Otherwise, blocks of tuples whose min/max
+     * summaries rule them out are skipped (see ZoneMap).
+     *
+     * #usage movie.select (new Condition ("year", "==", 1977), new Condition ("length", ">", 100))
+     *
+     * @param conds  the conditions to satisfy
+     * @return  a table with the tuples satisfying the conditions
+     */
+    public Table select (Condition ... conds)
+    {
+        out.println ("RA> " + name + ".select (" + Arrays.stream (conds).map (Condition::toString)
+                                                         .collect (Collectors.joining (" & ")) + ")");
+
+        int [] cols = condCols (conds);
+
+        Collection <Comparable []> candidates = tuples;
+        for (Condition c : conds) {
+            if (index != null && key.length == 1 && c.op == Condition.Op.EQ && c.attr.equals (key [0])) {
+                Comparable [] tup = index.get (new KeyType (c.value));
+                candidates = (tup == null) ? Collections.emptyList () : Collections.singletonList (tup);
+                break;
+            } // if
+        } // for
+
+        List <Collection <Comparable []>> parts = List.of (candidates);
+        if (candidates == tuples && zones != null && conds.length > 0) {  // skip blocks ruled out by the zone map
+            parts = new ArrayList <> (zones.candidates (tuples, cols, conds));
+        } // if
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Collection <Comparable []> part : parts) {
+            outer:
+            for (Comparable [] t : part) {
+                for (int j = 0; j < conds.length; j++) if (! conds [j].test (t [cols [j]])) continue outer;
+                rows.add (t);
+            } // for
+        } // for
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // select
+
+    /************************************************************************************
+     * Select the tuples satisfying all the given conditions using vectorized execution:
+     * the conditions are applied a batch of rows at a time to primitive column arrays
+     * (see VectorExec), rather than a tuple at a time to boxed values.
+     *
+     * #usage movie.v_select (new Condition ("year", ">=", 1980), new Condition ("length", "<", 100))
+     *
+     * @param conds  the conditions to satisfy
+     * @return  a table with the tuples satisfying the conditions
+     */
+    public Table v_select (Condition ... conds)
+    {
+        out.println ("RA> " + name + ".v_select (" + Arrays.stream (conds).map (Condition::toString)
+                                                           .collect (Collectors.joining (" & ")) + ")");
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (int r : v_rows (conds)) rows.add (tuples.get (r));
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // v_select
+
+    /************************************************************************************
+     * Select the tuples satisfying all the given conditions and project them onto the
+     * given attributes, using vectorized execution for the selection.
+     *
+     * #usage movie.v_select ("title year", new Condition ("length", "<", 100))
+     *
+     * @param attributes  the attributes to project onto
+     * @param conds       the conditions to satisfy
+     * @return  a table with the projected tuples satisfying the conditions
+     */
+    public Table v_select (String attributes, Condition ... conds)
+    {
+        out.println ("RA> " + name + ".v_select (" + attributes + ", " + Arrays.stream (conds)
+                                 .map (Condition::toString).collect (Collectors.joining (" & ")) + ")");
+
+        String [] attrs  = split (attributes);
+        int []    cols   = match (attrs);
+        String [] newKey = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (int r : v_rows (conds)) {
+            Comparable [] t = tuples.get (r), u = new Comparable [cols.length];
+            for (int j = 0; j < cols.length; j++) u [j] = t [cols [j]];
+            rows.add (u);
+        } // for
+        if (newKey == attrs) rows = Distinct.distinct (rows, Distinct.MAX_MEM);   // key dropped (as in project)
+        return new Table (name + count++, attrs, extractDom (cols, domain), newKey, rows);
+    } // v_select
+
+    /************************************************************************************
+     * Extend the tuples with a new attribute computed as "attr op operand", where the
+     * operand is either the name of a numeric attribute or a number.  The arithmetic is
+     * vectorized over primitive column arrays (see VectorExec).
+     *
+     * #usage movie.v_extend ("hours", "length", '/', 60)
+     *
+     * @param newAttr  the name of the new attribute
+     * @param attr     the numeric lhs attribute
+     * @param op       the arithmetic operator (+, -, * or /)
+     * @param operand  the rhs: an attribute name or a number
+     * @return  a table with the extended tuples
+     */
+    public Table v_extend (String newAttr, String attr, char op, Comparable operand)
+    {
+        out.println ("RA> " + name + ".v_extend (" + newAttr + " = " + attr + " " + op + " " + operand + ")");
+
+        if ("+-*/".indexOf (op) < 0) throw new IllegalArgumentException ("v_extend: unknown operator " + op);
+        int a = col (attr), b = (operand instanceof String) ? col ((String) operand) : -1;
+        if (a < 0 || operand instanceof String && b < 0 || ! (operand instanceof String || operand instanceof Number)) {
+            throw new IllegalArgumentException ("v_extend: unknown attribute or operand");
+        } // if
+        if (op == '/' && b < 0 && ((Number) operand).doubleValue () == 0 && ! (operand instanceof Double || operand instanceof Float)) {
+            throw new ArithmeticException ("v_extend: division by zero");
+        } // if
+
+        VectorExec.ColumnStore cs = columnStore ();
+        Object z  = VectorExec.arith (cs, a, op, b, (b < 0) ? (Number) operand : null);
+        Class  zd = VectorExec.domainOf (z);
+        boolean [] na = cs.isNull [a], nb = (b >= 0) ? cs.isNull [b] : null;
+        boolean    intDiv = op == '/' && b >= 0 && zd != Double.class;
+
+        List <Comparable []> rows = new ArrayList <> (cs.n);
+        for (int r = 0; r < cs.n; r++) {
+            Comparable [] t = tuples.get (r), u = Arrays.copyOf (t, t.length + 1);
+            boolean isNull = na != null && na [r] || nb != null && nb [r]
+                             || intDiv && ((Number) t [b]).longValue () == 0;
+            u [t.length] = isNull ? null : VectorExec.box (z, r, zd);
+            rows.add (u);
+        } // for
+
+        String [] attrs = Arrays.copyOf (attribute, attribute.length + 1);
+        Class []  dom   = Arrays.copyOf (domain, domain.length + 1);
+        attrs [attribute.length] = newAttr;
+        dom [domain.length]      = zd;
+        return new Table (name + count++, attrs, dom, key, rows);
+    } // v_extend
+
+    /************************************************************************************
+     * Select the tuples satisfying all the given conditions and project them onto the
+     * given attributes, using a query compiled to bytecode (see CodeGen).  Compiled
+     * queries are cached by shape, so repeating a query with other values is cheap.
+     *
+     * #usage movie.c_select ("title year", new Condition ("length", "<", 100))
+     *
+     * @param attributes  the attributes to project onto
+     * @param conds       the conditions to satisfy
+     * @return  a table with the projected tuples satisfying the conditions
+     */
+    public Table c_select (String attributes, Condition ... conds)
+    {
+        out.println ("RA> " + name + ".c_select (" + attributes + ", " + Arrays.stream (conds)
+                                 .map (Condition::toString).collect (Collectors.joining (" & ")) + ")");
+
+        String [] attrs  = split (attributes);
+        int []    proj   = match (attrs);
+        String [] newKey = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
+        List <Comparable []> rows = CodeGen.compile (domain, condCols (conds), conds, proj)
+                                           .apply (tuples, CodeGen.params (conds));
+        if (newKey == attrs) rows = Distinct.distinct (rows, Distinct.MAX_MEM);   // key dropped (as in project)
+        return new Table (name + count++, attrs, extractDom (proj, domain), newKey, rows);
+    } // c_select
+
+    /************************************************************************************
+     * Select the tuples satisfying all the given conditions, using a query compiled to
+     * bytecode (see CodeGen).
+     *
+     * #usage movie.c_select (new Condition ("year", ">=", 1980))
+     *
+     * @param conds  the conditions to satisfy
+     * @return  a table with the tuples satisfying the conditions
+     */
+    public Table c_select (Condition ... conds)
+    {
+        out.println ("RA> " + name + ".c_select (" + Arrays.stream (conds).map (Condition::toString)
+                                                           .collect (Collectors.joining (" & ")) + ")");
+
+        List <Comparable []> rows = CodeGen.compile (domain, condCols (conds), conds, null)
+                                           .apply (tuples, CodeGen.params (conds));
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // c_select
+
+    /************************************************************************************
+     * Group the tuples by the given attributes and compute aggregates for each group
+     * (count, sum, min, max, avg, countDistinct; see GroupBy).  The result has the
+     * grouping attributes followed by one attribute per aggregate, named e.g.
+     * "sum_length" ("count" for count(*)).  When this table has a sorted index (TREE_MAP
+     * or BPTREE_MAP) whose key begins with the grouping attributes, the tuples are read
+     * in key order and aggregated a group at a time; otherwise hash aggregation is used.
+     *
+     * #usage movie.groupBy ("studioName", "count(*) avg(length) max(year)")
+     *
+     * @param attributes  the grouping attributes (blank for one group of all tuples)
+     * @param aggregates  the aggregates to compute
+     * @return  a table with one tuple per group
+     */
+    public Table groupBy (String attributes, String aggregates)
+    {
+        out.println ("RA> " + name + ".groupBy (" + attributes + "; " + aggregates + ")");
+
+        String []       attrs = split (attributes);
+        int []          cols  = match (attrs);
+        GroupBy.Agg []  aggs  = GroupBy.parse (aggregates, this);
+
+        boolean keyOrder = index != null && indexType.isSorted () && attrs.length <= key.length
+                           && new HashSet <> (Arrays.asList (key).subList (0, attrs.length)).equals (new HashSet <> (Arrays.asList (attrs)));
+        List <Comparable []> rows = keyOrder ? GroupBy.sorted (index.values (), cols, aggs, domain)
+                                             : GroupBy.hash (tuples, cols, aggs, domain);
+
+        String [] newAttrs = Arrays.copyOf (attrs, attrs.length + aggs.length);
+        Class []  newDom   = Arrays.copyOf (extractDom (cols, domain), attrs.length + aggs.length);
+        Class []  aggDom   = GroupBy.domains (aggs, domain);
+        for (int a = 0; a < aggs.length; a++) {
+            newAttrs [attrs.length + a] = aggs [a].name;
+            newDom [attrs.length + a]   = aggDom [a];
+        } // for
+        return new Table (name + count++, newAttrs, newDom, (attrs.length > 0) ? attrs : newAttrs, rows);
+    } // groupBy
+
+    /************************************************************************************
+     * Sort the tuples on the given attributes.  The tuples are already in memory, so
+     * their references are sorted in place in the result's list (the tuples themselves
+     * are shared, not copied).
+     *
+     * #usage movie.orderBy ("year title", "desc asc")
+     *
+     * @param attributes  the attributes to sort on (most significant first)
+     * @param directions  "asc" or "desc" for each attribute (blank for all "asc")
+     * @return  a table with the tuples in sorted order
+     */
+    public Table orderBy (String attributes, String directions)
+    {
+        out.println ("RA> " + name + ".orderBy (" + attributes + "; " + directions + ")");
+
+        List <Comparable []> rows = new ArrayList <> (tuples);
+        rows.sort (TopN.comparator (sortCols (attributes), descending (attributes, directions)));
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // orderBy
+
+    /************************************************************************************
+     * Return the first limit tuples in the order given by the attributes (Top-N).  Only
+     * limit tuples are kept (in a bounded heap), so the input is never sorted as a whole.
+     *
+     * #usage movie.orderBy ("length", "desc", 10)
+     *
+     * @param attributes  the attributes to sort on (most significant first)
+     * @param directions  "asc" or "desc" for each attribute (blank for all "asc")
+     * @param limit       the number of tuples wanted
+     * @return  a table with the first limit tuples in sorted order
+     */
+    public Table orderBy (String attributes, String directions, int limit)
+    {
+        out.println ("RA> " + name + ".orderBy (" + attributes + "; " + directions + "; limit " + limit + ")");
+
+        TopN top = new TopN (sortCols (attributes), descending (attributes, directions));
+        return new Table (name + count++, attribute, domain, key, top.topN (tuples, limit));
+    } // orderBy
+
+    /************************************************************************************
+     * Return the column of each sort attribute.
+     */
+    private int [] sortCols (String attributes)
+    {
+        String [] attrs = split (attributes);
+        int []    cols  = new int [attrs.length];
+        for (int j = 0; j < attrs.length; j++) {
+            cols [j] = col (attrs [j]);
+            if (cols [j] < 0) throw new IllegalArgumentException ("orderBy: unknown attribute " + attrs [j]);
+        } // for
+        return cols;
+    } // sortCols
+
+    /************************************************************************************
+     * Return whether each sort attribute is in descending order.
+     */
+    private static boolean [] descending (String attributes, String directions)
+    {
+        String [] attrs = split (attributes), dirs = (directions == null) ? new String [0] : split (directions);
+        if (dirs.length > attrs.length) throw new IllegalArgumentException ("orderBy: more directions than attributes");
+        boolean [] desc = new boolean [attrs.length];
+        for (int j = 0; j < dirs.length; j++) {
+            if (dirs [j].equalsIgnoreCase ("desc"))     desc [j] = true;
+            else if (! dirs [j].equalsIgnoreCase ("asc")) throw new IllegalArgumentException ("orderBy: bad direction " + dirs [j]);
+        } // for
+        return desc;
+    } // descending
+
+    /************************************************************************************
+     * Return the column of each condition's attribute.
+     */
+    private int [] condCols (Condition [] conds)
+    {
+        int [] cols = new int [conds.length];
+        for (int j = 0; j < conds.length; j++) {
+            cols [j] = col (conds [j].attr);
+            if (cols [j] < 0) throw new IllegalArgumentException ("unknown attribute " + conds [j].attr);
+        } // for
+        return cols;
+    } // condCols
+
+    /************************************************************************************
+     * Return the positions (in tuples) of the tuples satisfying all the conditions,
+     * found by vectorized execution.
+     */
+    private int [] v_rows (Condition [] conds)
+    {
+        return VectorExec.select (columnStore (), condCols (conds), conds);
+    } // v_rows
+
+    /************************************************************************************
+     * Return the column store for vectorized execution, building it if need be.  It is
+     * cached for base tables (invalidated on insert/delete); query results may share
+     * their tuples with a base table, so theirs is rebuilt each time.
+     */
+    private VectorExec.ColumnStore columnStore ()
+    {
+        VectorExec.ColumnStore cs = columns;
+        if (cs == null || cs.n != tuples.size ()) {
+            cs = new VectorExec.ColumnStore (tuples, domain);
+            if (stats != null) columns = cs;
+        } // if
+        return cs;
+    } // columnStore
+
+    /************************************************************************************
+     * Rename the attributes of this table (the tuples are shared, not copied).
+     *
+     * #usage movie.rename ("t y l g s p")
+     *
+     * @param attributes  the new attribute names
+     * @return  a table with the renamed attributes
+     */
+    public Table rename (String attributes)
+    {
+        out.println ("RA> " + name + ".rename (" + attributes + ")");
+
+        String [] attrs  = split (attributes);
+        String [] newKey = new String [key.length];
+        for (int j = 0; j < key.length; j++) newKey [j] = attrs [col (key [j])];
+        return new Table (name + count++, attrs, domain, newKey, tuples);
+    } // rename
+
+    /************************************************************************************
+     * Select the tuples whose key is in the range [loVal, hiVal).  A sorted index
+     * (TREE_MAP or BPTREE_MAP) is used to find them; otherwise the tuples are scanned.
+     *
+     * #usage movie.select (new KeyType ("A", 0), new KeyType ("M", 0))
+     *
+     * @param loVal  the lower bound on the key (inclusive)
+     * @param hiVal  the upper bound on the key (exclusive)
+     * @return  a table with the tuples whose key is in the range
+     */
+    public Table select (KeyType loVal, KeyType hiVal)
+    {
+        out.println ("RA> " + name + ".select (" + loVal + " <= key < " + hiVal + ")");
+
+        List <Comparable []> rows;
+        if (indexType.isSorted ()) {
+            rows = new ArrayList <> (((SortedMap <KeyType, Comparable []>) index).subMap (loVal, hiVal).values ());
+        } else {
+            rows = tuples.stream ().filter (t -> { KeyType k = keyOf (t);
+                                                   return k.compareTo (loVal) >= 0 && k.compareTo (hiVal) < 0; })
+                                   .collect (Collectors.toList ());
+        } // if
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // select
+
+    /************************************************************************************
+     * Union this table and table2.  Check that the two tables are compatible.
+     *
+     * #usage movie.union (show)
+     *
+     * @param table2  the rhs table in the union operation
+     * @return  a table representing the union
+     */
+    public Table union (Table table2)
+    {
+    	//Completed by Ashik
+        out.println ("RA> " + name + ".union (" + table2.name + ")");
+        if (! compatible (table2)) return null;
+
+        List <Comparable []> rows = new ArrayList <> ();
+
+        // copy all tuples from this table and table2
+        for (int i = 0; i < this.tuples.size(); i++) {
+        	rows.add(this.tuples.get(i));
+        }
+        for (int i = 0; i < table2.tuples.size(); i++) {
+        	rows.add(table2.tuples.get(i));
+        }
+
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // union
+
+    /************************************************************************************
+     * Take the difference of this table and table2.  Check that the two tables are
+     * compatible.
+     *
+     * #usage movie.minus (show)
+     *
+     * @param table2  The rhs table in the minus operation
+     * @return  a table representing the difference
+     */
+    public Table minus (Table table2)
+    {
+   
+    	out.println ("RA> " + name + ".minus (" + table2.name + ")");
+    	if (! compatible (table2)) return null;
+
+    	List <Comparable []> rows = new ArrayList <> ();
+
+    	boolean shouldAdd = true; //Boolean to determine whether to add or not
+
+    	KeyType[] thisTupleKey = new KeyType[tuples.size()]; //Creating KeyType Object array to get ready to compare the tuples 
+    	KeyType[] tableTwoKey = new KeyType[table2.tuples.size()]; //Creating KeyType Object array to get ready to compare the tuples
+
+    	for(int i = 0; i < thisTupleKey.length; i++){ //Initializing the array with the tuples initialized in each constructor 
+    		thisTupleKey[i] = new KeyType(tuples.get(i));
+    	}
+    	for(int i = 0; i < tableTwoKey.length; i++){ //Initializing the array with the tuples initialized in each constructor 
+    		tableTwoKey[i] = new KeyType(table2.tuples.get(i));
+    	}
+
+    	for(int i = 0; i < thisTupleKey.length; i++){ //Nested for loop comparing each row of this table with each row of table2, then adding the rows to new table if none of them match
+    		shouldAdd = true;
+    		for(int j = 0; j < tableTwoKey.length; j++){
+    			if(thisTupleKey[i].compareTo(tableTwoKey[j]) == 0){
+    				shouldAdd = false;
+    			}
+    			if (j == tableTwoKey.length - 1 && shouldAdd == true){
+    				rows.add(tuples.get(i));
+    			}
+    		}
+    	}
+
+        
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // minus
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join".  Tuples from both tables
+     * are compared requiring attributes1 to equal attributes2.  Disambiguate attribute
+     * names by append "2" to the end of any duplicate attribute name.  This is a
+     * nested-loop join; see also i_join, h_join and m_join.
+     *
+     * #usage movie.join ("studioNo", "name", studio)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table join (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".join (" + attributes1 + ", " + attributes2 + ", "
+                                               + table2.name + ")");
+
+        int [] cols1 = match (split (attributes1));
+        int [] cols2 = table2.match (split (attributes2));
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] t : tuples) {
+            for (Comparable [] u : table2.tuples) {
+                if (sameValues (t, cols1, u, cols2)) rows.add (ArrayUtil.concat (t, u));
+            } // for
+        } // for
+
+        return joined (table2, rows);
+    } // join
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join" using the index of table2,
+     * whose primary key must consist of attributes2.  Each tuple of this table probes
+     * table2's index (tuples with a null join value never match).  If table2 has no
+     * index on attributes2, a hash join is used.
+     *
+     * #usage movie.i_join ("studioName", "name", studio)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table i_join (String attributes1, String attributes2, Table table2)
+    {
+        String [] attrs1 = split (attributes1), attrs2 = split (attributes2);
+        if (table2.index == null || ! table2.isKey (attrs2)) return h_join (attributes1, attributes2, table2);
+
+        out.println ("RA> " + name + ".i_join (" + attributes1 + ", " + attributes2 + ", "
+                                                 + table2.name + ")");
+
+        int [] cols1 = new int [table2.key.length];                   // in table2's key order
+        for (int j = 0; j < cols1.length; j++) {
+            cols1 [j] = col (attrs1 [Arrays.asList (attrs2).indexOf (table2.key [j])]);
+        } // for
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] t : tuples) {
+            Comparable [] k = project (t, cols1);
+            if (k == null) continue;
+            Comparable [] u = table2.index.get (KeyType.wrap (k));
+            if (u != null) rows.add (ArrayUtil.concat (t, u));
+        } // for
+
+        return joined (table2, rows);
+    } // i_join
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join" using a hash table built
+     * on the smaller of the two tables and probed with the tuples of the other.  Tuples
+     * with a null join value never match.
+     *
+     * #usage movie.h_join ("studioName", "name", studio)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table h_join (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".h_join (" + attributes1 + ", " + attributes2 + ", "
+                                                 + table2.name + ")");
+
+        int []  cols1    = match (split (attributes1));
+        int []  cols2    = table2.match (split (attributes2));
+        boolean buildLhs = tuples.size () < table2.tuples.size ();
+
+        Map <KeyType, List <Comparable []>> hTable = new HashMap <> ();
+        for (Comparable [] t : buildLhs ? tuples : table2.tuples) {
+            Comparable [] k = project (t, buildLhs ? cols1 : cols2);
+            if (k != null) hTable.computeIfAbsent (KeyType.wrap (k), x -> new ArrayList <> ()).add (t);
+        } // for
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] u : buildLhs ? table2.tuples : tuples) {
+            Comparable [] k = project (u, buildLhs ? cols2 : cols1);
+            if (k == null) continue;
+            List <Comparable []> matches = hTable.get (KeyType.wrap (k));
+            if (matches == null) continue;
+            for (Comparable [] t : matches) rows.add (buildLhs ? ArrayUtil.concat (t, u) : ArrayUtil.concat (u, t));
+        } // for
+
+        return joined (table2, rows);
+    } // h_join
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join" with a Grace hash join
+     * (see GraceHashJoin): when the smaller table has more than GraceHashJoin.MAX_MEM
+     * tuples, both tables are hash partitioned into temporary files and the partitions
+     * joined pairwise, so the hash table never has to hold the whole build side.
+     *
+     * #usage movie.g_join ("studioName", "name", studio)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table g_join (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".g_join (" + attributes1 + ", " + attributes2 + ", "
+                                                 + table2.name + ")");
+
+        int [] cols1 = match (split (attributes1));
+        int [] cols2 = table2.match (split (attributes2));
+        return joined (table2, GraceHashJoin.join (tuples, cols1, table2.tuples, cols2, GraceHashJoin.MAX_MEM));
+    } // g_join
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join" with a parallel hash join
+     * (see ParallelHashJoin): both tables are radix partitioned on the join attributes
+     * across all processors, and the partitions are built and probed independently.
+     *
+     * #usage movie.p_join ("studioName", "name", studio)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table p_join (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".p_join (" + attributes1 + ", " + attributes2 + ", "
+                                                 + table2.name + ")");
+
+        int [] cols1 = match (split (attributes1));
+        int [] cols2 = table2.match (split (attributes2));
+        return joined (table2, ParallelHashJoin.join (tuples, cols1, table2.tuples, cols2));
+    } // p_join
+
+    /************************************************************************************
+     * Reduce this table (the probe side of a join) to the tuples that might join with
+     * table2 on attributes1 = attributes2, using a Bloom filter built from table2's join
+     * keys (a semi-join reduction).  Any given conditions are applied in the same scan.
+     * A few tuples that do not join may remain (false positives), so the join itself
+     * must still be done.
+     *
+     * #usage movie.bloomReduce ("studioName", "name", studio.select (...))
+     *
+     * @param attributes1  the join attributes of this table
+     * @param attributes2  the join attributes of table2
+     * @param table2       the build side of the join
+     * @param conds        further conditions the tuples must satisfy
+     * @return  a table with the tuples that might join
+     */
+    public Table bloomReduce (String attributes1, String attributes2, Table table2, Condition ... conds)
+    {
+        int [] cols1 = match (split (attributes1));
+        int [] cols2 = table2.match (split (attributes2));
+        int [] cc    = condCols (conds);
+        BloomFilter bf = BloomFilter.build (table2.tuples, cols2);
+
+        List <Comparable []> rows = new ArrayList <> ();
+        outer:
+        for (Comparable [] t : tuples) {
+            for (int j = 0; j < conds.length; j++) if (! conds [j].test (t [cc [j]])) continue outer;
+            if (bf.mightJoin (t, cols1)) rows.add (t);
+        } // for
+        bf.publish ();
+
+        out.println ("RA> " + name + ".bloomReduce (" + attributes1 + ", " + attributes2 + ", " + table2.name
+                            + ((conds.length > 0) ? ", " + Arrays.toString (conds) : "") + "): kept "
+                            + rows.size () + " of " + tuples.size ());
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // bloomReduce
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join" that sorts both tables on
+     * the join attributes and merges them, pairing up each group of equal values.  It
+     * needs no memory beyond the sorted copies, so it suits inputs too big to hash.
+     *
+     * #usage movie.m_join ("studioName", "name", studio)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table m_join (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".m_join (" + attributes1 + ", " + attributes2 + ", "
+                                                 + table2.name + ")");
+
+        int [] cols1 = match (split (attributes1));
+        int [] cols2 = table2.match (split (attributes2));
+        List <Comparable []> left  = sorted (tuples, cols1);
+        List <Comparable []> right = sorted (table2.tuples, cols2);
+
+        List <Comparable []> rows = new ArrayList <> ();
+        int i = 0, j = 0;
+        while (i < left.size () && j < right.size ()) {
+            int c = compareValues (left.get (i), cols1, right.get (j), cols2);
+            if (c < 0) { i++; continue; }
+            if (c > 0) { j++; continue; }
+            int jEnd = j + 1;                                        // find the group of equal values
+            while (jEnd < right.size () && compareValues (left.get (i), cols1, right.get (jEnd), cols2) == 0) jEnd++;
+            for ( ; i < left.size () && compareValues (left.get (i), cols1, right.get (j), cols2) == 0; i++) {
+                for (int k = j; k < jEnd; k++) rows.add (ArrayUtil.concat (left.get (i), right.get (k)));
+            } // for
+            j = jEnd;
+        } // while
+
+        return joined (table2, rows);
+    } // m_join
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "natural join".  Tuples from both tables
+     * are compared requiring common attributes to be equal.  The duplicate column is also
+     * eliminated.  A hash table (on the common attributes) is built on the smaller table
+     * and probed with the tuples of the other; with no common attributes, the result is
+     * the cartesian product.  Tuples with a null common value never match.  When both
+     * tables are large and there are several processors, the parallel hash join (see
+     * ParallelHashJoin) is used.
+     *
+     * #usage movieStar.join (starsIn)
+     *
+     * @param table2  the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table join (Table table2)
+    {
+        out.println ("RA> " + name + ".join (" + table2.name + ")");
+
+        List <String> shared = new ArrayList <> ();                 // the common attributes
+        for (String a : attribute) if (table2.col (a) >= 0) shared.add (a);
+        int [] cols1 = match (shared.toArray (new String [0]));
+        int [] cols2 = table2.match (shared.toArray (new String [0]));
+
+        int [] rest = new int [table2.attribute.length - shared.size ()];  // table2's other columns
+        for (int j = 0, n = 0; j < table2.attribute.length; j++) {
+            if (! shared.contains (table2.attribute [j])) rest [n++] = j;
+        } // for
+
+        if (! shared.isEmpty () && Runtime.getRuntime ().availableProcessors () > 1
+            && Math.min (tuples.size (), table2.tuples.size ()) >= ParallelHashJoin.PARALLEL_MIN) {
+            List <Comparable []> rows = ParallelHashJoin.join (tuples, cols1, table2.tuples, cols2,
+                                                               (t, u) -> ArrayUtil.concat (t, pick (u, rest)));
+            return new Table (name + count++, ArrayUtil.concat (attribute, pick (table2.attribute, rest)),
+                              ArrayUtil.concat (domain, pick (table2.domain, rest)), joinKey (table2.attribute, table2), rows);
+        } // if
+
+        boolean buildLhs = tuples.size () < table2.tuples.size ();
+        Map <KeyType, List <Comparable []>> hTable = new HashMap <> ();
+        for (Comparable [] t : buildLhs ? tuples : table2.tuples) {
+            Comparable [] k = project (t, buildLhs ? cols1 : cols2);
+            if (k != null) hTable.computeIfAbsent (KeyType.wrap (k), x -> new ArrayList <> ()).add (t);
+        } // for
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] u : buildLhs ? table2.tuples : tuples) {
+            Comparable [] k = project (u, buildLhs ? cols2 : cols1);
+            List <Comparable []> matches = (k == null) ? null : hTable.get (KeyType.wrap (k));
+            if (matches == null) continue;
+            for (Comparable [] t : matches) {
+                rows.add (buildLhs ? ArrayUtil.concat (t, pick (u, rest)) : ArrayUtil.concat (u, pick (t, rest)));
+            } // for
+        } // for
+
+        return new Table (name + count++, ArrayUtil.concat (attribute, pick (table2.attribute, rest)),
+                          ArrayUtil.concat (domain, pick (table2.domain, rest)), joinKey (table2.attribute, table2), rows);
+    } // join
+
+    /************************************************************************************
+     * Return the column position for the given attribute name.
+     *
+     * @param attr  the given attribute name
+     * @return  a column position
+     */
+    public int col (String attr)
+    {
+        for (int i = 0; i < attribute.length; i++) {
+           if (attr.equals (attribute [i])) return i;
+        } // for
+
+        return -1;  // not found
+    } // col
+
+    /************************************************************************************
+     * Insert a tuple to the table.
+     *
+     * #usage movie.insert ("'Star_Wars'", 1977, 124, "T", "Fox", 12345)
+     *
+     * @param tup  the array of attribute values forming the tuple
+     * @return  whether insertion was successful
+     */
+    public boolean insert (Comparable [] tup)
+    {
+        out.println ("DML> insert into " + name + " values ( " + Arrays.toString (tup) + " )");
+
+        if (typeCheck (tup)) {
+            tuples.add (tup);
+            if (index != null) index.put (keyOf (tup), tup);
+            if (stats != null) stats.add (tup);
+            if (zones != null) zones.add (tup);
+            columns = null;
+            version++;
+            if (views != null) for (MaterializedView v : views) v.inserted (this, tup);
+            return true;
+        } else {
+            return false;
+        } // if
+    } // insert
+
+    /************************************************************************************
+     * Delete the tuple with the given primary key value from the table.  Use the index
+     * (Map) to locate the tuple and remove it from both the index and the data storage.
+     *
+     * #usage movieStar.delete (new KeyType ("Harrison_Ford"))
+     *
+     * @param keyVal  the given key value
+     * @return  whether a tuple was deleted
+     */
+    public boolean delete (KeyType keyVal)
+    {
+        out.println ("DML> delete from " + name + " where " + keyVal);
+
+        Comparable [] tup = (index != null) ? index.remove (keyVal) : find (keyVal);
+        if (tup == null) return false;
+        for (int i = tuples.size () - 1; i >= 0; i--) {                 // by key: a disk index returns a copy
+            if (tuples.get (i) == tup || keyOf (tuples.get (i)).equals (keyVal)) { tup = tuples.remove (i); break; }
+        } // for
+        if (stats != null) stats.remove (tup);
+        if (zones != null) zones.invalidate ();
+        columns = null;
+        version++;
+        if (views != null) for (MaterializedView v : views) v.deleted (this);
+        return true;
+    } // delete
+
+    /************************************************************************************
+     * Delete the tuples satisfying the given predicate (Boolean function) from the table,
+     * removing them from the index (Map) as well as the data storage.
+     *
+     * #usage movie.delete (t -> (Integer) t[movie.col("year")] < 1980)
+     *
+     * @param predicate  the check condition for tuples
+     * @return  the number of tuples deleted
+     */
+    public int delete (Predicate <Comparable []> predicate)
+    {
+        out.println ("DML> delete from " + name + " where " + predicate);
+
+        int before = tuples.size ();
+        tuples.removeIf (t -> {
+            if (! predicate.test (t)) return false;
+            if (index != null) index.remove (keyOf (t));
+            if (stats != null) stats.remove (t);
+            if (zones != null) zones.invalidate ();
+            columns = null;
+            version++;
+            return true;
+        });
+        if (views != null && tuples.size () < before) for (MaterializedView v : views) v.deleted (this);
+        return before - tuples.size ();
+    } // delete
+
+    /************************************************************************************
+     * Return the version of the table's tuples (changed by every insert and delete).
+     */
+    long version ()
+    {
+        return version;
+    } // version
+
+    /************************************************************************************
+     * Register a materialized view defined over this table.
+     */
+    void addView (MaterializedView view)
+    {
+        if (views == null) views = new ArrayList <> ();
+        views.add (view);
+    } // addView
+
+    /************************************************************************************
+     * Return the tuple with the given primary key value (null if there is none), using
+     * the index if there is one.
+     */
+    Comparable [] lookup (KeyType keyVal)
+    {
+        return (index != null) ? index.get (keyVal) : find (keyVal);
+    } // lookup
+
+    /************************************************************************************
+     * Return the table's tuples (read-only).
+     */
+    List <Comparable []> rows ()
+    {
+        return Collections.unmodifiableList (tuples);
+    } // rows
+
+    /************************************************************************************
+     * Get the name of the table.
+     *
+     * @return  the table's name
+     */
+    public String getName ()
+    {
+        return name;
+    } // getName
+
+    /************************************************************************************
+     * Analyze the table: compute statistics on its data distribution from scratch
+     * (per-column null counts, min/max, distinct counts and equi-depth histograms).
+     * They are then maintained on insert and delete, and saved with the table.
+     *
+     * #usage movie.analyze ()
+     *
+     * @return  the table's statistics
+     */
+    public TableStats analyze ()
+    {
+        out.println ("DDL> analyze " + name);
+
+        if (stats == null) stats = new TableStats (attribute.length);
+        stats.analyze (tuples);
+        return stats;
+    } // analyze
+
+    /************************************************************************************
+     * Get the table's statistics (null if never analyzed and not a base table).
+     *
+     * @return  the table's statistics
+     */
+    public TableStats getStats ()
+    {
+        return stats;
+    } // getStats
+
+    /************************************************************************************
+     * Print the table's statistics.
+     */
+    public void printStats ()
+    {
+        out.println ("\n Statistics for " + name);
+        out.println ("-------------------");
+        if (stats != null) stats.print (attribute);
+        out.println ("-------------------");
+    } // printStats
+
+    /************************************************************************************
+     * Get the names of the table's attributes.
+     *
+     * @return  a copy of the attribute names
+     */
+    public String [] getAttribute ()
+    {
+        return attribute.clone ();
+    } // getAttribute
+
+    /************************************************************************************
+     * Get the domains (data types) of the table's attributes.
+     *
+     * @return  a copy of the domains
+     */
+    public Class [] getDomain ()
+    {
+        return domain.clone ();
+    } // getDomain
+
+    /************************************************************************************
+     * Get the table's primary key.
+     *
+     * @return  a copy of the key's attribute names
+     */
+    public String [] getKey ()
+    {
+        return key.clone ();
+    } // getKey
+
+    /************************************************************************************
+     * Get the number of tuples in the table.
+     *
+     * @return  the table's cardinality
+     */
+    public int size ()
+    {
+        return tuples.size ();
+    } // size
+
+    /************************************************************************************
+     * Get the kind of primary index used by the table.
+     *
+     * @return  the table's index type
+     */
+    public IndexType getIndexType ()
+    {
+        return indexType;
+    } // getIndexType
+
+    /************************************************************************************
+     * Print this table.
+     */
+    public void print ()
+    {
+        out.println ("\n Table " + name);
+        out.print ("|-");
+        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
+        out.println ("-|");
+        out.print ("| ");
+        for (String a : attribute) out.printf ("%15s", a);
+        out.println (" |");
+        out.print ("|-");
+        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
+        out.println ("-|");
+        for (Comparable [] tup : tuples) {
+            out.print ("| ");
+            for (Comparable attr : tup) out.printf ("%15s", attr);
+            out.println (" |");
+        } // for
+        out.print ("|-");
+        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
+        out.println ("-|");
+    } // print
+
+    /************************************************************************************
+     * Print this table's index (Map).
+     */
+    public void printIndex ()
+    {
+        out.println ("\n Index for " + name + " (" + indexType + ")");
+        out.println ("-------------------");
+        if (index != null) for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+            out.println (e.getKey () + " -> " + Arrays.toString (e.getValue ()));
+        } // for
+        out.println ("-------------------");
+    } // printIndex
+
+    /************************************************************************************
+     * Load the table with the given name into memory. 
+     *
+     * @param name  the name of the table to load
+     */
+    public static Table load (String name)
+    {
+        Table tab = null;
+        try {
+            ObjectInputStream ois = new ObjectInputStream (new FileInputStream (DIR + name + EXT));
+            tab = (Table) ois.readObject ();
+            ois.close ();
+        } catch (IOException ex) {
+            out.println ("load: IO Exception");
+            ex.printStackTrace ();
+        } catch (ClassNotFoundException ex) {
+            out.println ("load: Class Not Found Exception");
+            ex.printStackTrace ();
+        } // try
+        return tab;
+    } // load
+
+    /************************************************************************************
+     * Save this table in a file.
+     */
+    public void save ()
+    {
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream (new FileOutputStream (DIR + name + EXT));
+            oos.writeObject (this);
+            oos.close ();
+        } catch (IOException ex) {
+            out.println ("save: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // save
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Determine whether the two tables (this and table2) are compatible, i.e., have
+     * the same number of attributes each with the same corresponding domain.
+     *
+     * @param table2  the rhs table
+     * @return  whether the two tables are compatible
+     */
+    private boolean compatible (Table table2)
+    {
+        if (domain.length != table2.domain.length) {
+            out.println ("compatible ERROR: table have different arity");
+            return false;
+        } // if
+        for (int j = 0; j < domain.length; j++) {
+            if (domain [j] != table2.domain [j]) {
+                out.println ("compatible ERROR: tables disagree on domain " + j);
+                return false;
+            } // if
+        } // for
+        return true;
+    } // compatible
+
+    /************************************************************************************
+     * Match the column and attribute names to determine the domains.
+     *
+     * @param column  the array of column names
+     * @return  an array of column index positions
+     */
+    private int [] match (String [] column)
+    {
+        int [] colPos = new int [column.length];
+
+        for (int j = 0; j < column.length; j++) {
+            boolean matched = false;
+            for (int k = 0; k < attribute.length; k++) {
+                if (column [j].equals (attribute [k])) {
+                    matched = true;
+                    colPos [j] = k;
+                } // for
+            } // for
+            if ( ! matched) {
+                out.println ("match: domain not found for " + column [j]);
+            } // if
+        } // for
+
+        return colPos;
+    } // match
+
+    /************************************************************************************
+     * Form the primary key value of tuple t.
+     *
+     * @param t  the tuple to extract the key from
+     * @return  the key value of tuple t
+     */
+    private KeyType keyOf (Comparable [] t)
+    {
+        Comparable [] keyVal = new Comparable [key.length];
+        int []        cols   = match (key);
+        for (int j = 0; j < keyVal.length; j++) keyVal [j] = t [cols [j]];
+        return KeyType.wrap (keyVal);
+    } // keyOf
+
+    /************************************************************************************
+     * Split a string of space-separated attribute names (a blank string has none).
+     *
+     * @param attributes  the attribute names
+     * @return  the array of attribute names
+     */
+    private static String [] split (String attributes)
+    {
+        return attributes.isBlank () ? new String [0] : attributes.trim ().split (" +");
+    } // split
+
+    /************************************************************************************
+     * Return the attribute names of the join of tables with the given attributes: those
+     * of the first table, followed by those of the second, with "2" appended to the
+     * end of any duplicate attribute name.
+     *
+     * @param attrs1  the attributes of the lhs table
+     * @param attrs2  the attributes of the rhs table
+     * @return  the attributes of the joined table
+     */
+    static String [] joinAttributes (String [] attrs1, String [] attrs2)
+    {
+        String [] attrs = ArrayUtil.concat (attrs1, attrs2);
+        Set <String> seen = new HashSet <> (Arrays.asList (attrs1));
+        for (int j = attrs1.length; j < attrs.length; j++) {
+            while (seen.contains (attrs [j])) attrs [j] += "2";
+            seen.add (attrs [j]);
+        } // for
+        return attrs;
+    } // joinAttributes
+
+    /************************************************************************************
+     * Make the table resulting from joining this table and table2.
+     *
+     * @param table2  the rhs table in the join
+     * @param rows    the joined tuples
+     * @return  the joined table
+     */
+    private Table joined (Table table2, List <Comparable []> rows)
+    {
+        String [] attrs = joinAttributes (attribute, table2.attribute);
+        return new Table (name + count++, attrs, ArrayUtil.concat (domain, table2.domain),
+                          joinKey (Arrays.copyOfRange (attrs, attribute.length, attrs.length), table2), rows);
+    } // joined
+
+    /************************************************************************************
+     * Return the key of the join of this table and table2: both tables' keys together
+     * (a joined tuple pairs one tuple of each), so the key does not depend on which
+     * table is the lhs.
+     *
+     * @param names2  the names table2's attributes have in the joined table
+     * @param table2  the rhs table in the join
+     * @return  the key of the joined table
+     */
+    private String [] joinKey (String [] names2, Table table2)
+    {
+        Set <String> newKey = new LinkedHashSet <> (Arrays.asList (key));
+        for (String k : table2.key) newKey.add (names2 [table2.col (k)]);
+        return newKey.toArray (new String [0]);
+    } // joinKey
+
+    /************************************************************************************
+     * Determine whether the given attributes are exactly this table's primary key.
+     *
+     * @param attrs  the attribute names
+     * @return  whether they form the key (in any order)
+     */
+    private boolean isKey (String [] attrs)
+    {
+        return attrs.length == key.length && Arrays.asList (attrs).containsAll (Arrays.asList (key));
+    } // isKey
+
+    /************************************************************************************
+     * Return the values of tuple t in the given columns, or null if any of them is null.
+     *
+     * @param t     the tuple
+     * @param cols  the column positions
+     * @return  the values in those columns
+     */
+    private static Comparable [] project (Comparable [] t, int [] cols)
+    {
+        Comparable [] v = new Comparable [cols.length];
+        for (int j = 0; j < cols.length; j++) {
+            if ((v [j] = t [cols [j]]) == null) return null;
+        } // for
+        return v;
+    } // project
+
+    /************************************************************************************
+     * Return the elements of array a in the given positions (nulls included).
+     *
+     * @param a     the array (e.g., a tuple)
+     * @param cols  the positions to pick
+     * @return  the picked elements
+     */
+    private static <T> T [] pick (T [] a, int [] cols)
+    {
+        T [] v = Arrays.copyOf (a, cols.length);
+        for (int j = 0; j < cols.length; j++) v [j] = a [cols [j]];
+        return v;
+    } // pick
+
+    /************************************************************************************
+     * Compare the values of tuple t in columns cols1 with those of tuple u in cols2.
+     *
+     * @return  negative, zero or positive
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues (Comparable [] t, int [] cols1, Comparable [] u, int [] cols2)
+    {
+        for (int j = 0; j < cols1.length; j++) {
+            int c = t [cols1 [j]].compareTo (u [cols2 [j]]);
+            if (c != 0) return c;
+        } // for
+        return 0;
+    } // compareValues
+
+    /************************************************************************************
+     * Determine whether tuple t has the same (non-null) values in columns cols1 as
+     * tuple u has in cols2.
+     */
+    private static boolean sameValues (Comparable [] t, int [] cols1, Comparable [] u, int [] cols2)
+    {
+        for (int j = 0; j < cols1.length; j++) {
+            if (t [cols1 [j]] == null || u [cols2 [j]] == null) return false;
+        } // for
+        return compareValues (t, cols1, u, cols2) == 0;
+    } // sameValues
+
+    /************************************************************************************
+     * Return a copy of the tuples, without those having a null in the given columns,
+     * sorted on those columns.
+     */
+    private static List <Comparable []> sorted (List <Comparable []> tups, int [] cols)
+    {
+        List <Comparable []> s = new ArrayList <> ();
+        for (Comparable [] t : tups) if (project (t, cols) != null) s.add (t);
+        s.sort ((t, u) -> compareValues (t, cols, u, cols));
+        return s;
+    } // sorted
+
+    /************************************************************************************
+     * Find the tuple with the given key by scanning the tuples (for tables without an
+     * index).
+     *
+     * @param keyVal  the key value to look for
+     * @return  the tuple with that key, or null if there is none
+     */
+    private Comparable [] find (KeyType keyVal)
+    {
+        for (Comparable [] t : tuples) if (keyOf (t).equals (keyVal)) return t;
+        return null;
+    } // find
+
+    /************************************************************************************
+     * Extract the attributes specified by the column array from tuple t.
+     *
+     * @param t       the tuple to extract from
+     * @param column  the array of column names
+     * @return  a smaller tuple extracted from tuple t 
+     */
+    private Comparable [] extract (Comparable [] t, String [] column)
+    {
+        Comparable [] tup = new Comparable [column.length];
+        int [] colPos = match (column);
+        for (int j = 0; j < column.length; j++) tup [j] = t [colPos [j]];
+        return tup;
+    } // extract
+
+    /************************************************************************************
+     * Check the size of the tuple (number of elements in list) as well as the type of
+     * each value to ensure it is from the right domain. 
+     *
+     * @param t  the tuple as a list of attribute values
+     * @return  whether the tuple has the right size and values that comply
+     *          with the given domains
+     */
+    //completed by Alyssa Cowan
+    private boolean typeCheck (Comparable [] t)
+    { 
+    	if (t.length != domain.length) //if lengths are different, return false
+    		return false;
+    	else {
+	    	int typeError=0; //if we find a Class type error, increment typeError count
+	    	for (int i=0; i<t.length; i++) {
+	    		if (!domain[i].isInstance(t[i])) //check if tuple's class is equal to domain
+	    			typeError++;
+	    	}
+	    	if (typeError == 0)
+	    		return true;
+	    	else
+	    		return false;
+    	}
+
+    } // typeCheck
+
+    /************************************************************************************
+     * Find the classes in the "java.lang" package with given names.
+     *
+     * @param className  the array of class name (e.g., {"Integer", "String"})
+     * @return  an array of Java classes
+     */
+    private static Class [] findClass (String [] className)
+    {
+        Class [] classArray = new Class [className.length];
+
+        for (int i = 0; i < className.length; i++) {
+            try {
+                classArray [i] = Class.forName ("java.lang." + className [i]);
+            } catch (ClassNotFoundException ex) {
+                out.println ("findClass: " + ex);
+            } // try
+        } // for
+
+        return classArray;
+    } // findClass
+
+    /************************************************************************************
+     * Extract the corresponding domains.
+     *
+     * @param colPos the column positions to extract.
+     * @param group  where to extract from
+     * @return  the extracted domains
+     */
+    private Class [] extractDom (int [] colPos, Class [] group)
+    {
+        Class [] obj = new Class [colPos.length];
+
+        for (int j = 0; j < colPos.length; j++) {
+            obj [j] = group [colPos [j]];
+        } // for
+
+        return obj;
+    } // extractDom
+
+} // Table class
@@ -0,0 +1,289 @@
+
+/*****************************************************************************************
+ * @file  TableStats.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The TableStats class keeps statistics on the data distribution of a table, for use
+ * in estimating the selectivity of conditions and joins.  For each column it keeps the
+ * number of nulls, the min and max, a HyperLogLog sketch of the number of distinct
+ * values (NDV) and an equi-depth histogram.  All but the histogram are maintained
+ * exactly as tuples are inserted; the histogram's bucket boundaries are only chosen by
+ * analyze (which rebuilds everything from the tuples), with inserts just adding to the
+ * bucket counts, so the statistics report being stale once many tuples have changed.
+ */
+public class TableStats
+       implements Serializable
+{
+    /** The number of buckets in each equi-depth histogram
+     */
+    private static final int BUCKETS = 32;
+
+    /** The fraction of tuples changed since analyze that makes the statistics stale
+     */
+    private static final double STALE_FRAC = 0.2;
+
+    /*************************************************************************************
+     * Statistics for one column.
+     */
+    private static class ColumnStats
+            implements Serializable
+    {
+        long        nulls = 0;
+        Comparable  min, max;
+        HyperLogLog ndv = new HyperLogLog ();
+        Comparable [] upper;                         // histogram bucket upper bounds
+        long []       counts;                        // histogram bucket counts
+    } // ColumnStats class
+
+    /** The statistics for each column
+     */
+    private final ColumnStats [] col;
+
+    /** The number of tuples, and the number of tuples changed since the last analyze
+     */
+    private long count = 0, changed = 0;
+
+    /** Whether analyze has been run (so that there are histograms)
+     */
+    private boolean analyzed = false;
+
+    /*************************************************************************************
+     * Construct empty statistics for a table with the given number of columns.
+     * @param nCols  the number of columns
+     */
+    public TableStats (int nCols)
+    {
+        col = new ColumnStats [nCols];
+        for (int j = 0; j < nCols; j++) col [j] = new ColumnStats ();
+    } // constructor
+
+    /*************************************************************************************
+     * Compute the statistics from scratch for the given tuples, including equi-depth
+     * histograms (so the statistics are no longer stale).
+     * @param tuples  all the tuples of the table
+     */
+    @SuppressWarnings("unchecked")
+    public void analyze (List <Comparable []> tuples)
+    {
+        count   = 0;
+        changed = 0;
+        for (int j = 0; j < col.length; j++) col [j] = new ColumnStats ();
+        for (Comparable [] t : tuples) add (t);
+        changed  = 0;
+        analyzed = true;
+
+        for (int j = 0; j < col.length; j++) {
+            List <Comparable> vals = new ArrayList <> ();
+            for (Comparable [] t : tuples) if (t [j] != null) vals.add (t [j]);
+            if (vals.isEmpty ()) continue;
+            Collections.sort (vals);
+
+            int nb = Math.min (BUCKETS, vals.size ());
+            ColumnStats c = col [j];
+            c.upper  = new Comparable [nb];
+            c.counts = new long [nb];
+            int lo = 0;
+            for (int b = 0; b < nb; b++) {
+                int hi = (int) ((long) vals.size () * (b + 1) / nb);          // exclusive
+                while (hi < vals.size () && vals.get (hi).compareTo (vals.get (hi - 1)) == 0) hi++;
+                if (hi <= lo) continue;                                      // absorbed by a run of equal values
+                c.upper [b]  = vals.get (hi - 1);
+                c.counts [b] = hi - lo;
+                lo = hi;
+            } // for
+            compact (c);
+        } // for
+    } // analyze
+
+    /*************************************************************************************
+     * Drop the empty buckets left when a long run of equal values spans buckets.
+     */
+    private static void compact (ColumnStats c)
+    {
+        int n = 0;
+        for (int b = 0; b < c.upper.length; b++) {
+            if (c.upper [b] == null) continue;
+            c.upper [n]  = c.upper [b];
+            c.counts [n] = c.counts [b];
+            n++;
+        } // for
+        c.upper  = Arrays.copyOf (c.upper, n);
+        c.counts = Arrays.copyOf (c.counts, n);
+    } // compact
+
+    /*************************************************************************************
+     * Update the statistics for an inserted tuple.
+     * @param t  the inserted tuple
+     */
+    @SuppressWarnings("unchecked")
+    public void add (Comparable [] t)
+    {
+        count++;
+        changed++;
+        for (int j = 0; j < col.length; j++) {
+            ColumnStats c = col [j];
+            Comparable  v = t [j];
+            if (v == null) { c.nulls++; continue; }
+            if (c.min == null || v.compareTo (c.min) < 0) c.min = v;
+            if (c.max == null || v.compareTo (c.max) > 0) c.max = v;
+            c.ndv.add (v);
+            if (c.upper != null) c.counts [bucket (c, v)]++;
+        } // for
+    } // add
+
+    /*************************************************************************************
+     * Update the statistics for a deleted tuple (min, max and NDV stay as upper bounds).
+     * @param t  the deleted tuple
+     */
+    public void remove (Comparable [] t)
+    {
+        count--;
+        changed++;
+        for (int j = 0; j < col.length; j++) {
+            ColumnStats c = col [j];
+            if (t [j] == null) { c.nulls--; continue; }
+            if (c.upper != null) {
+                int b = bucket (c, t [j]);
+                if (c.counts [b] > 0) c.counts [b]--;
+            } // if
+        } // for
+    } // remove
+
+    /*************************************************************************************
+     * Return the number of tuples.
+     */
+    public long count ()
+    {
+        return count;
+    } // count
+
+    /*************************************************************************************
+     * Return whether so many tuples have changed since analyze that it should be rerun.
+     */
+    public boolean isStale ()
+    {
+        return count > 0 && (! analyzed || changed > STALE_FRAC * count);
+    } // isStale
+
+    /*************************************************************************************
+     * Return the number of nulls in column j.
+     */
+    public long nulls (int j)
+    {
+        return col [j].nulls;
+    } // nulls
+
+    /*************************************************************************************
+     * Return the smallest and largest values in column j (null if there are none).
+     */
+    public Comparable min (int j) { return col [j].min; }
+    public Comparable max (int j) { return col [j].max; }
+
+    /*************************************************************************************
+     * Return the estimated number of distinct (non-null) values in column j.
+     */
+    public double distinct (int j)
+    {
+        long nonNull = count - col [j].nulls;
+        return Math.max (nonNull > 0 ? 1 : 0, Math.min (nonNull, Math.round (col [j].ndv.estimate ())));
+    } // distinct
+
+    /*************************************************************************************
+     * Return the estimated fraction of tuples for which "column j op v" holds.
+     *
+     * @param j   the column
+     * @param op  the comparison operator
+     * @param v   the value compared with
+     * @return  the estimated selectivity
+     */
+    @SuppressWarnings("unchecked")
+    public double selectivity (int j, Condition.Op op, Comparable v)
+    {
+        ColumnStats c = col [j];
+        if (count == 0 || c.min == null) return 0.0;
+        double nonNull = (double) (count - c.nulls) / count;                  // fraction of non-nulls
+        double eq      = (v.compareTo (c.min) < 0 || v.compareTo (c.max) > 0) ? 0.0 : 1.0 / distinct (j);
+        double le      = fractionBelow (c, v);                                // fractions of non-nulls
+
+        switch (op) {
+        case EQ: return nonNull * eq;
+        case NE: return nonNull * (1.0 - eq);
+        case LT: return nonNull * Math.max (0.0, le - eq);
+        case LE: return nonNull * le;
+        case GT: return nonNull * (1.0 - le);
+        default: return nonNull * Math.min (1.0, 1.0 - le + eq);
+        } // switch
+    } // selectivity
+
+    /*************************************************************************************
+     * Return the estimated fraction of column c's non-null values that are <= v, using
+     * the histogram (interpolating linearly within a bucket for numbers), or the min
+     * and max alone if there is no histogram.
+     */
+    @SuppressWarnings("unchecked")
+    private static double fractionBelow (ColumnStats c, Comparable v)
+    {
+        if (v.compareTo (c.min) < 0) return 0.0;
+        if (v.compareTo (c.max) >= 0) return 1.0;
+        if (c.upper == null) return interpolate (c.min, c.max, v);
+
+        long total = 0;
+        for (long n : c.counts) total += n;
+        if (total == 0) return interpolate (c.min, c.max, v);
+
+        long below = 0;
+        int  b     = bucket (c, v);
+        for (int i = 0; i < b; i++) below += c.counts [i];
+        Comparable lo = (b == 0) ? c.min : c.upper [b - 1];
+        return (below + c.counts [b] * interpolate (lo, c.upper [b], v)) / total;
+    } // fractionBelow
+
+    /*************************************************************************************
+     * Return where v lies between lo and hi as a fraction (0.5 for non-numbers).
+     */
+    private static double interpolate (Comparable lo, Comparable hi, Comparable v)
+    {
+        if (! (v instanceof Number && lo instanceof Number && hi instanceof Number)) return 0.5;
+        double l = ((Number) lo).doubleValue (), h = ((Number) hi).doubleValue ();
+        if (h <= l) return 1.0;
+        return Math.max (0.0, Math.min (1.0, (((Number) v).doubleValue () - l) / (h - l)));
+    } // interpolate
+
+    /*************************************************************************************
+     * Return the histogram bucket of column c that value v falls in (the last bucket for
+     * values above the largest bound).
+     */
+    @SuppressWarnings("unchecked")
+    private static int bucket (ColumnStats c, Comparable v)
+    {
+        int lo = 0, hi = c.upper.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (v.compareTo (c.upper [mid]) <= 0) hi = mid; else lo = mid + 1;
+        } // while
+        return lo;
+    } // bucket
+
+    /*************************************************************************************
+     * Print the statistics, labeling the columns with the given attribute names.
+     * @param attribute  the attribute names
+     */
+    public void print (String [] attribute)
+    {
+        out.println ("count = " + count + (isStale () ? " (stale)" : ""));
+        for (int j = 0; j < col.length; j++) {
+            ColumnStats c = col [j];
+            out.printf ("%-12s nulls = %d, min = %s, max = %s, ndv = %.0f, buckets = %d\n", attribute [j],
+                        c.nulls, c.min, c.max, distinct (j), (c.upper == null) ? 0 : c.upper.length);
+        } // for
+    } // print
+
+} // TableStats class
@@ -0,0 +1,109 @@
+
+/*****************************************************************************************
+ * @file  TopN.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The TopN class orders tuples on given columns for ORDER BY.  Its comparator is what
+ * Table.orderBy sorts with: a table's tuples are already in memory, so their references
+ * are sorted in place rather than spilled and merged.  For ORDER BY ... LIMIT n, topN
+ * keeps the best n tuples in a bounded heap instead of sorting the whole input.
+ */
+public class TopN
+{
+    /** The order the tuples are sorted in
+     */
+    private final Comparator <Comparable []> order;
+
+    /*************************************************************************************
+     * Construct a Top-N selector ordering tuples on the given columns.
+     *
+     * @param cols  the columns to sort on (most significant first)
+     * @param desc  whether each column is sorted in descending order
+     */
+    public TopN (int [] cols, boolean [] desc)
+    {
+        this.order = comparator (cols, desc);
+    } // constructor
+
+    /*************************************************************************************
+     * Return the comparator for the given sort columns and directions.  Nulls sort
+     * first in ascending order (and so last in descending order).
+     *
+     * @param cols  the columns to sort on
+     * @param desc  whether each column is sorted in descending order
+     */
+    @SuppressWarnings("unchecked")
+    static Comparator <Comparable []> comparator (int [] cols, boolean [] desc)
+    {
+        return (t, u) -> {
+            for (int j = 0; j < cols.length; j++) {
+                Comparable a = t [cols [j]], b = u [cols [j]];
+                int c = (a == null) ? ((b == null) ? 0 : -1) : (b == null) ? 1 : a.compareTo (b);
+                if (c != 0) return desc [j] ? -c : c;
+            } // for
+            return 0;
+        };
+    } // comparator
+
+    /*************************************************************************************
+     * Return the n first tuples in sort order, using a bounded heap that never holds
+     * more than n tuples (the input is not sorted as a whole).
+     *
+     * @param tuples  the tuples
+     * @param n       the number of tuples wanted
+     * @return  the first n tuples, in order
+     */
+    public List <Comparable []> topN (Iterable <Comparable []> tuples, int n)
+    {
+        PriorityQueue <Comparable []> heap = new PriorityQueue <> (Math.max (1, n), order.reversed ());
+        if (n > 0) {
+            for (Comparable [] t : tuples) {
+                if (heap.size () < n) heap.add (t);
+                else if (order.compare (t, heap.peek ()) < 0) { heap.poll (); heap.add (t); }
+            } // for
+        } // if
+        List <Comparable []> result = new ArrayList <> (heap);
+        result.sort (order);
+        return result;
+    } // topN
+
+    /*************************************************************************************
+     * The main method is used for testing: compare Top-N with a full sort of a large
+     * table.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 1000000, n = 10;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        Random rng = new Random (0);
+        List <Comparable []> tuples = new ArrayList <> ();
+        for (int i = 0; i < nTuples; i++) {
+            tuples.add (new Comparable [] { "Movie_" + i, 1900 + rng.nextInt (120), 60 + rng.nextInt (150) });
+        } // for
+
+        int [] cols = { 1, 2 };
+        boolean [] desc = { true, false };
+        TopN top = new TopN (cols, desc);
+        long t0 = System.nanoTime ();
+        List <Comparable []> sorted = new ArrayList <> (tuples);
+        sorted.sort (top.order);
+        long t1 = System.nanoTime ();
+        List <Comparable []> first = top.topN (tuples, n);
+        long t2 = System.nanoTime ();
+        int bad = 0;
+        for (int i = 0; i < n; i++) if (top.order.compare (first.get (i), sorted.get (i)) != 0) bad++;
+        out.printf ("full sort: %d tuples, %d ms\n", nTuples, (t1 - t0) / 1000000);
+        out.printf ("top %d: %d ms, %d differ from the full sort, first = %s\n", n, (t2 - t1) / 1000000, bad,
+                    Arrays.toString (first.get (0)));
+    } // main
+
+} // TopN class
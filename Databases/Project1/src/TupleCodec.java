@@ -0,0 +1,142 @@
+
+/****************************************************************************************
+ * @file  TupleCodec.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/****************************************************************************************
+ * The TupleCodec class encodes tuples (and keys) as bytes and decodes them again, for
+ * storing them outside the Java heap or in files.  Each attribute value is written as a
+ * one-byte type tag followed by its data, so equal tuples always have equal encodings.
+ */
+class TupleCodec
+{
+    /** Type tags for the supported domains.
+     */
+    private static final byte NULL = 0, INTEGER = 1, LONG = 2, SHORT = 3, BYTE = 4,
+                              DOUBLE = 5, FLOAT = 6, CHARACTER = 7, STRING = 8, BOOLEAN = 9;
+
+    /************************************************************************************
+     * Encode the tuple as a byte array.
+     *
+     * @param t  the tuple to encode
+     * @return  the encoded tuple
+     */
+    public static byte [] encode (Comparable [] t)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream (16 * t.length);
+        try {
+            write (new DataOutputStream (bytes), t);
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);      // cannot happen for a byte array
+        } // try
+        return bytes.toByteArray ();
+    } // encode
+
+    /************************************************************************************
+     * Encode the key as a byte array.
+     *
+     * @param k  the key to encode
+     * @return  the encoded key
+     */
+    public static byte [] encode (KeyType k)
+    {
+        Comparable [] t = new Comparable [k.arity ()];
+        for (int i = 0; i < t.length; i++) t [i] = k.get (i);
+        return encode (t);
+    } // encode
+
+    /************************************************************************************
+     * Decode a tuple from a byte array produced by encode.
+     *
+     * @param b  the encoded tuple
+     * @return  the decoded tuple
+     */
+    public static Comparable [] decode (byte [] b)
+    {
+        try {
+            return read (new DataInputStream (new ByteArrayInputStream (b)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException (ex);
+        } // try
+    } // decode
+
+    /************************************************************************************
+     * Write the tuple to the data output stream: the number of attributes, followed
+     * by each tagged attribute value.
+     *
+     * @param out  the data output stream
+     * @param t    the tuple to write
+     */
+    public static void write (DataOutput out, Comparable [] t) throws IOException
+    {
+        out.writeShort (t.length);
+        for (Comparable v : t) {
+            if (v == null)                  { out.writeByte (NULL); }
+            else if (v instanceof Integer)  { out.writeByte (INTEGER);   out.writeInt ((Integer) v); }
+            else if (v instanceof String)   { out.writeByte (STRING);    writeString (out, (String) v); }
+            else if (v instanceof Long)     { out.writeByte (LONG);      out.writeLong ((Long) v); }
+            else if (v instanceof Double)   { out.writeByte (DOUBLE);    out.writeDouble ((Double) v); }
+            else if (v instanceof Float)    { out.writeByte (FLOAT);     out.writeFloat ((Float) v); }
+            else if (v instanceof Short)    { out.writeByte (SHORT);     out.writeShort ((Short) v); }
+            else if (v instanceof Byte)     { out.writeByte (BYTE);      out.writeByte ((Byte) v); }
+            else if (v instanceof Character){ out.writeByte (CHARACTER); out.writeChar ((Character) v); }
+            else if (v instanceof Boolean)  { out.writeByte (BOOLEAN);   out.writeBoolean ((Boolean) v); }
+            else throw new IllegalArgumentException ("TupleCodec.write: unsupported domain " + v.getClass ());
+        } // for
+    } // write
+
+    /************************************************************************************
+     * Read a tuple written by write from the data input stream.
+     *
+     * @param in  the data input stream
+     * @return  the tuple read
+     */
+    public static Comparable [] read (DataInput in) throws IOException
+    {
+        Comparable [] t = new Comparable [in.readShort ()];
+        for (int i = 0; i < t.length; i++) {
+            byte tag = in.readByte ();
+            switch (tag) {
+            case NULL:      t [i] = null;                 break;
+            case INTEGER:   t [i] = in.readInt ();        break;
+            case STRING:    t [i] = readString (in);      break;
+            case LONG:      t [i] = in.readLong ();       break;
+            case DOUBLE:    t [i] = in.readDouble ();     break;
+            case FLOAT:     t [i] = in.readFloat ();      break;
+            case SHORT:     t [i] = in.readShort ();      break;
+            case BYTE:      t [i] = in.readByte ();       break;
+            case CHARACTER: t [i] = in.readChar ();       break;
+            case BOOLEAN:   t [i] = in.readBoolean ();    break;
+            default: throw new IOException ("TupleCodec.read: bad type tag " + tag);
+            } // switch
+        } // for
+        return t;
+    } // read
+
+    /************************************************************************************
+     * Write a string as its length followed by its UTF-8 bytes (unlike writeUTF, this
+     * allows strings longer than 64K).
+     */
+    private static void writeString (DataOutput out, String s) throws IOException
+    {
+        byte [] b = s.getBytes (StandardCharsets.UTF_8);
+        out.writeInt (b.length);
+        out.write (b);
+    } // writeString
+
+    /************************************************************************************
+     * Read a string written by writeString.
+     */
+    private static String readString (DataInput in) throws IOException
+    {
+        byte [] b = new byte [in.readInt ()];
+        in.readFully (b);
+        return new String (b, StandardCharsets.UTF_8);
+    } // readString
+
+} // TupleCodec class
@@ -1,4 +1,4 @@
-
-public class Union {
-
-}
+
+public class Union {
+
+}
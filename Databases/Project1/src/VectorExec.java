@@ -0,0 +1,480 @@
+
+/*****************************************************************************************
+ * @file  VectorExec.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The VectorExec class provides vectorized (batch-at-a-time) execution of selections,
+ * projections and arithmetic over a column-wise copy of a table's tuples.  Numeric
+ * columns are held in primitive arrays (int [], long [] or double []), and rows are
+ * processed in batches of BATCH, each condition narrowing a selection vector (the
+ * positions of the rows still qualifying) with a tight, branch-free loop over one
+ * primitive array.  Every comparison operator except != is turned into a closed range
+ * test lo <= x <= hi, so only a few type-specialized kernels are needed.
+ */
+public class VectorExec
+{
+    /** The number of rows processed per batch
+     */
+    static final int BATCH = 2048;
+
+    /*************************************************************************************
+     * A column-wise copy of a table's tuples.  Integer, Short and Byte columns are held
+     * as int [], Long as long [], Double and Float as double [], and all others as
+     * Comparable [].  A column with nulls also has a null mask.
+     */
+    static class ColumnStore
+    {
+        final int        n;                  // the number of rows
+        final Object []  data;               // the column arrays
+        final boolean [][] isNull;           // the null masks (null if the column has none)
+
+        /*********************************************************************************
+         * Build the column store for the given tuples.
+         * @param tuples  the tuples (rows)
+         * @param domain  the domains of the columns
+         */
+        ColumnStore (List <Comparable []> tuples, Class [] domain)
+        {
+            n      = tuples.size ();
+            data   = new Object [domain.length];
+            isNull = new boolean [domain.length][];
+            for (int j = 0; j < domain.length; j++) {
+                Class d = domain [j];
+                if (d == Integer.class || d == Short.class || d == Byte.class) data [j] = new int [n];
+                else if (d == Long.class)                                      data [j] = new long [n];
+                else if (d == Double.class || d == Float.class)                data [j] = new double [n];
+                else                                                            data [j] = new Comparable [n];
+            } // for
+
+            for (int i = 0; i < n; i++) {
+                Comparable [] t = tuples.get (i);
+                for (int j = 0; j < data.length; j++) {
+                    Object col = data [j];
+                    if (t [j] == null) {
+                        if (isNull [j] == null) isNull [j] = new boolean [n];
+                        isNull [j][i] = true;
+                    } else if (col instanceof int [])    ((int []) col) [i]    = ((Number) t [j]).intValue ();
+                    else if (col instanceof long [])     ((long []) col) [i]   = ((Number) t [j]).longValue ();
+                    else if (col instanceof double [])   ((double []) col) [i] = ((Number) t [j]).doubleValue ();
+                    else                                 ((Comparable []) col) [i] = t [j];
+                } // for
+            } // for
+        } // constructor
+    } // ColumnStore class
+
+    //-----------------------------------------------------------------------------------
+    // Selection
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Return the positions of the rows satisfying all the conditions, in row order.
+     *
+     * @param cs     the column store
+     * @param cols   the column of each condition
+     * @param conds  the conditions
+     * @return  the qualifying row positions
+     */
+    static int [] select (ColumnStore cs, int [] cols, Condition [] conds)
+    {
+        int [] result = new int [Math.min (cs.n, BATCH)];
+        int    size   = 0;
+        int [] sel    = new int [BATCH], tmp = new int [BATCH];
+
+        for (int from = 0; from < cs.n; from += BATCH) {
+            int to = Math.min (from + BATCH, cs.n), k;
+            if (conds.length == 0) {
+                k = 0;
+                for (int r = from; r < to; r++) sel [k++] = r;
+            } else {
+                k = filter (cs, cols [0], conds [0], null, from, to, sel);
+            } // if
+            for (int c = 1; c < conds.length && k > 0; c++) {
+                k = filter (cs, cols [c], conds [c], sel, 0, k, tmp);
+                int [] swap = sel; sel = tmp; tmp = swap;
+            } // for
+
+            if (size + k > result.length) result = Arrays.copyOf (result, Math.max (2 * result.length, size + k));
+            System.arraycopy (sel, 0, result, size, k);
+            size += k;
+        } // for
+        return Arrays.copyOf (result, size);
+    } // select
+
+    /*************************************************************************************
+     * Apply one condition to a batch of rows: the rows from..to-1 when sel is null
+     * (dense), otherwise the rows sel [from..to-1].  The qualifying rows are written to
+     * out, and their number returned.
+     */
+    @SuppressWarnings("unchecked")
+    private static int filter (ColumnStore cs, int j, Condition c, int [] sel, int from, int to, int [] out)
+    {
+        Object  col = cs.data [j];
+        boolean not = c.op == Condition.Op.NE;
+        int     k;
+
+        if (col instanceof int [] && isIntegral (c.value)) {                // int kernels
+            long v = ((Number) c.value).longValue ();
+            long lo = Integer.MIN_VALUE, hi = Integer.MAX_VALUE;
+            switch (c.op) {
+            case EQ: case NE: lo = hi = v; break;
+            case LT: hi = v - 1; break;
+            case LE: hi = v;     break;
+            case GT: lo = v + 1; break;
+            default: lo = v;
+            } // switch
+            lo = Math.max (lo, Integer.MIN_VALUE);
+            hi = Math.min (hi, Integer.MAX_VALUE);
+            if (lo > hi) {                                                   // e.g., x > MAX_VALUE
+                k = not ? copy (sel, from, to, out) : 0;
+            } else {
+                k = (sel == null) ? rangeInt ((int []) col, (int) lo, (int) hi, not, from, to, out)
+                                  : rangeInt ((int []) col, (int) lo, (int) hi, not, sel, from, to, out);
+            } // if
+
+        } else if (col instanceof long [] && isIntegral (c.value)) {       // long kernels
+            long v = ((Number) c.value).longValue ();
+            long lo = Long.MIN_VALUE, hi = Long.MAX_VALUE;
+            switch (c.op) {
+            case EQ: case NE: lo = hi = v; break;
+            case LT: if (v == Long.MIN_VALUE) return not ? copy (sel, from, to, out) : 0; hi = v - 1; break;
+            case LE: hi = v;     break;
+            case GT: if (v == Long.MAX_VALUE) return 0; lo = v + 1; break;
+            default: lo = v;
+            } // switch
+            k = (sel == null) ? rangeLong ((long []) col, lo, hi, not, from, to, out)
+                              : rangeLong ((long []) col, lo, hi, not, sel, from, to, out);
+
+        } else if (col instanceof double [] && c.value instanceof Number) {  // double kernels
+            long v  = sortable (((Number) c.value).doubleValue ());          // keys order as Double.compare
+            long lo = Long.MIN_VALUE, hi = Long.MAX_VALUE;                   // (NaN and -0.0 included)
+            switch (c.op) {
+            case EQ: case NE: lo = hi = v; break;
+            case LT: hi = v - 1; break;
+            case LE: hi = v;     break;
+            case GT: lo = v + 1; break;
+            default: lo = v;
+            } // switch
+            k = (sel == null) ? rangeDouble ((double []) col, lo, hi, not, from, to, out)
+                              : rangeDouble ((double []) col, lo, hi, not, sel, from, to, out);
+
+        } else {                                                             // boxed values
+            k = 0;
+            for (int i = from; i < to; i++) {
+                int r = (sel == null) ? i : sel [i];
+                out [k] = r;
+                if (c.test ((col instanceof Comparable []) ? ((Comparable []) col) [r] : boxed (col, r))) k++;
+            } // for
+        } // if
+
+        return dropNulls (cs.isNull [j], out, k);
+    } // filter
+
+    /*************************************************************************************
+     * Select the rows from..to-1 whose value is (not) in [lo, hi]: a dense kernel.
+     * The unsigned comparison (x - lo) <= (hi - lo) tests both bounds at once.
+     */
+    private static int rangeInt (int [] col, int lo, int hi, boolean not, int from, int to, int [] out)
+    {
+        int k = 0, width = hi - lo;
+        if (not) {
+            for (int r = from; r < to; r++) { out [k] = r; k += (Integer.compareUnsigned (col [r] - lo, width) > 0) ? 1 : 0; }
+        } else {
+            for (int r = from; r < to; r++) { out [k] = r; k += (Integer.compareUnsigned (col [r] - lo, width) <= 0) ? 1 : 0; }
+        } // if
+        return k;
+    } // rangeInt
+
+    /*************************************************************************************
+     * Select the rows sel [from..to-1] whose value is (not) in [lo, hi]: a sparse kernel.
+     */
+    private static int rangeInt (int [] col, int lo, int hi, boolean not, int [] sel, int from, int to, int [] out)
+    {
+        int k = 0, width = hi - lo;
+        if (not) {
+            for (int i = from; i < to; i++) { int r = sel [i]; out [k] = r; k += (Integer.compareUnsigned (col [r] - lo, width) > 0) ? 1 : 0; }
+        } else {
+            for (int i = from; i < to; i++) { int r = sel [i]; out [k] = r; k += (Integer.compareUnsigned (col [r] - lo, width) <= 0) ? 1 : 0; }
+        } // if
+        return k;
+    } // rangeInt
+
+    private static int rangeLong (long [] col, long lo, long hi, boolean not, int from, int to, int [] out)
+    {
+        int k = 0;
+        long width = hi - lo;
+        if (not) {
+            for (int r = from; r < to; r++) { out [k] = r; k += (Long.compareUnsigned (col [r] - lo, width) > 0) ? 1 : 0; }
+        } else {
+            for (int r = from; r < to; r++) { out [k] = r; k += (Long.compareUnsigned (col [r] - lo, width) <= 0) ? 1 : 0; }
+        } // if
+        return k;
+    } // rangeLong
+
+    private static int rangeLong (long [] col, long lo, long hi, boolean not, int [] sel, int from, int to, int [] out)
+    {
+        int k = 0;
+        long width = hi - lo;
+        if (not) {
+            for (int i = from; i < to; i++) { int r = sel [i]; out [k] = r; k += (Long.compareUnsigned (col [r] - lo, width) > 0) ? 1 : 0; }
+        } else {
+            for (int i = from; i < to; i++) { int r = sel [i]; out [k] = r; k += (Long.compareUnsigned (col [r] - lo, width) <= 0) ? 1 : 0; }
+        } // if
+        return k;
+    } // rangeLong
+
+    /*************************************************************************************
+     * Select the rows whose double value is (not) in [lo, hi], the bounds given as
+     * sortable keys (see sortable), so the result agrees with Condition.test.
+     */
+    private static int rangeDouble (double [] col, long lo, long hi, boolean not, int from, int to, int [] out)
+    {
+        int k = 0;
+        long width = hi - lo;
+        if (not) {
+            for (int r = from; r < to; r++) { out [k] = r; k += (Long.compareUnsigned (sortable (col [r]) - lo, width) > 0) ? 1 : 0; }
+        } else {
+            for (int r = from; r < to; r++) { out [k] = r; k += (Long.compareUnsigned (sortable (col [r]) - lo, width) <= 0) ? 1 : 0; }
+        } // if
+        return k;
+    } // rangeDouble
+
+    private static int rangeDouble (double [] col, long lo, long hi, boolean not, int [] sel, int from, int to, int [] out)
+    {
+        int k = 0;
+        long width = hi - lo;
+        if (not) {
+            for (int i = from; i < to; i++) { int r = sel [i]; out [k] = r; k += (Long.compareUnsigned (sortable (col [r]) - lo, width) > 0) ? 1 : 0; }
+        } else {
+            for (int i = from; i < to; i++) { int r = sel [i]; out [k] = r; k += (Long.compareUnsigned (sortable (col [r]) - lo, width) <= 0) ? 1 : 0; }
+        } // if
+        return k;
+    } // rangeDouble
+
+    /*************************************************************************************
+     * Map a double to a long whose signed order is the total order of Double.compare:
+     * -0.0 sorts below 0.0 and NaN (canonicalized) above positive infinity.  Flipping
+     * the magnitude bits of negatives makes more negative values smaller.
+     * @param x  the double value
+     */
+    private static long sortable (double x)
+    {
+        long b = Double.doubleToLongBits (x);
+        return b ^ ((b >> 63) & Long.MAX_VALUE);
+    } // sortable
+
+    /*************************************************************************************
+     * Copy the rows (from..to-1, or sel [from..to-1]) to out unfiltered.
+     */
+    private static int copy (int [] sel, int from, int to, int [] out)
+    {
+        int k = 0;
+        for (int i = from; i < to; i++) out [k++] = (sel == null) ? i : sel [i];
+        return k;
+    } // copy
+
+    /*************************************************************************************
+     * Remove the rows with a null in the column (nulls never satisfy a condition).
+     */
+    private static int dropNulls (boolean [] isNull, int [] rows, int k)
+    {
+        if (isNull == null) return k;
+        int m = 0;
+        for (int i = 0; i < k; i++) { rows [m] = rows [i]; m += isNull [rows [i]] ? 0 : 1; }
+        return m;
+    } // dropNulls
+
+    /*************************************************************************************
+     * Determine whether v is an integral number (so it can be compared as a long).
+     */
+    private static boolean isIntegral (Comparable v)
+    {
+        return v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte;
+    } // isIntegral
+
+    /*************************************************************************************
+     * Return the boxed value in row r of a primitive column.
+     */
+    private static Comparable boxed (Object col, int r)
+    {
+        if (col instanceof int [])  return ((int []) col) [r];
+        if (col instanceof long []) return ((long []) col) [r];
+        return ((double []) col) [r];
+    } // boxed
+
+    //-----------------------------------------------------------------------------------
+    // Arithmetic
+    //-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Compute "column a op b" for every row, where b is a column (bCol >= 0) or else the
+     * number bVal.  The result is an int [], long [] or double [] depending on the
+     * widest operand.  Rows with a null operand get a null result (see isNull).
+     *
+     * @param cs    the column store
+     * @param a     the lhs column
+     * @param op    the operator (+, -, *, /)
+     * @param bCol  the rhs column, or -1 to use bVal
+     * @param bVal  the rhs number
+     * @return  the result column
+     */
+    static Object arith (ColumnStore cs, int a, char op, int bCol, Number bVal)
+    {
+        Object x = cs.data [a], y = (bCol >= 0) ? cs.data [bCol] : null;
+        if (! (x instanceof int [] || x instanceof long [] || x instanceof double [])
+            || bCol >= 0 && ! (y instanceof int [] || y instanceof long [] || y instanceof double [])) {
+            throw new IllegalArgumentException ("VectorExec.arith: operands must be numeric");
+        } // if
+
+        boolean dbl = x instanceof double [] || y instanceof double [] || bVal instanceof Double || bVal instanceof Float;
+        boolean lng = ! dbl && (x instanceof long [] || y instanceof long [] || bVal instanceof Long);
+        int n = cs.n;
+
+        if (dbl) {
+            double [] u = asDouble (x, n), v = (bCol >= 0) ? asDouble (y, n) : null, z = new double [n];
+            double  s = (bCol >= 0) ? 0 : bVal.doubleValue ();
+            for (int from = 0; from < n; from += BATCH) {
+                int to = Math.min (from + BATCH, n);
+                switch (op) {
+                case '+': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] + v [i]; else for (int i = from; i < to; i++) z [i] = u [i] + s; break;
+                case '-': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] - v [i]; else for (int i = from; i < to; i++) z [i] = u [i] - s; break;
+                case '*': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] * v [i]; else for (int i = from; i < to; i++) z [i] = u [i] * s; break;
+                default:  if (v != null) for (int i = from; i < to; i++) z [i] = u [i] / v [i]; else for (int i = from; i < to; i++) z [i] = u [i] / s;
+                } // switch
+            } // for
+            return z;
+        } // if
+
+        if (lng) {
+            long [] u = asLong (x, n), v = (bCol >= 0) ? asLong (y, n) : null, z = new long [n];
+            long  s = (bCol >= 0) ? 0 : bVal.longValue ();
+            for (int from = 0; from < n; from += BATCH) {
+                int to = Math.min (from + BATCH, n);
+                switch (op) {
+                case '+': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] + v [i]; else for (int i = from; i < to; i++) z [i] = u [i] + s; break;
+                case '-': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] - v [i]; else for (int i = from; i < to; i++) z [i] = u [i] - s; break;
+                case '*': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] * v [i]; else for (int i = from; i < to; i++) z [i] = u [i] * s; break;
+                default:  for (int i = from; i < to; i++) z [i] = divide (u [i], (v != null) ? v [i] : s);
+                } // switch
+            } // for
+            return z;
+        } // if
+
+        int [] u = (int []) x, v = (bCol >= 0) ? (int []) y : null, z = new int [n];
+        int  s = (bCol >= 0) ? 0 : bVal.intValue ();
+        for (int from = 0; from < n; from += BATCH) {
+            int to = Math.min (from + BATCH, n);
+            switch (op) {
+            case '+': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] + v [i]; else for (int i = from; i < to; i++) z [i] = u [i] + s; break;
+            case '-': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] - v [i]; else for (int i = from; i < to; i++) z [i] = u [i] - s; break;
+            case '*': if (v != null) for (int i = from; i < to; i++) z [i] = u [i] * v [i]; else for (int i = from; i < to; i++) z [i] = u [i] * s; break;
+            default:  for (int i = from; i < to; i++) z [i] = (int) divide (u [i], (v != null) ? v [i] : s);
+            } // switch
+        } // for
+        return z;
+    } // arith
+
+    /*************************************************************************************
+     * Integer division, giving 0 for division by zero (such rows are nulled by the
+     * caller when the divisor is a column, and rejected up front for a constant).
+     */
+    private static long divide (long a, long b)
+    {
+        return (b == 0) ? 0 : a / b;
+    } // divide
+
+    /*************************************************************************************
+     * Return a numeric column widened to double [] (or long []).
+     */
+    private static double [] asDouble (Object col, int n)
+    {
+        if (col instanceof double []) return (double []) col;
+        double [] d = new double [n];
+        if (col instanceof int []) { int [] c = (int []) col;  for (int i = 0; i < n; i++) d [i] = c [i]; }
+        else                       { long [] c = (long []) col; for (int i = 0; i < n; i++) d [i] = c [i]; }
+        return d;
+    } // asDouble
+
+    private static long [] asLong (Object col, int n)
+    {
+        if (col instanceof long []) return (long []) col;
+        long [] d = new long [n];
+        int [] c = (int []) col;
+        for (int i = 0; i < n; i++) d [i] = c [i];
+        return d;
+    } // asLong
+
+    /*************************************************************************************
+     * Return the value in row r of a result column computed by arith, boxed in the
+     * given domain.
+     */
+    static Comparable box (Object col, int r, Class domain)
+    {
+        if (col instanceof double []) return (domain == Float.class) ? (Comparable) (float) ((double []) col) [r]
+                                                                     : (Comparable) ((double []) col) [r];
+        if (col instanceof long [])   return ((long []) col) [r];
+        return ((int []) col) [r];
+    } // box
+
+    /*************************************************************************************
+     * Return the domain (Integer, Long or Double) of a result column computed by arith.
+     */
+    static Class domainOf (Object col)
+    {
+        return (col instanceof double []) ? Double.class : (col instanceof long []) ? Long.class : Integer.class;
+    } // domainOf
+
+    /*************************************************************************************
+     * The main method is used for testing: compare the row-at-a-time selects with the
+     * vectorized select on a large movie table.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 1000000;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        Table movie = new Table ("movie", "title year length genre studioName producerNo",
+                                          "String Integer Integer String String Integer", "title year",
+                                          IndexType.NONE);
+        Random rng = new Random (0);
+        for (int i = 0; i < nTuples; i++) {
+            movie.insert (new Comparable [] { "Movie_" + i, 1900 + rng.nextInt (120), 60 + rng.nextInt (150),
+                                              "genre" + rng.nextInt (12), "Studio_" + rng.nextInt (40), rng.nextInt (5000) });
+        } // for
+
+        Condition [] conds = { new Condition ("year", ">=", 1980), new Condition ("length", "<", 100),
+                               new Condition ("producerNo", "!=", 7) };
+        int y = movie.col ("year"), l = movie.col ("length"), p = movie.col ("producerNo");
+
+        for (int run = 0; run < 5; run++) {
+            long t0 = System.nanoTime ();
+            Table r1 = movie.select (t -> (Integer) t [y] >= 1980 && (Integer) t [l] < 100 && ! t [p].equals (7));
+            long t1 = System.nanoTime ();
+            Table r2 = movie.select (conds);
+            long t2 = System.nanoTime ();
+            Table r3 = movie.v_select (conds);
+            long t3 = System.nanoTime ();
+            Table r4 = movie.v_select ("title length", conds);
+            long t4 = System.nanoTime ();
+            System.setOut (console);
+            out.printf ("rows = %d/%d/%d/%d: lambda %d ms, condition %d ms, vectorized %d ms, vectorized + project %d ms\n",
+                        r1.size (), r2.size (), r3.size (), r4.size (), (t1 - t0) / 1000000, (t2 - t1) / 1000000,
+                        (t3 - t2) / 1000000, (t4 - t3) / 1000000);
+            System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        } // for
+
+        Table r5 = movie.v_extend ("length2", "length", '*', 2);
+        System.setOut (console);
+        out.println ("v_extend: " + Arrays.toString (r5.getAttribute ()) + ", rows = " + r5.size ());
+    } // main
+
+} // VectorExec class
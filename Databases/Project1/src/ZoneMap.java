@@ -0,0 +1,201 @@
+
+/*****************************************************************************************
+ * @file  ZoneMap.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The ZoneMap class keeps a summary of each block of a table's storage: for every
+ * BLOCK consecutive tuples (in insertion order), the min and max of each column's
+ * non-null values.  A selection can then skip every block whose ranges show that no
+ * tuple in it can satisfy the conditions, e.g., a block with years 1931 to 1948 for
+ * year >= 1980.  This pays off when the data is clustered by insertion order (e.g.,
+ * years or dates arriving in order), and costs little when it is not.
+ *
+ * The summaries are maintained as tuples are inserted (appended to the last block) and
+ * saved with the table.  A delete shifts the tuples between blocks, so it just marks
+ * the zone map stale, and it is rebuilt from the tuples when next used.
+ */
+public class ZoneMap
+       implements Serializable
+{
+    /** The number of tuples per block
+     */
+    static final int BLOCK = 1024;
+
+    /** The number of columns
+     */
+    private final int nCols;
+
+    /** The min and max of each column's non-null values for each block (null for a
+     *  column with no non-null values in the block)
+     */
+    private final List <Comparable []> mins = new ArrayList <> (), maxs = new ArrayList <> ();
+
+    /** The number of tuples summarized
+     */
+    private int count = 0;
+
+    /** Whether a delete has made the summaries out of date
+     */
+    private boolean stale = false;
+
+    /** The numbers of blocks checked and skipped by selections (for reporting)
+     */
+    private static long checked = 0, skipped = 0;
+
+    /*************************************************************************************
+     * Construct an empty zone map for a table with the given number of columns.
+     * @param _nCols  the number of columns
+     */
+    public ZoneMap (int _nCols)
+    {
+        nCols = _nCols;
+    } // constructor
+
+    /*************************************************************************************
+     * Update the summaries for a tuple appended to the table.
+     * @param t  the inserted tuple
+     */
+    @SuppressWarnings("unchecked")
+    public void add (Comparable [] t)
+    {
+        if (stale) return;
+        if (count % BLOCK == 0) {
+            mins.add (new Comparable [nCols]);
+            maxs.add (new Comparable [nCols]);
+        } // if
+        Comparable [] min = mins.get (mins.size () - 1), max = maxs.get (maxs.size () - 1);
+        for (int j = 0; j < nCols; j++) {
+            Comparable v = t [j];
+            if (v == null) continue;
+            if (min [j] == null || v.compareTo (min [j]) < 0) min [j] = v;
+            if (max [j] == null || v.compareTo (max [j]) > 0) max [j] = v;
+        } // for
+        count++;
+    } // add
+
+    /*************************************************************************************
+     * Note that tuples were deleted from the table (the blocks have shifted).
+     */
+    public void invalidate ()
+    {
+        stale = true;
+    } // invalidate
+
+    /*************************************************************************************
+     * Return the tuples of the table that might satisfy all the conditions: those in
+     * blocks not ruled out by their summaries (as views of the table's list).
+     *
+     * @param tuples  the table's tuples
+     * @param cols    the columns the conditions are on
+     * @param conds   the conditions
+     * @return  the blocks of tuples to scan
+     */
+    public List <List <Comparable []>> candidates (List <Comparable []> tuples, int [] cols, Condition [] conds)
+    {
+        if (stale || count != tuples.size ()) rebuild (tuples);
+
+        List <List <Comparable []>> blocks = new ArrayList <> ();
+        int nBlocks = mins.size (), from = -1, skip = 0;                    // merge adjacent blocks kept
+        for (int b = 0; b <= nBlocks; b++) {
+            boolean keep = b < nBlocks && mayMatch (b, cols, conds);
+            if (keep && from < 0) from = b;
+            if (! keep && from >= 0) {
+                blocks.add (tuples.subList (from * BLOCK, Math.min (b * BLOCK, tuples.size ())));
+                from = -1;
+            } // if
+            if (b < nBlocks && ! keep) skip++;
+        } // for
+        synchronized (ZoneMap.class) {
+            checked += nBlocks;
+            skipped += skip;
+        } // synchronized
+        return blocks;
+    } // candidates
+
+    /*************************************************************************************
+     * Determine whether some tuple in block b might satisfy all the conditions.  A value
+     * of a different type than the column's cannot be checked, so it rules nothing out.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean mayMatch (int b, int [] cols, Condition [] conds)
+    {
+        Comparable [] min = mins.get (b), max = maxs.get (b);
+        for (int j = 0; j < conds.length; j++) {
+            Comparable lo = min [cols [j]], hi = max [cols [j]], v = conds [j].value;
+            if (lo == null) return false;                                   // all null: nulls never match
+            if (v == null || lo.getClass () != v.getClass ()) continue;
+            switch (conds [j].op) {
+            case EQ: if (lo.compareTo (v) > 0 || hi.compareTo (v) < 0) return false; break;
+            case NE: if (lo.compareTo (v) == 0 && hi.compareTo (v) == 0) return false; break;
+            case LT: if (lo.compareTo (v) >= 0) return false; break;
+            case LE: if (lo.compareTo (v) > 0) return false; break;
+            case GT: if (hi.compareTo (v) <= 0) return false; break;
+            default: if (hi.compareTo (v) < 0) return false;
+            } // switch
+        } // for
+        return true;
+    } // mayMatch
+
+    /*************************************************************************************
+     * Rebuild the summaries from the table's tuples.
+     * @param tuples  the table's tuples
+     */
+    public void rebuild (List <Comparable []> tuples)
+    {
+        mins.clear ();
+        maxs.clear ();
+        count = 0;
+        stale = false;
+        for (Comparable [] t : tuples) add (t);
+    } // rebuild
+
+    /*************************************************************************************
+     * Return the numbers of blocks checked and skipped by selections so far.
+     */
+    public static synchronized long checked () { return checked; }
+    public static synchronized long skipped () { return skipped; }
+
+    /*************************************************************************************
+     * The main method is used for testing: select a range of years from a table whose
+     * tuples arrive in year order, with the zone map and with a full scan.
+     * @param args  the command-line arguments (args [0] gives the number of tuples)
+     */
+    public static void main (String [] args)
+    {
+        int nTuples = 1000000;
+        if (args.length == 1) nTuples = Integer.valueOf (args [0]);
+
+        java.io.PrintStream console = System.out;
+        System.setOut (new java.io.PrintStream (java.io.OutputStream.nullOutputStream ()));
+        Table movie = new Table ("movie", "title year length", "String Integer Integer", "title", IndexType.NONE);
+        Random rng = new Random (0);
+        for (int i = 0; i < nTuples; i++) {
+            movie.insert (new Comparable [] { "Movie_" + i, 1900 + (int) (120L * i / nTuples), 60 + rng.nextInt (150) });
+        } // for
+        int yr = movie.col ("year");
+
+        Table r1 = null, r2 = null;
+        long  zone = Long.MAX_VALUE, full = Long.MAX_VALUE;
+        for (int run = 0; run < 10; run++) {                                  // best of 10 (after warming up)
+            long t0 = System.nanoTime ();
+            r1 = movie.select (new Condition ("year", ">=", 2010), new Condition ("length", "<", 100));
+            long t1 = System.nanoTime ();
+            r2 = movie.select (t -> (Integer) t [yr] >= 2010 && (Integer) t [yr + 1] < 100);
+            long t2 = System.nanoTime ();
+            zone = Math.min (zone, t1 - t0);
+            full = Math.min (full, t2 - t1);
+        } // for
+        System.setOut (console);
+        out.printf ("rows = %d/%d: with zone map %d ms, full scan %d ms (skipped %d of %d blocks)\n",
+                    r1.size (), r2.size (), zone / 1000000, full / 1000000, skipped, checked);
+    } // main
+
+} // ZoneMap class